@@ -1,2 +1,2 @@
 #!/bin/bash
-java -jar target/hello-0.0.1-SNAPSHOT.jar
\ No newline at end of file
+java --add-modules jdk.incubator.vector -jar target/hello-0.0.1-SNAPSHOT.jar
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.example.hello.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 线程池配置类
+ * 识别流程中的并行任务使用独立的有界线程池，不占用Web容器线程
+ * 识别接口按阶段使用不同线程池：等待外部接口（向量接口、大模型、Milvus）的阶段使用upstreamExecutor，
+ * 磁盘写入和MySQL写入使用ioExecutor，上游变慢时只会占满upstreamExecutor，不会占用Tomcat请求线程
+ * 图片解码、缩放和重新编码是CPU密集任务，使用线程数不超过CPU核数的imageExecutor
+ */
+@Configuration
+public class ExecutorConfig {
+
+    // 批量识别线程数，主要等待外部接口，可以大于CPU核数
+    @Value("${plant.recognition.pool-size:16}")
+    private int recognitionPoolSize;
+
+    // 批量识别任务队列容量
+    @Value("${plant.recognition.queue-capacity:200}")
+    private int recognitionQueueCapacity;
+
+    // 等待外部接口的线程数，决定同时进行中的识别请求上限
+    @Value("${plant.executor.upstream.pool-size:64}")
+    private int upstreamPoolSize;
+
+    // 等待外部接口的任务队列容量，队列满时拒绝新请求
+    @Value("${plant.executor.upstream.queue-capacity:256}")
+    private int upstreamQueueCapacity;
+
+    // 磁盘和数据库写入线程数
+    @Value("${plant.executor.io.pool-size:8}")
+    private int ioPoolSize;
+
+    // 磁盘和数据库写入任务队列容量
+    @Value("${plant.executor.io.queue-capacity:256}")
+    private int ioQueueCapacity;
+
+    // 图片预处理线程数，0表示使用CPU核数
+    @Value("${plant.executor.image.pool-size:0}")
+    private int imagePoolSize;
+
+    // 图片预处理任务队列容量，队列满时发送原图
+    @Value("${plant.executor.image.queue-capacity:64}")
+    private int imageQueueCapacity;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 创建等待外部接口的识别线程池
+     * 队列满时抛出RejectedExecutionException，由全局异常处理返回503
+     * @return 配置好的线程池
+     */
+    @Bean(name = "upstreamExecutor")
+    public ThreadPoolTaskExecutor upstreamExecutor() {
+        return createExecutor("upstream-", upstreamPoolSize, upstreamQueueCapacity,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 创建磁盘和数据库写入线程池
+     * 队列满时抛出RejectedExecutionException，由全局异常处理返回503
+     * @return 配置好的线程池
+     */
+    @Bean(name = "ioExecutor")
+    public ThreadPoolTaskExecutor ioExecutor() {
+        return createExecutor("io-", ioPoolSize, ioQueueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 创建图片预处理线程池
+     * 队列满时抛出RejectedExecutionException，由图片预处理服务改为发送原图
+     * @return 配置好的线程池
+     */
+    @Bean(name = "imageExecutor")
+    public ThreadPoolTaskExecutor imageExecutor() {
+        int poolSize = imagePoolSize > 0 ? imagePoolSize : Runtime.getRuntime().availableProcessors();
+        return createExecutor("image-", poolSize, imageQueueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 创建批量识别线程池
+     * 队列满时由提交任务的线程直接执行，避免丢弃识别任务
+     * @return 配置好的线程池
+     */
+    @Bean(name = "recognitionExecutor")
+    public ThreadPoolTaskExecutor recognitionExecutor() {
+        return createExecutor("recognition-", recognitionPoolSize, recognitionQueueCapacity,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 创建固定大小的有界线程池，并注册线程池指标（executor.active、executor.queued等）
+     * @param prefix 线程名前缀
+     * @param poolSize 线程数
+     * @param queueCapacity 队列容量
+     * @param rejectedHandler 队列满时的处理策略
+     * @return 配置好的线程池
+     */
+    private ThreadPoolTaskExecutor createExecutor(String prefix, int poolSize, int queueCapacity,
+                                                  RejectedExecutionHandler rejectedHandler) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(prefix);
+        executor.setRejectedExecutionHandler(rejectedHandler);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        new ExecutorServiceMetrics(executor.getThreadPoolExecutor(), prefix.substring(0, prefix.length() - 1),
+                Collections.emptyList()).bindTo(meterRegistry);
+        return executor;
+    }
+}
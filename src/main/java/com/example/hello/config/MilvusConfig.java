@@ -4,6 +4,7 @@ import io.milvus.client.MilvusClient;
 import io.milvus.client.MilvusServiceClient;
 import io.milvus.param.ConnectParam;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -26,11 +27,41 @@ public class MilvusConfig {
     @Value("${milvus.dimension:1536}")
     private int dimension;
 
+    // HNSW索引每个节点的最大连接数
+    @Value("${milvus.index.m:16}")
+    private int indexM;
+
+    // HNSW索引构建时的候选集大小
+    @Value("${milvus.index.ef-construction:64}")
+    private int indexEfConstruction;
+
+    // HNSW检索时的候选集大小
+    @Value("${milvus.search.ef:64}")
+    private int searchEf;
+
+    // 批量写入的最大行数
+    @Value("${milvus.insert-buffer.batch-size:256}")
+    private int insertBatchSize;
+
+    // 第一行入队后最多等待多久写入
+    @Value("${milvus.insert-buffer.flush-interval-ms:200}")
+    private long insertFlushIntervalMs;
+
+    // 写入缓冲区队列容量
+    @Value("${milvus.insert-buffer.capacity:10000}")
+    private int insertBufferCapacity;
+
+    // 写入缓冲区已满时提交方最多等待的时间
+    @Value("${milvus.insert-buffer.offer-timeout-ms:1000}")
+    private long insertOfferTimeoutMs;
+
     /**
      * 创建Milvus客户端实例
+     * 只在使用Milvus作为向量检索后端时创建，避免本地索引模式下因Milvus不可达而启动失败
      * @return 配置好的MilvusClient
      */
     @Bean
+    @ConditionalOnProperty(name = "vector.backend", havingValue = "milvus", matchIfMissing = true)
     public MilvusClient milvusClient() {
         ConnectParam connectParam = ConnectParam.newBuilder()
                 .withHost(host)
@@ -46,4 +77,32 @@ public class MilvusConfig {
     public int getDimension() {
         return dimension;
     }
+
+    public int getIndexM() {
+        return indexM;
+    }
+
+    public int getIndexEfConstruction() {
+        return indexEfConstruction;
+    }
+
+    public int getSearchEf() {
+        return searchEf;
+    }
+
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    public long getInsertFlushIntervalMs() {
+        return insertFlushIntervalMs;
+    }
+
+    public int getInsertBufferCapacity() {
+        return insertBufferCapacity;
+    }
+
+    public long getInsertOfferTimeoutMs() {
+        return insertOfferTimeoutMs;
+    }
 }
\ No newline at end of file
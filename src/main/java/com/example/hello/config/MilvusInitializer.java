@@ -1,6 +1,7 @@
 package com.example.hello.config;
 
 import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.VectorSnapshotService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +12,7 @@ import org.springframework.context.event.EventListener;
 /**
  * Milvus初始化配置类
  * 在应用启动时初始化Milvus集合
+ * 集合加载在后台线程中进行，不阻塞启动；加载期间由本地向量快照提供检索
  */
 @Configuration
 public class MilvusInitializer {
@@ -20,18 +22,37 @@ public class MilvusInitializer {
     @Autowired
     private MilvusVectorService milvusVectorService;
 
+    @Autowired
+    private VectorSnapshotService vectorSnapshotService;
+
+    private volatile boolean started;
+
     /**
      * 在Spring上下文刷新时初始化Milvus集合
+     * 进程内后端在初始化时从本地向量快照加载向量；Milvus后端初始化成功后重新导出本地向量快照
      * @param event 上下文刷新事件
      */
     @EventListener
     public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (started) {
+            return;
+        }
+        started = true;
+        Thread thread = new Thread(this::initialize, "milvus-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void initialize() {
         logger.info("开始初始化Milvus集合...");
         boolean result = milvusVectorService.initCollection();
         if (result) {
             logger.info("Milvus集合初始化成功");
+            if (!vectorSnapshotService.isPrimaryStore()) {
+                vectorSnapshotService.exportFromMilvus();
+            }
         } else {
             logger.error("Milvus集合初始化失败");
         }
     }
-}
\ No newline at end of file
+}
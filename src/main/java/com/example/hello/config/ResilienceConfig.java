@@ -0,0 +1,98 @@
+package com.example.hello.config;
+
+import com.example.hello.resilience.AdaptiveLimiter;
+import com.example.hello.resilience.CircuitBreaker;
+import com.example.hello.resilience.UpstreamGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 上游调用保护配置类
+ * 大模型识别接口和图像向量接口各自使用独立的熔断器和舱壁，参数前缀分别为upstream.llm和upstream.embedding
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 创建大模型识别接口的调用保护
+     * @return 调用保护
+     */
+    @Bean(name = "llmGuard")
+    public UpstreamGuard llmGuard() {
+        return createGuard("llm");
+    }
+
+    /**
+     * 创建大模型识别接口的自适应并发限制
+     * 根据调用延迟调整同时进行的大模型调用数，避免超过上游吞吐上限后延迟急剧上升
+     * @return 自适应并发限制
+     */
+    @Bean(name = "llmLimiter")
+    public AdaptiveLimiter llmLimiter() {
+        String prefix = "upstream.llm.limiter.";
+        return new AdaptiveLimiter("llm",
+                // 初始并发上限
+                environment.getProperty(prefix + "initial-limit", Integer.class, 16),
+                // 并发上限的最小值
+                environment.getProperty(prefix + "min-limit", Integer.class, 2),
+                // 并发上限的最大值，不应超过舱壁大小
+                environment.getProperty(prefix + "max-limit", Integer.class, 32),
+                // 最多排队等待的请求数
+                environment.getProperty(prefix + "max-queue", Integer.class, 64),
+                // 排队的最长等待时间（毫秒）
+                environment.getProperty(prefix + "max-wait-ms", Long.class, 500L),
+                // 每次调整时新上限的权重
+                environment.getProperty(prefix + "smoothing", Double.class, 0.2),
+                // 调用失败时上限的缩小比例
+                environment.getProperty(prefix + "backoff-ratio", Double.class, 0.9),
+                meterRegistry);
+    }
+
+    /**
+     * 创建图像向量接口的调用保护
+     * @return 调用保护
+     */
+    @Bean(name = "embeddingGuard")
+    public UpstreamGuard embeddingGuard() {
+        return createGuard("embedding");
+    }
+
+    /**
+     * 按配置创建调用保护
+     * @param name 上游名称，对应配置前缀upstream.{name}
+     * @return 调用保护
+     */
+    private UpstreamGuard createGuard(String name) {
+        String prefix = "upstream." + name + ".";
+        CircuitBreaker circuitBreaker = new CircuitBreaker(
+                // 统计最近多少次调用
+                environment.getProperty(prefix + "window-size", Integer.class, 20),
+                // 至少多少次调用后才开始计算失败率
+                environment.getProperty(prefix + "minimum-calls", Integer.class, 10),
+                // 失败率达到该值时打开熔断
+                environment.getProperty(prefix + "failure-rate-threshold", Float.class, 0.5f),
+                // 慢调用率达到该值时打开熔断
+                environment.getProperty(prefix + "slow-call-rate-threshold", Float.class, 0.8f),
+                // 超过该耗时的调用视为慢调用（毫秒）
+                environment.getProperty(prefix + "slow-call-duration-ms", Long.class, 5000L),
+                // 熔断打开后多久进入半开状态（毫秒）
+                environment.getProperty(prefix + "open-duration-ms", Long.class, 10000L),
+                // 半开状态放行的试探调用数
+                environment.getProperty(prefix + "half-open-calls", Integer.class, 3));
+        return new UpstreamGuard(name, circuitBreaker,
+                // 同时进行的调用数上限
+                environment.getProperty(prefix + "max-concurrent-calls", Integer.class, 32),
+                // 并发已满时最多等待多久（毫秒），0表示立即失败
+                environment.getProperty(prefix + "max-wait-ms", Long.class, 0L),
+                meterRegistry);
+    }
+}
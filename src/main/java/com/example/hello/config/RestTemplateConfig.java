@@ -1,27 +1,210 @@
 package com.example.hello.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.config.Registry;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.URI;
+import java.util.function.ToDoubleFunction;
+
 /**
  * RestTemplate配置类
  * 配置HTTP请求超时时间，确保调用第三方接口的可靠性
+ * 使用Apache HttpClient 5连接池复用到大模型和向量接口的长连接，避免每次调用重新建立TCP连接和TLS握手
  */
 @Configuration
 public class RestTemplateConfig {
+
+    // 连接超时时间（毫秒）
+    @Value("${http.client.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    // 读取超时时间（毫秒）
+    @Value("${http.client.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
+    // 从连接池获取连接的最长等待时间（毫秒）
+    @Value("${http.client.connection-request-timeout-ms:2000}")
+    private int connectionRequestTimeoutMs;
+
+    // 连接池最大连接数
+    @Value("${http.client.max-total:200}")
+    private int maxTotal;
+
+    // 每个目标主机默认的最大连接数
+    @Value("${http.client.default-max-per-route:20}")
+    private int defaultMaxPerRoute;
+
+    // 大模型和向量接口所在主机的最大连接数
+    @Value("${http.client.llm.max-per-route:64}")
+    private int llmMaxPerRoute;
+
+    // 服务端未返回Keep-Alive时连接的保持时间（毫秒）
+    @Value("${http.client.keep-alive-ms:30000}")
+    private long keepAliveMs;
+
+    // 空闲连接的回收时间（毫秒）
+    @Value("${http.client.idle-evict-ms:60000}")
+    private long idleEvictMs;
+
+    // 连接空闲超过该时间后复用前先检查是否可用（毫秒）
+    @Value("${http.client.validate-after-inactivity-ms:2000}")
+    private long validateAfterInactivityMs;
+
+    // 是否请求gzip/deflate压缩的响应
+    @Value("${http.client.compression:true}")
+    private boolean compression;
+
+    // 大模型API地址，用于单独设置该主机的连接数上限
+    @Value("${llm.api-url}")
+    private String llmApiUrl;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 创建带连接池的HTTP客户端
+     * 连接池指标通过httpcomponents.httpclient.pool.*暴露，大模型主机的连接使用情况通过http.client.route.*暴露，
+     * TLS握手次数通过http.client.tls.handshakes暴露
+     * @return 配置好的HTTP客户端
+     */
+    @Bean
+    public CloseableHttpClient pooledHttpClient() {
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new MeteredSSLConnectionSocketFactory())
+                .build();
+
+        MeteredConnectionManager connectionManager = new MeteredConnectionManager(socketFactoryRegistry, meterRegistry);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(defaultMaxPerRoute);
+        connectionManager.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(validateAfterInactivityMs))
+                .build());
+
+        // 大模型和向量接口共用同一主机，单独设置连接数上限
+        HttpRoute llmRoute = createRoute(llmApiUrl);
+        if (llmRoute != null) {
+            connectionManager.setMaxPerRoute(llmRoute, llmMaxPerRoute);
+            registerRouteGauges(connectionManager, llmRoute);
+        }
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "plant-http-client").bindTo(meterRegistry);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAliveMs))
+                .build();
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs));
+        if (!compression) {
+            builder.disableContentCompression();
+        }
+        return builder.build();
+    }
+
     /**
      * 创建RestTemplate实例并配置超时时间
+     * @param pooledHttpClient 带连接池的HTTP客户端
      * @return 配置好的RestTemplate
      */
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
-        // 连接超时时间：5秒
-        requestFactory.setConnectTimeout(5000);
-        // 读取超时时间：10秒
-        requestFactory.setReadTimeout(10000);
+    public RestTemplate restTemplate(CloseableHttpClient pooledHttpClient) {
+        // 超时时间已在连接池和默认请求配置中设置
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(pooledHttpClient);
         return new RestTemplate(requestFactory);
     }
-}
\ No newline at end of file
+
+    /**
+     * 根据URL创建连接池路由
+     * @param url 目标URL
+     * @return 路由，URL无效时返回null
+     */
+    private HttpRoute createRoute(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() == null) {
+                return null;
+            }
+            boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+            int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+            return new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), port), null, secure);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 注册单个主机的连接使用情况指标
+     * @param connectionManager 连接池
+     * @param route 路由
+     */
+    private void registerRouteGauges(MeteredConnectionManager connectionManager, HttpRoute route) {
+        String host = route.getTargetHost().getHostName();
+        registerRouteGauge("http.client.route.leased", "正在使用的连接数", host, connectionManager, route, PoolStats::getLeased);
+        registerRouteGauge("http.client.route.available", "空闲连接数", host, connectionManager, route, PoolStats::getAvailable);
+        registerRouteGauge("http.client.route.pending", "等待获取连接的请求数", host, connectionManager, route, PoolStats::getPending);
+        registerRouteGauge("http.client.route.max", "连接数上限", host, connectionManager, route, PoolStats::getMax);
+    }
+
+    private void registerRouteGauge(String name, String description, String host, MeteredConnectionManager connectionManager,
+                                    HttpRoute route, ToDoubleFunction<PoolStats> value) {
+        Gauge.builder(name, connectionManager, manager -> value.applyAsDouble(manager.getStats(route)))
+                .description(description)
+                .tag("host", host)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 统计TLS握手次数的SSL连接工厂
+     * 连接池正常复用时握手次数应远小于请求次数
+     */
+    private class MeteredSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
+
+        MeteredSSLConnectionSocketFactory() {
+            super(SSLContexts.createSystemDefault());
+        }
+
+        @Override
+        protected void prepareSocket(SSLSocket socket, HttpContext context) throws IOException {
+            super.prepareSocket(socket, context);
+            socket.addHandshakeCompletedListener(event -> Counter.builder("http.client.tls.handshakes")
+                    .description("TLS握手次数")
+                    .tag("host", String.valueOf(event.getSession().getPeerHost()))
+                    .register(meterRegistry)
+                    .increment());
+        }
+    }
+}
@@ -21,4 +21,9 @@ public class WeChatMiniAppConfig {
      * 微信小程序secret
      */
     private String secret;
+
+    /**
+     * 携带当前用户openid的请求头，由网关在登录校验后设置
+     */
+    private String openidHeader = "X-WX-OPENID";
 }
\ No newline at end of file
@@ -1,11 +1,19 @@
 package com.example.hello.config;
 
+import com.example.hello.service.ImageStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
 
-import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Web MVC配置类
@@ -14,6 +22,10 @@ import java.io.File;
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
+    // 上传图片存储服务，解析/uploads/**对应的文件
+    @Autowired
+    private ImageStorageService imageStorageService;
+
     /**
      * 配置跨域请求处理
      * @param registry 跨域注册表
@@ -24,23 +36,41 @@ public class WebMvcConfig implements WebMvcConfigurer {
                 .allowedOriginPatterns("*") // 允许所有来源
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS") // 允许的HTTP方法
                 .allowedHeaders("*") // 允许所有头
+                .exposedHeaders("X-Next-Cursor") // 允许读取历史记录的下一页游标
                 .allowCredentials(true) // 允许发送Cookie
                 .maxAge(3600); // 预检请求的有效期，单位为秒
     }
 
     /**
      * 配置静态资源映射
-     * 将上传的图片映射为可通过URL访问的静态资源
+     * 将上传的图片映射为可通过URL访问的静态资源，路径由上传图片存储服务解析
+     * 分片路径下的文件名就是内容摘要，同一URL的内容不会改变，允许客户端长期缓存
+     * 卷存储中的图片每次读取都会载入内存，不启用资源链缓存，避免缓存整张图片
      * @param registry 资源处理器注册表
      */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 获取项目根目录
-        String projectRoot = System.getProperty("user.dir");
-        // 上传文件保存路径
-        String uploadPath = projectRoot + File.separator + "uploads" + File.separator;
-        // 添加资源处理器，将/uploads/**映射到文件系统中的上传目录
         registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadPath);
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .resourceChain(false)
+                .addResolver(new ImageStorageResourceResolver());
+    }
+
+    /**
+     * 通过上传图片存储服务查找/uploads/之后的路径对应的文件
+     */
+    private class ImageStorageResourceResolver implements ResourceResolver {
+
+        @Override
+        public Resource resolveResource(HttpServletRequest request, String requestPath,
+                                        List<? extends Resource> locations, ResourceResolverChain chain) {
+            return imageStorageService.resolve(requestPath);
+        }
+
+        @Override
+        public String resolveUrlPath(String resourcePath, List<? extends Resource> locations,
+                                     ResourceResolverChain chain) {
+            return imageStorageService.resolve(resourcePath) != null ? resourcePath : null;
+        }
     }
-}
\ No newline at end of file
+}
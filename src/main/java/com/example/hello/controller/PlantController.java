@@ -1,22 +1,32 @@
 package com.example.hello.controller;
 
+import com.example.hello.config.WeChatMiniAppConfig;
 import com.example.hello.entity.Plant;
+import com.example.hello.entity.RecognitionEvent;
+import com.example.hello.entity.RecognitionSource;
+import com.example.hello.service.ImageStorageService;
 import com.example.hello.service.PlantRecognitionService;
 import com.example.hello.service.PlantService;
+import com.example.hello.service.RecognitionEventService;
+import com.example.hello.service.RecognitionContext;
 import com.example.hello.dto.PlantResponseDTO;
+import com.example.hello.util.HistoryCursor;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @RestController
 @RequestMapping("/api/plant")
@@ -30,6 +40,14 @@ public class PlantController {
     @Autowired
     private PlantService plantService;
 
+    // 注入识别事件服务
+    @Autowired
+    private RecognitionEventService recognitionEventService;
+
+    // 注入上传图片存储服务
+    @Autowired
+    private ImageStorageService imageStorageService;
+
     // 从配置文件注入LLM API地址
     @Value("${llm.api-url}")
     private String llmApiUrl;
@@ -38,83 +56,243 @@ public class PlantController {
     @Value("${llm.api-key}")
     private String llmApiKey;
 
+    // 等待外部接口的识别线程池
+    @Autowired
+    @Qualifier("upstreamExecutor")
+    private Executor upstreamExecutor;
+
+    // 磁盘和数据库写入线程池
+    @Autowired
+    @Qualifier("ioExecutor")
+    private Executor ioExecutor;
+
+    // 批量识别单次最多上传的图片数
+    @Value("${plant.identify.batch.max-files:9}")
+    private int maxBatchFiles;
+
+    // 游标分页每页最多返回的记录数
+    @Value("${plant.history.max-page-size:100}")
+    private int maxHistoryPageSize;
+
+    // 微信小程序配置，提供携带openid的请求头名称
+    @Autowired
+    private WeChatMiniAppConfig weChatMiniAppConfig;
+
     /**
      * 植物识别接口
      * 优化后的流程：先通过向量相似度查找，若不存在则调用大模型识别
+     * 请求线程只负责读取上传内容，识别在upstreamExecutor上执行，图片保存和事件追加在ioExecutor上执行，
+     * 等待外部接口期间不占用Tomcat请求线程；线程池队列满时返回503
+     * 每次识别追加一条识别事件；大模型识别出的新植物由识别服务连同图片URL和openid一次入库
      * @param file 上传的植物图片文件
+     * @param request HTTP请求，用于读取当前用户openid
      * @return 识别结果响应，只包含植物名称
      */
     @PostMapping("/identify")
-    public ResponseEntity<PlantResponseDTO> identifyPlant(@RequestParam("file") MultipartFile file) {
+    public CompletableFuture<ResponseEntity<PlantResponseDTO>> identifyPlant(@RequestParam("file") MultipartFile file,
+                                                                             HttpServletRequest request) throws IOException {
         // 检查文件是否为空
         if (file.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
         }
 
-        try {
-            // 生成唯一文件名，避免重复
-            String fileName = UUID.randomUUID() + "_" + file.getOriginalFilename();
-            // 构建文件保存路径（项目根目录下的uploads文件夹）
-            String filePath = System.getProperty("user.dir") + File.separator + "uploads";
-            // 创建文件对象
-            File dest = new File(filePath + File.separator + fileName);
-            // 如果父目录不存在则创建
-            if (!dest.getParentFile().exists()) {
-                dest.getParentFile().mkdirs();
-            }
-            // 保存上传的文件到目标路径
-            file.transferTo(dest);
-            
-            // 构建可访问的图片URL
-            String imageUrl = "/uploads/" + fileName;
+        long start = System.nanoTime();
+        // 创建识别请求上下文，图片字节只读取一次，在保存和识别中复用
+        // 上传的临时文件在请求线程返回后可能被清理，因此先在请求线程读取；
+        // 摘要同时被保存和识别两个线程池使用，也在请求线程中计算
+        RecognitionContext context = new RecognitionContext(file);
+        context.getImageBytes();
+        context.getDigest();
+        String openid = resolveOpenid(request);
+        context.setOpenid(openid);
 
-            // 调用优化后的植物识别服务处理图片
-            // 该服务会先通过向量相似度查找，若不存在则调用大模型识别
-            Plant plant = plantRecognitionService.recognizePlant(file);
-            
-            // 设置图片URL到植物对象并保存
-            if (plant != null) {
-                plant.setImageUrl(imageUrl);
-                plantService.savePlant(plant);
-                
-                // 创建简化的响应DTO对象，只包含植物名称
-                PlantResponseDTO responseDTO = new PlantResponseDTO();
-                responseDTO.setName(plant.getName());
-                
-                // 返回成功响应和DTO数据
-                return new ResponseEntity<>(responseDTO, HttpStatus.OK);
-            } else {
+        // 保存上传的文件与识别并行进行
+        CompletableFuture<String> imageUrlFuture = CompletableFuture.supplyAsync(() -> saveUploadUnchecked(context), ioExecutor);
+        // 调用优化后的植物识别服务处理图片
+        // 该服务会先通过向量相似度查找，若不存在则调用大模型识别
+        CompletableFuture<Plant> plantFuture = CompletableFuture.supplyAsync(() -> plantRecognitionService.recognizePlant(context), upstreamExecutor);
+
+        return plantFuture.thenCombineAsync(imageUrlFuture, (plant, imageUrl) -> {
+            if (plant == null) {
                 // 识别失败，返回未找到响应
-                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                return new ResponseEntity<PlantResponseDTO>(HttpStatus.NOT_FOUND);
             }
+            appendEvent(context, plant, imageUrl, openid, start);
+
+            // 创建简化的响应DTO对象，只包含植物名称
+            PlantResponseDTO responseDTO = new PlantResponseDTO();
+            responseDTO.setName(plant.getName());
+            return new ResponseEntity<>(responseDTO, HttpStatus.OK);
+        }, ioExecutor);
+    }
+    
+    /**
+     * 批量植物识别接口
+     * 一次上传多张图片，服务端并行预处理、批量向量检索，只对未命中的图片调用大模型
+     * 与单张识别相同，识别在upstreamExecutor上执行，不占用Tomcat请求线程
+     * @param files 上传的植物图片文件
+     * @param request HTTP请求，用于读取当前用户openid
+     * @return 与上传顺序一致的识别结果列表，只包含植物名称
+     */
+    @PostMapping("/identify/batch")
+    public CompletableFuture<ResponseEntity<List<PlantResponseDTO>>> identifyPlants(@RequestParam("files") MultipartFile[] files,
+                                                                                    HttpServletRequest request) throws IOException {
+        // 检查文件数量和内容
+        if (files == null || files.length == 0 || files.length > maxBatchFiles) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        }
+        for (MultipartFile file : files) {
+            if (file.isEmpty()) {
+                return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+            }
+        }
+
+        long start = System.nanoTime();
+        List<RecognitionContext> contexts = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            RecognitionContext context = new RecognitionContext(file);
+            context.getImageBytes();
+            context.getDigest();
+            contexts.add(context);
+        }
+        String openid = resolveOpenid(request);
+        for (RecognitionContext context : contexts) {
+            context.setOpenid(openid);
+        }
+
+        CompletableFuture<List<String>> imageUrlsFuture = CompletableFuture.supplyAsync(() -> {
+            List<String> imageUrls = new ArrayList<>(contexts.size());
+            for (RecognitionContext context : contexts) {
+                imageUrls.add(saveUploadUnchecked(context));
+            }
+            return imageUrls;
+        }, ioExecutor);
+        // 批量识别，结果顺序与上传顺序一致
+        CompletableFuture<List<Plant>> plantsFuture = CompletableFuture.supplyAsync(() -> plantRecognitionService.recognizePlants(contexts), upstreamExecutor);
+
+        return plantsFuture.thenCombineAsync(imageUrlsFuture, (plants, imageUrls) -> {
+            // 新识别的植物已由识别服务保存，每张图片追加一条识别事件
+            List<PlantResponseDTO> responseDTOs = new ArrayList<>(plants.size());
+            for (int i = 0; i < plants.size(); i++) {
+                Plant plant = plants.get(i);
+                RecognitionContext context = contexts.get(i);
+                PlantResponseDTO dto = new PlantResponseDTO();
+                if (plant != null) {
+                    appendEvent(context, plant, imageUrls.get(i), openid, start);
+                    dto.setName(plant.getName());
+                }
+                responseDTOs.add(dto);
+            }
+            return new ResponseEntity<>(responseDTOs, HttpStatus.OK);
+        }, ioExecutor);
+    }
+
+    /**
+     * 追加识别事件，事件异步批量写入，不等待数据库
+     * @param context 识别请求上下文，提供结果来源和相似度
+     * @param plant 识别结果
+     * @param imageUrl 本次上传图片的URL
+     * @param openid 当前用户openid
+     * @param start 请求开始时间（纳秒）
+     */
+    private void appendEvent(RecognitionContext context, Plant plant, String imageUrl, String openid, long start) {
+        RecognitionSource source = context.getSource() != null ? context.getSource()
+                : plant.getId() != null ? RecognitionSource.LLM : RecognitionSource.FAILED;
+        RecognitionEvent event = new RecognitionEvent();
+        event.setPlantId(source != RecognitionSource.FAILED ? plant.getId() : null);
+        event.setPlantName(plant.getName());
+        event.setOpenid(openid);
+        event.setImageUrl(imageUrl);
+        event.setSimilarity(context.getSimilarity());
+        event.setSource(source.getCode());
+        event.setLatencyMs((int) ((System.nanoTime() - start) / 1_000_000));
+        recognitionEventService.append(event);
+    }
+
+    /**
+     * 从请求头读取当前用户openid
+     * @param request HTTP请求
+     * @return openid，未携带时返回null
+     */
+    private String resolveOpenid(HttpServletRequest request) {
+        String openid = request.getHeader(weChatMiniAppConfig.getOpenidHeader());
+        return openid == null || openid.isBlank() ? null : openid.trim();
+    }
+
+    /**
+     * 在线程池中保存上传的图片，写入异常包装为UncheckedIOException，由全局异常处理返回500
+     * @param context 识别请求上下文
+     * @return 可访问的图片URL
+     */
+    private String saveUploadUnchecked(RecognitionContext context) {
+        try {
+            return saveUpload(context);
         } catch (IOException e) {
-            // 打印异常堆栈信息
-            e.printStackTrace();
-            // 返回服务器内部错误响应
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            throw new UncheckedIOException(e);
         }
     }
+
+    /**
+     * 保存上传的图片，按内容摘要去重
+     * @param context 识别请求上下文
+     * @return 可访问的图片URL
+     * @throws IOException 文件写入异常
+     */
+    private String saveUpload(RecognitionContext context) throws IOException {
+        return imageStorageService.store(context);
+    }
     
     /**
      * 获取历史识别记录
+     * 从识别事件日志读取，每次识别一条记录
+     * 支持游标分页：响应头X-Next-Cursor为下一页游标，传入cursor参数获取下一页，没有更多记录时不返回该响应头
+     * 请求头携带openid时只返回该用户的记录
      * @param limit 限制返回记录数量，默认为10
+     * @param cursor 上一页返回的游标，为空时获取第一页
+     * @param request HTTP请求，用于读取当前用户openid
      * @return 历史识别记录列表，只包含植物名称
      */
     @GetMapping("/history")
-    public ResponseEntity<List<PlantResponseDTO>> getPlantHistory(@RequestParam(value = "limit", defaultValue = "10") int limit) {
+    public ResponseEntity<List<PlantResponseDTO>> getPlantHistory(@RequestParam(value = "limit", defaultValue = "10") int limit,
+                                                                  @RequestParam(value = "cursor", required = false) String cursor,
+                                                                  HttpServletRequest request) {
         try {
-            // 获取最近的植物识别记录
-            List<Plant> plants = plantService.getRecentPlants(limit);
+            String openid = resolveOpenid(request);
+            limit = Math.min(limit, maxHistoryPageSize);
+            List<RecognitionEvent> events;
+            if (cursor == null && openid == null) {
+                // 获取最近的识别记录
+                events = recognitionEventService.getRecentEvents(limit);
+            } else {
+                HistoryCursor position = null;
+                if (cursor != null && !cursor.isEmpty()) {
+                    position = HistoryCursor.decode(cursor);
+                    if (position == null) {
+                        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                    }
+                }
+                events = recognitionEventService.getEventsBefore(openid,
+                        position != null ? position.getCreateTime() : null,
+                        position != null ? position.getId() : null,
+                        limit);
+            }
             List<PlantResponseDTO> responseDTOs = new ArrayList<>();
             
             // 转换为响应DTO，只包含植物名称
-            for (Plant plant : plants) {
+            for (RecognitionEvent event : events) {
                 PlantResponseDTO dto = new PlantResponseDTO();
-                dto.setName(plant.getName());
+                dto.setName(event.getPlantName());
                 responseDTOs.add(dto);
             }
-            
-            return new ResponseEntity<>(responseDTOs, HttpStatus.OK);
+
+            HttpHeaders headers = new HttpHeaders();
+            if (limit > 0 && events.size() == limit) {
+                RecognitionEvent last = events.get(events.size() - 1);
+                if (last.getCreateTime() != null && last.getId() != null) {
+                    headers.set("X-Next-Cursor", new HistoryCursor(last.getCreateTime(), last.getId()).encode());
+                }
+            }
+            return new ResponseEntity<>(responseDTOs, headers, HttpStatus.OK);
         } catch (Exception e) {
             e.printStackTrace();
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -23,4 +23,22 @@ public class Plant {
     private Float recognitionAccuracy;
     private LocalDateTime createTime;
     private LocalDateTime updateTime;
+    // 首次识别该植物的微信用户openid，未登录时为空
+    private String openid;
+
+    /**
+     * 复制植物信息，缓存中保存和返回的都是副本，调用方修改不会影响缓存
+     * @return 植物信息副本
+     */
+    public Plant copy() {
+        Plant copy = new Plant();
+        copy.setId(id);
+        copy.setName(name);
+        copy.setImageUrl(imageUrl);
+        copy.setRecognitionAccuracy(recognitionAccuracy);
+        copy.setCreateTime(createTime);
+        copy.setUpdateTime(updateTime);
+        copy.setOpenid(openid);
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.example.hello.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 图片摘要实体类
+ * 记录图片内容摘要与识别出的植物ID的对应关系
+ */
+@Data
+@TableName("plant_image_digest")
+public class PlantImageDigest {
+    /**
+     * 图片内容SHA-256摘要
+     */
+    @TableId(type = IdType.INPUT)
+    private String digest;
+
+    /**
+     * 关联的植物ID
+     */
+    private Long plantId;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
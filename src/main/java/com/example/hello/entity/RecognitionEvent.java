@@ -0,0 +1,62 @@
+package com.example.hello.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 识别事件实体类
+ * 每次识别请求追加一条记录，只写不改，历史记录和统计分析从该表读取
+ */
+@Data
+@TableName("recognition_event")
+public class RecognitionEvent {
+    /**
+     * 事件ID，写入前由应用生成（雪花算法），内存中的记录和分页游标可以直接使用
+     */
+    @TableId(type = IdType.INPUT)
+    private Long id;
+
+    /**
+     * 识别出的植物ID，识别失败时为空
+     */
+    private Long plantId;
+
+    /**
+     * 返回给用户的植物名称
+     */
+    private String plantName;
+
+    /**
+     * 微信用户openid，未登录时为空
+     */
+    private String openid;
+
+    /**
+     * 本次上传图片的URL
+     */
+    private String imageUrl;
+
+    /**
+     * 向量检索命中时的相似度，其他来源为空
+     */
+    private Float similarity;
+
+    /**
+     * 识别结果来源，取值见RecognitionSource
+     */
+    private String source;
+
+    /**
+     * 识别请求耗时（毫秒）
+     */
+    private Integer latencyMs;
+
+    /**
+     * 识别时间
+     */
+    private LocalDateTime createTime;
+}
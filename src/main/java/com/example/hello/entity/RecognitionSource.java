@@ -0,0 +1,40 @@
+package com.example.hello.entity;
+
+/**
+ * 识别结果来源
+ * 记录在识别事件中，用于统计各级缓存和大模型的命中情况
+ */
+public enum RecognitionSource {
+    /**
+     * 字节完全相同的图片命中摘要缓存
+     */
+    DIGEST,
+    /**
+     * 感知哈希命中近似重复的图片
+     */
+    PHASH,
+    /**
+     * 合并到进行中的相同图片识别请求
+     */
+    COALESCED,
+    /**
+     * 向量相似度检索命中已有植物
+     */
+    VECTOR,
+    /**
+     * 大模型识别出新植物
+     */
+    LLM,
+    /**
+     * 识别失败
+     */
+    FAILED;
+
+    /**
+     * 获取写入数据库的来源代码
+     * @return 小写的来源名称
+     */
+    public String getCode() {
+        return name().toLowerCase();
+    }
+}
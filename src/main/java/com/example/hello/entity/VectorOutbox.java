@@ -0,0 +1,72 @@
+package com.example.hello.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 向量发件箱实体类
+ * 与新植物在同一事务中写入，由后台任务写入Milvus和plant_vectors后删除
+ */
+@Data
+@TableName("vector_outbox")
+public class VectorOutbox {
+    /**
+     * 待写入
+     */
+    public static final String STATUS_PENDING = "PENDING";
+
+    /**
+     * 超过最大重试次数，需要人工处理
+     */
+    public static final String STATUS_FAILED = "FAILED";
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 关联的植物ID
+     */
+    private Long plantId;
+
+    /**
+     * Milvus中的向量ID，格式为plant_{植物ID}，重试时按该ID去重
+     */
+    private String vectorId;
+
+    /**
+     * 图像向量（float32小端序）
+     */
+    private byte[] vectorData;
+
+    /**
+     * 状态：PENDING或FAILED
+     */
+    private String status;
+
+    /**
+     * 已尝试写入的次数
+     */
+    private Integer attempts;
+
+    /**
+     * 下次可以尝试写入的时间
+     */
+    private LocalDateTime nextAttemptTime;
+
+    /**
+     * 最近一次写入失败的原因
+     */
+    private String lastError;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,211 @@
+package com.example.hello.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 识别接口准入控制过滤器
+ * 在读取上传内容之前，按进行中的识别请求数、这些请求缓冲的上传字节数（按Content-Length估算）
+ * 和近期识别耗时判断是否接收请求，超出预算时直接返回503和Retry-After，避免过载时请求在队列中堆积导致内存耗尽
+ * 只作用于/api/plant/identify下的接口，历史记录、详情等轻量接口不受影响
+ * 过滤器位于DispatcherServlet之前，此时multipart请求体尚未解析
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "plant.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class IdentifyAdmissionFilter extends OncePerRequestFilter {
+
+    private static final String IDENTIFY_PATH = "/api/plant/identify";
+
+    // 同时进行的识别请求数上限
+    @Value("${plant.admission.max-inflight:64}")
+    private int maxInflight;
+
+    // 进行中的识别请求缓冲的上传字节数上限
+    @Value("${plant.admission.max-buffered-bytes:256MB}")
+    private DataSize maxBufferedBytes;
+
+    // 近期识别平均耗时超过该值时只接收少量请求（毫秒）
+    @Value("${plant.admission.latency-budget-ms:8000}")
+    private long latencyBudgetMs;
+
+    // 超出耗时预算时仍允许同时进行的请求数，保证耗时统计能够恢复
+    @Value("${plant.admission.min-inflight:4}")
+    private int minInflight;
+
+    // 未提供Content-Length的请求按该大小计入缓冲字节数
+    @Value("${spring.servlet.multipart.max-request-size:50MB}")
+    private DataSize unknownLengthBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+
+    /**
+     * 识别耗时的指数加权平均值（纳秒）
+     */
+    private volatile double latencyNanos;
+
+    private Counter inflightRejectedCounter;
+
+    private Counter memoryRejectedCounter;
+
+    private Counter latencyRejectedCounter;
+
+    /**
+     * 注册准入控制指标
+     */
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("plant.admission.inflight", inflight, AtomicInteger::get)
+                .description("进行中的识别请求数")
+                .register(meterRegistry);
+        Gauge.builder("plant.admission.buffered.bytes", bufferedBytes, AtomicLong::get)
+                .description("进行中的识别请求缓冲的上传字节数")
+                .register(meterRegistry);
+        Gauge.builder("plant.admission.latency", this, filter -> filter.latencyNanos / 1_000_000.0)
+                .description("识别请求耗时的加权平均值（毫秒）")
+                .register(meterRegistry);
+        inflightRejectedCounter = rejectedCounter("inflight");
+        memoryRejectedCounter = rejectedCounter("memory");
+        latencyRejectedCounter = rejectedCounter("latency");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith(IDENTIFY_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long contentLength = request.getContentLengthLong();
+        long bytes = contentLength >= 0 ? contentLength : unknownLengthBytes.toBytes();
+
+        if (!tryAdmit(bytes)) {
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // 异步处理的请求在完成时才释放预算
+                async = true;
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        release(bytes, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        } finally {
+            if (!async) {
+                release(bytes, start);
+            }
+        }
+    }
+
+    /**
+     * 尝试占用准入预算
+     * @param bytes 请求缓冲的字节数
+     * @return 接收返回true，超出预算返回false
+     */
+    private boolean tryAdmit(long bytes) {
+        int current = inflight.incrementAndGet();
+        if (current > maxInflight) {
+            inflight.decrementAndGet();
+            inflightRejectedCounter.increment();
+            return false;
+        }
+        if (current > minInflight && latencyNanos > latencyBudgetMs * 1_000_000.0) {
+            inflight.decrementAndGet();
+            latencyRejectedCounter.increment();
+            return false;
+        }
+        if (bufferedBytes.addAndGet(bytes) > maxBufferedBytes.toBytes() && current > 1) {
+            bufferedBytes.addAndGet(-bytes);
+            inflight.decrementAndGet();
+            memoryRejectedCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 释放准入预算并更新耗时统计
+     * @param bytes 请求缓冲的字节数
+     * @param start 请求开始时间（纳秒）
+     */
+    private void release(long bytes, long start) {
+        bufferedBytes.addAndGet(-bytes);
+        inflight.decrementAndGet();
+        long elapsed = System.nanoTime() - start;
+        // 并发更新偶尔丢失一次样本不影响平均值
+        double previous = latencyNanos;
+        latencyNanos = previous == 0 ? elapsed : previous * 0.9 + elapsed * 0.1;
+    }
+
+    /**
+     * 返回503，建议客户端按近期识别耗时等待后重试
+     * 请求体未被读取，响应后关闭连接，容器不需要为复用连接读完剩余的上传内容
+     * @param response HTTP响应
+     * @throws IOException 写入响应异常
+     */
+    private void reject(HttpServletResponse response) throws IOException {
+        long retryAfterSeconds = Math.max(1, (long) Math.ceil(latencyNanos / 1_000_000_000.0));
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getOutputStream().write("识别服务繁忙，请稍后重试".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Counter rejectedCounter(String reason) {
+        return Counter.builder("plant.admission.rejected")
+                .description("被准入控制拒绝的识别请求数")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.hello.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.hello.entity.PlantImageDigest;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 图片摘要Mapper接口
+ */
+@Mapper
+public interface PlantImageDigestMapper extends BaseMapper<PlantImageDigest> {
+}
@@ -0,0 +1,12 @@
+package com.example.hello.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.hello.entity.RecognitionEvent;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 识别事件Mapper接口
+ */
+@Mapper
+public interface RecognitionEventMapper extends BaseMapper<RecognitionEvent> {
+}
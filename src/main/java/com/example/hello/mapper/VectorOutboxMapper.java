@@ -0,0 +1,12 @@
+package com.example.hello.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.hello.entity.VectorOutbox;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 向量发件箱Mapper接口
+ */
+@Mapper
+public interface VectorOutboxMapper extends BaseMapper<VectorOutbox> {
+}
@@ -0,0 +1,255 @@
+package com.example.hello.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 基于延迟梯度的自适应并发限制
+ * 用长期平均延迟与本次调用延迟之比（梯度）调整并发上限：延迟接近长期水平时上限逐步增加，
+ * 延迟明显上升说明上游已接近吞吐上限，上限按比例下降；调用失败时上限乘以backoffRatio
+ * 并发已满的请求最多排队maxWait，超过排队长度或等待超时直接拒绝，抛出UpstreamUnavailableException
+ * 指标：upstream.limiter.limit、upstream.limiter.inflight、upstream.limiter.queued、
+ * upstream.limiter.rejected（reason为queue_full/timeout）
+ */
+public class AdaptiveLimiter {
+
+    /**
+     * 长期平均延迟的平滑窗口（调用次数）
+     */
+    private static final int LONG_WINDOW = 100;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int maxQueue;
+
+    private final long maxWaitNanos;
+
+    private final double smoothing;
+
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+
+    private int inFlight;
+
+    private int queued;
+
+    private double longRttNanos;
+
+    private final Counter queueFullCounter;
+
+    private final Counter timeoutCounter;
+
+    /**
+     * @param name 上游名称，用于指标标签和异常信息
+     * @param initialLimit 初始并发上限
+     * @param minLimit 并发上限的最小值
+     * @param maxLimit 并发上限的最大值
+     * @param maxQueue 最多排队等待的请求数
+     * @param maxWaitMillis 排队的最长等待时间
+     * @param smoothing 每次调整时新上限的权重（0~1）
+     * @param backoffRatio 调用失败时上限的缩小比例（0~1）
+     * @param meterRegistry 指标注册中心，为null时不注册指标
+     */
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue, long maxWaitMillis,
+                           double smoothing, double backoffRatio, MeterRegistry meterRegistry) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("并发上限范围无效");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        if (meterRegistry != null) {
+            Gauge.builder("upstream.limiter.limit", this, AdaptiveLimiter::getLimit)
+                    .description("自适应并发上限")
+                    .tag("upstream", name)
+                    .register(meterRegistry);
+            Gauge.builder("upstream.limiter.inflight", this, AdaptiveLimiter::getInFlight)
+                    .description("正在进行的调用数")
+                    .tag("upstream", name)
+                    .register(meterRegistry);
+            Gauge.builder("upstream.limiter.queued", this, AdaptiveLimiter::getQueued)
+                    .description("排队等待的调用数")
+                    .tag("upstream", name)
+                    .register(meterRegistry);
+            queueFullCounter = rejectedCounter(meterRegistry, "queue_full");
+            timeoutCounter = rejectedCounter(meterRegistry, "timeout");
+        } else {
+            queueFullCounter = null;
+            timeoutCounter = null;
+        }
+    }
+
+    /**
+     * 在自适应并发限制下执行上游调用
+     * 熔断拒绝和4xx响应不反映上游负载，不参与上限调整
+     * @param call 上游调用
+     * @param <T> 返回值类型
+     * @return 调用结果
+     * @throws UpstreamUnavailableException 排队已满或等待超时
+     */
+    public <T> T execute(Supplier<T> call) {
+        acquire();
+        long start = System.nanoTime();
+        boolean dropped = false;
+        boolean sampled = true;
+        try {
+            return call.get();
+        } catch (UpstreamUnavailableException | HttpClientErrorException e) {
+            sampled = false;
+            throw e;
+        } catch (RuntimeException e) {
+            dropped = true;
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, dropped, sampled);
+        }
+    }
+
+    /**
+     * 获取一个并发名额，已满时排队等待
+     */
+    void acquire() {
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueue) {
+                increment(queueFullCounter);
+                throw new UpstreamUnavailableException(name, "排队请求数已达上限", 0);
+            }
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= currentLimit()) {
+                    if (remaining <= 0) {
+                        increment(timeoutCounter);
+                        throw new UpstreamUnavailableException(name, "等待并发名额超时", 0);
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UpstreamUnavailableException(name, "等待并发名额被中断", 0);
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 释放并发名额并根据本次调用调整上限
+     * @param rttNanos 调用耗时（纳秒）
+     * @param dropped 调用是否失败
+     * @param sampled 是否参与上限调整
+     */
+    void release(long rttNanos, boolean dropped, boolean sampled) {
+        lock.lock();
+        try {
+            int inFlightAtCompletion = inFlight;
+            inFlight--;
+            if (dropped) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (sampled && rttNanos > 0) {
+                update(rttNanos, inFlightAtCompletion);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(long rttNanos, int inFlightAtCompletion) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        }
+        // 延迟持续下降时让长期延迟更快跟上，避免上限长期偏高
+        if (longRttNanos / rttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        // 并发远低于上限时延迟不能说明上游容量，不增加上限
+        if (inFlightAtCompletion * 2 < limit) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = limit * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("upstream.limiter.rejected")
+                .description("被自适应并发限制拒绝的调用数")
+                .tag("upstream", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.hello.resilience;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 基于失败率和慢调用率的熔断器
+ * 按最近windowSize次调用的结果统计，调用数达到minimumCalls后，失败率或慢调用率超过阈值即打开熔断，
+ * 打开期间直接拒绝调用；openDurationMillis之后进入半开状态，放行halfOpenCalls次试探调用，
+ * 全部成功则关闭熔断，任一失败或慢调用则重新打开
+ * 状态变化和统计通过对象锁串行化，临界区只有几次数组读写
+ */
+public class CircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final float failureRateThreshold;
+
+    private final float slowCallRateThreshold;
+
+    private final long slowCallNanos;
+
+    private final int minimumCalls;
+
+    private final long openDurationNanos;
+
+    private final int halfOpenCalls;
+
+    private final LongSupplier clock;
+
+    /**
+     * 最近调用的结果环形缓冲区：0成功，1失败，2慢调用（成功但超时）
+     */
+    private final byte[] outcomes;
+
+    private int position;
+
+    private int recorded;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private int halfOpenPermits;
+
+    private int halfOpenSuccesses;
+
+    /**
+     * @param windowSize 统计窗口内的调用次数
+     * @param minimumCalls 开始计算失败率所需的最少调用次数
+     * @param failureRateThreshold 失败率阈值（0~1）
+     * @param slowCallRateThreshold 慢调用率阈值（0~1）
+     * @param slowCallMillis 超过该耗时的调用视为慢调用
+     * @param openDurationMillis 熔断打开后等待多久进入半开状态
+     * @param halfOpenCalls 半开状态放行的试探调用次数
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, float failureRateThreshold, float slowCallRateThreshold,
+                          long slowCallMillis, long openDurationMillis, int halfOpenCalls) {
+        this(windowSize, minimumCalls, failureRateThreshold, slowCallRateThreshold,
+                slowCallMillis, openDurationMillis, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(int windowSize, int minimumCalls, float failureRateThreshold, float slowCallRateThreshold,
+                   long slowCallMillis, long openDurationMillis, int halfOpenCalls, LongSupplier clock) {
+        if (windowSize <= 0 || halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("统计窗口和半开试探次数必须大于0");
+        }
+        this.outcomes = new byte[windowSize];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallMillis * 1_000_000L;
+        this.openDurationNanos = openDurationMillis * 1_000_000L;
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+    }
+
+    /**
+     * 申请一次调用许可
+     * @return 允许调用返回true，熔断打开或半开试探名额已用完返回false
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * 记录一次成功调用
+     * @param durationNanos 调用耗时（纳秒）
+     */
+    public synchronized void onSuccess(long durationNanos) {
+        record(durationNanos >= slowCallNanos ? (byte) 2 : (byte) 0);
+    }
+
+    /**
+     * 记录一次失败调用
+     */
+    public synchronized void onError() {
+        record((byte) 1);
+    }
+
+    /**
+     * 释放未使用的许可，用于申请许可后未实际发起调用的情况（如舱壁已满）
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 熔断打开时距离进入半开状态的剩余时间
+     * @return 剩余毫秒数，未打开时返回0
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, (openDurationNanos - (clock.getAsLong() - openedAt)) / 1_000_000L);
+    }
+
+    private void record(byte outcome) {
+        if (state == State.HALF_OPEN) {
+            if (outcome != 0) {
+                open();
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                reset();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // 熔断打开前已放行的调用，结果不再计入
+            return;
+        }
+        if (recorded == outcomes.length) {
+            byte evicted = outcomes[position];
+            if (evicted == 1) {
+                failures--;
+            } else if (evicted == 2) {
+                slowCalls--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = outcome;
+        position = (position + 1) % outcomes.length;
+        if (outcome == 1) {
+            failures++;
+        } else if (outcome == 2) {
+            slowCalls++;
+        }
+        if (recorded >= minimumCalls
+                && ((float) failures / recorded >= failureRateThreshold
+                || (float) slowCalls / recorded >= slowCallRateThreshold)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
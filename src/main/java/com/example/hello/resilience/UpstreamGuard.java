@@ -0,0 +1,144 @@
+package com.example.hello.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 上游调用保护
+ * 组合熔断器和舱壁（限制同时进行的调用数），上游故障或过载时直接抛出UpstreamUnavailableException，
+ * 不再让每个请求等待读取超时
+ * 4xx响应说明上游可用，只是请求本身有问题，不计入失败
+ * 指标：upstream.calls（按outcome区分success/failure/circuit_open/bulkhead_full）、upstream.call.duration、
+ * upstream.circuit.state（0关闭，1打开，2半开）、upstream.bulkhead.available
+ */
+public class UpstreamGuard {
+
+    private final String name;
+
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * 舱壁，许可数即允许同时进行的调用数
+     */
+    private final Semaphore bulkhead;
+
+    private final long maxWaitMillis;
+
+    private final Counter successCounter;
+
+    private final Counter failureCounter;
+
+    private final Counter circuitOpenCounter;
+
+    private final Counter bulkheadFullCounter;
+
+    private final Timer callTimer;
+
+    /**
+     * @param name 上游名称，用于指标标签和异常信息
+     * @param circuitBreaker 熔断器
+     * @param maxConcurrentCalls 允许同时进行的调用数
+     * @param maxWaitMillis 舱壁已满时的最长等待时间，0表示不等待
+     * @param meterRegistry 指标注册中心
+     */
+    public UpstreamGuard(String name, CircuitBreaker circuitBreaker, int maxConcurrentCalls, long maxWaitMillis,
+                         MeterRegistry meterRegistry) {
+        this.name = name;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxWaitMillis = maxWaitMillis;
+        this.successCounter = callCounter(meterRegistry, "success");
+        this.failureCounter = callCounter(meterRegistry, "failure");
+        this.circuitOpenCounter = callCounter(meterRegistry, "circuit_open");
+        this.bulkheadFullCounter = callCounter(meterRegistry, "bulkhead_full");
+        this.callTimer = Timer.builder("upstream.call.duration")
+                .description("上游调用耗时")
+                .tag("upstream", name)
+                .register(meterRegistry);
+        Gauge.builder("upstream.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("熔断器状态：0关闭，1打开，2半开")
+                .tag("upstream", name)
+                .register(meterRegistry);
+        Gauge.builder("upstream.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("舱壁剩余许可数")
+                .tag("upstream", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在熔断器和舱壁保护下执行上游调用
+     * @param call 上游调用
+     * @param <T> 返回值类型
+     * @return 调用结果
+     * @throws UpstreamUnavailableException 熔断器打开或舱壁已满
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitOpenCounter.increment();
+            throw new UpstreamUnavailableException(name, "熔断器已打开", circuitBreaker.getRemainingOpenMillis());
+        }
+        if (!acquireBulkhead()) {
+            circuitBreaker.release();
+            bulkheadFullCounter.increment();
+            throw new UpstreamUnavailableException(name, "并发调用数已达上限", 0);
+        }
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            recordSuccess(start);
+            return result;
+        } catch (HttpClientErrorException e) {
+            recordSuccess(start);
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.onError();
+            callTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            failureCounter.increment();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    private void recordSuccess(long start) {
+        long duration = System.nanoTime() - start;
+        circuitBreaker.onSuccess(duration);
+        callTimer.record(duration, TimeUnit.NANOSECONDS);
+        successCounter.increment();
+    }
+
+    private boolean acquireBulkhead() {
+        if (maxWaitMillis <= 0) {
+            return bulkhead.tryAcquire();
+        }
+        try {
+            return bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Counter callCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("upstream.calls")
+                .description("上游调用次数")
+                .tag("upstream", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.hello.resilience;
+
+/**
+ * 上游服务不可用异常
+ * 熔断器打开或舱壁已满时快速失败抛出，不再等待上游超时，由全局异常处理返回503
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private final String upstream;
+
+    private final long retryAfterMillis;
+
+    public UpstreamUnavailableException(String upstream, String message, long retryAfterMillis) {
+        super(upstream + ": " + message);
+        this.upstream = upstream;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getUpstream() {
+        return upstream;
+    }
+
+    /**
+     * 建议客户端重试前等待的时间
+     * @return 毫秒数
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.hello.service;
+
+import com.example.hello.entity.Plant;
+
+/**
+ * 图片摘要识别结果缓存服务接口
+ * 以图片内容摘要为键缓存识别结果，字节完全相同的图片无需再次调用向量接口和大模型
+ */
+public interface ImageDigestCacheService {
+
+    /**
+     * 根据图片摘要获取已识别的植物
+     * @param digest 图片内容摘要
+     * @return 植物信息副本，未命中返回null
+     */
+    Plant get(String digest);
+
+    /**
+     * 缓存图片摘要对应的识别结果
+     * 只缓存已持久化（带ID）的植物
+     * @param digest 图片内容摘要
+     * @param plant 识别出的植物
+     */
+    void put(String digest, Plant plant);
+
+    /**
+     * 获取缓存命中次数
+     * @return 命中次数
+     */
+    long getHitCount();
+
+    /**
+     * 获取缓存未命中次数
+     * @return 未命中次数
+     */
+    long getMissCount();
+}
@@ -0,0 +1,20 @@
+package com.example.hello.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 图片预处理服务接口
+ * 在调用向量接口和大模型之前解码图片、按EXIF方向旋转、缩小到模型输入分辨率并重新编码，减小请求体
+ */
+public interface ImagePreprocessService {
+
+    /**
+     * 打开发送给外部接口的图片输入流，同一请求上下文只预处理一次
+     * 预处理失败、超时或线程池已满时使用原图
+     * @param context 识别请求上下文
+     * @return 图片输入流，由调用方关闭
+     * @throws IOException 文件读取异常
+     */
+    InputStream openUpstreamImage(RecognitionContext context) throws IOException;
+}
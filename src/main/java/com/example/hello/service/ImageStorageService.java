@@ -0,0 +1,36 @@
+package com.example.hello.service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+
+/**
+ * 上传图片存储服务接口
+ * 按图片内容摘要寻址，相同内容的图片只保存一份文件
+ */
+public interface ImageStorageService {
+
+    /**
+     * 保存上传的图片，内容相同的文件已存在时不再重复写入
+     * @param context 识别请求上下文
+     * @return 可访问的图片URL，如/uploads/ab/cd/{摘要}.jpg
+     * @throws IOException 文件写入异常
+     */
+    String store(RecognitionContext context) throws IOException;
+
+    /**
+     * 计算图片保存后的URL，只取决于图片内容，不写入文件
+     * 新植物在入库前设置该URL，与保存图片并行进行
+     * @param context 识别请求上下文
+     * @return 与store返回值相同的图片URL
+     * @throws IOException 文件读取异常
+     */
+    String urlOf(RecognitionContext context) throws IOException;
+
+    /**
+     * 解析/uploads/之后的相对路径对应的文件
+     * @param relativePath 相对路径
+     * @return 文件资源，路径无效或文件不存在返回null
+     */
+    Resource resolve(String relativePath);
+}
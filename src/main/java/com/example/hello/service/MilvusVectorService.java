@@ -1,6 +1,7 @@
 package com.example.hello.service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Milvus向量数据库服务接口
@@ -23,6 +24,18 @@ public interface MilvusVectorService {
      * @return 是否成功
      */
     boolean insertVector(String vectorId, float[] vector, java.util.Map<String, Object> metadata);
+
+    /**
+     * 异步插入向量数据
+     * 默认同步插入后返回已完成的结果，支持批量写入的实现可以先缓冲再统一写入
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     * @param metadata 元数据，如植物ID、名称等
+     * @return 插入结果，成功为true
+     */
+    default CompletableFuture<Boolean> insertVectorAsync(String vectorId, float[] vector, java.util.Map<String, Object> metadata) {
+        return CompletableFuture.completedFuture(insertVector(vectorId, vector, metadata));
+    }
     
     /**
      * 通过向量相似度搜索
@@ -32,6 +45,22 @@ public interface MilvusVectorService {
      * @return 搜索结果，包含向量ID、相似度和元数据
      */
     List<SearchResult> searchByVector(float[] vector, int topK, float similarityThreshold);
+
+    /**
+     * 批量向量相似度搜索
+     * 默认逐个检索，支持多查询的实现可以在一次请求中完成全部检索
+     * @param vectors 查询向量列表
+     * @param topK 每个查询返回的结果数量
+     * @param similarityThreshold 相似度阈值
+     * @return 与查询向量一一对应的搜索结果列表
+     */
+    default List<List<SearchResult>> searchByVectors(List<float[]> vectors, int topK, float similarityThreshold) {
+        List<List<SearchResult>> results = new java.util.ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            results.add(searchByVector(vector, topK, similarityThreshold));
+        }
+        return results;
+    }
     
     /**
      * 删除向量
@@ -0,0 +1,25 @@
+package com.example.hello.service;
+
+import com.example.hello.entity.Plant;
+
+/**
+ * 感知哈希近似重复图片服务接口
+ * 在调用向量接口前，通过感知哈希识别重新裁剪、重新压缩的同一张图片
+ */
+public interface PerceptualHashService {
+
+    /**
+     * 查找与给定感知哈希足够接近的已识别植物
+     * @param hash 图片感知哈希
+     * @return 植物信息副本，没有足够接近的条目返回null
+     */
+    Plant findSimilarPlant(long hash);
+
+    /**
+     * 登记图片感知哈希与识别结果的对应关系
+     * 只登记已持久化（带ID）的植物
+     * @param hash 图片感知哈希
+     * @param plant 识别出的植物
+     */
+    void register(long hash, Plant plant);
+}
@@ -3,6 +3,9 @@ package com.example.hello.service;
 import com.example.hello.entity.Plant;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface PlantRecognitionService {
     /**
      * 识别植物并返回结果
@@ -10,7 +13,31 @@ public interface PlantRecognitionService {
      * @param file 植物图片文件
      * @return 识别到的植物信息
      */
-    Plant recognizePlant(MultipartFile file);
+    default Plant recognizePlant(MultipartFile file) {
+        return recognizePlant(new RecognitionContext(file));
+    }
+
+    /**
+     * 识别植物并返回结果
+     * 图片字节、编码和向量在同一请求上下文中只生成一次
+     * @param context 识别请求上下文
+     * @return 识别到的植物信息
+     */
+    Plant recognizePlant(RecognitionContext context);
+
+    /**
+     * 批量识别植物
+     * 默认逐张识别，支持流水线的实现可以并行预处理并批量检索和保存
+     * @param contexts 识别请求上下文列表
+     * @return 与输入顺序一致的识别结果
+     */
+    default List<Plant> recognizePlants(List<RecognitionContext> contexts) {
+        List<Plant> plants = new ArrayList<>(contexts.size());
+        for (RecognitionContext context : contexts) {
+            plants.add(recognizePlant(context));
+        }
+        return plants;
+    }
 
     /**
      * 从图片生成向量并存储到Chroma
@@ -18,14 +45,33 @@ public interface PlantRecognitionService {
      * @param file 植物图片
      * @return 是否成功
      */
-    boolean storePlantVector(Plant plant, MultipartFile file);
-    
+    default boolean storePlantVector(Plant plant, MultipartFile file) {
+        return storePlantVector(plant, new RecognitionContext(file));
+    }
+
+    /**
+     * 存储植物向量，复用上下文中已生成的图像向量
+     * @param plant 植物信息
+     * @param context 识别请求上下文
+     * @return 是否成功
+     */
+    boolean storePlantVector(Plant plant, RecognitionContext context);
+
     /**
      * 通过图片向量查找相似植物
      * @param file 植物图片文件
      * @return 找到的相似植物，如果没有找到则返回null
      */
-    Plant findSimilarPlantByVector(MultipartFile file);
+    default Plant findSimilarPlantByVector(MultipartFile file) {
+        return findSimilarPlantByVector(new RecognitionContext(file));
+    }
+
+    /**
+     * 通过图片向量查找相似植物，生成的向量会写回上下文
+     * @param context 识别请求上下文
+     * @return 找到的相似植物，如果没有找到则返回null
+     */
+    Plant findSimilarPlantByVector(RecognitionContext context);
 
     void savePlant(Plant plant);
-}
\ No newline at end of file
+}
@@ -23,6 +23,13 @@ public interface PlantService extends IService<Plant> {
      * @return 是否保存成功
      */
     boolean savePlant(Plant plant);
+
+    /**
+     * 批量保存植物信息，新增的植物会回填自动生成的ID
+     * @param plants 植物实体列表
+     * @return 是否保存成功
+     */
+    boolean savePlants(List<Plant> plants);
     
     /**
      * 获取最近的植物识别记录
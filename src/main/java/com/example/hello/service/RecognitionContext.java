@@ -0,0 +1,242 @@
+package com.example.hello.service;
+
+import com.example.hello.entity.RecognitionSource;
+import com.example.hello.util.PerceptualHash;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 单次识别请求上下文
+ * 在一次识别请求内缓存图片原始字节、摘要和图像向量，
+ * 供向量检索、大模型识别和向量存储复用，避免重复读取文件和重复调用向量接口
+ * 同一请求的图片保存和识别在不同线程池中并行执行，共享同一个上下文：
+ * 控制器在请求线程中读取图片字节并计算摘要，图片字节、摘要和感知哈希的延迟计算也加锁，
+ * 不会被两个线程重复计算或读到未完成的值，已计算的图片字节和摘要读取时不加锁；向量、结果来源等其余字段只由识别线程写入，
+ * 其他线程在识别完成之后读取
+ */
+public class RecognitionContext {
+
+    /**
+     * 上传的植物图片文件
+     */
+    private final MultipartFile file;
+
+    /**
+     * 图片原始字节，首次使用时读取
+     */
+    private volatile byte[] imageBytes;
+
+    /**
+     * 发送给外部接口的图片字节，由图片预处理服务写入，为null时发送原图
+     */
+    private byte[] upstreamImageBytes;
+
+    private boolean upstreamImagePrepared;
+
+    /**
+     * 图片内容SHA-256摘要，首次使用时计算
+     */
+    private volatile String digest;
+
+    /**
+     * 图片感知哈希，首次使用时计算，无法解码时为null
+     */
+    private Long perceptualHash;
+
+    private boolean perceptualHashComputed;
+
+    /**
+     * 图像向量，由识别服务生成后写入，向量接口失败时为null
+     */
+    private float[] embedding;
+
+    private boolean embeddingComputed;
+
+    /**
+     * 识别结果来源，由识别服务写入
+     */
+    private RecognitionSource source;
+
+    /**
+     * 向量检索命中时的相似度
+     */
+    private Float similarity;
+
+    /**
+     * 当前用户openid，新识别的植物入库时归属该用户
+     */
+    private String openid;
+
+    public RecognitionContext(MultipartFile file) {
+        this.file = file;
+    }
+
+    public MultipartFile getFile() {
+        return file;
+    }
+
+    /**
+     * 获取上传文件的原始文件名
+     * @return 原始文件名
+     */
+    public String getOriginalFilename() {
+        return file.getOriginalFilename();
+    }
+
+    /**
+     * 获取图片原始字节，只读取一次
+     * @return 图片字节
+     * @throws IOException 文件读取异常
+     */
+    public byte[] getImageBytes() throws IOException {
+        byte[] bytes = imageBytes;
+        if (bytes == null) {
+            synchronized (this) {
+                if (imageBytes == null) {
+                    imageBytes = file.getBytes();
+                }
+                bytes = imageBytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 打开图片输入流，用于流式编码发送给外部接口
+     * 已读取字节时直接复用，否则从上传文件读取，不在内存中生成Base64字符串
+     * @return 图片输入流，由调用方关闭
+     * @throws IOException 文件读取异常
+     */
+    public InputStream openImageStream() throws IOException {
+        if (imageBytes != null) {
+            return new ByteArrayInputStream(imageBytes);
+        }
+        return file.getInputStream();
+    }
+
+    /**
+     * 打开发送给外部接口（向量接口、大模型）的图片输入流
+     * 图片预处理服务已生成缩小后的图片时使用缩小后的图片，否则与openImageStream相同
+     * @return 图片输入流，由调用方关闭
+     * @throws IOException 文件读取异常
+     */
+    public InputStream openUpstreamImageStream() throws IOException {
+        if (upstreamImageBytes != null) {
+            return new ByteArrayInputStream(upstreamImageBytes);
+        }
+        return openImageStream();
+    }
+
+    /**
+     * 记录图片预处理结果，同一请求只预处理一次
+     * @param upstreamImageBytes 缩小并重新编码后的图片字节，为null时发送原图
+     */
+    public void setUpstreamImageBytes(byte[] upstreamImageBytes) {
+        this.upstreamImageBytes = upstreamImageBytes;
+        this.upstreamImagePrepared = true;
+    }
+
+    /**
+     * 是否已执行过图片预处理（无论是否生成了缩小后的图片）
+     * @return 已执行返回true
+     */
+    public boolean isUpstreamImagePrepared() {
+        return upstreamImagePrepared;
+    }
+
+    /**
+     * 获取图片内容的SHA-256摘要（十六进制），只计算一次
+     * @return 图片摘要
+     * @throws IOException 文件读取异常
+     */
+    public String getDigest() throws IOException {
+        String value = digest;
+        if (value == null) {
+            synchronized (this) {
+                if (digest == null) {
+                    try {
+                        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+                        digest = HexFormat.of().formatHex(messageDigest.digest(getImageBytes()));
+                    } catch (NoSuchAlgorithmException e) {
+                        throw new IllegalStateException("SHA-256算法不可用", e);
+                    }
+                }
+                value = digest;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 获取图片的感知哈希，只计算一次
+     * @return 64位差值哈希，图片无法解码时返回null
+     */
+    public synchronized Long getPerceptualHash() {
+        if (!perceptualHashComputed) {
+            perceptualHashComputed = true;
+            try {
+                perceptualHash = PerceptualHash.dHash(getImageBytes());
+            } catch (Exception e) {
+                perceptualHash = null;
+            }
+        }
+        return perceptualHash;
+    }
+
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(float[] embedding) {
+        this.embedding = embedding;
+        this.embeddingComputed = true;
+    }
+
+    /**
+     * 是否已调用过向量接口（无论成功与否）
+     * @return 已调用返回true
+     */
+    public boolean isEmbeddingComputed() {
+        return embeddingComputed;
+    }
+
+    public RecognitionSource getSource() {
+        return source;
+    }
+
+    /**
+     * 记录识别结果来源
+     * @param source 识别结果来源
+     */
+    public void setSource(RecognitionSource source) {
+        setSource(source, null);
+    }
+
+    /**
+     * 记录识别结果来源和向量相似度
+     * @param source 识别结果来源
+     * @param similarity 向量检索命中时的相似度，其他来源为null
+     */
+    public void setSource(RecognitionSource source, Float similarity) {
+        this.source = source;
+        this.similarity = similarity;
+    }
+
+    public Float getSimilarity() {
+        return similarity;
+    }
+
+    public String getOpenid() {
+        return openid;
+    }
+
+    public void setOpenid(String openid) {
+        this.openid = openid;
+    }
+}
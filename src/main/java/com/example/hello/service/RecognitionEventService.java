@@ -0,0 +1,39 @@
+package com.example.hello.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.hello.entity.RecognitionEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 识别事件服务接口
+ * 识别事件异步批量写入，历史记录从事件日志读取
+ */
+public interface RecognitionEventService extends IService<RecognitionEvent> {
+
+    /**
+     * 追加识别事件，不等待写入数据库
+     * 未设置ID和识别时间时自动生成
+     * @param event 识别事件
+     * @return 已进入写入队列返回true，队列已满返回false
+     */
+    boolean append(RecognitionEvent event);
+
+    /**
+     * 获取最近的识别事件
+     * @param limit 限制返回记录数量
+     * @return 识别事件列表，按识别时间和ID从新到旧排列，与getEventsBefore的顺序一致
+     */
+    List<RecognitionEvent> getRecentEvents(int limit);
+
+    /**
+     * 按(create_time, id)游标分页获取识别事件
+     * @param openid 微信用户openid，为null时不按用户过滤
+     * @param createTime 上一页最后一条记录的识别时间，为null时获取第一页
+     * @param id 上一页最后一条记录的ID
+     * @param limit 每页记录数量
+     * @return 识别事件列表，按识别时间和ID从新到旧排列
+     */
+    List<RecognitionEvent> getEventsBefore(String openid, LocalDateTime createTime, Long id, int limit);
+}
@@ -0,0 +1,30 @@
+package com.example.hello.service;
+
+import com.example.hello.entity.Plant;
+
+/**
+ * 多实例共享的植物信息缓存接口（二级缓存）
+ * 位于进程内缓存和MySQL之间，多个实例部署时可接入Redis等共享缓存；
+ * 未配置实现时只使用进程内缓存
+ */
+public interface SharedPlantCache {
+
+    /**
+     * 根据ID获取植物信息
+     * @param id 植物ID
+     * @return 植物信息，未命中返回null
+     */
+    Plant get(Long id);
+
+    /**
+     * 缓存植物信息
+     * @param plant 已持久化的植物
+     */
+    void put(Plant plant);
+
+    /**
+     * 删除植物信息
+     * @param id 植物ID
+     */
+    void evict(Long id);
+}
@@ -0,0 +1,47 @@
+package com.example.hello.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.hello.entity.Plant;
+import com.example.hello.entity.VectorOutbox;
+
+import java.util.List;
+
+/**
+ * 向量发件箱服务接口
+ * 新植物与其图像向量在同一个MySQL事务中写入plant_info和vector_outbox，
+ * 由后台任务把发件箱中的向量写入Milvus和plant_vectors，识别请求不等待向量写入
+ */
+public interface VectorOutboxService extends IService<VectorOutbox> {
+
+    /**
+     * 在同一事务中保存植物信息和待写入的向量
+     * 后台写入Milvus时读取植物的最新信息，图片URL等字段需在调用前设置，不应在提交后再单独更新
+     * @param plant 植物实体，保存后回填自动生成的ID
+     * @param vector 图像向量，为null时只保存植物信息
+     * @return 是否保存成功
+     */
+    boolean savePlantWithVector(Plant plant, float[] vector);
+
+    /**
+     * 在同一事务中批量保存植物信息和待写入的向量
+     * 与savePlantWithVector相同，图片URL等字段需在调用前设置
+     * @param plants 植物实体列表，保存后回填自动生成的ID
+     * @param vectors 与植物一一对应的图像向量，元素为null时该植物不写入向量
+     * @return 是否保存成功
+     */
+    boolean savePlantsWithVectors(List<Plant> plants, List<float[]> vectors);
+
+    /**
+     * 为已保存的植物登记待写入的向量
+     * @param plantId 植物ID
+     * @param vector 图像向量
+     * @return 是否登记成功
+     */
+    boolean enqueue(Long plantId, float[] vector);
+
+    /**
+     * 处理一批到期的发件箱记录：写入Milvus和plant_vectors，成功后删除记录，失败的记录按退避时间重试
+     * @return 本次成功写入的记录数
+     */
+    int relay();
+}
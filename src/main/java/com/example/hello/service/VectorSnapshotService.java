@@ -0,0 +1,78 @@
+package com.example.hello.service;
+
+import com.example.hello.vector.VectorSnapshot;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 向量快照服务接口
+ * 将Milvus集合导出为本地内存映射快照文件，进程启动后可立即用于检索，
+ * 并在Milvus集合尚未加载完成或不可用时作为降级检索来源；
+ * 使用进程内后端时，快照是向量的持久化副本，后端启动时从快照重建索引
+ */
+public interface VectorSnapshotService {
+
+    /**
+     * 快照是否可用于检索
+     * @return 是否可用
+     */
+    boolean isAvailable();
+
+    /**
+     * 快照是否是向量的唯一持久化副本
+     * 使用进程内后端且启用快照时为true，此时写入的向量只有在刷新到快照文件后才算持久化
+     * @return 是否是唯一持久化副本
+     */
+    boolean isPrimaryStore();
+
+    /**
+     * 从Milvus集合导出完整快照并替换本地快照文件
+     * @return 是否成功，未使用Milvus后端时返回false
+     */
+    boolean exportFromMilvus();
+
+    /**
+     * 记录新插入的向量，在下一次刷新时追加到快照
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     * @param metadata 元数据，如植物ID、名称等
+     */
+    void recordInsert(String vectorId, float[] vector, Map<String, Object> metadata);
+
+    /**
+     * 记录删除的向量，在下一次刷新时写入快照
+     * @param vectorId 向量ID
+     */
+    void recordDelete(String vectorId);
+
+    /**
+     * 将待追加的插入和删除写入快照文件
+     * @return 待追加的变更是否已全部写入，失败的变更保留到下一次刷新
+     */
+    boolean refresh();
+
+    /**
+     * 读取单个向量，包括尚未写入快照文件的变更
+     * 快照文件中的向量从映射区域读取，由操作系统页缓存按需加载，不占用堆内存
+     * @param vectorId 向量ID
+     * @return 向量，不存在或已删除时返回null
+     */
+    float[] getVector(String vectorId);
+
+    /**
+     * 遍历快照中的全部向量，包括尚未写入快照文件的变更
+     * @param action 对每个条目执行的操作
+     */
+    void forEach(Consumer<VectorSnapshot.Entry> action);
+
+    /**
+     * 在本地快照中检索
+     * @param vector 查询向量
+     * @param topK 返回结果数量
+     * @param similarityThreshold 相似度阈值
+     * @return 搜索结果，元数据只包含植物ID和名称
+     */
+    List<MilvusVectorService.SearchResult> search(float[] vector, int topK, float similarityThreshold);
+}
@@ -0,0 +1,345 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.config.MilvusConfig;
+import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.VectorSnapshotService;
+import com.example.hello.vector.FlatVectorIndex;
+import com.example.hello.vector.ProductQuantizer;
+import com.example.hello.vector.QuantizationRecallReport;
+import com.example.hello.vector.QuantizedVectorIndex;
+import com.example.hello.vector.ScalarQuantizer;
+import com.example.hello.vector.SearchHit;
+import com.example.hello.vector.VectorQuantizer;
+import com.example.hello.vector.VectorSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内精确向量检索服务实现类
+ * 向量保存在堆外连续矩阵中，使用SIMD计算内积并按CPU核数并行扫描，
+ * 适用于几十万规模以内的植物库，召回率100%
+ * 通过 vector.backend=flat 启用，运行时需要添加 --add-modules jdk.incubator.vector
+ * 可选开启量化存储（vector.quantization=int8/pq）：向量数达到训练规模后训练量化器，
+ * 之后用量化编码扫描并释放进程内的全精度向量，内存中只保留量化编码；
+ * 重新打分时从内存映射的本地向量快照读取候选的全精度向量，每次检索只读取rerank行
+ * 向量持久化在本地向量快照中：插入和删除记录到快照，初始化时从快照重建索引
+ */
+@Service
+@ConditionalOnProperty(name = "vector.backend", havingValue = "flat")
+public class FlatVectorServiceImpl implements MilvusVectorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlatVectorServiceImpl.class);
+
+    // 召回率评估使用的查询数量上限，查询向量不参与训练，也不在评估的库向量中
+    private static final int RECALL_QUERIES = 100;
+
+    // 召回率评估的Top-K
+    private static final int RECALL_K = 10;
+
+    // 植物ID字段名称
+    private static final String PLANT_ID_FIELD = "plant_id";
+    // 植物名称字段名称
+    private static final String PLANT_NAME_FIELD = "plant_name";
+
+    @Autowired
+    private MilvusConfig milvusConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private VectorSnapshotService vectorSnapshotService;
+
+    // 并行扫描的线程数，默认为CPU核数
+    @Value("${vector.flat.parallelism:0}")
+    private int parallelism;
+
+    // 初始行容量
+    @Value("${vector.flat.initial-capacity:10000}")
+    private int initialCapacity;
+
+    // 量化方式：none、int8、pq
+    @Value("${vector.quantization:none}")
+    private String quantization;
+
+    // PQ子空间个数（即每个向量的编码字节数），需能整除向量维度
+    @Value("${vector.quantization.pq-subspaces:192}")
+    private int pqSubspaces;
+
+    // 向量数达到该值时训练量化器，训练样本数也取该值
+    @Value("${vector.quantization.train-size:5000}")
+    private int trainSize;
+
+    // 重新打分的候选数量，0表示不重新打分；全精度向量从本地向量快照读取，快照未启用时使用量化分数
+    @Value("${vector.quantization.rerank:50}")
+    private int rerank;
+
+    private volatile boolean initialized;
+
+    // 全精度索引，切换到量化索引后释放
+    private volatile FlatVectorIndex index;
+
+    private volatile QuantizedVectorIndex quantizedIndex;
+
+    private volatile QuantizationRecallReport recallReport;
+
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    // 切换到量化索引时持有写锁，保证切换期间的插入和删除不会丢失
+    private final ReentrantReadWriteLock switchLock = new ReentrantReadWriteLock();
+
+    private ForkJoinPool scanPool;
+
+    // 量化器训练线程，训练耗时较长，不占用检索使用的并行扫描线程池
+    private ExecutorService trainExecutor;
+
+    // 向量ID到元数据的映射
+    private final Map<String, Map<String, Object>> metadataStore = new ConcurrentHashMap<>();
+
+    /**
+     * 初始化向量索引，并加载本地向量快照中的向量
+     * 索引已存在时直接返回；加载的向量数达到训练规模时开始训练量化器
+     * @return 是否成功
+     */
+    @Override
+    public synchronized boolean initCollection() {
+        if (!initialized) {
+            long start = System.currentTimeMillis();
+            int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+            scanPool = new ForkJoinPool(threads);
+            trainExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "vector-quantizer-train");
+                thread.setDaemon(true);
+                return thread;
+            });
+            FlatVectorIndex full = new FlatVectorIndex(milvusConfig.getDimension(), initialCapacity, scanPool);
+            vectorSnapshotService.forEach(entry -> {
+                metadataStore.put(entry.getVectorId(), metadataOf(entry));
+                full.add(entry.getVectorId(), entry.getVector());
+            });
+            index = full;
+            Gauge.builder("vector.quantization.recall", this,
+                            service -> service.recallReport != null ? service.recallReport.getRecall() : Double.NaN)
+                    .description("量化检索相对精确检索的召回率")
+                    .register(meterRegistry);
+            Gauge.builder("vector.quantization.code.bytes", this,
+                            service -> service.quantizedIndex != null ? service.quantizedIndex.codeBytes() : 0)
+                    .description("量化编码占用的字节数")
+                    .register(meterRegistry);
+            initialized = true;
+            logger.info("本地精确检索索引已创建，维度：{}，并行度：{}，量化方式：{}，已加载向量数：{}，耗时：{}ms",
+                    milvusConfig.getDimension(), threads, quantization, full.size(),
+                    System.currentTimeMillis() - start);
+            maybeTrainQuantizer();
+        }
+        return true;
+    }
+
+    /**
+     * 插入向量数据
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     * @param metadata 元数据，如植物ID、名称等
+     * @return 是否成功
+     */
+    @Override
+    public boolean insertVector(String vectorId, float[] vector, Map<String, Object> metadata) {
+        try {
+            initCollection();
+            metadataStore.put(vectorId, new HashMap<>(metadata));
+            switchLock.readLock().lock();
+            try {
+                FlatVectorIndex full = index;
+                if (full != null) {
+                    full.add(vectorId, vector);
+                }
+                QuantizedVectorIndex quantized = quantizedIndex;
+                if (quantized != null) {
+                    quantized.add(vectorId, vector);
+                }
+            } finally {
+                switchLock.readLock().unlock();
+            }
+            vectorSnapshotService.recordInsert(vectorId, vector, metadata);
+            maybeTrainQuantizer();
+            return true;
+        } catch (Exception e) {
+            metadataStore.remove(vectorId);
+            logger.error("插入向量数据失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 通过向量相似度搜索
+     * @param vector 查询向量
+     * @param topK 返回结果数量
+     * @param similarityThreshold 相似度阈值
+     * @return 搜索结果，包含向量ID、相似度和元数据
+     */
+    @Override
+    public List<SearchResult> searchByVector(float[] vector, int topK, float similarityThreshold) {
+        try {
+            if (!initialized) {
+                return Collections.emptyList();
+            }
+            List<SearchHit> hits;
+            QuantizedVectorIndex quantized = quantizedIndex;
+            FlatVectorIndex full = index;
+            if (quantized != null) {
+                // 量化编码扫描选出候选，再用快照中的全精度向量重新打分
+                hits = quantized.search(vector, topK, similarityThreshold, rerank,
+                        vectorSnapshotService::getVector);
+            } else {
+                // 阈值在扫描时过滤，低于阈值的行不进入Top-K堆
+                hits = full.search(vector, topK, similarityThreshold);
+            }
+            List<SearchResult> results = new ArrayList<>();
+            for (SearchHit hit : hits) {
+                Map<String, Object> metadata = metadataStore.get(hit.getVectorId());
+                results.add(new SearchResult(hit.getVectorId(), hit.getScore(),
+                        metadata != null ? new HashMap<>(metadata) : new HashMap<>()));
+            }
+            return results;
+        } catch (Exception e) {
+            logger.error("向量搜索失败", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 删除向量
+     * @param vectorId 向量ID
+     * @return 是否成功
+     */
+    @Override
+    public boolean deleteVector(String vectorId) {
+        switchLock.readLock().lock();
+        try {
+            FlatVectorIndex full = index;
+            if (full != null) {
+                full.remove(vectorId);
+            }
+            QuantizedVectorIndex quantized = quantizedIndex;
+            if (quantized != null) {
+                quantized.remove(vectorId);
+            }
+        } finally {
+            switchLock.readLock().unlock();
+        }
+        metadataStore.remove(vectorId);
+        vectorSnapshotService.recordDelete(vectorId);
+        return true;
+    }
+
+    /**
+     * 获取最近一次量化召回率报告
+     * @return 召回率报告，未开启量化或尚未训练时返回null
+     */
+    public QuantizationRecallReport getRecallReport() {
+        return recallReport;
+    }
+
+    /**
+     * 向量数达到训练规模时在后台训练量化器
+     */
+    private void maybeTrainQuantizer() {
+        if ("none".equalsIgnoreCase(quantization) || quantizedIndex != null) {
+            return;
+        }
+        FlatVectorIndex full = index;
+        if (full == null || full.size() < trainSize || !training.compareAndSet(false, true)) {
+            return;
+        }
+        trainExecutor.execute(() -> {
+            try {
+                trainQuantizer(full);
+            } catch (Exception e) {
+                logger.error("训练向量量化器失败", e);
+                training.set(false);
+            }
+        });
+    }
+
+    /**
+     * 训练量化器，生成召回率报告，并切换到量化索引
+     * 召回率使用留出的查询向量评估：查询向量不参与训练，也不在评估的库向量中，
+     * 否则每个查询都能检索到自身，召回率偏高
+     * @param full 全精度索引
+     */
+    private void trainQuantizer(FlatVectorIndex full) {
+        List<float[]> vectors = new ArrayList<>(trainSize + RECALL_QUERIES);
+        full.forEach((id, vector) -> {
+            if (vectors.size() < trainSize + RECALL_QUERIES) {
+                vectors.add(vector);
+            }
+        });
+        // 向量数刚达到训练规模时最多留出十分之一作为查询
+        int queryCount = Math.min(RECALL_QUERIES, Math.max(vectors.size() - trainSize, vectors.size() / 10));
+        List<float[]> samples = vectors.subList(0, vectors.size() - queryCount);
+        List<float[]> queries = vectors.subList(vectors.size() - queryCount, vectors.size());
+        VectorQuantizer quantizer = "pq".equalsIgnoreCase(quantization)
+                ? new ProductQuantizer(full.getDimension(), pqSubspaces, 10, 42L)
+                : new ScalarQuantizer(full.getDimension());
+        long start = System.currentTimeMillis();
+        quantizer.train(samples);
+        logger.info("向量量化器训练完成，方式：{}，样本数：{}，耗时：{}ms",
+                quantization, samples.size(), System.currentTimeMillis() - start);
+
+        recallReport = QuantizationRecallReport.evaluate(quantization, quantizer, samples, queries, RECALL_K, rerank);
+        logger.info("量化召回率报告：{}", recallReport);
+
+        switchLock.writeLock().lock();
+        try {
+            QuantizedVectorIndex quantized = new QuantizedVectorIndex(quantizer, full.size());
+            full.forEach(quantized::add);
+            quantizedIndex = quantized;
+            // 重新打分从快照读取全精度向量，不再需要进程内的全精度索引
+            index = null;
+        } finally {
+            switchLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 快照中只保存植物ID和名称，从快照加载的向量的检索结果与Milvus降级到快照检索时一致
+     */
+    private static Map<String, Object> metadataOf(VectorSnapshot.Entry entry) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(PLANT_ID_FIELD, entry.getPlantId());
+        metadata.put(PLANT_NAME_FIELD, entry.getPlantName());
+        return metadata;
+    }
+
+    /**
+     * 关闭并行扫描线程池和训练线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (trainExecutor != null) {
+            trainExecutor.shutdownNow();
+        }
+        if (scanPool != null) {
+            scanPool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.config.MilvusConfig;
+import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.VectorSnapshotService;
+import com.example.hello.vector.HnswIndex;
+import com.example.hello.vector.SearchHit;
+import com.example.hello.vector.VectorSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内HNSW向量检索服务实现类
+ * 适用于单节点部署和测试，不依赖Milvus服务器，检索无需网络往返
+ * 通过 vector.backend=hnsw 启用，索引参数与Milvus集合的HNSW索引参数一致
+ * 向量持久化在本地向量快照中：插入和删除记录到快照，初始化时从快照重建索引
+ * 不支持量化存储：图的构建和检索都需要在节点之间计算全精度距离，量化只用于flat后端
+ */
+@Service
+@ConditionalOnProperty(name = "vector.backend", havingValue = "hnsw")
+public class HnswVectorServiceImpl implements MilvusVectorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HnswVectorServiceImpl.class);
+
+    // 植物ID字段名称
+    private static final String PLANT_ID_FIELD = "plant_id";
+    // 植物名称字段名称
+    private static final String PLANT_NAME_FIELD = "plant_name";
+
+    @Autowired
+    private MilvusConfig milvusConfig;
+
+    @Autowired
+    private VectorSnapshotService vectorSnapshotService;
+
+    private volatile HnswIndex index;
+
+    // 向量ID到元数据的映射
+    private final Map<String, Map<String, Object>> metadataStore = new ConcurrentHashMap<>();
+
+    /**
+     * 初始化向量索引，并加载本地向量快照中的向量
+     * 索引已存在时直接返回
+     * @return 是否成功
+     */
+    @Override
+    public synchronized boolean initCollection() {
+        if (index == null) {
+            long start = System.currentTimeMillis();
+            HnswIndex created = new HnswIndex(milvusConfig.getDimension(), milvusConfig.getIndexM(),
+                    milvusConfig.getIndexEfConstruction(), milvusConfig.getSearchEf());
+            vectorSnapshotService.forEach(entry -> {
+                metadataStore.put(entry.getVectorId(), metadataOf(entry));
+                created.add(entry.getVectorId(), entry.getVector());
+            });
+            index = created;
+            logger.info("本地HNSW索引已创建，维度：{}，M：{}，efConstruction：{}，ef：{}，已加载向量数：{}，耗时：{}ms",
+                    milvusConfig.getDimension(), milvusConfig.getIndexM(),
+                    milvusConfig.getIndexEfConstruction(), milvusConfig.getSearchEf(),
+                    metadataStore.size(), System.currentTimeMillis() - start);
+        }
+        return true;
+    }
+
+    /**
+     * 插入向量数据
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     * @param metadata 元数据，如植物ID、名称等
+     * @return 是否成功
+     */
+    @Override
+    public boolean insertVector(String vectorId, float[] vector, Map<String, Object> metadata) {
+        try {
+            initCollection();
+            metadataStore.put(vectorId, new HashMap<>(metadata));
+            index.add(vectorId, vector);
+            vectorSnapshotService.recordInsert(vectorId, vector, metadata);
+            return true;
+        } catch (Exception e) {
+            metadataStore.remove(vectorId);
+            logger.error("插入向量数据失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 通过向量相似度搜索
+     * @param vector 查询向量
+     * @param topK 返回结果数量
+     * @param similarityThreshold 相似度阈值
+     * @return 搜索结果，包含向量ID、相似度和元数据
+     */
+    @Override
+    public List<SearchResult> searchByVector(float[] vector, int topK, float similarityThreshold) {
+        try {
+            HnswIndex current = index;
+            if (current == null) {
+                return Collections.emptyList();
+            }
+            List<SearchResult> results = new ArrayList<>();
+            for (SearchHit hit : current.search(vector, topK)) {
+                // 只返回相似度大于阈值的结果
+                if (hit.getScore() >= similarityThreshold) {
+                    Map<String, Object> metadata = metadataStore.get(hit.getVectorId());
+                    results.add(new SearchResult(hit.getVectorId(), hit.getScore(),
+                            metadata != null ? new HashMap<>(metadata) : new HashMap<>()));
+                }
+            }
+            return results;
+        } catch (Exception e) {
+            logger.error("向量搜索失败", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 删除向量
+     * @param vectorId 向量ID
+     * @return 是否成功
+     */
+    @Override
+    public boolean deleteVector(String vectorId) {
+        HnswIndex current = index;
+        if (current != null) {
+            current.remove(vectorId);
+        }
+        metadataStore.remove(vectorId);
+        vectorSnapshotService.recordDelete(vectorId);
+        return true;
+    }
+
+    /**
+     * 快照中只保存植物ID和名称，从快照加载的向量的检索结果与Milvus降级到快照检索时一致
+     */
+    private static Map<String, Object> metadataOf(VectorSnapshot.Entry entry) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(PLANT_ID_FIELD, entry.getPlantId());
+        metadata.put(PLANT_NAME_FIELD, entry.getPlantName());
+        return metadata;
+    }
+}
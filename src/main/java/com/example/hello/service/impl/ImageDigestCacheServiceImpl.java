@@ -0,0 +1,161 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.entity.Plant;
+import com.example.hello.entity.PlantImageDigest;
+import com.example.hello.mapper.PlantImageDigestMapper;
+import com.example.hello.service.ImageDigestCacheService;
+import com.example.hello.service.PlantService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 图片摘要识别结果缓存服务实现类
+ * 内存中使用有界LRU缓存，可选地将摘要与植物ID的对应关系持久化到MySQL
+ */
+@Service
+public class ImageDigestCacheServiceImpl implements ImageDigestCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDigestCacheServiceImpl.class);
+
+    @Autowired
+    private PlantImageDigestMapper plantImageDigestMapper;
+
+    @Autowired
+    private PlantService plantService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 内存缓存最大条目数
+    @Value("${plant.digest-cache.max-size:10000}")
+    private int maxSize;
+
+    // 是否持久化到MySQL
+    @Value("${plant.digest-cache.persistent:false}")
+    private boolean persistent;
+
+    // 按访问顺序淘汰的内存缓存，值为植物信息快照
+    private Map<String, Plant> cache;
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    /**
+     * 初始化内存缓存并注册命中率指标
+     */
+    @PostConstruct
+    public void init() {
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Plant> eldest) {
+                return size() > maxSize;
+            }
+        });
+        hitCounter = Counter.builder("plant.digest.cache.requests")
+                .description("图片摘要缓存请求次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        missCounter = Counter.builder("plant.digest.cache.requests")
+                .description("图片摘要缓存请求次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("plant.digest.cache.size", cache, Map::size)
+                .description("图片摘要缓存条目数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 根据图片摘要获取已识别的植物
+     * 先查内存缓存，开启持久化时再查MySQL并回填内存
+     * @param digest 图片内容摘要
+     * @return 植物信息副本，未命中返回null
+     */
+    @Override
+    public Plant get(String digest) {
+        if (digest == null) {
+            return null;
+        }
+        Plant cached = cache.get(digest);
+        if (cached == null && persistent) {
+            cached = loadFromDatabase(digest);
+            if (cached != null) {
+                cache.put(digest, cached.copy());
+            }
+        }
+        if (cached == null) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        // 返回副本，避免调用方修改缓存中的对象
+        return cached.copy();
+    }
+
+    /**
+     * 缓存图片摘要对应的识别结果
+     * @param digest 图片内容摘要
+     * @param plant 识别出的植物
+     */
+    @Override
+    public void put(String digest, Plant plant) {
+        if (digest == null || plant == null || plant.getId() == null) {
+            return;
+        }
+        cache.put(digest, plant.copy());
+        if (persistent) {
+            try {
+                PlantImageDigest record = new PlantImageDigest();
+                record.setDigest(digest);
+                record.setPlantId(plant.getId());
+                record.setCreateTime(LocalDateTime.now());
+                plantImageDigestMapper.insert(record);
+            } catch (DuplicateKeyException e) {
+                // 同一摘要已存在，忽略
+            } catch (Exception e) {
+                logger.error("持久化图片摘要失败", e);
+            }
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return (long) hitCounter.count();
+    }
+
+    @Override
+    public long getMissCount() {
+        return (long) missCounter.count();
+    }
+
+    /**
+     * 从MySQL加载摘要对应的植物
+     * @param digest 图片内容摘要
+     * @return 植物信息，不存在返回null
+     */
+    private Plant loadFromDatabase(String digest) {
+        try {
+            PlantImageDigest record = plantImageDigestMapper.selectById(digest);
+            if (record == null) {
+                return null;
+            }
+            return plantService.getPlantById(record.getPlantId());
+        } catch (Exception e) {
+            logger.error("查询图片摘要失败", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.service.ImagePreprocessService;
+import com.example.hello.service.RecognitionContext;
+import com.example.hello.util.ExifOrientation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 图片预处理服务实现类
+ * 手机照片最大10MB，Base64编码后原样发送给向量接口和大模型既慢又占带宽，而模型实际只使用几百像素的输入。
+ * 发送前在imageExecutor上解码图片、按EXIF方向旋转、把长边缩小到max-dimension并以JPEG重新编码，
+ * 请求体通常缩小一个数量级
+ * 解码时按目标尺寸对源图像隔行隔列采样，超大分辨率的图片也不会解码出完整尺寸的像素数组
+ * 摘要、感知哈希和保存的上传图片仍使用原图，只有发送给外部接口的图片经过预处理
+ */
+@Service
+public class ImagePreprocessServiceImpl implements ImagePreprocessService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImagePreprocessServiceImpl.class);
+
+    // 是否启用图片预处理，关闭时发送原图
+    @Value("${plant.image.preprocess.enabled:true}")
+    private boolean enabled;
+
+    // 缩小后图片长边的最大像素数，应不小于向量模型和大模型的输入分辨率
+    @Value("${plant.image.preprocess.max-dimension:1024}")
+    private int maxDimension;
+
+    // 重新编码的JPEG质量，取值0到1
+    @Value("${plant.image.preprocess.quality:0.85}")
+    private float quality;
+
+    // 等待预处理的最长时间（毫秒），超时后发送原图
+    @Value("${plant.image.preprocess.timeout-ms:2000}")
+    private long timeoutMs;
+
+    // 图片预处理线程池，线程数不超过CPU核数
+    @Autowired
+    @Qualifier("imageExecutor")
+    private Executor imageExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter resizedCounter;
+
+    private Counter originalCounter;
+
+    private Counter failedCounter;
+
+    private Counter rejectedCounter;
+
+    private Counter timeoutCounter;
+
+    private DistributionSummary bytesSavedSummary;
+
+    private Timer preprocessTimer;
+
+    /**
+     * 注册指标
+     */
+    @PostConstruct
+    public void init() {
+        // 图片都在内存中，不需要ImageIO为输入输出流创建磁盘缓存文件
+        ImageIO.setUseCache(false);
+        resizedCounter = resultCounter("resized");
+        originalCounter = resultCounter("original");
+        failedCounter = resultCounter("failed");
+        rejectedCounter = resultCounter("rejected");
+        timeoutCounter = resultCounter("timeout");
+        bytesSavedSummary = DistributionSummary.builder("plant.image.preprocess.bytes.saved")
+                .description("预处理后发送给外部接口的图片减少的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        preprocessTimer = Timer.builder("plant.image.preprocess.duration")
+                .description("图片预处理耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 打开发送给外部接口的图片输入流，同一请求上下文只预处理一次
+     * 预处理失败、超时或线程池已满时使用原图
+     * @param context 识别请求上下文
+     * @return 图片输入流，由调用方关闭
+     * @throws IOException 文件读取异常
+     */
+    @Override
+    public InputStream openUpstreamImage(RecognitionContext context) throws IOException {
+        if (!context.isUpstreamImagePrepared()) {
+            context.setUpstreamImageBytes(enabled ? prepare(context.getImageBytes()) : null);
+        }
+        return context.openUpstreamImageStream();
+    }
+
+    /**
+     * 在图片预处理线程池中处理图片并等待结果
+     * @param original 原图字节
+     * @return 预处理后的图片字节，使用原图时返回null
+     */
+    private byte[] prepare(byte[] original) {
+        CompletableFuture<byte[]> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> preprocessTimer.record(() -> resize(original)), imageExecutor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            return null;
+        }
+        try {
+            byte[] resized = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (resized == null) {
+                originalCounter.increment();
+                return null;
+            }
+            resizedCounter.increment();
+            bytesSavedSummary.record(Math.max(0, original.length - resized.length));
+            return resized;
+        } catch (TimeoutException e) {
+            // 已开始的预处理任务会继续执行完，结果丢弃
+            timeoutCounter.increment();
+            return null;
+        } catch (ExecutionException e) {
+            failedCounter.increment();
+            logger.warn("图片预处理失败，发送原图：{}", e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 解码、旋转、缩小并重新编码图片
+     * @param original 原图字节
+     * @return JPEG图片字节，无法解码的格式或处理后没有变小时返回null
+     */
+    private byte[] resize(byte[] original) {
+        try {
+            int orientation = ExifOrientation.read(original);
+            BufferedImage decoded = decode(original);
+            if (decoded == null) {
+                return null;
+            }
+            BufferedImage image = ExifOrientation.apply(scale(decoded), orientation);
+            byte[] encoded = encodeJpeg(image);
+            // 尺寸和方向都不需要调整时，只有重新编码后更小才使用
+            if (encoded.length >= original.length && orientation == ExifOrientation.NORMAL) {
+                return null;
+            }
+            return encoded;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按目标尺寸采样解码图片
+     * @param original 原图字节
+     * @return 解码后的图片，没有可用解码器（如WebP）时返回null
+     * @throws IOException 图片解码异常
+     */
+    private BufferedImage decode(byte[] original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // 采样后长边仍不小于目标尺寸的两倍，再平滑缩小，避免采样带来的锯齿
+                int subsampling = Math.max(1, longest / (maxDimension * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 把图片转换为RGB并缩小到长边不超过目标尺寸，每次最多缩小一半，保持缩小后的清晰度
+     * 透明区域填充为白色
+     * @param image 解码后的图片
+     * @return 缩小后的RGB图片
+     */
+    private BufferedImage scale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        // 不需要缩小时只绘制一次，转换为RGB
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * 以配置的质量编码为JPEG
+     * @param image RGB图片
+     * @return JPEG图片字节
+     * @throws IOException 图片编码异常
+     */
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private Counter resultCounter(String result) {
+        return Counter.builder("plant.image.preprocess")
+                .description("发送给外部接口的图片预处理次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.service.ImageStorageService;
+import com.example.hello.service.RecognitionContext;
+import com.example.hello.storage.VolumeStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 上传图片存储服务实现类
+ * 图片按内容的SHA-256摘要寻址，URL为/uploads/ab/cd/{摘要}.{扩展名}；相同内容的图片只写一次，
+ * 是否已保存直接由卷存储的索引判断
+ * 图片数据追加写入打包卷存储（{根目录}/volumes下的段文件），不再一张图片一个文件；
+ * 改为打包存储之前按分片目录或平铺文件名保存的图片仍从磁盘文件读取
+ * 图片不会被删除：植物记录和识别事件都可能引用同一张图片，且图片在事件写入之前保存，
+ * 没有可靠的引用判断前不做清理，卷存储的压缩也因此不定期执行
+ */
+@Service
+public class ImageStorageServiceImpl implements ImageStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStorageServiceImpl.class);
+
+    private static final String URL_PREFIX = "/uploads/";
+
+    // 分片路径格式：ab/cd/{64位十六进制摘要}.{扩展名}，前两级目录取自摘要前4个字符
+    private static final Pattern SHARDED_PATH =
+            Pattern.compile("([0-9a-f]{2})/([0-9a-f]{2})/(\\1\\2[0-9a-f]{60})\\.(jpg|png|gif|webp|bin)");
+
+    // 改为内容寻址之前保存的文件名：{UUID}_{原始文件名}，直接位于根目录下
+    private static final Pattern LEGACY_PATH = Pattern.compile("[^/\\\\]+");
+
+    // 上传图片保存的根目录
+    @Value("${plant.storage.root:${user.dir}/uploads}")
+    private String storageRoot;
+
+    // 单个卷段文件的最大字节数，写满后封存并创建新段
+    @Value("${plant.storage.volume.max-segment-bytes:1073741824}")
+    private long maxSegmentBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Path root;
+
+    private VolumeStore volumeStore;
+
+    private Counter writtenCounter;
+
+    private Counter deduplicatedCounter;
+
+    private DistributionSummary bytesWrittenSummary;
+
+    private Timer writeTimer;
+
+    /**
+     * 创建存储根目录，打开卷存储并注册指标
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(storageRoot).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        volumeStore = VolumeStore.open(root.resolve("volumes"), maxSegmentBytes);
+        writtenCounter = writeCounter("written");
+        deduplicatedCounter = writeCounter("deduplicated");
+        bytesWrittenSummary = DistributionSummary.builder("plant.storage.bytes.written")
+                .description("写入磁盘的上传图片大小")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        writeTimer = Timer.builder("plant.storage.write.duration")
+                .description("上传图片写入磁盘耗时")
+                .register(meterRegistry);
+        Gauge.builder("plant.storage.volume.images", volumeStore, VolumeStore::size)
+                .description("卷存储中的图片数")
+                .register(meterRegistry);
+        Gauge.builder("plant.storage.volume.segments", volumeStore, VolumeStore::segmentCount)
+                .description("卷段文件数")
+                .register(meterRegistry);
+        logger.info("上传图片存储目录：{}，卷存储图片{}张，段文件{}个", root, volumeStore.size(), volumeStore.segmentCount());
+    }
+
+    /**
+     * 关闭卷存储，刷盘当前写入段
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        volumeStore.close();
+    }
+
+    /**
+     * 保存上传的图片，内容相同的图片已存在时不再重复写入
+     * 并发保存相同图片时由卷存储保证只写入一次
+     * @param context 识别请求上下文
+     * @return 可访问的图片URL，如/uploads/ab/cd/{摘要}.jpg
+     * @throws IOException 文件写入异常
+     */
+    @Override
+    public String store(RecognitionContext context) throws IOException {
+        String digest = context.getDigest();
+        byte[] imageBytes = context.getImageBytes();
+        String relativePath = relativePathOf(context);
+        // 卷存储或旧的分片文件中已有相同内容的图片，不再重复写入
+        if (volumeStore.contains(digest) || Files.exists(root.resolve(relativePath))) {
+            deduplicatedCounter.increment();
+            return URL_PREFIX + relativePath;
+        }
+        long start = System.nanoTime();
+        if (volumeStore.put(digest, imageBytes)) {
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            writtenCounter.increment();
+            bytesWrittenSummary.record(imageBytes.length);
+        } else {
+            // 并发请求已写入相同内容的图片
+            deduplicatedCounter.increment();
+        }
+        return URL_PREFIX + relativePath;
+    }
+
+    /**
+     * 计算图片保存后的URL，只取决于图片内容，不写入文件
+     * @param context 识别请求上下文
+     * @return 与store返回值相同的图片URL
+     * @throws IOException 文件读取异常
+     */
+    @Override
+    public String urlOf(RecognitionContext context) throws IOException {
+        return URL_PREFIX + relativePathOf(context);
+    }
+
+    /**
+     * 解析/uploads/之后的相对路径对应的图片
+     * 分片路径优先从卷存储读取，只做一次定位读；只接受分片路径和旧版本的平铺文件名，其他路径（包括../等）一律返回null
+     * @param relativePath 相对路径
+     * @return 图片资源，路径无效或图片不存在返回null
+     */
+    @Override
+    public Resource resolve(String relativePath) {
+        if (relativePath == null) {
+            return null;
+        }
+        Matcher matcher = SHARDED_PATH.matcher(relativePath);
+        if (matcher.matches()) {
+            try {
+                VolumeStore.Needle needle = volumeStore.get(matcher.group(3));
+                if (needle != null) {
+                    return new NeedleResource(needle, relativePath.substring(relativePath.lastIndexOf('/') + 1));
+                }
+            } catch (IOException e) {
+                logger.warn("从卷存储读取图片失败，路径：{}，原因：{}", relativePath, e.getMessage());
+                return null;
+            }
+        } else if (!LEGACY_PATH.matcher(relativePath).matches() || relativePath.startsWith(".")) {
+            return null;
+        }
+        Path file = root.resolve(relativePath).normalize();
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        return new FileSystemResource(file);
+    }
+
+    /**
+     * 分片相对路径：ab/cd/{摘要}.{扩展名}
+     * @param context 识别请求上下文
+     * @return 相对路径
+     * @throws IOException 文件读取异常
+     */
+    private static String relativePathOf(RecognitionContext context) throws IOException {
+        String digest = context.getDigest();
+        return digest.substring(0, 2) + "/" + digest.substring(2, 4) + "/"
+                + digest + "." + detectExtension(context.getImageBytes());
+    }
+
+    /**
+     * 根据文件头判断图片格式，不信任客户端提供的文件名和Content-Type
+     * @param bytes 图片字节
+     * @return 扩展名
+     */
+    private static String detectExtension(byte[] bytes) {
+        if (startsWith(bytes, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        }
+        if (startsWith(bytes, 0x89, 'P', 'N', 'G')) {
+            return "png";
+        }
+        if (startsWith(bytes, 'G', 'I', 'F', '8')) {
+            return "gif";
+        }
+        if (startsWith(bytes, 'R', 'I', 'F', 'F') && bytes.length >= 12
+                && bytes[8] == 'W' && bytes[9] == 'E' && bytes[10] == 'B' && bytes[11] == 'P') {
+            return "webp";
+        }
+        return "bin";
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Counter writeCounter(String result) {
+        return Counter.builder("plant.storage.writes")
+                .description("上传图片保存次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 从卷存储读取的图片，文件名用于推断Content-Type，写入时间用于Last-Modified
+     */
+    private static class NeedleResource extends ByteArrayResource {
+
+        private final String filename;
+
+        private final long timestamp;
+
+        NeedleResource(VolumeStore.Needle needle, String filename) {
+            super(needle.getData(), filename);
+            this.filename = filename;
+            this.timestamp = needle.getTimestamp();
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public long lastModified() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.entity.Plant;
+import com.example.hello.service.SharedPlantCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的二级缓存实现
+ * 用于单机部署和测试中替代共享缓存，plant.cache.l2=local时启用
+ */
+@Component
+@ConditionalOnProperty(name = "plant.cache.l2", havingValue = "local")
+public class LocalSharedPlantCache implements SharedPlantCache {
+
+    private final Map<Long, Plant> plants = new ConcurrentHashMap<>();
+
+    @Override
+    public Plant get(Long id) {
+        return id != null ? plants.get(id) : null;
+    }
+
+    @Override
+    public void put(Plant plant) {
+        if (plant != null && plant.getId() != null) {
+            plants.put(plant.getId(), plant);
+        }
+    }
+
+    @Override
+    public void evict(Long id) {
+        if (id != null) {
+            plants.remove(id);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.hello.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.milvus.client.MilvusClient;
+import io.milvus.grpc.MutationResult;
+import io.milvus.param.R;
+import io.milvus.param.dml.InsertParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Milvus批量写入缓冲区
+ * 调用方提交单行数据后立即拿到Future，后台线程按列累积多行，
+ * 达到批量行数或等待超过刷新间隔时用一个InsertParam写入，减少gRPC调用次数和小分段
+ * 队列有界：队列满时提交方最多等待offerTimeoutMs，超时则该行写入失败（背压）
+ * 关闭时停止接收新数据，并把队列中剩余的数据全部写入
+ */
+public class MilvusInsertBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MilvusInsertBuffer.class);
+
+    // 向量字段名称
+    private static final String VECTOR_FIELD = "vector";
+    // ID字段名称
+    private static final String ID_FIELD = "id";
+    // 植物ID字段名称
+    private static final String PLANT_ID_FIELD = "plant_id";
+    // 植物名称字段名称
+    private static final String PLANT_NAME_FIELD = "plant_name";
+    // 相似度阈值字段名称
+    private static final String SIMILARITY_THRESHOLD_FIELD = "similarity_threshold";
+    // 图片URL字段名称
+    private static final String IMAGE_URL_FIELD = "image_url";
+    // 识别准确度字段名称
+    private static final String RECOGNITION_ACCURACY_FIELD = "recognition_accuracy";
+    // 创建时间字段名称
+    private static final String CREATE_TIME_FIELD = "create_time";
+    // 更新时间字段名称
+    private static final String UPDATE_TIME_FIELD = "update_time";
+
+    // 队列为空时检查关闭标志的间隔
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * 等待写入的一行数据
+     */
+    private static final class PendingRow {
+        final String vectorId;
+        final float[] vector;
+        final Map<String, Object> metadata;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        PendingRow(String vectorId, float[] vector, Map<String, Object> metadata) {
+            this.vectorId = vectorId;
+            this.vector = vector;
+            this.metadata = metadata;
+        }
+    }
+
+    private final MilvusClient milvusClient;
+
+    private final String collectionName;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final long offerTimeoutMillis;
+
+    private final BlockingQueue<PendingRow> queue;
+
+    private final Thread flusher;
+
+    private final Counter rejectedCounter;
+
+    private final Counter failedCounter;
+
+    private final DistributionSummary batchSummary;
+
+    private volatile boolean closed;
+
+    /**
+     * 创建写入缓冲区并启动后台刷新线程
+     * @param milvusClient Milvus客户端
+     * @param collectionName 集合名称
+     * @param capacity 队列容量
+     * @param batchSize 单次写入的最大行数
+     * @param flushIntervalMillis 第一行入队后最多等待的时间
+     * @param offerTimeoutMillis 队列满时提交方最多等待的时间
+     * @param meterRegistry 指标注册表
+     */
+    public MilvusInsertBuffer(MilvusClient milvusClient, String collectionName, int capacity, int batchSize,
+                              long flushIntervalMillis, long offerTimeoutMillis, MeterRegistry meterRegistry) {
+        this.milvusClient = milvusClient;
+        this.collectionName = collectionName;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.rejectedCounter = Counter.builder("milvus.insert.buffer.rejected")
+                .description("因缓冲区已满或已关闭而拒绝的写入行数")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("milvus.insert.buffer.failed")
+                .description("批量写入失败的行数")
+                .register(meterRegistry);
+        this.batchSummary = DistributionSummary.builder("milvus.insert.batch.size")
+                .description("每次批量写入的行数")
+                .register(meterRegistry);
+        Gauge.builder("milvus.insert.buffer.size", queue, Collection::size)
+                .description("等待写入Milvus的行数")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::run, "milvus-insert-buffer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 提交一行数据
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     * @param metadata 元数据，如植物ID、名称等
+     * @return 写入结果，写入成功为true；缓冲区已满、已关闭或写入失败为false
+     */
+    public CompletableFuture<Boolean> submit(String vectorId, float[] vector, Map<String, Object> metadata) {
+        PendingRow row = new PendingRow(vectorId, vector, metadata);
+        if (closed) {
+            rejectedCounter.increment();
+            row.future.complete(false);
+            return row.future;
+        }
+        try {
+            if (!queue.offer(row, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("Milvus写入缓冲区已满，拒绝写入向量：{}", vectorId);
+                rejectedCounter.increment();
+                row.future.complete(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCounter.increment();
+            row.future.complete(false);
+        }
+        return row.future;
+    }
+
+    /**
+     * 停止接收新数据，等待队列中剩余数据写入完成
+     * @param timeoutMillis 最多等待的时间
+     */
+    public void close(long timeoutMillis) {
+        closed = true;
+        try {
+            flusher.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 超时仍未写入的数据直接失败，避免调用方永远等待
+        PendingRow row;
+        while ((row = queue.poll()) != null) {
+            failedCounter.increment();
+            row.future.complete(false);
+        }
+    }
+
+    /**
+     * 后台刷新循环
+     */
+    private void run() {
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingRow first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    // 已有积压时直接取走，不再等待
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || closed) {
+                        break;
+                    }
+                    PendingRow next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Milvus批量写入线程异常", e);
+            } finally {
+                for (PendingRow row : batch) {
+                    row.future.complete(false);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 按列组装并写入一批数据
+     * @param batch 待写入的行
+     */
+    private void flush(List<PendingRow> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int size = batch.size();
+        List<String> ids = new ArrayList<>(size);
+        List<List<Float>> vectors = new ArrayList<>(size);
+        List<Long> plantIds = new ArrayList<>(size);
+        List<String> plantNames = new ArrayList<>(size);
+        List<Float> thresholds = new ArrayList<>(size);
+        List<String> imageUrls = new ArrayList<>(size);
+        List<Float> accuracies = new ArrayList<>(size);
+        List<String> createTimes = new ArrayList<>(size);
+        List<String> updateTimes = new ArrayList<>(size);
+        for (PendingRow row : batch) {
+            Map<String, Object> metadata = row.metadata;
+            ids.add(row.vectorId);
+            List<Float> vector = new ArrayList<>(row.vector.length);
+            for (float value : row.vector) {
+                vector.add(value);
+            }
+            vectors.add(vector);
+            // 集合字段均不可为空，缺失的元数据使用默认值
+            plantIds.add(metadata.get(PLANT_ID_FIELD) != null
+                    ? Long.parseLong(metadata.get(PLANT_ID_FIELD).toString()) : 0L);
+            plantNames.add(stringValue(metadata, PLANT_NAME_FIELD));
+            thresholds.add(floatValue(metadata, SIMILARITY_THRESHOLD_FIELD));
+            imageUrls.add(stringValue(metadata, IMAGE_URL_FIELD));
+            accuracies.add(floatValue(metadata, RECOGNITION_ACCURACY_FIELD));
+            createTimes.add(stringValue(metadata, CREATE_TIME_FIELD));
+            updateTimes.add(stringValue(metadata, UPDATE_TIME_FIELD));
+        }
+
+        List<InsertParam.Field> fields = new ArrayList<>();
+        fields.add(new InsertParam.Field(ID_FIELD, ids));
+        fields.add(new InsertParam.Field(VECTOR_FIELD, vectors));
+        fields.add(new InsertParam.Field(PLANT_ID_FIELD, plantIds));
+        fields.add(new InsertParam.Field(PLANT_NAME_FIELD, plantNames));
+        fields.add(new InsertParam.Field(SIMILARITY_THRESHOLD_FIELD, thresholds));
+        fields.add(new InsertParam.Field(IMAGE_URL_FIELD, imageUrls));
+        fields.add(new InsertParam.Field(RECOGNITION_ACCURACY_FIELD, accuracies));
+        fields.add(new InsertParam.Field(CREATE_TIME_FIELD, createTimes));
+        fields.add(new InsertParam.Field(UPDATE_TIME_FIELD, updateTimes));
+
+        InsertParam insertParam = InsertParam.newBuilder()
+                .withCollectionName(collectionName)
+                .withFields(fields)
+                .build();
+
+        boolean success;
+        try {
+            R<MutationResult> response = milvusClient.insert(insertParam);
+            success = response.getStatus() == R.Status.Success.getCode();
+            if (!success) {
+                logger.error("批量插入向量数据失败，行数：{}，原因：{}", size, response.getMessage());
+            }
+        } catch (Exception e) {
+            logger.error("批量插入向量数据失败，行数：" + size, e);
+            success = false;
+        }
+        batchSummary.record(size);
+        if (!success) {
+            failedCounter.increment(size);
+        }
+        for (PendingRow row : batch) {
+            row.future.complete(success);
+        }
+    }
+
+    private static String stringValue(Map<String, Object> metadata, String field) {
+        Object value = metadata.get(field);
+        return value != null ? value.toString() : "";
+    }
+
+    private static Float floatValue(Map<String, Object> metadata, String field) {
+        Object value = metadata.get(field);
+        return value != null ? Float.parseFloat(value.toString()) : 0f;
+    }
+}
@@ -1,25 +1,46 @@
 package com.example.hello.service.impl;
 
 import com.example.hello.entity.Plant;
-import com.example.hello.entity.PlantVector;
+import com.example.hello.entity.RecognitionSource;
+import com.example.hello.service.ImageDigestCacheService;
+import com.example.hello.service.ImagePreprocessService;
+import com.example.hello.service.ImageStorageService;
 import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.PerceptualHashService;
 import com.example.hello.service.PlantRecognitionService;
 import com.example.hello.service.PlantService;
+import com.example.hello.service.RecognitionContext;
+import com.example.hello.service.VectorOutboxService;
+import com.example.hello.resilience.AdaptiveLimiter;
+import com.example.hello.resilience.UpstreamGuard;
+import com.example.hello.resilience.UpstreamUnavailableException;
+import com.example.hello.util.ImageJsonRequestCallback;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.util.Base64Utils;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * 基于Milvus向量数据库的植物识别服务实现类
@@ -41,10 +62,35 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
     
     // 植物向量服务已整合到 PlantService 中
     
+    // 注入图片摘要缓存服务，字节相同的图片直接返回已有结果
+    @Autowired
+    private ImageDigestCacheService imageDigestCacheService;
+
+    // 注入图片预处理服务，发送给外部接口前缩小图片
+    @Autowired
+    private ImagePreprocessService imagePreprocessService;
+
+    // 注入上传图片存储服务，新植物入库前计算图片URL
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    // 注入感知哈希服务，近似重复的图片无需调用向量接口
+    @Autowired
+    private PerceptualHashService perceptualHashService;
+
     // 注入Milvus向量服务
     @Autowired
     private MilvusVectorService milvusVectorService;
 
+    // 新植物与待写入的向量在同一事务中保存，向量由后台任务写入Milvus
+    @Autowired
+    private VectorOutboxService vectorOutboxService;
+
+    // 批量识别时并行处理图片的线程池
+    @Autowired
+    @Qualifier("recognitionExecutor")
+    private Executor recognitionExecutor;
+
     // 从配置文件注入LLM API地址
     @Value("${llm.api-url}")
     private String llmApiUrl;
@@ -53,8 +99,46 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
     @Value("${llm.api-key}")
     private String llmApiKey;
     
+    // 注入指标注册中心
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 大模型识别接口的熔断器和舱壁
+    @Autowired
+    @Qualifier("llmGuard")
+    private UpstreamGuard llmGuard;
+
+    // 大模型识别接口的自适应并发限制
+    @Autowired
+    @Qualifier("llmLimiter")
+    private AdaptiveLimiter llmLimiter;
+
+    // 图像向量接口的熔断器和舱壁
+    @Autowired
+    @Qualifier("embeddingGuard")
+    private UpstreamGuard embeddingGuard;
+
     // 相似度阈值，用于判断向量相似度是否足够高
     private static final float SIMILARITY_THRESHOLD = 0.8f;
+
+    // 正在进行中的识别请求，key为图片摘要，并发上传的相同图片等待同一个结果
+    private final ConcurrentHashMap<String, CompletableFuture<Plant>> inFlight = new ConcurrentHashMap<>();
+
+    // 合并到进行中识别请求的次数，每次合并节省一次向量接口、Milvus检索以及可能的大模型调用
+    private Counter coalescedCounter;
+
+    /**
+     * 注册请求合并指标
+     */
+    @PostConstruct
+    public void initMetrics() {
+        coalescedCounter = Counter.builder("plant.recognition.coalesced")
+                .description("合并到进行中识别请求的重复请求数")
+                .register(meterRegistry);
+        Gauge.builder("plant.recognition.inflight", inFlight, Map::size)
+                .description("正在进行中的识别请求数（按图片摘要去重）")
+                .register(meterRegistry);
+    }
     
     /**
      * 初始化方法，在服务启动时初始化Milvus集合
@@ -72,44 +156,353 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
     /**
      * 识别植物图片并返回植物信息
      * 优化后的流程：先通过Milvus向量相似度查找，若不存在则调用大模型识别
-     * @param file 上传的植物图片文件
+     * @param context 识别请求上下文
      * @return 识别出的植物信息，未识别则返回null
      */
     @Override
-    public Plant recognizePlant(MultipartFile file) {
+    public Plant recognizePlant(RecognitionContext context) {
+        // 0. 字节完全相同的图片直接返回缓存的识别结果，无需调用任何外部接口
+        String digest = null;
+        try {
+            digest = context.getDigest();
+        } catch (IOException e) {
+            logger.error("计算图片摘要失败", e);
+        }
+        Plant cachedPlant = imageDigestCacheService.get(digest);
+        if (cachedPlant != null) {
+            context.setSource(RecognitionSource.DIGEST);
+            return cachedPlant;
+        }
+        if (digest == null) {
+            Plant plant = doRecognizePlant(context);
+            remember(null, context, plant);
+            return plant;
+        }
+
+        // 1. 相同图片已有请求在识别时等待其结果，不再重复调用外部接口
+        CompletableFuture<Plant> flight = new CompletableFuture<>();
+        CompletableFuture<Plant> existing = inFlight.putIfAbsent(digest, flight);
+        if (existing != null) {
+            context.setSource(RecognitionSource.COALESCED);
+            return awaitInFlight(existing);
+        }
         try {
-            // 1. 首先尝试通过向量相似度查找已有的植物
-            Plant similarPlant = findSimilarPlantByVector(file);
-            if (similarPlant != null) {
-                // 如果找到相似植物，直接返回
-                return similarPlant;
+            Plant plant = doRecognizePlant(context);
+            // 先写入缓存再移除进行中的请求，之后到达的相同图片直接命中缓存
+            remember(digest, context, plant);
+            flight.complete(plant);
+            return plant;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(digest, flight);
+        }
+    }
+
+    /**
+     * 等待进行中的相同图片识别完成
+     * 调用方会修改并保存返回的植物信息，因此每个等待者各自持有一份副本
+     * @param flight 进行中的识别请求
+     * @return 识别出的植物信息副本
+     */
+    private Plant awaitInFlight(CompletableFuture<Plant> flight) {
+        coalescedCounter.increment();
+        Plant plant;
+        try {
+            plant = flight.join();
+        } catch (CompletionException e) {
+            // 与第一个请求以相同的异常失败，如上游不可用时同样返回503
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-            
-            // 2. 如果没有找到相似植物，则调用大模型进行识别
-            // 将图片文件转换为Base64编码字符串
-            byte[] imageBytes = file.getBytes();
-            String base64Image = Base64Utils.encodeToString(imageBytes);
+            throw e;
+        }
+        return plant != null ? plant.copy() : null;
+    }
+
+    /**
+     * 批量识别植物图片
+     * 流水线：并行计算摘要、感知哈希和图像向量 → 一次批量向量检索 → 只对未命中的图片并行调用大模型
+     * → 批量保存新植物并提交向量写入。总耗时接近最慢的单张图片，而不是逐张耗时之和
+     * @param contexts 识别请求上下文列表
+     * @return 与输入顺序一致的识别结果
+     */
+    @Override
+    public List<Plant> recognizePlants(List<RecognitionContext> contexts) {
+        int size = contexts.size();
+        Plant[] results = new Plant[size];
+        String[] digests = new String[size];
+
+        // 1. 并行预处理：摘要缓存、感知哈希预筛选，未命中的生成图像向量
+        List<CompletableFuture<Void>> prepared = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            prepared.add(CompletableFuture.runAsync(() -> {
+                RecognitionContext context = contexts.get(index);
+                try {
+                    digests[index] = context.getDigest();
+                } catch (IOException e) {
+                    logger.error("计算图片摘要失败", e);
+                }
+                Plant plant = imageDigestCacheService.get(digests[index]);
+                if (plant != null) {
+                    context.setSource(RecognitionSource.DIGEST);
+                }
+                CompletableFuture<Plant> flight = digests[index] != null ? inFlight.get(digests[index]) : null;
+                if (plant == null && flight != null) {
+                    // 相同图片正在单张识别接口中处理，等待其结果
+                    try {
+                        plant = awaitInFlight(flight);
+                        context.setSource(RecognitionSource.COALESCED);
+                    } catch (RuntimeException e) {
+                        logger.warn("等待相同图片的识别结果失败，改为单独识别：{}", e.getMessage());
+                    }
+                }
+                if (plant == null) {
+                    plant = findNearDuplicate(context);
+                }
+                if (plant == null) {
+                    generateImageEmbedding(context);
+                }
+                results[index] = plant;
+            }, recognitionExecutor));
+        }
+        CompletableFuture.allOf(prepared.toArray(new CompletableFuture[0])).join();
 
+        // 2. 一次批量向量检索
+        List<Integer> searchIndexes = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (results[i] == null && contexts.get(i).getEmbedding() != null) {
+                searchIndexes.add(i);
+                embeddings.add(contexts.get(i).getEmbedding());
+            }
+        }
+        if (!embeddings.isEmpty()) {
+            try {
+                List<List<MilvusVectorService.SearchResult>> searchResults =
+                        milvusVectorService.searchByVectors(embeddings, 1, SIMILARITY_THRESHOLD);
+                for (int j = 0; j < searchIndexes.size(); j++) {
+                    List<MilvusVectorService.SearchResult> hits = searchResults.get(j);
+                    if (hits != null && !hits.isEmpty()) {
+                        results[searchIndexes.get(j)] = toPlant(hits.get(0));
+                        contexts.get(searchIndexes.get(j)).setSource(RecognitionSource.VECTOR, hits.get(0).getSimilarity());
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("批量查找相似植物失败", e);
+            }
+        }
+
+        // 3. 未命中的图片并行调用大模型，同一批次中字节相同的图片只识别一次；
+        // 首张图片登记为进行中的识别，之后到达单张识别接口的相同图片等待批量识别的结果
+        Map<String, Integer> leaders = new HashMap<>();
+        int[] sameAs = new int[size];
+        Map<Integer, CompletableFuture<Plant>> recognitions = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<Plant>> flights = new HashMap<>();
+        Map<Integer, CompletableFuture<Plant>> coalesced = new HashMap<>();
+        try {
+            for (int i = 0; i < size; i++) {
+                sameAs[i] = i;
+                if (results[i] != null) {
+                    continue;
+                }
+                Integer leader = digests[i] != null ? leaders.putIfAbsent(digests[i], i) : null;
+                if (leader != null) {
+                    sameAs[i] = leader;
+                    continue;
+                }
+                if (digests[i] != null) {
+                    CompletableFuture<Plant> flight = new CompletableFuture<>();
+                    CompletableFuture<Plant> existing = inFlight.putIfAbsent(digests[i], flight);
+                    if (existing != null) {
+                        // 预处理之后相同图片进入了单张识别接口，等待其结果
+                        coalesced.put(i, existing);
+                        continue;
+                    }
+                    flights.put(i, flight);
+                }
+                RecognitionContext context = contexts.get(i);
+                recognitions.put(i, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return requestLlmRecognition(context);
+                    } catch (UpstreamUnavailableException e) {
+                        // 批量识别中单张图片快速失败，不影响其他图片的结果
+                        logger.warn("大模型接口不可用，跳过识别：{}", e.getMessage());
+                        return null;
+                    }
+                }, recognitionExecutor));
+            }
+
+            // 4. 在同一事务中批量保存新识别的植物和待写入的向量
+            List<Plant> recognized = new ArrayList<>();
+            List<float[]> vectors = new ArrayList<>();
+            for (Map.Entry<Integer, CompletableFuture<Plant>> entry : recognitions.entrySet()) {
+                Plant plant = entry.getValue().join();
+                if (plant != null) {
+                    attachUpload(plant, contexts.get(entry.getKey()));
+                    recognized.add(plant);
+                    vectors.add(contexts.get(entry.getKey()).getEmbedding());
+                    results[entry.getKey()] = plant;
+                    contexts.get(entry.getKey()).setSource(RecognitionSource.LLM);
+                } else {
+                    results[entry.getKey()] = failedPlant(contexts.get(entry.getKey()));
+                }
+            }
+            if (!recognized.isEmpty()) {
+                vectorOutboxService.savePlantsWithVectors(recognized, vectors);
+            }
+            // 先完成本批次登记的识别，再等待其他请求的识别，两个批次互相等待对方的图片时不会死锁；
+            // 进行中的识别在写入缓存后才移除，期间到达的相同图片直接取得已完成的结果
+            for (Map.Entry<Integer, CompletableFuture<Plant>> entry : flights.entrySet()) {
+                entry.getValue().complete(results[entry.getKey()]);
+            }
+            for (Map.Entry<Integer, CompletableFuture<Plant>> entry : coalesced.entrySet()) {
+                RecognitionContext context = contexts.get(entry.getKey());
+                Plant plant = null;
+                try {
+                    plant = awaitInFlight(entry.getValue());
+                } catch (RuntimeException e) {
+                    logger.warn("等待相同图片的识别结果失败：{}", e.getMessage());
+                }
+                if (plant != null) {
+                    context.setSource(RecognitionSource.COALESCED);
+                    results[entry.getKey()] = plant;
+                } else {
+                    results[entry.getKey()] = failedPlant(context);
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                if (sameAs[i] != i) {
+                    results[i] = results[sameAs[i]].copy();
+                    // 同一批次中的重复图片复用首张图片的识别结果，不会新增植物
+                    RecognitionSource leaderSource = contexts.get(sameAs[i]).getSource();
+                    contexts.get(i).setSource(leaderSource == RecognitionSource.FAILED
+                            ? RecognitionSource.FAILED : RecognitionSource.COALESCED);
+                }
+                remember(digests[i], contexts.get(i), results[i]);
+            }
+        } catch (RuntimeException e) {
+            for (CompletableFuture<Plant> flight : flights.values()) {
+                flight.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<Integer, CompletableFuture<Plant>> entry : flights.entrySet()) {
+                inFlight.remove(digests[entry.getKey()], entry.getValue());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 缓存已持久化的识别结果
+     * 感知哈希只登记由向量检索或大模型得出的结果；感知哈希命中、摘要命中和合并的结果本身来自已登记的图片，
+     * 再次登记会让相似图片链式地漂移到越来越远的植物上；
+     * 摘要命中和合并的结果已由第一次识别该摘要的请求写入摘要缓存，不再重复写入plant_image_digest
+     * @param digest 图片摘要
+     * @param context 识别请求上下文
+     * @param plant 识别出的植物信息
+     */
+    private void remember(String digest, RecognitionContext context, Plant plant) {
+        RecognitionSource source = context.getSource();
+        if (source != RecognitionSource.DIGEST && source != RecognitionSource.COALESCED) {
+            imageDigestCacheService.put(digest, plant);
+        }
+        Long perceptualHash = context.getPerceptualHash();
+        if (perceptualHash != null && (source == RecognitionSource.VECTOR || source == RecognitionSource.LLM)) {
+            perceptualHashService.register(perceptualHash, plant);
+        }
+    }
+
+    /**
+     * 执行向量检索和大模型识别
+     * @param context 识别请求上下文
+     * @return 识别出的植物信息
+     */
+    private Plant doRecognizePlant(RecognitionContext context) {
+        // 1. 感知哈希预筛选，重新裁剪或压缩的同一张图片无需调用向量接口和Milvus
+        Plant nearDuplicate = findNearDuplicate(context);
+        if (nearDuplicate != null) {
+            return nearDuplicate;
+        }
+
+        // 2. 尝试通过向量相似度查找已有的植物，生成的向量会保存在上下文中
+        Plant similarPlant = findSimilarPlantByVector(context);
+        if (similarPlant != null) {
+            // 如果找到相似植物，直接返回
+            return similarPlant;
+        }
+
+        // 3. 如果没有找到相似植物，则调用大模型进行识别
+        Plant plant = requestLlmRecognition(context);
+        if (plant == null) {
+            return failedPlant(context);
+        }
+        context.setSource(RecognitionSource.LLM);
+        attachUpload(plant, context);
+        // 植物信息和待写入的向量在同一事务中保存，提交后即可返回，向量由后台任务写入Milvus
+        vectorOutboxService.savePlantWithVector(plant, context.getEmbedding());
+        return plant;
+    }
+
+    /**
+     * 为新识别的植物设置本次上传图片的URL和当前用户openid
+     * 入库前设置，植物记录和发件箱记录在同一事务中提交，后台写入Milvus时读取的就是最终的图片URL
+     * 图片URL只取决于图片内容，图片本身由控制器并行保存
+     * @param plant 新识别的植物
+     * @param context 识别请求上下文
+     */
+    private void attachUpload(Plant plant, RecognitionContext context) {
+        try {
+            plant.setImageUrl(imageStorageService.urlOf(context));
+        } catch (IOException e) {
+            logger.warn("计算上传图片URL失败：{}", e.getMessage());
+        }
+        if (context.getOpenid() != null && plant.getOpenid() == null) {
+            plant.setOpenid(context.getOpenid());
+        }
+    }
+
+    /**
+     * 感知哈希预筛选
+     * @param context 识别请求上下文
+     * @return 近似重复图片对应的植物，没有则返回null
+     */
+    private Plant findNearDuplicate(RecognitionContext context) {
+        Long perceptualHash = context.getPerceptualHash();
+        Plant plant = perceptualHash != null ? perceptualHashService.findSimilarPlant(perceptualHash) : null;
+        if (plant != null) {
+            context.setSource(RecognitionSource.PHASH);
+        }
+        return plant;
+    }
+
+    /**
+     * 调用大模型识别植物
+     * @param context 识别请求上下文
+     * @return 识别出的植物信息（尚未保存），识别失败返回null
+     */
+    private Plant requestLlmRecognition(RecognitionContext context) {
+        MultipartFile file = context.getFile();
+        try {
             // 创建HTTP请求头
             HttpHeaders headers = new HttpHeaders();
-            // 设置请求内容类型为JSON
-            headers.setContentType(MediaType.APPLICATION_JSON);
             // 添加认证头信息
             headers.set("Authorization", "Bearer " + llmApiKey);
             
-            // 创建请求体参数
-            Map<String, Object> requestBody = new HashMap<>();
-            // 添加Base64编码的图片数据
-            requestBody.put("image", base64Image);
+            // 创建请求体参数，预处理后的图片从输入流直接Base64编码写入请求体
+            Map<String, Object> requestBody = new LinkedHashMap<>();
             // 设置返回结果数量
             requestBody.put("top_k", 1);
-
-            // 创建HTTP请求实体
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+            ImageJsonRequestCallback request = new ImageJsonRequestCallback(headers, "image", imagePreprocessService.openUpstreamImage(context), requestBody);
 
             try {
-                // 调用LLM API进行植物识别
-                ResponseEntity<Map> response = restTemplate.postForEntity(llmApiUrl, request, Map.class);
+                // 调用LLM API进行植物识别，并发超过自适应上限时短暂排队，排队超时则快速失败
+                ResponseEntity<Map> response = llmLimiter.execute(() -> llmGuard.execute(
+                        () -> restTemplate.execute(llmApiUrl, HttpMethod.POST, request, restTemplate.responseEntityExtractor(Map.class))));
 
                 // 检查响应状态是否为成功且响应体不为空
                 if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
@@ -148,12 +541,6 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
                         
                         // 设置图片URL（此处使用原始文件名作为示例）
                         plant.setImageUrl(file.getOriginalFilename());
-
-                        // 先保存植物信息到数据库，获取自动生成的ID
-                        plantService.savePlant(plant);
-                        
-                        // 使用保存后的植物ID存储向量信息
-                        storePlantVector(plant, file);
                         // 返回识别到的植物信息
                         return plant;
                     } else if (resultObj instanceof List && !((List<?>) resultObj).isEmpty()) {
@@ -183,32 +570,36 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
                             }
                             
                             plant.setImageUrl(file.getOriginalFilename());
-                            plantService.savePlant(plant);
-                            storePlantVector(plant, file);
                             return plant;
                         }
                     }
                 }
+            } catch (UpstreamUnavailableException e) {
+                // 熔断或并发已满时快速失败，由调用方返回503
+                throw e;
             } catch (Exception e) {
                 // 捕获API调用异常
                 logger.error("调用LLM API识别植物失败", e);
-                // 创建一个默认植物对象，表示识别失败
-                Plant plant = new Plant();
-                plant.setName("识别失败");
-                plant.setRecognitionAccuracy(0.0f);
-                plant.setImageUrl(file.getOriginalFilename());
-                return plant;
             }
         } catch (IOException e) {
             // 打印异常堆栈信息
             logger.error("处理植物图片失败", e);
         }
-        // 识别失败返回带有默认名称的植物对象
+        return null;
+    }
+
+    /**
+     * 创建表示识别失败的植物对象
+     * @param context 识别请求上下文
+     * @return 带有默认名称的植物对象
+     */
+    private static Plant failedPlant(RecognitionContext context) {
+        context.setSource(RecognitionSource.FAILED);
         Plant plant = new Plant();
         plant.setName("识别失败");
         plant.setRecognitionAccuracy(0.0f);
         try {
-            plant.setImageUrl(file.getOriginalFilename());
+            plant.setImageUrl(context.getOriginalFilename());
         } catch (Exception ex) {
             plant.setImageUrl("");
         }
@@ -216,83 +607,64 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
     }
 
     /**
-     * 将植物信息和图像向量存储到Milvus向量数据库
-     * @param plant 植物实体对象
-     * @param file 植物图片文件
-     * @return 存储成功返回true，失败返回false
+     * 将植物的图像向量登记到向量发件箱，由后台任务写入Milvus和plant_vectors
+     * 植物已单独保存时使用；新识别的植物通过VectorOutboxService与向量在同一事务中保存
+     * @param plant 已保存的植物实体对象
+     * @param context 识别请求上下文
+     * @return 已登记返回true，生成向量失败返回false
      */
     @Override
-    public boolean storePlantVector(Plant plant, MultipartFile file) {
+    public boolean storePlantVector(Plant plant, RecognitionContext context) {
         try {
-            // 生成向量ID
-            String vectorId = "plant_" + plant.getId();
-            
-            // 生成图像向量
-            float[] imageEmbedding = generateImageEmbedding(file);
-            
-            // 准备元数据，包含植物的所有信息
-            Map<String, Object> metadata = new HashMap<>();
-            metadata.put("plant_id", plant.getId());
-            metadata.put("plant_name", plant.getName());
-            metadata.put("similarity_threshold", SIMILARITY_THRESHOLD);
-            metadata.put("image_url", plant.getImageUrl());
-            metadata.put("recognition_accuracy", plant.getRecognitionAccuracy());
-            
-            // 添加创建时间和更新时间
-            String currentTime = java.time.LocalDateTime.now().toString();
-            metadata.put("create_time", currentTime);
-            metadata.put("update_time", currentTime);
-            
-            // 调用Milvus服务插入向量
-            boolean insertResult = milvusVectorService.insertVector(vectorId, imageEmbedding, metadata);
-            
-            // 如果存储成功，同时保存向量信息到数据库
-            if (insertResult) {
-                PlantVector plantVector = new PlantVector();
-                plantVector.setPlantId(plant.getId());
-                plantVector.setVectorId(vectorId);
-                plantVector.setSimilarityThreshold(SIMILARITY_THRESHOLD);
-                plantService.savePlantVector(plantVector);
-                return true;
+            // 复用检索阶段生成的图像向量
+            float[] imageEmbedding = generateImageEmbedding(context);
+            if (imageEmbedding == null) {
+                // 向量生成失败时不写入Milvus，避免零向量污染检索结果
+                logger.warn("图像向量不可用，跳过向量存储，植物ID：{}", plant.getId());
+                return false;
             }
-            
-            return false;
+            return vectorOutboxService.enqueue(plant.getId(), imageEmbedding);
         } catch (Exception e) {
-            // 打印异常堆栈信息
             logger.error("存储植物向量失败", e);
-            // 存储失败返回false
             return false;
         }
     }
 
     /**
      * 生成图像向量
-     * @param file 图像文件
+     * 同一请求上下文中只调用一次向量接口，结果缓存在上下文中
+     * @param context 识别请求上下文
      * @return 生成的图像向量
-     * @throws IOException 文件读取异常
      */
-    private float[] generateImageEmbedding(MultipartFile file) throws IOException {
-        try {
-            // 将图片文件转换为Base64编码字符串
-            byte[] imageBytes = file.getBytes();
-            String base64Image = Base64Utils.encodeToString(imageBytes);
+    private float[] generateImageEmbedding(RecognitionContext context) {
+        // 已调用过向量接口时直接复用结果，失败时也不重复调用
+        if (context.isEmbeddingComputed()) {
+            return context.getEmbedding();
+        }
+        float[] embedding = requestImageEmbedding(context);
+        context.setEmbedding(embedding);
+        return embedding;
+    }
 
+    /**
+     * 调用向量接口生成图像向量
+     * @param context 识别请求上下文
+     * @return 生成的图像向量，接口失败或不可用时返回null
+     */
+    private float[] requestImageEmbedding(RecognitionContext context) {
+        try {
             // 创建HTTP请求头
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
             headers.set("Authorization", "Bearer " + llmApiKey);
 
-            // 创建请求体参数
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("image", base64Image);
+            // 创建请求体参数，预处理后的图片从输入流直接Base64编码写入请求体
+            Map<String, Object> requestBody = new LinkedHashMap<>();
             requestBody.put("model", "image-embedding-model"); // 指定使用的模型
-
-            // 创建HTTP请求实体
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+            ImageJsonRequestCallback request = new ImageJsonRequestCallback(headers, "image", imagePreprocessService.openUpstreamImage(context), requestBody);
 
             // 调用图像向量生成API
             String embeddingApiUrl = llmApiUrl.replace("/plant-recognition", "/image-embedding");
-            ResponseEntity<Map> response = restTemplate.postForEntity(embeddingApiUrl, request, Map.class);
+            ResponseEntity<Map> response = embeddingGuard.execute(() -> restTemplate.execute(embeddingApiUrl, HttpMethod.POST, request, restTemplate.responseEntityExtractor(Map.class)));
 
             // 检查响应状态是否为成功且响应体不为空
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
@@ -316,25 +688,32 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
                 }
             }
             
-            // 如果API调用失败或返回格式不正确，返回默认向量
-            return new float[1536]; // 使用Milvus配置的维度
+            // API返回格式不正确时不使用零向量，跳过检索和写入
+            logger.error("图像向量接口返回格式不正确");
+            return null;
+        } catch (UpstreamUnavailableException e) {
+            logger.warn("图像向量接口不可用，跳过向量检索：{}", e.getMessage());
+            return null;
         } catch (Exception e) {
             logger.error("生成图像向量失败", e);
-            // 异常情况下返回默认向量
-            return new float[1536]; // 使用Milvus配置的维度
+            return null;
         }
     }
 
     /**
      * 通过图片向量查找相似植物
-     * @param file 植物图片文件
+     * @param context 识别请求上下文
      * @return 找到的相似植物，如果没有找到则返回null
      */
     @Override
-    public Plant findSimilarPlantByVector(MultipartFile file) {
+    public Plant findSimilarPlantByVector(RecognitionContext context) {
         try {
-            // 生成图片向量
-            float[] imageEmbedding = generateImageEmbedding(file);
+            // 生成图片向量，结果保存在上下文中供后续存储复用
+            float[] imageEmbedding = generateImageEmbedding(context);
+            if (imageEmbedding == null) {
+                // 向量生成失败时无法检索，直接交给大模型识别
+                return null;
+            }
             
             // 调用Milvus服务搜索相似向量
             List<MilvusVectorService.SearchResult> searchResults = 
@@ -342,36 +721,8 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
             
             // 检查是否有结果返回
             if (searchResults != null && !searchResults.isEmpty()) {
-                MilvusVectorService.SearchResult result = searchResults.get(0);
-                
-                // 直接从Milvus的搜索结果中构建植物对象
-                Plant plant = new Plant();
-                
-                // 设置植物ID
-                if (result.getPlantId() != null) {
-                    plant.setId(result.getPlantId());
-                }
-                
-                // 设置植物名称
-                if (result.getPlantName() != null) {
-                    plant.setName(result.getPlantName());
-                } else {
-                    plant.setName("未知植物");
-                }
-                
-                // 设置图片URL
-                if (result.getImageUrl() != null) {
-                    plant.setImageUrl(result.getImageUrl());
-                }
-                
-                // 设置识别准确度
-                if (result.getRecognitionAccuracy() != null) {
-                    plant.setRecognitionAccuracy(result.getRecognitionAccuracy());
-                } else {
-                    plant.setRecognitionAccuracy(0.0f);
-                }
-                
-                return plant;
+                context.setSource(RecognitionSource.VECTOR, searchResults.get(0).getSimilarity());
+                return toPlant(searchResults.get(0));
             }
             
             // 没有找到相似植物或相似度不够高
@@ -381,6 +732,41 @@ public class MilvusPlantRecognitionServiceImpl implements PlantRecognitionServic
             return null;
         }
     }
+
+    /**
+     * 直接从Milvus的搜索结果中构建植物对象
+     * @param result 向量搜索结果
+     * @return 植物信息
+     */
+    private static Plant toPlant(MilvusVectorService.SearchResult result) {
+        Plant plant = new Plant();
+        
+        // 设置植物ID
+        if (result.getPlantId() != null) {
+            plant.setId(result.getPlantId());
+        }
+        
+        // 设置植物名称
+        if (result.getPlantName() != null) {
+            plant.setName(result.getPlantName());
+        } else {
+            plant.setName("未知植物");
+        }
+        
+        // 设置图片URL
+        if (result.getImageUrl() != null) {
+            plant.setImageUrl(result.getImageUrl());
+        }
+        
+        // 设置识别准确度
+        if (result.getRecognitionAccuracy() != null) {
+            plant.setRecognitionAccuracy(result.getRecognitionAccuracy());
+        } else {
+            plant.setRecognitionAccuracy(0.0f);
+        }
+        
+        return plant;
+    }
     
     /**
      * 保存植物信息
@@ -2,6 +2,8 @@ package com.example.hello.service.impl;
 
 import com.example.hello.config.MilvusConfig;
 import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.VectorSnapshotService;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.milvus.client.MilvusClient;
 import io.milvus.common.clientenum.ConsistencyLevelEnum;
 import io.milvus.grpc.DataType;
@@ -9,7 +11,6 @@ import io.milvus.grpc.MutationResult;
 import io.milvus.grpc.SearchResults;
 import io.milvus.param.*;
 import io.milvus.param.dml.DeleteParam;
-import io.milvus.param.dml.InsertParam;
 import io.milvus.param.dml.SearchParam;
 import io.milvus.param.collection.CreateCollectionParam;
 import io.milvus.param.collection.FieldType;
@@ -17,22 +18,27 @@ import io.milvus.param.collection.HasCollectionParam;
 import io.milvus.param.collection.LoadCollectionParam;
 import io.milvus.param.index.CreateIndexParam;
 import io.milvus.response.SearchResultsWrapper;
-import io.milvus.response.FieldDataWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
  * Milvus向量数据库服务实现类
  * 提供向量存储、检索等操作
+ * 集合尚未加载完成或Milvus检索失败时，使用本地向量快照降级检索
  */
 @Service
+@ConditionalOnProperty(name = "vector.backend", havingValue = "milvus", matchIfMissing = true)
 public class MilvusVectorServiceImpl implements MilvusVectorService {
 
     private static final Logger logger = LoggerFactory.getLogger(MilvusVectorServiceImpl.class);
@@ -42,6 +48,18 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
     
     @Autowired
     private MilvusConfig milvusConfig;
+
+    @Autowired
+    private VectorSnapshotService vectorSnapshotService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 集合是否已加载完成
+    private volatile boolean collectionReady;
+
+    // 批量写入缓冲区
+    private MilvusInsertBuffer insertBuffer;
     
     // 向量字段名称
     private static final String VECTOR_FIELD = "vector";
@@ -61,6 +79,36 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
     private static final String CREATE_TIME_FIELD = "create_time";
     // 更新时间字段名称
     private static final String UPDATE_TIME_FIELD = "update_time";
+    // 搜索时返回的元数据字段
+    private static final List<String> OUTPUT_FIELDS = Arrays.asList(
+            PLANT_ID_FIELD,
+            PLANT_NAME_FIELD,
+            SIMILARITY_THRESHOLD_FIELD,
+            IMAGE_URL_FIELD,
+            RECOGNITION_ACCURACY_FIELD,
+            CREATE_TIME_FIELD,
+            UPDATE_TIME_FIELD
+    );
+    // 关闭时等待写入缓冲区清空的最长时间
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 30000;
+
+    /**
+     * 创建批量写入缓冲区
+     */
+    @PostConstruct
+    public void initInsertBuffer() {
+        insertBuffer = new MilvusInsertBuffer(milvusClient, milvusConfig.getCollectionName(),
+                milvusConfig.getInsertBufferCapacity(), milvusConfig.getInsertBatchSize(),
+                milvusConfig.getInsertFlushIntervalMs(), milvusConfig.getInsertOfferTimeoutMs(), meterRegistry);
+    }
+
+    /**
+     * 关闭时写入缓冲区中剩余的数据
+     */
+    @PreDestroy
+    public void flushInsertBuffer() {
+        insertBuffer.close(SHUTDOWN_FLUSH_TIMEOUT_MS);
+    }
 
     /**
      * 初始化向量集合
@@ -82,7 +130,8 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
                         .withCollectionName(milvusConfig.getCollectionName())
                         .build();
                 R<RpcStatus> loadResponse = milvusClient.loadCollection(loadCollectionParam);
-                return loadResponse.getStatus() == R.Status.Success.getCode();
+                collectionReady = loadResponse.getStatus() == R.Status.Success.getCode();
+                return collectionReady;
             } else {
                 // 集合不存在，创建新集合
                 // 定义字段
@@ -164,8 +213,8 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
                     // 创建索引
                     IndexType indexType = IndexType.HNSW;
                     Map<String, String> indexParams = new HashMap<>();
-                    indexParams.put("M", "16");
-                    indexParams.put("efConstruction", "64");
+                    indexParams.put("M", String.valueOf(milvusConfig.getIndexM()));
+                    indexParams.put("efConstruction", String.valueOf(milvusConfig.getIndexEfConstruction()));
                     
                     // 将Map转换为JSON字符串
                     String extraParamJson = String.format("{\"M\":\"%s\",\"efConstruction\":\"%s\"}", 
@@ -188,7 +237,8 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
                                 .withCollectionName(milvusConfig.getCollectionName())
                                 .build();
                         R<RpcStatus> loadResponse = milvusClient.loadCollection(loadCollectionParam);
-                        return loadResponse.getStatus() == R.Status.Success.getCode();
+                        collectionReady = loadResponse.getStatus() == R.Status.Success.getCode();
+                        return collectionReady;
                     }
                 }
                 return false;
@@ -201,6 +251,7 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
 
     /**
      * 插入向量数据
+     * 通过写入缓冲区与其他请求合并为一次批量写入，等待本行写入完成后返回
      * @param vectorId 向量ID
      * @param vector 向量数据
      * @param metadata 元数据，如植物ID、名称等
@@ -209,73 +260,35 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
     @Override
     public boolean insertVector(String vectorId, float[] vector, Map<String, Object> metadata) {
         try {
-            // 准备插入数据
-            List<InsertParam.Field> fields = new ArrayList<>();
-            
-            // ID字段
-            fields.add(new InsertParam.Field(ID_FIELD, Collections.singletonList(vectorId)));
-            
-            // 向量字段
-            fields.add(new InsertParam.Field(VECTOR_FIELD, Collections.singletonList(vector)));
-            
-            // 植物ID字段
-            if (metadata.containsKey(PLANT_ID_FIELD)) {
-                fields.add(new InsertParam.Field(PLANT_ID_FIELD, 
-                        Collections.singletonList(Long.parseLong(metadata.get(PLANT_ID_FIELD).toString()))));
-            }
-            
-            // 植物名称字段
-            if (metadata.containsKey(PLANT_NAME_FIELD)) {
-                fields.add(new InsertParam.Field(PLANT_NAME_FIELD, 
-                        Collections.singletonList(metadata.get(PLANT_NAME_FIELD).toString())));
-            }
-            
-            // 相似度阈值字段
-            if (metadata.containsKey(SIMILARITY_THRESHOLD_FIELD)) {
-                fields.add(new InsertParam.Field(SIMILARITY_THRESHOLD_FIELD, 
-                        Collections.singletonList(Float.parseFloat(metadata.get(SIMILARITY_THRESHOLD_FIELD).toString()))));
-            }
-            
-            // 图片URL字段
-            if (metadata.containsKey(IMAGE_URL_FIELD)) {
-                fields.add(new InsertParam.Field(IMAGE_URL_FIELD, 
-                        Collections.singletonList(metadata.get(IMAGE_URL_FIELD).toString())));
-            }
-            
-            // 识别准确度字段
-            if (metadata.containsKey(RECOGNITION_ACCURACY_FIELD)) {
-                fields.add(new InsertParam.Field(RECOGNITION_ACCURACY_FIELD, 
-                        Collections.singletonList(Float.parseFloat(metadata.get(RECOGNITION_ACCURACY_FIELD).toString()))));
-            }
-            
-            // 创建时间字段
-            if (metadata.containsKey(CREATE_TIME_FIELD)) {
-                fields.add(new InsertParam.Field(CREATE_TIME_FIELD, 
-                        Collections.singletonList(metadata.get(CREATE_TIME_FIELD).toString())));
-            }
-            
-            // 更新时间字段
-            if (metadata.containsKey(UPDATE_TIME_FIELD)) {
-                fields.add(new InsertParam.Field(UPDATE_TIME_FIELD, 
-                        Collections.singletonList(metadata.get(UPDATE_TIME_FIELD).toString())));
-            }
-            
-            // 构建插入参数
-            InsertParam insertParam = InsertParam.newBuilder()
-                    .withCollectionName(milvusConfig.getCollectionName())
-                    .withFields(fields)
-                    .build();
-            
-            // 执行插入操作
-            R<MutationResult> response = milvusClient.insert(insertParam);
-            
-            return response.getStatus() == R.Status.Success.getCode();
+            return insertVectorAsync(vectorId, vector, metadata).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             logger.error("插入向量数据失败", e);
             return false;
         }
     }
 
+    /**
+     * 异步插入向量数据
+     * 数据先进入写入缓冲区，按批量行数或刷新间隔合并写入Milvus
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     * @param metadata 元数据，如植物ID、名称等
+     * @return 插入结果，成功为true
+     */
+    @Override
+    public CompletableFuture<Boolean> insertVectorAsync(String vectorId, float[] vector, Map<String, Object> metadata) {
+        return insertBuffer.submit(vectorId, vector, metadata).thenApply(success -> {
+            if (success) {
+                // 记录到本地快照，定时追加
+                vectorSnapshotService.recordInsert(vectorId, vector, metadata);
+            }
+            return success;
+        });
+    }
+
     /**
      * 通过向量相似度搜索
      * @param vector 查询向量
@@ -285,23 +298,46 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
      */
     @Override
     public List<SearchResult> searchByVector(float[] vector, int topK, float similarityThreshold) {
+        return searchByVectors(Collections.singletonList(vector), topK, similarityThreshold).get(0);
+    }
+
+    /**
+     * 批量向量相似度搜索
+     * 所有查询向量在一次Milvus请求中检索（nq等于查询数），按查询下标解析各自的结果
+     * @param vectors 查询向量列表
+     * @param topK 每个查询返回的结果数量
+     * @param similarityThreshold 相似度阈值
+     * @return 与查询向量一一对应的搜索结果列表
+     */
+    @Override
+    public List<List<SearchResult>> searchByVectors(List<float[]> vectors, int topK, float similarityThreshold) {
+        if (vectors.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 集合尚未加载完成时直接使用本地快照，不等待Milvus
+        if (!collectionReady && vectorSnapshotService.isAvailable()) {
+            return searchSnapshot(vectors, topK, similarityThreshold);
+        }
         try {
+            // SDK要求浮点向量以List<Float>传入
+            List<List<Float>> queryVectors = new ArrayList<>(vectors.size());
+            for (float[] vector : vectors) {
+                List<Float> values = new ArrayList<>(vector.length);
+                for (float value : vector) {
+                    values.add(value);
+                }
+                queryVectors.add(values);
+            }
+
             // 构建搜索参数
             SearchParam searchParam = SearchParam.newBuilder()
                     .withCollectionName(milvusConfig.getCollectionName())
                     .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
                     .withMetricType(MetricType.IP)
-                    .withOutFields(Arrays.asList(
-                        PLANT_ID_FIELD, 
-                        PLANT_NAME_FIELD, 
-                        SIMILARITY_THRESHOLD_FIELD,
-                        IMAGE_URL_FIELD,
-                        RECOGNITION_ACCURACY_FIELD,
-                        CREATE_TIME_FIELD,
-                        UPDATE_TIME_FIELD
-                    ))
+                    .withOutFields(OUTPUT_FIELDS)
                     .withTopK(topK)
-                    .withVectors(Collections.singletonList(vector))
+                    .withParams(String.format("{\"ef\":%d}", Math.max(milvusConfig.getSearchEf(), topK)))
+                    .withVectors(queryVectors)
                     .withVectorFieldName(VECTOR_FIELD)
                     .build();
             
@@ -310,83 +346,68 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
             
             if (response.getStatus() == R.Status.Success.getCode()) {
                 SearchResultsWrapper wrapper = new SearchResultsWrapper(response.getData().getResults());
-                
-                // 处理搜索结果
-                List<SearchResult> results = new ArrayList<>();
-                List<SearchResultsWrapper.IDScore> scores = wrapper.getIDScore(0);
-                
-                for (int i = 0; i < scores.size(); i++) {
-                    SearchResultsWrapper.IDScore score = scores.get(i);
-                    // 获取ID，根据API可能是String类型
-                    String id = score.toString().split(":")[0].trim();
-                    // Milvus的IP距离需要转换为相似度
-                    float similarity = score.getScore();
-                    
-                    // 只返回相似度大于阈值的结果
-                    if (similarity >= similarityThreshold) {
-                        Map<String, Object> metadata = new HashMap<>();
-                        
-                        // 获取植物ID
-                        FieldDataWrapper plantIdWrapper = wrapper.getFieldWrapper(PLANT_ID_FIELD);
-                        if (plantIdWrapper != null) {
-                            List<Long> plantIds = (List<Long>) plantIdWrapper.getFieldData().get(0);
-                            metadata.put(PLANT_ID_FIELD, plantIds.get(i));
-                        }
-                        
-                        // 获取植物名称
-                        FieldDataWrapper plantNameWrapper = wrapper.getFieldWrapper(PLANT_NAME_FIELD);
-                        if (plantNameWrapper != null) {
-                            List<String> plantNames = (List<String>) plantNameWrapper.getFieldData().get(0);
-                            metadata.put(PLANT_NAME_FIELD, plantNames.get(i));
-                        }
-                        
-                        // 获取相似度阈值
-                        FieldDataWrapper thresholdWrapper = wrapper.getFieldWrapper(SIMILARITY_THRESHOLD_FIELD);
-                        if (thresholdWrapper != null) {
-                            List<Float> thresholds = (List<Float>) thresholdWrapper.getFieldData().get(0);
-                            metadata.put(SIMILARITY_THRESHOLD_FIELD, thresholds.get(i));
-                        }
-                        
-                        // 获取图片URL
-                        FieldDataWrapper imageUrlWrapper = wrapper.getFieldWrapper(IMAGE_URL_FIELD);
-                        if (imageUrlWrapper != null) {
-                            List<String> imageUrls = (List<String>) imageUrlWrapper.getFieldData().get(0);
-                            metadata.put(IMAGE_URL_FIELD, imageUrls.get(i));
-                        }
-                        
-                        // 获取识别准确度
-                        FieldDataWrapper accuracyWrapper = wrapper.getFieldWrapper(RECOGNITION_ACCURACY_FIELD);
-                        if (accuracyWrapper != null) {
-                            List<Float> accuracies = (List<Float>) accuracyWrapper.getFieldData().get(0);
-                            metadata.put(RECOGNITION_ACCURACY_FIELD, accuracies.get(i));
-                        }
-                        
-                        // 获取创建时间
-                        FieldDataWrapper createTimeWrapper = wrapper.getFieldWrapper(CREATE_TIME_FIELD);
-                        if (createTimeWrapper != null) {
-                            List<String> createTimes = (List<String>) createTimeWrapper.getFieldData().get(0);
-                            metadata.put(CREATE_TIME_FIELD, createTimes.get(i));
-                        }
-                        
-                        // 获取更新时间
-                        FieldDataWrapper updateTimeWrapper = wrapper.getFieldWrapper(UPDATE_TIME_FIELD);
-                        if (updateTimeWrapper != null) {
-                            List<String> updateTimes = (List<String>) updateTimeWrapper.getFieldData().get(0);
-                            metadata.put(UPDATE_TIME_FIELD, updateTimes.get(i));
-                        }
-                        
-                        results.add(new MilvusVectorService.SearchResult(id, similarity, metadata));
-                    }
+                List<List<SearchResult>> results = new ArrayList<>(vectors.size());
+                for (int query = 0; query < vectors.size(); query++) {
+                    results.add(decodeResults(wrapper, query, similarityThreshold));
                 }
-                
                 return results;
             }
             
-            return Collections.emptyList();
+            logger.error("Milvus向量搜索失败：{}", response.getMessage());
+            return searchSnapshot(vectors, topK, similarityThreshold);
         } catch (Exception e) {
             logger.error("向量搜索失败", e);
-            return Collections.emptyList();
+            // Milvus不可用时降级到本地快照
+            return searchSnapshot(vectors, topK, similarityThreshold);
+        }
+    }
+
+    /**
+     * 解析单个查询的搜索结果
+     * @param wrapper 搜索结果包装
+     * @param query 查询下标
+     * @param similarityThreshold 相似度阈值
+     * @return 相似度不低于阈值的结果
+     */
+    private List<SearchResult> decodeResults(SearchResultsWrapper wrapper, int query, float similarityThreshold) {
+        List<SearchResultsWrapper.IDScore> scores = wrapper.getIDScore(query);
+        List<SearchResult> results = new ArrayList<>();
+        if (scores.isEmpty()) {
+            return results;
+        }
+        // 每个输出字段按查询下标取出一次，再按结果下标读取
+        Map<String, List<?>> fieldData = new HashMap<>();
+        for (String field : OUTPUT_FIELDS) {
+            fieldData.put(field, wrapper.getFieldData(field, query));
+        }
+        for (int i = 0; i < scores.size(); i++) {
+            SearchResultsWrapper.IDScore score = scores.get(i);
+            // Milvus的IP距离即为相似度
+            float similarity = score.getScore();
+            // 只返回相似度大于阈值的结果
+            if (similarity >= similarityThreshold) {
+                Map<String, Object> metadata = new HashMap<>();
+                for (String field : OUTPUT_FIELDS) {
+                    List<?> values = fieldData.get(field);
+                    if (values != null && i < values.size()) {
+                        metadata.put(field, values.get(i));
+                    }
+                }
+                results.add(new MilvusVectorService.SearchResult(score.getStrID(), similarity, metadata));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 在本地快照中逐个检索
+     */
+    private List<List<SearchResult>> searchSnapshot(List<float[]> vectors, int topK, float similarityThreshold) {
+        List<List<SearchResult>> results = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            results.add(vectorSnapshotService.search(vector, topK, similarityThreshold));
         }
+        return results;
     }
     
 
@@ -411,7 +432,11 @@ public class MilvusVectorServiceImpl implements MilvusVectorService {
             // 执行删除操作
             R<MutationResult> response = milvusClient.delete(deleteParam);
             
-            return response.getStatus() == R.Status.Success.getCode();
+            if (response.getStatus() == R.Status.Success.getCode()) {
+                vectorSnapshotService.recordDelete(vectorId);
+                return true;
+            }
+            return false;
         } catch (Exception e) {
             logger.error("删除向量失败", e);
             return false;
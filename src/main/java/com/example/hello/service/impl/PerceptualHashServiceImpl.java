@@ -0,0 +1,108 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.entity.Plant;
+import com.example.hello.service.PerceptualHashService;
+import com.example.hello.util.BkTree;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 感知哈希近似重复图片服务实现类
+ * 使用BK树按汉明距离检索已识别图片的差值哈希
+ */
+@Service
+public class PerceptualHashServiceImpl implements PerceptualHashService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PerceptualHashServiceImpl.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 视为同一张图片的最大汉明距离
+    @Value("${plant.phash.max-distance:4}")
+    private int maxDistance;
+
+    // 索引最大条目数
+    @Value("${plant.phash.max-size:100000}")
+    private int maxSize;
+
+    // 以感知哈希为键、植物信息快照为值的BK树
+    private final BkTree<Plant> index = new BkTree<>();
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    private Counter skippedCounter;
+
+    // 索引已满的警告只记录一次，之后只增加计数
+    private final AtomicBoolean fullWarned = new AtomicBoolean();
+
+    /**
+     * 注册命中率指标
+     */
+    @PostConstruct
+    public void init() {
+        hitCounter = Counter.builder("plant.phash.requests")
+                .description("感知哈希预筛选请求次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        missCounter = Counter.builder("plant.phash.requests")
+                .description("感知哈希预筛选请求次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        skippedCounter = Counter.builder("plant.phash.index.skipped")
+                .description("感知哈希索引已满未登记的条目数")
+                .register(meterRegistry);
+        Gauge.builder("plant.phash.index.size", index, BkTree::size)
+                .description("感知哈希索引条目数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查找与给定感知哈希足够接近的已识别植物
+     * @param hash 图片感知哈希
+     * @return 植物信息副本，没有足够接近的条目返回null
+     */
+    @Override
+    public Plant findSimilarPlant(long hash) {
+        BkTree.Match<Plant> match = index.findNearest(hash, maxDistance);
+        if (match == null) {
+            missCounter.increment();
+            return null;
+        }
+        hitCounter.increment();
+        logger.debug("感知哈希命中，汉明距离：{}", match.getDistance());
+        return match.getValue().copy();
+    }
+
+    /**
+     * 登记图片感知哈希与识别结果的对应关系
+     * 索引达到上限后不再登记新条目，只在第一次记录警告日志
+     * @param hash 图片感知哈希
+     * @param plant 识别出的植物
+     */
+    @Override
+    public void register(long hash, Plant plant) {
+        if (plant == null || plant.getId() == null) {
+            return;
+        }
+        if (index.size() >= maxSize) {
+            skippedCounter.increment();
+            if (fullWarned.compareAndSet(false, true)) {
+                logger.warn("感知哈希索引已达到上限{}，不再登记新条目", maxSize);
+            }
+            return;
+        }
+        index.add(hash, plant.copy());
+    }
+}
@@ -2,19 +2,25 @@ package com.example.hello.service.impl;
 
 import com.example.hello.entity.Plant;
 import com.example.hello.entity.PlantVector;
+import com.example.hello.entity.RecognitionSource;
+import com.example.hello.service.ImageDigestCacheService;
+import com.example.hello.service.ImagePreprocessService;
+import com.example.hello.service.ImageStorageService;
 import com.example.hello.service.PlantRecognitionService;
 import com.example.hello.service.PlantService;
+import com.example.hello.service.RecognitionContext;
 import com.example.hello.service.PlantVectorService;
+import com.example.hello.util.ImageJsonRequestCallback;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.util.Base64Utils;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -39,6 +45,18 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
     @Autowired
     private PlantVectorService plantVectorService;
 
+    // 注入图片摘要缓存服务，字节相同的图片直接返回已有结果
+    @Autowired
+    private ImageDigestCacheService imageDigestCacheService;
+
+    // 注入图片预处理服务，发送给外部接口前缩小图片
+    @Autowired
+    private ImagePreprocessService imagePreprocessService;
+
+    // 注入上传图片存储服务，新植物入库前计算图片URL
+    @Autowired
+    private ImageStorageService imageStorageService;
+
     // 从配置文件注入LLM API地址
     @Value("${llm.api-url}")
     private String llmApiUrl;
@@ -57,44 +75,61 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
     /**
      * 识别植物图片并返回植物信息
      * 优化后的流程：先通过向量相似度查找，若不存在则调用大模型识别
-     * @param file 上传的植物图片文件
+     * @param context 识别请求上下文
      * @return 识别出的植物信息，未识别则返回null
      */
     @Override
-    public Plant recognizePlant(MultipartFile file) {
+    public Plant recognizePlant(RecognitionContext context) {
+        // 0. 字节完全相同的图片直接返回缓存的识别结果，无需调用任何外部接口
+        String digest = null;
         try {
-            // 1. 首先尝试通过向量相似度查找已有的植物
-            Plant similarPlant = findSimilarPlantByVector(file);
+            digest = context.getDigest();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Plant cachedPlant = imageDigestCacheService.get(digest);
+        if (cachedPlant != null) {
+            context.setSource(RecognitionSource.DIGEST);
+            return cachedPlant;
+        }
+
+        Plant plant = doRecognizePlant(context);
+        // 缓存已持久化的识别结果
+        imageDigestCacheService.put(digest, plant);
+        return plant;
+    }
+
+    /**
+     * 执行向量检索和大模型识别
+     * @param context 识别请求上下文
+     * @return 识别出的植物信息
+     */
+    private Plant doRecognizePlant(RecognitionContext context) {
+        MultipartFile file = context.getFile();
+        try {
+            // 1. 首先尝试通过向量相似度查找已有的植物，生成的向量会保存在上下文中
+            Plant similarPlant = findSimilarPlantByVector(context);
             if (similarPlant != null) {
                 // 如果找到相似植物，直接返回
+                context.setSource(RecognitionSource.VECTOR);
                 return similarPlant;
             }
             
             // 2. 如果没有找到相似植物，则调用大模型进行识别
-            // 将图片文件转换为Base64编码字符串
-            byte[] imageBytes = file.getBytes();
-            String base64Image = Base64Utils.encodeToString(imageBytes);
-
             // 创建HTTP请求头
             HttpHeaders headers = new HttpHeaders();
-            // 设置请求内容类型为JSON
-            headers.setContentType(MediaType.APPLICATION_JSON);
             // 添加认证头信息
             headers.set("Authorization", "Bearer " + llmApiKey);
 
-            // 创建请求体参数
-            Map<String, Object> requestBody = new HashMap<>();
-            // 添加Base64编码的图片数据
-            requestBody.put("image", base64Image);
+            // 创建请求体参数，预处理后的图片从输入流直接Base64编码写入请求体
+            Map<String, Object> requestBody = new LinkedHashMap<>();
             // 设置返回结果数量
             requestBody.put("top_k", 1);
-
-            // 创建HTTP请求实体
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+            ImageJsonRequestCallback request = new ImageJsonRequestCallback(headers, "image", imagePreprocessService.openUpstreamImage(context), requestBody);
 
             try {
                 // 调用LLM API进行植物识别
-                ResponseEntity<Map> response = restTemplate.postForEntity(llmApiUrl, request, Map.class);
+                ResponseEntity<Map> response = restTemplate.execute(llmApiUrl, HttpMethod.POST, request, restTemplate.responseEntityExtractor(Map.class));
 
                 // 检查响应状态是否为成功且响应体不为空
                 if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
@@ -131,14 +166,15 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
                             plant.setRecognitionAccuracy(0.0f);
                         }
                         
-                        // 设置图片URL（此处使用原始文件名作为示例）
-                        plant.setImageUrl(file.getOriginalFilename());
+                        // 设置本次上传图片的URL和当前用户openid
+                        attachUpload(plant, context);
 
                         // 先保存植物信息到数据库，获取自动生成的ID
                         plantService.savePlant(plant);
+                        context.setSource(RecognitionSource.LLM);
                         
                         // 使用保存后的植物ID存储向量信息
-                        storePlantVector(plant, file);
+                        storePlantVector(plant, context);
                         // 返回识别到的植物信息
                         return plant;
                     } else if (resultObj instanceof List && !((List<?>) resultObj).isEmpty()) {
@@ -167,9 +203,10 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
                                 plant.setRecognitionAccuracy(0.0f);
                             }
                             
-                            plant.setImageUrl(file.getOriginalFilename());
+                            attachUpload(plant, context);
                             plantService.savePlant(plant);
-                            storePlantVector(plant, file);
+                            context.setSource(RecognitionSource.LLM);
+                            storePlantVector(plant, context);
                             return plant;
                         }
                     }
@@ -178,6 +215,7 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
                 // 捕获API调用异常
                 e.printStackTrace();
                 // 创建一个默认植物对象，表示识别失败
+                context.setSource(RecognitionSource.FAILED);
                 Plant plant = new Plant();
                 plant.setName("识别失败");
                 plant.setRecognitionAccuracy(0.0f);
@@ -189,6 +227,7 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
             e.printStackTrace();
         }
         // 识别失败返回带有默认名称的植物对象
+        context.setSource(RecognitionSource.FAILED);
         Plant plant = new Plant();
         plant.setName("识别失败");
         plant.setRecognitionAccuracy(0.0f);
@@ -200,14 +239,30 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
         return plant;
     }
 
+    /**
+     * 为新识别的植物设置本次上传图片的URL和当前用户openid，入库前设置，不需要在保存后再次更新
+     * @param plant 新识别的植物
+     * @param context 识别请求上下文
+     */
+    private void attachUpload(Plant plant, RecognitionContext context) {
+        try {
+            plant.setImageUrl(imageStorageService.urlOf(context));
+        } catch (IOException e) {
+            plant.setImageUrl(context.getOriginalFilename());
+        }
+        if (context.getOpenid() != null && plant.getOpenid() == null) {
+            plant.setOpenid(context.getOpenid());
+        }
+    }
+
     /**
      * 将植物信息和图像向量存储到Chroma向量数据库
      * @param plant 植物实体对象
-     * @param file 植物图片文件
+     * @param context 识别请求上下文
      * @return 存储成功返回true，失败返回false
      */
     @Override
-    public boolean storePlantVector(Plant plant, MultipartFile file) {
+    public boolean storePlantVector(Plant plant, RecognitionContext context) {
         try {
             // 创建HTTP请求头
             HttpHeaders headers = new HttpHeaders();
@@ -219,8 +274,8 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
             // 使用植物ID作为向量唯一标识
             String vectorId = "plant_" + plant.getId();
             requestBody.put("ids", new String[]{vectorId});
-            // 生成并添加图像向量
-            float[] imageEmbedding = generateImageEmbedding(file);
+            // 复用检索阶段生成的图像向量
+            float[] imageEmbedding = generateImageEmbedding(context);
             requestBody.put("embeddings", new float[][]{imageEmbedding});
             // 添加植物元数据
             requestBody.put("metadatas", new Map[]{Map.of(
@@ -261,32 +316,38 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
 
     /**
      * 生成图像向量
-     * @param file 图像文件
+     * 同一请求上下文中只调用一次向量接口，结果缓存在上下文中
+     * @param context 识别请求上下文
      * @return 生成的图像向量
-     * @throws IOException 文件读取异常
      */
-    private float[] generateImageEmbedding(MultipartFile file) throws IOException {
-        try {
-            // 将图片文件转换为Base64编码字符串
-            byte[] imageBytes = file.getBytes();
-            String base64Image = Base64Utils.encodeToString(imageBytes);
+    private float[] generateImageEmbedding(RecognitionContext context) {
+        if (context.getEmbedding() != null) {
+            return context.getEmbedding();
+        }
+        float[] embedding = requestImageEmbedding(context);
+        context.setEmbedding(embedding);
+        return embedding;
+    }
 
+    /**
+     * 调用向量接口生成图像向量
+     * @param context 识别请求上下文
+     * @return 生成的图像向量
+     */
+    private float[] requestImageEmbedding(RecognitionContext context) {
+        try {
             // 创建HTTP请求头
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
             headers.set("Authorization", "Bearer " + llmApiKey);
 
-            // 创建请求体参数
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("image", base64Image);
+            // 创建请求体参数，预处理后的图片从输入流直接Base64编码写入请求体
+            Map<String, Object> requestBody = new LinkedHashMap<>();
             requestBody.put("model", "image-embedding-model"); // 指定使用的模型
-
-            // 创建HTTP请求实体
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+            ImageJsonRequestCallback request = new ImageJsonRequestCallback(headers, "image", imagePreprocessService.openUpstreamImage(context), requestBody);
 
             // 调用图像向量生成API
             String embeddingApiUrl = llmApiUrl.replace("/plant-recognition", "/image-embedding");
-            ResponseEntity<Map> response = restTemplate.postForEntity(embeddingApiUrl, request, Map.class);
+            ResponseEntity<Map> response = restTemplate.execute(embeddingApiUrl, HttpMethod.POST, request, restTemplate.responseEntityExtractor(Map.class));
 
             // 检查响应状态是否为成功且响应体不为空
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
@@ -320,14 +381,14 @@ public class PlantRecognitionServiceImpl implements PlantRecognitionService {
     }
     /**
      * 通过图片向量查找相似植物
-     * @param file 植物图片文件
+     * @param context 识别请求上下文
      * @return 找到的相似植物，如果没有找到则返回null
      */
     @Override
-    public Plant findSimilarPlantByVector(MultipartFile file) {
+    public Plant findSimilarPlantByVector(RecognitionContext context) {
         try {
-            // 生成图片向量
-            float[] imageEmbedding = generateImageEmbedding(file);
+            // 生成图片向量，结果保存在上下文中供后续存储复用
+            float[] imageEmbedding = generateImageEmbedding(context);
             
             // 创建HTTP请求头
             HttpHeaders headers = new HttpHeaders();
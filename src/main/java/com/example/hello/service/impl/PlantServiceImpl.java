@@ -5,25 +5,113 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.example.hello.entity.Plant;
 import com.example.hello.mapper.PlantMapper;
 import com.example.hello.service.PlantService;
+import com.example.hello.service.SharedPlantCache;
+import com.example.hello.util.TinyLfuCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 植物服务实现类
  * 提供植物信息的CRUD操作实现
+ * 按ID查询时依次查询进程内缓存（TinyLFU准入）、可选的共享缓存和MySQL，保存植物时同时删除两级缓存中的旧数据
  */
 @Service
 public class PlantServiceImpl extends ServiceImpl<PlantMapper, Plant> implements PlantService {
+
+    // 进程内缓存最大条目数
+    @Value("${plant.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    // 可选的共享缓存，未配置时只使用进程内缓存
+    @Autowired
+    private ObjectProvider<SharedPlantCache> sharedPlantCacheProvider;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TinyLfuCache<Long, Plant> cache;
+
+    private SharedPlantCache sharedCache;
+
+    /**
+     * 缓存失效次数，加载期间发生失效时不回填缓存，避免把旧数据写回
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Counter l1HitCounter;
+
+    private Counter l2HitCounter;
+
+    private Counter missCounter;
+
+    private Timer loadTimer;
+
+    /**
+     * 初始化缓存并注册命中率和加载耗时指标
+     */
+    @PostConstruct
+    public void initCache() {
+        cache = new TinyLfuCache<>(cacheMaxSize);
+        sharedCache = sharedPlantCacheProvider.getIfAvailable();
+        l1HitCounter = cacheCounter("l1_hit");
+        l2HitCounter = cacheCounter("l2_hit");
+        missCounter = cacheCounter("miss");
+        loadTimer = Timer.builder("plant.cache.load")
+                .description("缓存未命中时从MySQL加载植物信息的耗时")
+                .register(meterRegistry);
+        Gauge.builder("plant.cache.size", cache, TinyLfuCache::size)
+                .description("进程内植物缓存条目数")
+                .register(meterRegistry);
+        Gauge.builder("plant.cache.rejections", cache, TinyLfuCache::getRejections)
+                .description("未通过TinyLFU准入的次数")
+                .register(meterRegistry);
+    }
+
     /**
      * 根据ID获取植物信息
      * @param id 植物ID
-     * @return 植物信息
+     * @return 植物信息副本，调用方可以修改
      */
     @Override
     public Plant getPlantById(Long id) {
-        return baseMapper.selectById(id);
+        if (id == null) {
+            return null;
+        }
+        Plant plant = cache.get(id);
+        if (plant != null) {
+            l1HitCounter.increment();
+            return plant.copy();
+        }
+        long generation = invalidations.get();
+        if (sharedCache != null) {
+            plant = sharedCache.get(id);
+            if (plant != null) {
+                l2HitCounter.increment();
+                fill(id, plant, generation, false);
+                return plant.copy();
+            }
+        }
+        missCounter.increment();
+        long start = System.nanoTime();
+        plant = baseMapper.selectById(id);
+        loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (plant == null) {
+            return null;
+        }
+        fill(id, plant, generation, true);
+        return plant.copy();
     }
 
     /**
@@ -39,7 +127,31 @@ public class PlantServiceImpl extends ServiceImpl<PlantMapper, Plant> implements
             plant.setCreateTime(now);
         }
         plant.setUpdateTime(now);
-        return saveOrUpdate(plant);
+        boolean saved = saveOrUpdate(plant);
+        invalidate(plant.getId());
+        return saved;
+    }
+
+    /**
+     * 批量保存植物信息
+     * @param plants 植物实体列表
+     * @return 是否保存成功
+     */
+    @Override
+    public boolean savePlants(List<Plant> plants) {
+        // 设置创建和更新时间
+        LocalDateTime now = LocalDateTime.now();
+        for (Plant plant : plants) {
+            if (plant.getCreateTime() == null) {
+                plant.setCreateTime(now);
+            }
+            plant.setUpdateTime(now);
+        }
+        boolean saved = saveOrUpdateBatch(plants);
+        for (Plant plant : plants) {
+            invalidate(plant.getId());
+        }
+        return saved;
     }
     
     /**
@@ -57,4 +169,43 @@ public class PlantServiceImpl extends ServiceImpl<PlantMapper, Plant> implements
         // 执行查询并返回结果
         return baseMapper.selectList(queryWrapper);
     }
-}
\ No newline at end of file
+
+    /**
+     * 删除两级缓存中的植物信息
+     * @param id 植物ID
+     */
+    private void invalidate(Long id) {
+        if (id == null) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        cache.invalidate(id);
+        if (sharedCache != null) {
+            sharedCache.evict(id);
+        }
+    }
+
+    /**
+     * 回填缓存，加载期间有植物被保存时放弃回填
+     * @param id 植物ID
+     * @param plant 加载到的植物信息
+     * @param generation 加载开始时的失效次数
+     * @param fillShared 是否同时回填共享缓存
+     */
+    private void fill(Long id, Plant plant, long generation, boolean fillShared) {
+        if (invalidations.get() != generation) {
+            return;
+        }
+        cache.put(id, plant.copy());
+        if (fillShared && sharedCache != null) {
+            sharedCache.put(plant.copy());
+        }
+    }
+
+    private Counter cacheCounter(String result) {
+        return Counter.builder("plant.cache.requests")
+                .description("按ID查询植物的缓存请求次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
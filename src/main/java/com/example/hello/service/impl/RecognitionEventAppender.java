@@ -0,0 +1,206 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.entity.RecognitionEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 识别事件批量写入器
+ * 调用方提交事件后立即返回，后台线程累积多条事件，达到批量条数或等待超过刷新间隔时
+ * 用一次JDBC批量插入写入，识别请求不等待数据库
+ * 队列有界：队列满时直接丢弃事件，不阻塞识别请求；写入失败的批次记录日志后丢弃，不重试
+ * 关闭时停止接收新事件，并把队列中剩余的事件全部写入
+ * 入队后最终没有写入的事件（写入失败或关闭超时）交给失败回调，调用方据此撤回已对外展示的事件
+ */
+public class RecognitionEventAppender {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecognitionEventAppender.class);
+
+    private static final String INSERT_SQL = "INSERT INTO recognition_event "
+            + "(id, plant_id, plant_name, openid, image_url, similarity, source, latency_ms, create_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 队列为空时检查关闭标志的间隔
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final BlockingQueue<RecognitionEvent> queue;
+
+    private final Thread flusher;
+
+    private final Counter droppedCounter;
+
+    private final Counter failedCounter;
+
+    private final DistributionSummary batchSummary;
+
+    private final Consumer<List<RecognitionEvent>> failureHandler;
+
+    private volatile boolean closed;
+
+    /**
+     * 创建写入器并启动后台刷新线程
+     * @param jdbcTemplate JDBC模板
+     * @param capacity 队列容量
+     * @param batchSize 单次写入的最大条数
+     * @param flushIntervalMillis 第一条事件入队后最多等待的时间
+     * @param meterRegistry 指标注册表
+     * @param failureHandler 未写入事件的回调，在刷新线程或关闭线程中调用
+     */
+    public RecognitionEventAppender(JdbcTemplate jdbcTemplate, int capacity, int batchSize, long flushIntervalMillis,
+                                    MeterRegistry meterRegistry, Consumer<List<RecognitionEvent>> failureHandler) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.failureHandler = failureHandler;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.droppedCounter = Counter.builder("plant.event.dropped")
+                .description("因队列已满或已关闭而丢弃的识别事件数")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("plant.event.failed")
+                .description("批量写入失败的识别事件数")
+                .register(meterRegistry);
+        this.batchSummary = DistributionSummary.builder("plant.event.batch.size")
+                .description("每次批量写入的识别事件数")
+                .register(meterRegistry);
+        Gauge.builder("plant.event.queue.size", queue, Collection::size)
+                .description("等待写入的识别事件数")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::run, "recognition-event-appender");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 提交一条识别事件
+     * @param event 识别事件
+     * @return 已进入队列返回true，队列已满或已关闭返回false
+     */
+    public boolean submit(RecognitionEvent event) {
+        if (closed || !queue.offer(event)) {
+            droppedCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 停止接收新事件，等待队列中剩余事件写入完成
+     * @param timeoutMillis 最多等待的时间
+     */
+    public void close(long timeoutMillis) {
+        closed = true;
+        try {
+            flusher.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<RecognitionEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            logger.warn("关闭时仍有{}条识别事件未写入", remaining.size());
+            droppedCounter.increment(remaining.size());
+            notifyFailure(remaining);
+        }
+    }
+
+    /**
+     * 后台刷新循环
+     */
+    private void run() {
+        List<RecognitionEvent> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                RecognitionEvent first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    // 已有积压时直接取走，不再等待
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || closed) {
+                        break;
+                    }
+                    RecognitionEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("识别事件批量写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量写入一批事件
+     * @param batch 待写入的事件
+     */
+    private void flush(List<RecognitionEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setLong(1, event.getId());
+                ps.setObject(2, event.getPlantId(), Types.BIGINT);
+                ps.setString(3, event.getPlantName());
+                ps.setString(4, event.getOpenid());
+                ps.setString(5, event.getImageUrl());
+                ps.setObject(6, event.getSimilarity(), Types.FLOAT);
+                ps.setString(7, event.getSource());
+                ps.setObject(8, event.getLatencyMs(), Types.INTEGER);
+                ps.setTimestamp(9, Timestamp.valueOf(event.getCreateTime()));
+            });
+        } catch (Exception e) {
+            logger.error("批量写入识别事件失败，条数：" + batch.size(), e);
+            failedCounter.increment(batch.size());
+            notifyFailure(new ArrayList<>(batch));
+        }
+        batchSummary.record(batch.size());
+    }
+
+    /**
+     * 通知调用方事件未写入，回调异常只记录日志
+     * @param events 未写入的事件
+     */
+    private void notifyFailure(List<RecognitionEvent> events) {
+        try {
+            failureHandler.accept(events);
+        } catch (Exception e) {
+            logger.error("处理未写入的识别事件失败", e);
+        }
+    }
+}
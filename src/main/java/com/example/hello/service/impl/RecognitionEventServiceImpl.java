@@ -0,0 +1,217 @@
+package com.example.hello.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.hello.entity.RecognitionEvent;
+import com.example.hello.mapper.RecognitionEventMapper;
+import com.example.hello.service.RecognitionEventService;
+import com.example.hello.util.RecentRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 识别事件服务实现类
+ * 事件通过RecognitionEventAppender异步批量写入recognition_event表
+ * 最近的事件同时保存在内存环形缓冲区中，启动时从MySQL预热，最近历史记录查询不访问数据库
+ * 事件入队时即进入内存缓冲区，批量写入失败或关闭时未写入的事件再从缓冲区移除，历史记录中不保留数据库里没有的记录
+ */
+@Service
+public class RecognitionEventServiceImpl extends ServiceImpl<RecognitionEventMapper, RecognitionEvent>
+        implements RecognitionEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecognitionEventServiceImpl.class);
+
+    // 关闭时等待写入队列清空的最长时间
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 10000;
+
+    // 与游标分页相同的排序：按识别时间和ID从新到旧
+    private static final Comparator<RecognitionEvent> NEWEST_FIRST = Comparator
+            .comparing(RecognitionEvent::getCreateTime)
+            .thenComparing(RecognitionEvent::getId)
+            .reversed();
+
+    // 内存中保留的最近识别记录数，查询数量超过该值时查询MySQL
+    @Value("${plant.history.capacity:200}")
+    private int historyCapacity;
+
+    // 写入队列容量，队列满时丢弃新事件
+    @Value("${plant.event.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // 单次批量写入的最大条数
+    @Value("${plant.event.batch-size:200}")
+    private int batchSize;
+
+    // 第一条事件入队后最多等待多久写入（毫秒）
+    @Value("${plant.event.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private RecognitionEventAppender appender;
+
+    private RecentRingBuffer<RecognitionEvent> recentEvents;
+
+    /**
+     * 最近识别记录是否已从MySQL预热，预热失败时历史记录查询MySQL
+     */
+    private volatile boolean historyWarmed;
+
+    private Counter historyMemoryCounter;
+
+    private Counter historyDatabaseCounter;
+
+    /**
+     * 创建批量写入器，并从MySQL加载最近的识别事件预热历史记录缓冲区
+     * 在Bean初始化阶段执行，此时还没有请求追加事件
+     */
+    @PostConstruct
+    public void init() {
+        recentEvents = new RecentRingBuffer<>(historyCapacity);
+        appender = new RecognitionEventAppender(jdbcTemplate, queueCapacity, batchSize, flushIntervalMs, meterRegistry,
+                this::discardRecent);
+        historyMemoryCounter = historyCounter("memory");
+        historyDatabaseCounter = historyCounter("database");
+        Gauge.builder("plant.history.buffer.size", recentEvents, RecentRingBuffer::size)
+                .description("内存中的最近识别记录数")
+                .register(meterRegistry);
+        try {
+            List<RecognitionEvent> events = getEventsBefore(null, null, null, historyCapacity);
+            // 查询结果从新到旧，按从旧到新的顺序追加
+            for (int i = events.size() - 1; i >= 0; i--) {
+                recentEvents.append(events.get(i));
+            }
+            historyWarmed = true;
+            logger.info("最近识别记录预热完成，共{}条", events.size());
+        } catch (Exception e) {
+            logger.warn("最近识别记录预热失败，历史记录将查询数据库: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭时写入队列中剩余的事件
+     */
+    @PreDestroy
+    public void flush() {
+        appender.close(SHUTDOWN_FLUSH_TIMEOUT_MS);
+    }
+
+    /**
+     * 追加识别事件，不等待写入数据库
+     * @param event 识别事件，调用后不应再修改
+     * @return 已进入写入队列返回true，队列已满返回false
+     */
+    @Override
+    public boolean append(RecognitionEvent event) {
+        if (event.getId() == null) {
+            event.setId(IdWorker.getId());
+        }
+        if (event.getCreateTime() == null) {
+            // 与datetime(3)列精度一致，内存中的记录和分页游标才能与数据库中的值对应
+            event.setCreateTime(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+        }
+        // 先进入内存缓冲区再入队，批量写入失败时的移除一定发生在追加之后
+        recentEvents.append(event);
+        if (!appender.submit(event)) {
+            // 丢弃的事件不会写入数据库，从内存缓冲区移除，避免历史记录中出现之后查询不到的记录
+            discardRecent(List.of(event));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 获取最近的识别事件
+     * 数量不超过内存缓冲区容量时直接从内存返回，否则查询MySQL
+     * 内存缓冲区按追加顺序保存，并发追加时顺序可能与识别时间不一致，返回前按(create_time, id)从新到旧排序，
+     * 与游标分页查询MySQL的顺序一致，用最后一条记录生成的游标翻页时不会重复或遗漏
+     * @param limit 限制返回记录数量
+     * @return 识别事件列表，按识别时间从新到旧排列，事件与内存缓冲区共享，调用方不应修改
+     */
+    @Override
+    public List<RecognitionEvent> getRecentEvents(int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (historyWarmed && limit <= recentEvents.getCapacity()) {
+            historyMemoryCounter.increment();
+            List<RecognitionEvent> events = new ArrayList<>(recentEvents.recent(recentEvents.getCapacity()));
+            events.sort(NEWEST_FIRST);
+            return events.size() > limit ? new ArrayList<>(events.subList(0, limit)) : events;
+        }
+        historyDatabaseCounter.increment();
+        return getEventsBefore(null, null, null, limit);
+    }
+
+    /**
+     * 按(create_time, id)游标分页获取识别事件
+     * 使用(create_time, id)复合索引定位到游标之后的记录，不使用OFFSET，翻到多深的页耗时都相同
+     * @param openid 微信用户openid，为null时不按用户过滤
+     * @param createTime 上一页最后一条记录的识别时间，为null时获取第一页
+     * @param id 上一页最后一条记录的ID
+     * @param limit 每页记录数量
+     * @return 识别事件列表，按识别时间和ID从新到旧排列
+     */
+    @Override
+    public List<RecognitionEvent> getEventsBefore(String openid, LocalDateTime createTime, Long id, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        LambdaQueryWrapper<RecognitionEvent> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(openid != null, RecognitionEvent::getOpenid, openid);
+        if (createTime != null && id != null) {
+            queryWrapper.and(w -> w.lt(RecognitionEvent::getCreateTime, createTime)
+                    .or(o -> o.eq(RecognitionEvent::getCreateTime, createTime).lt(RecognitionEvent::getId, id)));
+        }
+        queryWrapper.orderByDesc(RecognitionEvent::getCreateTime);
+        queryWrapper.orderByDesc(RecognitionEvent::getId);
+        queryWrapper.last("LIMIT " + limit);
+        return baseMapper.selectList(queryWrapper);
+    }
+
+    /**
+     * 从内存缓冲区移除未写入数据库的事件
+     * 写入失败发生在入队之后，事件可能已被历史记录查询返回过，移除后不再出现在之后的查询中
+     * @param events 未写入的事件
+     */
+    private void discardRecent(List<RecognitionEvent> events) {
+        Set<Long> ids = new HashSet<>();
+        for (RecognitionEvent event : events) {
+            ids.add(event.getId());
+        }
+        int removed = recentEvents.removeIf(event -> ids.contains(event.getId()));
+        if (removed > 0) {
+            logger.warn("已从最近识别记录中移除{}条未写入的事件", removed);
+        }
+    }
+
+    private Counter historyCounter(String source) {
+        return Counter.builder("plant.history.requests")
+                .description("历史记录查询次数")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
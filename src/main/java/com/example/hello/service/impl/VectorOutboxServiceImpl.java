@@ -0,0 +1,378 @@
+package com.example.hello.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.hello.entity.Plant;
+import com.example.hello.entity.PlantVector;
+import com.example.hello.entity.VectorOutbox;
+import com.example.hello.mapper.VectorOutboxMapper;
+import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.PlantService;
+import com.example.hello.service.PlantVectorService;
+import com.example.hello.service.VectorOutboxService;
+import com.example.hello.service.VectorSnapshotService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 向量发件箱服务实现类
+ * 新植物和待写入的向量在同一事务中提交，事务回滚时两者都不存在，提交后由relay写入Milvus和plant_vectors，
+ * 不会出现只有植物没有向量或只有向量没有植物的情况
+ * relay按批次处理到期记录：先以乐观更新认领记录（尝试次数加1并推迟下次尝试时间），多个实例不会同时处理同一条记录；
+ * 重试前先按plant_{植物ID}删除Milvus中可能已写入的向量，plant_vectors已存在时不再写入，重复处理不会产生重复数据
+ * 使用进程内向量后端时，本地向量快照是向量的唯一持久化副本，一批向量写入快照文件后才删除发件箱记录
+ */
+@Service
+public class VectorOutboxServiceImpl extends ServiceImpl<VectorOutboxMapper, VectorOutbox> implements VectorOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorOutboxServiceImpl.class);
+
+    // 相似度阈值，与识别服务中的阈值一致
+    private static final float SIMILARITY_THRESHOLD = 0.8f;
+
+    // 失败原因最大长度，与last_error列一致
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    // 每次处理的最大记录数
+    @Value("${plant.outbox.batch-size:100}")
+    private int batchSize;
+
+    // 最大尝试次数，超过后标记为FAILED
+    @Value("${plant.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    // 第一次重试的等待时间（毫秒），之后每次翻倍
+    @Value("${plant.outbox.retry-backoff-ms:5000}")
+    private long retryBackoffMs;
+
+    // 重试等待时间上限（毫秒）
+    @Value("${plant.outbox.max-retry-backoff-ms:600000}")
+    private long maxRetryBackoffMs;
+
+    // 认领后等待Milvus写入结果的最长时间（毫秒），超时的记录由下一次处理重试
+    @Value("${plant.outbox.lease-ms:60000}")
+    private long leaseMs;
+
+    @Autowired
+    private PlantService plantService;
+
+    @Autowired
+    private PlantVectorService plantVectorService;
+
+    @Autowired
+    private MilvusVectorService milvusVectorService;
+
+    @Autowired
+    private VectorSnapshotService vectorSnapshotService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 最近一次处理时待写入的记录数
+     */
+    private final AtomicLong pending = new AtomicLong();
+
+    private Counter relayedCounter;
+
+    private Counter retriedCounter;
+
+    private Counter failedCounter;
+
+    /**
+     * 注册发件箱指标
+     */
+    @PostConstruct
+    public void initMetrics() {
+        relayedCounter = relayCounter("success");
+        retriedCounter = relayCounter("retry");
+        failedCounter = relayCounter("failed");
+        Gauge.builder("plant.outbox.pending", pending, AtomicLong::get)
+                .description("等待写入Milvus的向量数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在同一事务中保存植物信息和待写入的向量
+     * @param plant 植物实体，保存后回填自动生成的ID
+     * @param vector 图像向量，为null时只保存植物信息
+     * @return 是否保存成功
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean savePlantWithVector(Plant plant, float[] vector) {
+        if (!plantService.savePlant(plant)) {
+            return false;
+        }
+        return vector == null || enqueue(plant.getId(), vector);
+    }
+
+    /**
+     * 在同一事务中批量保存植物信息和待写入的向量
+     * @param plants 植物实体列表，保存后回填自动生成的ID
+     * @param vectors 与植物一一对应的图像向量，元素为null时该植物不写入向量
+     * @return 是否保存成功
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean savePlantsWithVectors(List<Plant> plants, List<float[]> vectors) {
+        if (!plantService.savePlants(plants)) {
+            return false;
+        }
+        List<VectorOutbox> rows = new ArrayList<>(plants.size());
+        for (int i = 0; i < plants.size(); i++) {
+            if (vectors.get(i) != null && plants.get(i).getId() != null) {
+                rows.add(newRow(plants.get(i).getId(), vectors.get(i)));
+            }
+        }
+        return rows.isEmpty() || saveBatch(rows);
+    }
+
+    /**
+     * 为已保存的植物登记待写入的向量
+     * @param plantId 植物ID
+     * @param vector 图像向量
+     * @return 是否登记成功
+     */
+    @Override
+    public boolean enqueue(Long plantId, float[] vector) {
+        return save(newRow(plantId, vector));
+    }
+
+    /**
+     * 定时处理到期的发件箱记录
+     * @return 本次成功写入的记录数
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${plant.outbox.poll-interval-ms:1000}")
+    public int relay() {
+        List<VectorOutbox> claimed;
+        try {
+            claimed = claimDueRows();
+        } catch (Exception e) {
+            logger.error("读取向量发件箱失败", e);
+            return 0;
+        }
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        // 提交到Milvus写入缓冲区，同一批记录合并为批量写入
+        List<CompletableFuture<Boolean>> inserts = new ArrayList<>(claimed.size());
+        for (VectorOutbox row : claimed) {
+            inserts.add(submit(row));
+        }
+
+        List<VectorOutbox> inserted = new ArrayList<>(claimed.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMs);
+        for (int i = 0; i < claimed.size(); i++) {
+            VectorOutbox row = claimed.get(i);
+            String error;
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                Boolean result = inserts.get(i).get(remaining, TimeUnit.NANOSECONDS);
+                if (result == null) {
+                    // 记录已丢弃
+                    continue;
+                }
+                if (result) {
+                    inserted.add(row);
+                    continue;
+                }
+                error = "Milvus写入失败";
+            } catch (InterruptedException e) {
+                // 已写入的记录在租约到期后重试
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (Exception e) {
+                error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            }
+            scheduleRetry(row, error);
+        }
+
+        if (!inserted.isEmpty() && vectorSnapshotService.isPrimaryStore() && !vectorSnapshotService.refresh()) {
+            // 向量只在进程内索引中，删除发件箱记录会在重启后丢失这些向量
+            for (VectorOutbox row : inserted) {
+                scheduleRetry(row, "向量快照写入失败");
+            }
+            return 0;
+        }
+        for (VectorOutbox row : inserted) {
+            savePlantVector(row);
+            removeById(row.getId());
+            relayedCounter.increment();
+        }
+        return inserted.size();
+    }
+
+    /**
+     * 读取并认领一批到期的记录
+     * 认领时尝试次数加1，并把下次尝试时间推迟到租约结束，处理中断的记录在租约到期后自动重试
+     * @return 认领成功的记录
+     */
+    private List<VectorOutbox> claimDueRows() {
+        LocalDateTime now = LocalDateTime.now();
+        LambdaQueryWrapper<VectorOutbox> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(VectorOutbox::getStatus, VectorOutbox.STATUS_PENDING);
+        pending.set(count(queryWrapper));
+        queryWrapper.le(VectorOutbox::getNextAttemptTime, now);
+        queryWrapper.orderByAsc(VectorOutbox::getId);
+        queryWrapper.last("LIMIT " + batchSize);
+        List<VectorOutbox> due = list(queryWrapper);
+
+        List<VectorOutbox> claimed = new ArrayList<>(due.size());
+        LocalDateTime leaseUntil = now.plusNanos(TimeUnit.MILLISECONDS.toNanos(leaseMs));
+        for (VectorOutbox row : due) {
+            LambdaUpdateWrapper<VectorOutbox> claim = new LambdaUpdateWrapper<>();
+            claim.eq(VectorOutbox::getId, row.getId())
+                    .eq(VectorOutbox::getAttempts, row.getAttempts())
+                    .set(VectorOutbox::getAttempts, row.getAttempts() + 1)
+                    .set(VectorOutbox::getNextAttemptTime, leaseUntil);
+            if (baseMapper.update(null, claim) == 1) {
+                row.setAttempts(row.getAttempts() + 1);
+                claimed.add(row);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 提交一条记录的向量到Milvus
+     * 重试时先删除可能已由上一次尝试写入的同ID向量
+     * @param row 发件箱记录
+     * @return 写入结果，植物已删除、记录被丢弃时结果为null
+     */
+    private CompletableFuture<Boolean> submit(VectorOutbox row) {
+        try {
+            Plant plant = plantService.getPlantById(row.getPlantId());
+            if (plant == null) {
+                // 植物已删除，不再写入向量
+                logger.warn("植物不存在，丢弃待写入的向量，植物ID：{}", row.getPlantId());
+                removeById(row.getId());
+                return CompletableFuture.completedFuture(null);
+            }
+            if (row.getAttempts() > 1 && !milvusVectorService.deleteVector(row.getVectorId())) {
+                return CompletableFuture.completedFuture(false);
+            }
+            return milvusVectorService.insertVectorAsync(row.getVectorId(), fromBytes(row.getVectorData()), metadataOf(plant));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 保存向量记录到数据库，已存在时跳过
+     * @param row 发件箱记录
+     */
+    private void savePlantVector(VectorOutbox row) {
+        if (plantVectorService.getByVectorId(row.getVectorId()) != null) {
+            return;
+        }
+        PlantVector plantVector = new PlantVector();
+        plantVector.setPlantId(row.getPlantId());
+        plantVector.setVectorId(row.getVectorId());
+        plantVector.setSimilarityThreshold(SIMILARITY_THRESHOLD);
+        plantVectorService.savePlantVector(plantVector);
+    }
+
+    /**
+     * 按指数退避安排重试，超过最大尝试次数时标记为FAILED
+     * @param row 发件箱记录
+     * @param error 失败原因
+     */
+    private void scheduleRetry(VectorOutbox row, String error) {
+        boolean exhausted = row.getAttempts() >= maxAttempts;
+        long backoff = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(20, row.getAttempts() - 1));
+        LambdaUpdateWrapper<VectorOutbox> update = new LambdaUpdateWrapper<>();
+        update.eq(VectorOutbox::getId, row.getId())
+                .set(VectorOutbox::getNextAttemptTime, LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(backoff)))
+                .set(VectorOutbox::getLastError, truncate(error))
+                .set(exhausted, VectorOutbox::getStatus, VectorOutbox.STATUS_FAILED);
+        baseMapper.update(null, update);
+        if (exhausted) {
+            failedCounter.increment();
+            logger.error("向量写入超过最大尝试次数，植物ID：{}，原因：{}", row.getPlantId(), error);
+        } else {
+            retriedCounter.increment();
+            logger.warn("向量写入失败，{}毫秒后重试，植物ID：{}，原因：{}", backoff, row.getPlantId(), error);
+        }
+    }
+
+    private VectorOutbox newRow(Long plantId, float[] vector) {
+        LocalDateTime now = LocalDateTime.now();
+        VectorOutbox row = new VectorOutbox();
+        row.setPlantId(plantId);
+        row.setVectorId("plant_" + plantId);
+        row.setVectorData(toBytes(vector));
+        row.setStatus(VectorOutbox.STATUS_PENDING);
+        row.setAttempts(0);
+        row.setNextAttemptTime(now);
+        row.setCreateTime(now);
+        return row;
+    }
+
+    /**
+     * 构建Milvus元数据，使用植物的最新信息
+     * @param plant 植物信息
+     * @return 元数据
+     */
+    private static Map<String, Object> metadataOf(Plant plant) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("plant_id", plant.getId());
+        metadata.put("plant_name", plant.getName());
+        metadata.put("similarity_threshold", SIMILARITY_THRESHOLD);
+        metadata.put("image_url", plant.getImageUrl());
+        metadata.put("recognition_accuracy", plant.getRecognitionAccuracy());
+        String currentTime = LocalDateTime.now().toString();
+        metadata.put("create_time", currentTime);
+        metadata.put("update_time", currentTime);
+        return metadata;
+    }
+
+    private static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] fromBytes(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= MAX_ERROR_LENGTH) {
+            return error;
+        }
+        return error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private Counter relayCounter(String result) {
+        return Counter.builder("plant.outbox.relayed")
+                .description("向量发件箱处理的记录数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,452 @@
+package com.example.hello.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.hello.config.MilvusConfig;
+import com.example.hello.entity.PlantVector;
+import com.example.hello.mapper.PlantVectorMapper;
+import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.VectorSnapshotService;
+import com.example.hello.vector.SearchHit;
+import com.example.hello.vector.VectorSnapshot;
+import io.milvus.client.MilvusClient;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.QueryResults;
+import io.milvus.param.R;
+import io.milvus.param.dml.QueryParam;
+import io.milvus.response.QueryResultsWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 向量快照服务实现类
+ * 启动时直接映射已有的快照文件，使用Milvus后端时在集合加载完成后重新导出；
+ * 使用进程内后端（hnsw、flat）时快照是向量的唯一持久化副本，后端启动时从快照重建索引。
+ * 运行期间的插入和删除先记录在内存中，定时追加到快照文件，预留容量不足时重写完整快照；
+ * 导出和重写都逐行写入临时文件，不在堆内存中保存完整的向量集合
+ */
+@Service
+public class VectorSnapshotServiceImpl implements VectorSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorSnapshotServiceImpl.class);
+
+    // ID字段名称
+    private static final String ID_FIELD = "id";
+    // 向量字段名称
+    private static final String VECTOR_FIELD = "vector";
+    // 植物ID字段名称
+    private static final String PLANT_ID_FIELD = "plant_id";
+    // 植物名称字段名称
+    private static final String PLANT_NAME_FIELD = "plant_name";
+
+    // 重写快照时预留的最小行数
+    private static final int MIN_CAPACITY = 1024;
+
+    // 仅在使用Milvus后端时存在
+    @Autowired
+    private ObjectProvider<MilvusClient> milvusClientProvider;
+
+    @Autowired
+    private MilvusConfig milvusConfig;
+
+    @Autowired
+    private PlantVectorMapper plantVectorMapper;
+
+    // 向量检索后端
+    @Value("${vector.backend:milvus}")
+    private String backend;
+
+    // 是否启用本地快照
+    @Value("${vector.snapshot.enabled:true}")
+    private boolean enabled;
+
+    // 快照文件路径
+    @Value("${vector.snapshot.path:data/plant-vectors.vsnap}")
+    private String snapshotPath;
+
+    // 打开快照时是否校验校验和，校验需要读取全部向量页，会延长启动时间
+    @Value("${vector.snapshot.verify-checksum:false}")
+    private boolean verifyChecksum;
+
+    // 导出时每批查询的向量数
+    @Value("${vector.snapshot.export-batch-size:500}")
+    private int exportBatchSize;
+
+    private volatile VectorSnapshot snapshot;
+
+    // 等待追加的插入，按向量ID去重
+    private final Map<String, VectorSnapshot.Entry> pendingInserts = new LinkedHashMap<>();
+
+    // 等待写入的删除
+    private final Set<String> pendingDeletes = new LinkedHashSet<>();
+
+    /**
+     * 启动时映射已有的快照文件，使检索不必等待Milvus集合加载
+     * 快照作为唯一持久化副本但无法使用时，将其改名保留，之后的写入创建新快照，不覆盖原文件
+     */
+    @PostConstruct
+    public void init() {
+        Path path = Paths.get(snapshotPath);
+        if (!enabled || !Files.exists(path)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            VectorSnapshot opened = VectorSnapshot.open(path, verifyChecksum);
+            if (opened.getDimension() != milvusConfig.getDimension()) {
+                logger.warn("向量快照维度{}与配置维度{}不一致，忽略该快照", opened.getDimension(), milvusConfig.getDimension());
+                opened.close();
+                setAside(path);
+                return;
+            }
+            snapshot = opened;
+            logger.info("已加载向量快照：{}，向量数：{}，耗时：{}ms",
+                    path, opened.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("加载向量快照失败", e);
+            setAside(path);
+        }
+    }
+
+    private void setAside(Path path) {
+        if (!isPrimaryStore()) {
+            return;
+        }
+        Path target = path.resolveSibling(path.getFileName() + "." + System.currentTimeMillis() + ".bad");
+        try {
+            Files.move(path, target);
+            logger.error("无法使用的向量快照已改名为{}，进程内索引将从空快照开始", target);
+        } catch (IOException e) {
+            logger.error("改名无法使用的向量快照失败", e);
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return snapshot != null;
+    }
+
+    @Override
+    public boolean isPrimaryStore() {
+        return enabled && !"milvus".equals(backend);
+    }
+
+    /**
+     * 从Milvus集合导出完整快照
+     * 以MySQL中的向量记录为索引按主键分批遍历，再按向量ID批量查询Milvus中的向量和元数据
+     * @return 是否成功
+     */
+    @Override
+    public synchronized boolean exportFromMilvus() {
+        MilvusClient milvusClient = milvusClientProvider.getIfAvailable();
+        if (!enabled || milvusClient == null) {
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try (VectorSnapshot.Writer writer = VectorSnapshot.create(Paths.get(snapshotPath),
+                milvusConfig.getDimension())) { = System.currentTimeMillis();
+            Long lastId = 0L;
+            while (true) {
+                LambdaQueryWrapper<PlantVector> queryWrapper = new LambdaQueryWrapper<>();
+                queryWrapper.gt(PlantVector::getId, lastId);
+                queryWrapper.orderByAsc(PlantVector::getId);
+                queryWrapper.last("LIMIT " + exportBatchSize);
+                List<PlantVector> page = plantVectorMapper.selectList(queryWrapper);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (VectorSnapshot.Entry entry : queryMilvus(milvusClient,
+                        page.stream().map(PlantVector::getVectorId).collect(Collectors.toList()))) {
+                    writer.add(entry);
+                }
+                lastId = page.get(page.size() - 1).getId();
+            }
+            replaceSnapshot(writer);
+            logger.info("已从Milvus导出向量快照，向量数：{}，耗时：{}ms", writer.size(), System.currentTimeMillis() - start);
+            // 导出期间记录的变更在导出结果之后重放
+            refresh();
+            return true;
+        } catch (Exception e) {
+            logger.error("导出向量快照失败", e);
+            return false;
+        }
+    }
+
+    @Override
+    public void recordInsert(String vectorId, float[] vector, Map<String, Object> metadata) {
+        if (!enabled) {
+            return;
+        }
+        Object plantId = metadata.get(PLANT_ID_FIELD);
+        Object plantName = metadata.get(PLANT_NAME_FIELD);
+        VectorSnapshot.Entry entry = new VectorSnapshot.Entry(vectorId,
+                plantId != null ? Long.parseLong(plantId.toString()) : 0L,
+                plantName != null ? plantName.toString() : null,
+                vector.clone());
+        synchronized (pendingInserts) {
+            pendingDeletes.remove(vectorId);
+            pendingInserts.put(vectorId, entry);
+        }
+    }
+
+    @Override
+    public void recordDelete(String vectorId) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (pendingInserts) {
+            pendingInserts.remove(vectorId);
+            pendingDeletes.add(vectorId);
+        }
+    }
+
+    /**
+     * 定时将待追加的变更写入快照文件
+     * 使用Milvus后端且快照尚未导出时保留变更，等待导出完成后一并写入；
+     * 作为唯一持久化副本且快照文件不存在时，直接用待追加的变更创建快照
+     * @return 待追加的变更是否已全部写入
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${vector.snapshot.refresh-interval-ms:60000}")
+    public synchronized boolean refresh() {
+        VectorSnapshot current = snapshot;
+        if (current == null && !isPrimaryStore()) {
+            return !enabled;
+        }
+        List<VectorSnapshot.Entry> inserts;
+        List<String> deletes;
+        synchronized (pendingInserts) {
+            if (pendingInserts.isEmpty() && pendingDeletes.isEmpty()) {
+                return true;
+            }
+            inserts = new ArrayList<>(pendingInserts.values());
+            deletes = new ArrayList<>(pendingDeletes);
+            pendingInserts.clear();
+            pendingDeletes.clear();
+        }
+        try {
+            if (current == null || !current.append(inserts, deletes)) {
+                rewrite(current, inserts, deletes);
+            }
+            logger.debug("向量快照已追加{}条插入、{}条删除", inserts.size(), deletes.size());
+            return true;
+        } catch (Exception e) {
+            logger.error("刷新向量快照失败", e);
+            // 放回待追加队列，新记录的变更优先
+            synchronized (pendingInserts) {
+                for (VectorSnapshot.Entry entry : inserts) {
+                    if (!pendingDeletes.contains(entry.getVectorId())) {
+                        pendingInserts.putIfAbsent(entry.getVectorId(), entry);
+                    }
+                }
+                for (String vectorId : deletes) {
+                    if (!pendingInserts.containsKey(vectorId)) {
+                        pendingDeletes.add(vectorId);
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public float[] getVector(String vectorId) {
+        synchronized (pendingInserts) {
+            VectorSnapshot.Entry pending = pendingInserts.get(vectorId);
+            if (pending != null) {
+                return pending.getVector();
+            }
+            if (pendingDeletes.contains(vectorId)) {
+                return null;
+            }
+        }
+        VectorSnapshot current = snapshot;
+        VectorSnapshot.Entry entry = current != null ? current.get(vectorId) : null;
+        return entry != null ? entry.getVector() : null;
+    }
+
+    /**
+     * 遍历快照中的全部向量，包括尚未写入快照文件的变更
+     * @param action 对每个条目执行的操作
+     */
+    @Override
+    public void forEach(Consumer<VectorSnapshot.Entry> action) {
+        List<VectorSnapshot.Entry> inserts;
+        Set<String> skipped;
+        synchronized (pendingInserts) {
+            inserts = new ArrayList<>(pendingInserts.values());
+            skipped = new HashSet<>(pendingDeletes);
+            skipped.addAll(pendingInserts.keySet());
+        }
+        VectorSnapshot current = snapshot;
+        if (current != null) {
+            current.forEach(entry -> {
+                if (!skipped.contains(entry.getVectorId())) {
+                    action.accept(entry);
+                }
+            });
+        }
+        inserts.forEach(action);
+    }
+
+    @Override
+    public List<MilvusVectorService.SearchResult> search(float[] vector, int topK, float similarityThreshold) {
+        VectorSnapshot current = snapshot;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        try {
+            List<MilvusVectorService.SearchResult> results = new ArrayList<>();
+            for (SearchHit hit : current.search(vector, topK, similarityThreshold)) {
+                VectorSnapshot.Entry entry = current.get(hit.getVectorId());
+                Map<String, Object> metadata = new HashMap<>();
+                if (entry != null) {
+                    metadata.put(PLANT_ID_FIELD, entry.getPlantId());
+                    metadata.put(PLANT_NAME_FIELD, entry.getPlantName());
+                }
+                results.add(new MilvusVectorService.SearchResult(hit.getVectorId(), hit.getScore(), metadata));
+            }
+            return results;
+        } catch (Exception e) {
+            logger.error("快照向量搜索失败", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 写入待追加的变更并关闭快照文件
+     */
+    @PreDestroy
+    public void shutdown() {
+        refresh();
+        VectorSnapshot current = snapshot;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                logger.error("关闭向量快照失败", e);
+            }
+        }
+    }
+
+    /**
+     * 按向量ID批量查询Milvus中的向量和元数据
+     * @param milvusClient Milvus客户端
+     * @param vectorIds 向量ID
+     * @return 快照条目
+     */
+    @SuppressWarnings("unchecked")
+    private List<VectorSnapshot.Entry> queryMilvus(MilvusClient milvusClient, List<String> vectorIds) {
+        String idList = vectorIds.stream()
+                .map(id -> "\"" + id + "\"")
+                .collect(Collectors.joining(","));
+        QueryParam queryParam = QueryParam.newBuilder()
+                .withCollectionName(milvusConfig.getCollectionName())
+                .withConsistencyLevel(ConsistencyLevelEnum.BOUNDED)
+                .withExpr(String.format("%s in [%s]", ID_FIELD, idList))
+                .withOutFields(Arrays.asList(
+                        ID_FIELD,
+                        VECTOR_FIELD,
+                        PLANT_ID_FIELD,
+                        PLANT_NAME_FIELD))
+                .build();
+        R<QueryResults> response = milvusClient.query(queryParam);
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new IllegalStateException("查询Milvus向量失败：" + response.getMessage());
+        }
+        List<VectorSnapshot.Entry> entries = new ArrayList<>();
+        QueryResultsWrapper wrapper = new QueryResultsWrapper(response.getData());
+        for (QueryResultsWrapper.RowRecord record : wrapper.getRowRecords()) {
+            List<Float> values = (List<Float>) record.get(VECTOR_FIELD);
+            float[] vector = new float[values.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = values.get(i);
+            }
+            Object plantId = record.get(PLANT_ID_FIELD);
+            Object plantName = record.get(PLANT_NAME_FIELD);
+            entries.add(new VectorSnapshot.Entry(
+                    record.get(ID_FIELD).toString(),
+                    plantId != null ? ((Number) plantId).longValue() : 0L,
+                    plantName != null ? plantName.toString() : null,
+                    vector));
+        }
+        return entries;
+    }
+
+    /**
+     * 预留容量不足时，合并当前快照和待追加的变更，重写完整快照
+     * 当前快照的行从映射区域逐行写入新文件，被删除或被替换的向量跳过；当前快照为null时只写入待追加的变更
+     */
+    private void rewrite(VectorSnapshot current, List<VectorSnapshot.Entry> inserts, List<String> deletes)
+            throws IOException {
+        Set<String> skipped = new HashSet<>(deletes);
+        inserts.forEach(entry -> skipped.add(entry.getVectorId()));
+        try (VectorSnapshot.Writer writer = VectorSnapshot.create(Paths.get(snapshotPath),
+                milvusConfig.getDimension())) {
+            try {
+                if (current != null) {
+                    current.forEach(entry -> {
+                        if (!skipped.contains(entry.getVectorId())) {
+                            try {
+                                writer.add(entry);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    });
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (VectorSnapshot.Entry entry : inserts) {
+                writer.add(entry);
+            }
+            replaceSnapshot(writer);
+        }
+    }
+
+    /**
+     * 提交完整快照并切换到新文件
+     * 预留与现有行数相同的空闲行（至少MIN_CAPACITY行），但不超过单个映射区域能容纳的行数，
+     * 避免大规模向量库的空闲区域占用过多磁盘和地址空间
+     * @param writer 已写入全部条目的写入器
+     * @throws IOException 文件读写异常
+     */
+    private void replaceSnapshot(VectorSnapshot.Writer writer) throws IOException {
+        Path path = Paths.get(snapshotPath);
+        int count = writer.size();
+        int spare = Math.min(Math.max(MIN_CAPACITY, count),
+                VectorSnapshot.maxRowsPerMapping(milvusConfig.getDimension()));
+        writer.commit((int) Math.min(Integer.MAX_VALUE, (long) count + spare));
+        VectorSnapshot previous = snapshot;
+        snapshot = VectorSnapshot.open(path, false);
+        if (previous != null) {
+            // 映射区域在缓冲区被回收后释放，正在进行的检索不受影响
+            previous.close();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.hello.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 卷存储的内存索引：32字节摘要到记录位置的开放寻址哈希表
+ * 摘要、位置和长度分别保存在基本类型数组中，每个槽位占用 4×8 + 8 + 4 = 44 字节，
+ * 不为每条记录创建String、Location和哈希表节点对象，百万级图片的索引也只占几十MB且不增加GC扫描负担
+ * 位置按 段ID（高24位）| 段内偏移（低40位）打包为一个long，0表示空槽位（段头占用偏移0到15，记录偏移不会为0）
+ * 使用线性探测，删除时把后续槽位向前移动（backward-shift），不使用墓碑标记
+ * SHA-256摘要本身分布均匀，只用摘要的前8字节计算槽位
+ * 读操作持有读锁并发执行，写操作持有写锁
+ */
+final class DigestIndex {
+
+    /**
+     * 段内偏移占用的位数，段文件不能超过2^40字节
+     */
+    static final int OFFSET_BITS = 40;
+
+    /**
+     * 段ID上限（不含）
+     */
+    static final long MAX_SEGMENT_ID = 1L << (Long.SIZE - OFFSET_BITS);
+
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    // 每个摘要占用的long数
+    private static final int KEY_LONGS = VolumeStore.KEY_BYTES / Long.BYTES;
+
+    // 斐波那契散列乘数
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    // 最大装载因子，超过后容量翻倍
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // 按long读取摘要字节，不创建ByteBuffer
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * 查找结果，只在调用方短暂持有
+     */
+    static final class Entry {
+        final long segmentId;
+        final long offset;
+        final int length;
+
+        Entry(long segmentId, long offset, int length) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] keys;
+
+    private long[] locations;
+
+    private int[] lengths;
+
+    private int size;
+
+    // 槽位数为2^bits
+    private int bits;
+
+    DigestIndex() {
+        allocate(Integer.numberOfTrailingZeros(INITIAL_CAPACITY));
+    }
+
+    /**
+     * 查找摘要对应的记录位置
+     * @param key 32字节摘要
+     * @return 记录位置，不存在返回null
+     */
+    Entry get(byte[] key) {
+        long k0 = keyLong(key, 0);
+        lock.readLock().lock();
+        try {
+            int slot = find(key, k0);
+            return slot < 0 ? null : entryAt(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key 32字节摘要
+     * @return 摘要是否存在
+     */
+    boolean contains(byte[] key) {
+        long k0 = keyLong(key, 0);
+        lock.readLock().lock();
+        try {
+            return find(key, k0) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入或覆盖摘要对应的记录位置
+     * @param key 32字节摘要
+     * @param segmentId 段ID
+     * @param offset 段内偏移
+     * @param length 数据长度
+     * @return 被覆盖的记录位置，之前不存在返回null
+     */
+    Entry put(byte[] key, long segmentId, long offset, int length) {
+        if (segmentId <= 0 || segmentId >= MAX_SEGMENT_ID || offset <= 0 || offset > OFFSET_MASK) {
+            throw new IllegalArgumentException("记录位置超出索引范围：段" + segmentId + "@" + offset);
+        }
+        long k0 = keyLong(key, 0);
+        lock.writeLock().lock();
+        try {
+            int slot = find(key, k0);
+            if (slot >= 0) {
+                Entry previous = entryAt(slot);
+                locations[slot] = (segmentId << OFFSET_BITS) | offset;
+                lengths[slot] = length;
+                return previous;
+            }
+            if (size + 1 > (long) (locations.length * LOAD_FACTOR)) {
+                resize();
+            }
+            slot = slotOf(k0);
+            while (locations[slot] != 0) {
+                slot = (slot + 1) & mask();
+            }
+            for (int i = 0; i < KEY_LONGS; i++) {
+                keys[slot * KEY_LONGS + i] = keyLong(key, i);
+            }
+            locations[slot] = (segmentId << OFFSET_BITS) | offset;
+            lengths[slot] = length;
+            size++;
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除摘要
+     * @param key 32字节摘要
+     * @return 被删除的记录位置，不存在返回null
+     */
+    Entry remove(byte[] key) {
+        long k0 = keyLong(key, 0);
+        lock.writeLock().lock();
+        try {
+            int slot = find(key, k0);
+            if (slot < 0) {
+                return null;
+            }
+            Entry previous = entryAt(slot);
+            shiftBack(slot);
+            size--;
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return 摘要数量
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 线性探测查找摘要所在槽位，需要持有读锁或写锁
+     * @return 槽位，不存在返回-1
+     */
+    private int find(byte[] key, long k0) {
+        int mask = mask();
+        for (int slot = slotOf(k0); locations[slot] != 0; slot = (slot + 1) & mask) {
+            int base = slot * KEY_LONGS;
+            if (keys[base] == k0 && keys[base + 1] == keyLong(key, 1)
+                    && keys[base + 2] == keyLong(key, 2) && keys[base + 3] == keyLong(key, 3)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 清空槽位，并把同一探测链上的后续槽位前移填补空缺，保证查找不会提前遇到空槽位
+     */
+    private void shiftBack(int hole) {
+        int mask = mask();
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (locations[slot] == 0) {
+                break;
+            }
+            int home = slotOf(keys[slot * KEY_LONGS]);
+            // 槽位的初始位置不在(hole, slot]区间内时才能前移到hole
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                System.arraycopy(keys, slot * KEY_LONGS, keys, hole * KEY_LONGS, KEY_LONGS);
+                locations[hole] = locations[slot];
+                lengths[hole] = lengths[slot];
+                hole = slot;
+            }
+        }
+        locations[hole] = 0;
+        lengths[hole] = 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldLocations = locations;
+        int[] oldLengths = lengths;
+        allocate(bits + 1);
+        int mask = mask();
+        for (int i = 0; i < oldLocations.length; i++) {
+            if (oldLocations[i] == 0) {
+                continue;
+            }
+            int slot = slotOf(oldKeys[i * KEY_LONGS]);
+            while (locations[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            System.arraycopy(oldKeys, i * KEY_LONGS, keys, slot * KEY_LONGS, KEY_LONGS);
+            locations[slot] = oldLocations[i];
+            lengths[slot] = oldLengths[i];
+        }
+    }
+
+    private void allocate(int bits) {
+        // 摘要数组长度为槽位数的4倍，不能超过int范围
+        if (bits > 28) {
+            throw new IllegalStateException("卷存储索引已满");
+        }
+        this.bits = bits;
+        int capacity = 1 << bits;
+        keys = new long[capacity * KEY_LONGS];
+        locations = new long[capacity];
+        lengths = new int[capacity];
+    }
+
+    private Entry entryAt(int slot) {
+        long location = locations[slot];
+        return new Entry(location >>> OFFSET_BITS, location & OFFSET_MASK, lengths[slot]);
+    }
+
+    private int slotOf(long k0) {
+        return (int) ((k0 * GOLDEN) >>> (Long.SIZE - bits));
+    }
+
+    private int mask() {
+        return locations.length - 1;
+    }
+
+    private static long keyLong(byte[] key, int index) {
+        return (long) LONG_VIEW.get(key, index * Long.BYTES);
+    }
+}
@@ -0,0 +1,762 @@
+package com.example.hello.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * 只追加的打包卷存储
+ * 大量小图片依次追加到少量大段文件（volume-00000001.dat）中，避免一张图片一个文件带来的inode消耗、
+ * 目录查找和备份开销。每张图片按64位十六进制摘要寻址，内存索引（DigestIndex）记录其所在段ID、偏移和长度，
+ * 读取时只需对已打开的段文件做一次定位读，不访问文件系统元数据；写入时间不放在索引中，从记录头读取
+ * 段文件布局（小端字节序）：
+ * <pre>
+ * [段头 16字节][记录]...[记录][段尾索引]
+ * 记录：[魔数 4][标志 1][摘要 32][写入时间 8][数据长度 4][数据][数据CRC32C 4]
+ * 段尾索引：[条目 × count（摘要 32、标志 1、偏移 8、长度 4、写入时间 8）][索引偏移 8][count 4][条目CRC32C 4][魔数 4]
+ * </pre>
+ * 段写满后追加段尾索引并封存，打开时封存段只读取段尾索引重建内存索引；
+ * 未封存的段（当前写入段或崩溃前的写入段）逐条扫描记录，从第一条不完整或校验失败的记录处截断
+ * 删除追加一条删除记录；压缩把已删除数据占比较高的封存段中仍有效的记录复制到当前写入段，然后删除整个段文件
+ * 读操作可并发执行，写操作内部串行；写入不逐条fsync，封存、压缩和关闭时刷盘，崩溃时可能丢失最近写入的记录
+ */
+public class VolumeStore implements Closeable {
+
+    /**
+     * 段文件魔数 "PVOL"
+     */
+    public static final int SEGMENT_MAGIC = 0x50564F4C;
+
+    /**
+     * 当前格式版本
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * 段头长度
+     */
+    public static final int SEGMENT_HEADER_BYTES = 16;
+
+    /**
+     * 摘要长度（SHA-256）
+     */
+    public static final int KEY_BYTES = 32;
+
+    /**
+     * 单个段文件的最大字节数上限，段内偏移在索引中占40位
+     */
+    public static final long MAX_SEGMENT_BYTES = 1L << DigestIndex.OFFSET_BITS;
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // 记录魔数 "PNDL"
+    private static final int NEEDLE_MAGIC = 0x504E444C;
+
+    // 段尾索引魔数 "PVFT"
+    private static final int FOOTER_MAGIC = 0x50564654;
+
+    // 记录头长度：魔数、标志、摘要、写入时间、数据长度
+    private static final int NEEDLE_HEADER_BYTES = 4 + 1 + KEY_BYTES + 8 + 4;
+
+    // 记录尾长度：数据CRC32C
+    private static final int NEEDLE_TRAILER_BYTES = 4;
+
+    // 段尾索引每个条目的长度
+    private static final int FOOTER_ENTRY_BYTES = KEY_BYTES + 1 + 8 + 4 + 8;
+
+    // 段尾索引结尾的长度：索引偏移、条目数、CRC32C、魔数
+    private static final int FOOTER_TRAILER_BYTES = 8 + 4 + 4 + 4;
+
+    // 记录标志：图片数据
+    private static final byte FLAG_DATA = 0;
+
+    // 记录标志：删除
+    private static final byte FLAG_DELETED = 1;
+
+    // 段文件读取被中断关闭后重试的次数
+    private static final int READ_ATTEMPTS = 3;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("volume-(\\d{8})\\.dat");
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * 读取到的图片记录
+     */
+    public static final class Needle {
+        private final String key;
+        private final byte[] data;
+        private final long timestamp;
+
+        Needle(String key, byte[] data, long timestamp) {
+            this.key = key;
+            this.data = data;
+            this.timestamp = timestamp;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * @return 写入时间（毫秒时间戳）
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * 段文件
+     */
+    private static final class Segment {
+        final long id;
+        final Path path;
+        volatile FileChannel channel;
+        // 写入位置，只在持有写锁时修改
+        long size;
+        // 全部记录占用的字节数
+        final AtomicLong totalBytes = new AtomicLong();
+        // 已删除或已被覆盖的记录占用的字节数
+        final AtomicLong deadBytes = new AtomicLong();
+        // 已被压缩删除，读取方需要重新查找索引
+        volatile boolean removed;
+
+        Segment(long id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        double deadRatio() {
+            long total = totalBytes.get();
+            return total == 0 ? 0 : (double) deadBytes.get() / total;
+        }
+    }
+
+    /**
+     * 记录在段文件中的位置，只在读写过程中短暂使用，索引中按基本类型保存
+     */
+    private static final class Location {
+        final Segment segment;
+        final long offset;
+        final int length;
+
+        Location(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 段尾索引条目
+     */
+    private static final class FooterEntry {
+        final byte[] key;
+        final byte flags;
+        final long offset;
+        final int length;
+        final long timestamp;
+
+        FooterEntry(byte[] key, byte flags, long offset, int length, long timestamp) {
+            this.key = key;
+            this.flags = flags;
+            this.offset = offset;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final Path directory;
+
+    private final long maxSegmentBytes;
+
+    private final DigestIndex index = new DigestIndex();
+
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final Object writeLock = new Object();
+
+    // 当前写入段，只在持有写锁时修改
+    private Segment active;
+
+    // 当前写入段的记录，封存时写入段尾索引
+    private List<FooterEntry> activeEntries;
+
+    private volatile boolean closed;
+
+    private VolumeStore(Path directory, long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * 打开卷存储目录，从段尾索引重建内存索引，目录不存在时创建
+     * @param directory 段文件所在目录
+     * @param maxSegmentBytes 单个段文件的最大字节数，超过后封存并创建新段
+     * @return 卷存储
+     * @throws IOException 文件读取异常，或段文件格式不正确
+     */
+    public static VolumeStore open(Path directory, long maxSegmentBytes) throws IOException {
+        if (maxSegmentBytes <= SEGMENT_HEADER_BYTES || maxSegmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("段文件大小超出范围：" + maxSegmentBytes);
+        }
+        Files.createDirectories(directory);
+        VolumeStore store = new VolumeStore(directory, maxSegmentBytes);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * 写入图片，相同摘要已存在时不重复写入
+     * @param key 64位小写十六进制摘要
+     * @param data 图片数据
+     * @return 写入返回true，已存在返回false
+     * @throws IOException 文件写入异常
+     */
+    public boolean put(String key, byte[] data) throws IOException {
+        byte[] keyBytes = parseKey(key);
+        synchronized (writeLock) {
+            ensureOpen();
+            if (index.contains(keyBytes)) {
+                return false;
+            }
+            Location location = append(FLAG_DATA, keyBytes, data, System.currentTimeMillis());
+            index.put(keyBytes, location.segment.id, location.offset, location.length);
+            return true;
+        }
+    }
+
+    /**
+     * 读取图片，只做一次定位读
+     * @param key 64位小写十六进制摘要
+     * @return 图片记录，不存在返回null
+     * @throws IOException 文件读取异常，或记录已损坏
+     */
+    public Needle get(String key) throws IOException {
+        byte[] keyBytes = parseKey(key);
+        for (int attempt = 1; ; attempt++) {
+            DigestIndex.Entry entry = index.get(keyBytes);
+            if (entry == null) {
+                return null;
+            }
+            Segment segment = segments.get(entry.segmentId);
+            if (segment == null) {
+                // 段已被压缩删除，索引已指向复制后的位置，重新查找
+                if (attempt >= READ_ATTEMPTS) {
+                    throw new IOException("卷段文件已删除：" + entry.segmentId);
+                }
+                continue;
+            }
+            try {
+                return readNeedle(new Location(segment, entry.offset, entry.length), key, keyBytes);
+            } catch (ClosedChannelException e) {
+                // 段已被压缩删除时重新查找索引；读取线程被中断导致通道关闭时重新打开，供其他读取方继续使用
+                reopen(segment);
+                if (attempt >= READ_ATTEMPTS || closed || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key 64位小写十六进制摘要
+     * @return 图片是否存在
+     */
+    public boolean contains(String key) {
+        return index.contains(parseKey(key));
+    }
+
+    /**
+     * 删除图片，追加一条删除记录
+     * @param key 64位小写十六进制摘要
+     * @return 删除返回true，不存在返回false
+     * @throws IOException 文件写入异常
+     */
+    public boolean delete(String key) throws IOException {
+        byte[] keyBytes = parseKey(key);
+        synchronized (writeLock) {
+            ensureOpen();
+            if (!index.contains(keyBytes)) {
+                return false;
+            }
+            Location tombstone = append(FLAG_DELETED, keyBytes, new byte[0], System.currentTimeMillis());
+            tombstone.segment.deadBytes.addAndGet(needleBytes(0));
+            markDead(index.remove(keyBytes));
+            return true;
+        }
+    }
+
+    /**
+     * 压缩已删除数据占比不低于阈值的封存段
+     * 段中仍有效的记录逐条复制到当前写入段，复制期间其他写入可以穿插执行；复制完成并刷盘后删除整个段文件
+     * @param minDeadRatio 已删除数据占比阈值，取值0到1
+     * @return 压缩的段数
+     * @throws IOException 文件读写异常
+     */
+    public int compact(double minDeadRatio) throws IOException {
+        int compacted = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == currentSegment() || segment.deadRatio() < minDeadRatio) {
+                continue;
+            }
+            List<FooterEntry> entries = readFooter(segment);
+            if (entries == null) {
+                continue;
+            }
+            // 最早的段之前没有其他段，其中的删除记录不再需要保留
+            boolean oldest = segments.firstKey() == segment.id;
+            for (FooterEntry entry : entries) {
+                if (entry.flags != FLAG_DELETED || oldest) {
+                    continue;
+                }
+                synchronized (writeLock) {
+                    ensureOpen();
+                    // 之后重新写入过的图片不能被复制过去的删除记录覆盖
+                    if (!index.contains(entry.key)) {
+                        Location tombstone = append(FLAG_DELETED, entry.key, new byte[0], entry.timestamp);
+                        tombstone.segment.deadBytes.addAndGet(needleBytes(0));
+                    }
+                }
+            }
+            for (FooterEntry entry : entries) {
+                if (entry.flags != FLAG_DATA) {
+                    continue;
+                }
+                synchronized (writeLock) {
+                    ensureOpen();
+                    DigestIndex.Entry current = index.get(entry.key);
+                    if (current == null || current.segmentId != segment.id || current.offset != entry.offset) {
+                        continue;
+                    }
+                    Location location = new Location(segment, entry.offset, entry.length);
+                    byte[] data = readNeedle(location, HEX.formatHex(entry.key), entry.key).getData();
+                    Location moved = append(FLAG_DATA, entry.key, data, entry.timestamp);
+                    index.put(entry.key, moved.segment.id, moved.offset, moved.length);
+                }
+            }
+            synchronized (writeLock) {
+                ensureOpen();
+                active.channel.force(false);
+                segments.remove(segment.id);
+                segment.removed = true;
+            }
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+            compacted++;
+        }
+        return compacted;
+    }
+
+    /**
+     * @return 图片数量
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return 段文件数量
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return 全部记录占用的字节数
+     */
+    public long totalBytes() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.totalBytes.get();
+        }
+        return total;
+    }
+
+    /**
+     * @return 已删除或已被覆盖的记录占用的字节数，压缩后回收
+     */
+    public long deadBytes() {
+        long dead = 0;
+        for (Segment segment : segments.values()) {
+            dead += segment.deadBytes.get();
+        }
+        return dead;
+    }
+
+    /**
+     * 刷盘并关闭所有段文件，当前写入段不封存，下次打开时扫描重建
+     * @throws IOException 文件关闭异常
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            IOException failure = null;
+            for (Segment segment : segments.values()) {
+                try {
+                    if (segment == active) {
+                        segment.channel.force(false);
+                    }
+                    segment.channel.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * 加载目录中的全部段文件，最后一个未封存的段作为当前写入段
+     */
+    private void load() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "volume-*.dat")) {
+            for (Path path : stream) {
+                if (SEGMENT_NAME.matcher(path.getFileName().toString()).matches()) {
+                    paths.add(path);
+                }
+            }
+        }
+        paths.sort(null);
+        synchronized (writeLock) {
+            for (int i = 0; i < paths.size(); i++) {
+                Path path = paths.get(i);
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                matcher.matches();
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Segment segment = new Segment(Long.parseLong(matcher.group(1)), path, channel, channel.size());
+                segments.put(segment.id, segment);
+                if (segment.id <= 0 || segment.id >= DigestIndex.MAX_SEGMENT_ID) {
+                    throw new IOException("卷段文件编号超出范围：" + segment.path);
+                }
+                checkSegmentHeader(segment);
+                List<FooterEntry> entries = readFooter(segment);
+                boolean sealed = entries != null;
+                if (!sealed) {
+                    entries = scan(segment);
+                }
+                for (FooterEntry entry : entries) {
+                    apply(segment, entry);
+                }
+                if (!sealed) {
+                    if (i == paths.size() - 1) {
+                        active = segment;
+                        activeEntries = entries;
+                    } else {
+                        // 崩溃前未封存的旧段，补写段尾索引
+                        seal(segment, entries);
+                    }
+                }
+            }
+            if (active == null) {
+                roll();
+            }
+        }
+    }
+
+    /**
+     * 按记录重建内存索引
+     */
+    private void apply(Segment segment, FooterEntry entry) {
+        segment.totalBytes.addAndGet(needleBytes(entry.length));
+        DigestIndex.Entry previous;
+        if (entry.flags == FLAG_DATA) {
+            previous = index.put(entry.key, segment.id, entry.offset, entry.length);
+        } else {
+            segment.deadBytes.addAndGet(needleBytes(0));
+            previous = index.remove(entry.key);
+        }
+        markDead(previous);
+    }
+
+    /**
+     * 向当前写入段追加一条记录，写满时先封存并创建新段，需要持有写锁
+     */
+    private Location append(byte flags, byte[] key, byte[] data, long timestamp) throws IOException {
+        int needleBytes = needleBytes(data.length);
+        if (active.size > SEGMENT_HEADER_BYTES && active.size + needleBytes > maxSegmentBytes) {
+            seal(active, activeEntries);
+            roll();
+        }
+        reopen(active);
+        ByteBuffer buffer = ByteBuffer.allocate(needleBytes).order(ORDER);
+        buffer.putInt(NEEDLE_MAGIC);
+        buffer.put(flags);
+        buffer.put(key);
+        buffer.putLong(timestamp);
+        buffer.putInt(data.length);
+        buffer.put(data);
+        buffer.putInt(checksum(data, 0, data.length));
+        buffer.flip();
+        long offset = active.size;
+        writeFully(active.channel, buffer, offset);
+        active.size += needleBytes;
+        active.totalBytes.addAndGet(needleBytes);
+        activeEntries.add(new FooterEntry(key, flags, offset, data.length, timestamp));
+        return new Location(active, offset, data.length);
+    }
+
+    /**
+     * 一次定位读取整条记录并校验，写入时间取自记录头
+     */
+    private Needle readNeedle(Location location, String key, byte[] keyBytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(needleBytes(location.length)).order(ORDER);
+        readFully(location.segment.channel, buffer, location.offset);
+        if (buffer.getInt() != NEEDLE_MAGIC || buffer.get() != FLAG_DATA) {
+            throw new IOException("卷记录已损坏：" + location.segment.path + "@" + location.offset);
+        }
+        byte[] storedKey = new byte[KEY_BYTES];
+        buffer.get(storedKey);
+        long timestamp = buffer.getLong();
+        if (!Arrays.equals(storedKey, keyBytes) || buffer.getInt() != location.length) {
+            throw new IOException("卷记录与索引不一致：" + location.segment.path + "@" + location.offset);
+        }
+        byte[] data = new byte[location.length];
+        buffer.get(data);
+        if (buffer.getInt() != checksum(data, 0, data.length)) {
+            throw new IOException("卷记录校验和不匹配：" + location.segment.path + "@" + location.offset);
+        }
+        return new Needle(key, data, timestamp);
+    }
+
+    /**
+     * 读取段尾索引
+     * @return 段尾索引条目，段未封存时返回null
+     */
+    private List<FooterEntry> readFooter(Segment segment) throws IOException {
+        long size = segment.channel.size();
+        if (size < SEGMENT_HEADER_BYTES + FOOTER_TRAILER_BYTES) {
+            return null;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(FOOTER_TRAILER_BYTES).order(ORDER);
+        readFully(segment.channel, trailer, size - FOOTER_TRAILER_BYTES);
+        long footerOffset = trailer.getLong();
+        int count = trailer.getInt();
+        int expected = trailer.getInt();
+        if (trailer.getInt() != FOOTER_MAGIC || count < 0 || footerOffset < SEGMENT_HEADER_BYTES
+                || footerOffset + (long) count * FOOTER_ENTRY_BYTES + FOOTER_TRAILER_BYTES != size) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(count * FOOTER_ENTRY_BYTES).order(ORDER);
+        readFully(segment.channel, buffer, footerOffset);
+        if (checksum(buffer.array(), 0, buffer.limit()) != expected) {
+            throw new IOException("段尾索引校验和不匹配：" + segment.path);
+        }
+        List<FooterEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] key = new byte[KEY_BYTES];
+            buffer.get(key);
+            byte flags = buffer.get();
+            long offset = buffer.getLong();
+            int length = buffer.getInt();
+            long timestamp = buffer.getLong();
+            entries.add(new FooterEntry(key, flags, offset, length, timestamp));
+        }
+        segment.size = footerOffset;
+        return entries;
+    }
+
+    /**
+     * 逐条扫描未封存段的记录，从第一条不完整或校验失败的记录处截断
+     */
+    private List<FooterEntry> scan(Segment segment) throws IOException {
+        List<FooterEntry> entries = new ArrayList<>();
+        long size = segment.channel.size();
+        long position = SEGMENT_HEADER_BYTES;
+        ByteBuffer header = ByteBuffer.allocate(NEEDLE_HEADER_BYTES).order(ORDER);
+        while (position + NEEDLE_HEADER_BYTES + NEEDLE_TRAILER_BYTES <= size) {
+            header.clear();
+            readFully(segment.channel, header, position);
+            if (header.getInt() != NEEDLE_MAGIC) {
+                break;
+            }
+            byte flags = header.get();
+            byte[] key = new byte[KEY_BYTES];
+            header.get(key);
+            long timestamp = header.getLong();
+            int length = header.getInt();
+            if ((flags != FLAG_DATA && flags != FLAG_DELETED) || length < 0
+                    || position + needleBytes(length) > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length + NEEDLE_TRAILER_BYTES).order(ORDER);
+            readFully(segment.channel, body, position + NEEDLE_HEADER_BYTES);
+            if (body.getInt(length) != checksum(body.array(), 0, length)) {
+                break;
+            }
+            entries.add(new FooterEntry(key, flags, position, length, timestamp));
+            position += needleBytes(length);
+        }
+        if (position < size) {
+            segment.channel.truncate(position);
+            segment.channel.force(false);
+        }
+        segment.size = position;
+        return entries;
+    }
+
+    /**
+     * 在段末尾写入段尾索引并刷盘
+     */
+    private void seal(Segment segment, List<FooterEntry> entries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entries.size() * FOOTER_ENTRY_BYTES + FOOTER_TRAILER_BYTES).order(ORDER);
+        for (FooterEntry entry : entries) {
+            buffer.put(entry.key);
+            buffer.put(entry.flags);
+            buffer.putLong(entry.offset);
+            buffer.putInt(entry.length);
+            buffer.putLong(entry.timestamp);
+        }
+        int entryBytes = buffer.position();
+        buffer.putLong(segment.size);
+        buffer.putInt(entries.size());
+        buffer.putInt(checksum(buffer.array(), 0, entryBytes));
+        buffer.putInt(FOOTER_MAGIC);
+        buffer.flip();
+        writeFully(segment.channel, buffer, segment.size);
+        segment.channel.force(false);
+    }
+
+    /**
+     * 创建新的写入段
+     */
+    private void roll() throws IOException {
+        long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        if (id >= DigestIndex.MAX_SEGMENT_ID) {
+            throw new IOException("卷段文件数超出上限");
+        }
+        Path path = directory.resolve(String.format("volume-%08d.dat", id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES).order(ORDER);
+        header.putInt(SEGMENT_MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) 0);
+        header.putLong(System.currentTimeMillis());
+        header.flip();
+        writeFully(channel, header, 0);
+        channel.force(true);
+        active = new Segment(id, path, channel, SEGMENT_HEADER_BYTES);
+        activeEntries = new ArrayList<>();
+        segments.put(id, active);
+    }
+
+    private void checkSegmentHeader(Segment segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES).order(ORDER);
+        readFully(segment.channel, header, 0);
+        if (header.getInt() != SEGMENT_MAGIC) {
+            throw new IOException("不是卷段文件：" + segment.path);
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("不支持的卷段文件版本：" + version);
+        }
+    }
+
+    /**
+     * 读写线程被中断时FileChannel会被关闭，段仍在使用时重新打开
+     */
+    private void reopen(Segment segment) throws IOException {
+        synchronized (segment) {
+            if (!segment.channel.isOpen() && !segment.removed && !closed) {
+                segment.channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        }
+    }
+
+    private Segment currentSegment() {
+        synchronized (writeLock) {
+            return active;
+        }
+    }
+
+    /**
+     * 统计被删除或覆盖的记录，需要持有写锁
+     */
+    private void markDead(DigestIndex.Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        Segment segment = segments.get(entry.segmentId);
+        if (segment != null) {
+            segment.deadBytes.addAndGet(needleBytes(entry.length));
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static int needleBytes(int length) {
+        return NEEDLE_HEADER_BYTES + length + NEEDLE_TRAILER_BYTES;
+    }
+
+    private static byte[] parseKey(String key) {
+        if (key == null || !KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("摘要必须是64位小写十六进制字符串：" + key);
+        }
+        return HEX.parseHex(key);
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("卷段文件不完整");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.hello.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于汉明距离的BK树
+ * 用于在大量64位感知哈希中快速查找距离不超过阈值的最近条目，
+ * 利用三角不等式剪枝，查询时只需访问少量节点
+ * 写操作和读操作通过对象锁串行化
+ * @param <V> 条目关联的值类型
+ */
+public class BkTree<V> {
+
+    private Node<V> root;
+
+    private int size;
+
+    /**
+     * 查询结果
+     * @param <V> 值类型
+     */
+    public static class Match<V> {
+        private final long hash;
+        private final V value;
+        private final int distance;
+
+        Match(long hash, V value, int distance) {
+            this.hash = hash;
+            this.value = value;
+            this.distance = distance;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private static class Node<V> {
+        final long hash;
+        V value;
+        // 子节点按与当前节点的距离索引
+        final Map<Integer, Node<V>> children = new HashMap<>();
+
+        Node(long hash, V value) {
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 插入哈希，已存在相同哈希时覆盖其值
+     * @param hash 64位哈希
+     * @param value 关联的值
+     */
+    public synchronized void add(long hash, V value) {
+        if (root == null) {
+            root = new Node<>(hash, value);
+            size++;
+            return;
+        }
+        Node<V> node = root;
+        while (true) {
+            int distance = PerceptualHash.hammingDistance(hash, node.hash);
+            if (distance == 0) {
+                node.value = value;
+                return;
+            }
+            Node<V> child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new Node<>(hash, value));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * 查找距离不超过阈值的最近条目
+     * @param hash 查询哈希
+     * @param maxDistance 最大汉明距离
+     * @return 最近的条目，没有则返回null
+     */
+    public synchronized Match<V> findNearest(long hash, int maxDistance) {
+        if (root == null) {
+            return null;
+        }
+        Node<V> best = null;
+        int bestDistance = maxDistance + 1;
+        ArrayDeque<Node<V>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<V> node = stack.pop();
+            int distance = PerceptualHash.hammingDistance(hash, node.hash);
+            if (distance < bestDistance) {
+                best = node;
+                bestDistance = distance;
+                if (distance == 0) {
+                    break;
+                }
+            }
+            // 只有距离在[d - r, d + r]内的子树可能包含满足条件的条目
+            int radius = bestDistance - 1;
+            for (Map.Entry<Integer, Node<V>> entry : node.children.entrySet()) {
+                int childDistance = entry.getKey();
+                if (childDistance >= distance - radius && childDistance <= distance + radius) {
+                    stack.push(entry.getValue());
+                }
+            }
+        }
+        return best == null ? null : new Match<>(best.hash, best.value, bestDistance);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 清空所有条目
+     */
+    public synchronized void clear() {
+        root = null;
+        size = 0;
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.hello.util;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * EXIF方向工具类
+ * 手机拍摄的照片通常按传感器方向保存像素，再用EXIF Orientation标签（0x0112）标明显示时需要的旋转和翻转；
+ * ImageIO解码时忽略该标签，重新编码前需要先把像素转到正确方向，否则外部接口收到的是横躺或倒置的图片
+ */
+public final class ExifOrientation {
+
+    /**
+     * 正常方向，不需要变换
+     */
+    public static final int NORMAL = 1;
+
+    // EXIF方向标签
+    private static final int TAG_ORIENTATION = 0x0112;
+
+    // TIFF SHORT类型
+    private static final int TYPE_SHORT = 3;
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * 从JPEG的APP1段读取EXIF方向，只扫描图像数据之前的标记段
+     * @param imageBytes 图片字节
+     * @return 方向值1到8，不是JPEG、没有EXIF或标签无效时返回1
+     */
+    public static int read(byte[] imageBytes) {
+        if (imageBytes.length < 4 || (imageBytes[0] & 0xFF) != 0xFF || (imageBytes[1] & 0xFF) != 0xD8) {
+            return NORMAL;
+        }
+        int position = 2;
+        while (position + 4 <= imageBytes.length) {
+            if ((imageBytes[position] & 0xFF) != 0xFF) {
+                return NORMAL;
+            }
+            int marker = imageBytes[position + 1] & 0xFF;
+            // 图像数据开始或图像结束，之后不会再有EXIF
+            if (marker == 0xDA || marker == 0xD9) {
+                return NORMAL;
+            }
+            int length = readShort(imageBytes, position + 2, false);
+            if (length < 2 || position + 2 + length > imageBytes.length) {
+                return NORMAL;
+            }
+            if (marker == 0xE1 && length >= 8 && isExifHeader(imageBytes, position + 4)) {
+                return readOrientation(imageBytes, position + 10, position + 2 + length);
+            }
+            position += 2 + length;
+        }
+        return NORMAL;
+    }
+
+    /**
+     * 按EXIF方向旋转或翻转图片
+     * @param image 解码后的图片
+     * @param orientation EXIF方向值
+     * @return 正确方向的图片，方向为1或无效时返回原图片
+     */
+    public static BufferedImage apply(BufferedImage image, int orientation) {
+        if (orientation <= NORMAL || orientation > 8) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // 方向5到8需要旋转90度，宽高互换
+        boolean swap = orientation >= 5;
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 2: // 水平翻转
+                transform.translate(width, 0);
+                transform.scale(-1, 1);
+                break;
+            case 3: // 旋转180度
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+                break;
+            case 4: // 垂直翻转
+                transform.translate(0, height);
+                transform.scale(1, -1);
+                break;
+            case 5: // 沿左上-右下对角线翻转
+                transform.rotate(Math.PI / 2);
+                transform.scale(1, -1);
+                break;
+            case 6: // 顺时针旋转90度
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+                break;
+            case 7: // 沿右上-左下对角线翻转
+                transform.translate(height, width);
+                transform.rotate(Math.PI / 2);
+                transform.scale(-1, 1);
+                break;
+            default: // 8：逆时针旋转90度
+                transform.translate(0, width);
+                transform.rotate(-Math.PI / 2);
+                break;
+        }
+        int type = image.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_RGB : image.getType();
+        BufferedImage rotated = new BufferedImage(swap ? height : width, swap ? width : height, type);
+        Graphics2D graphics = rotated.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rotated;
+    }
+
+    private static boolean isExifHeader(byte[] bytes, int offset) {
+        return bytes[offset] == 'E' && bytes[offset + 1] == 'x' && bytes[offset + 2] == 'i' && bytes[offset + 3] == 'f'
+                && bytes[offset + 4] == 0 && bytes[offset + 5] == 0;
+    }
+
+    /**
+     * 在TIFF结构的第0个IFD中查找方向标签
+     * @param bytes 图片字节
+     * @param tiffStart TIFF头起始位置
+     * @param end APP1段结束位置
+     * @return 方向值
+     */
+    private static int readOrientation(byte[] bytes, int tiffStart, int end) {
+        if (tiffStart + 8 > end) {
+            return NORMAL;
+        }
+        boolean littleEndian;
+        if (bytes[tiffStart] == 'I' && bytes[tiffStart + 1] == 'I') {
+            littleEndian = true;
+        } else if (bytes[tiffStart] == 'M' && bytes[tiffStart + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return NORMAL;
+        }
+        long ifdOffset = readInt(bytes, tiffStart + 4, littleEndian) & 0xFFFFFFFFL;
+        long ifdStart = tiffStart + ifdOffset;
+        if (ifdOffset < 8 || ifdStart + 2 > end) {
+            return NORMAL;
+        }
+        int entries = readShort(bytes, (int) ifdStart, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifdStart + 2 + i * 12;
+            if (entry + 12 > end) {
+                return NORMAL;
+            }
+            if (readShort(bytes, entry, littleEndian) == TAG_ORIENTATION) {
+                if (readShort(bytes, entry + 2, littleEndian) != TYPE_SHORT) {
+                    return NORMAL;
+                }
+                int orientation = readShort(bytes, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    private static int readShort(byte[] bytes, int offset, boolean littleEndian) {
+        int b0 = bytes[offset] & 0xFF;
+        int b1 = bytes[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static int readInt(byte[] bytes, int offset, boolean littleEndian) {
+        int high = readShort(bytes, littleEndian ? offset + 2 : offset, littleEndian);
+        int low = readShort(bytes, littleEndian ? offset : offset + 2, littleEndian);
+        return (high << 16) | low;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.hello.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.web.client.RequestCallback;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 流式写出图片JSON请求体的RequestCallback
+ * 请求体格式为{"image":"<Base64>", ...其他字段}，图片从输入流读取后直接Base64编码写入HTTP输出流，
+ * 不生成Base64字符串、请求体Map和Jackson序列化副本，内存占用与图片大小无关
+ * 其他字段的值较小，仍通过Jackson序列化
+ * 请求支持流式写出（如HttpComponentsClientHttpRequestFactory）时在发送阶段直接写入连接，
+ * 否则写入getBody()返回的输出流，由请求工厂决定是否缓冲
+ */
+public class ImageJsonRequestCallback implements RequestCallback {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpHeaders headers;
+
+    private final String imageField;
+
+    private final InputStream image;
+
+    private final Map<String, Object> fields;
+
+    /**
+     * @param headers 额外的请求头，如认证信息
+     * @param imageField 图片字段名称
+     * @param image 图片输入流，写完后关闭
+     * @param fields 其他请求字段，按迭代顺序写在图片字段之后
+     */
+    public ImageJsonRequestCallback(HttpHeaders headers, String imageField, InputStream image, Map<String, Object> fields) {
+        this.headers = headers;
+        this.imageField = imageField;
+        this.image = image;
+        this.fields = fields != null ? fields : Collections.emptyMap();
+    }
+
+    @Override
+    public void doWithRequest(ClientHttpRequest request) throws IOException {
+        HttpHeaders requestHeaders = request.getHeaders();
+        requestHeaders.putAll(headers);
+        requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+        requestHeaders.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+
+        if (request instanceof StreamingHttpOutputMessage streaming) {
+            // getBody()会把整个请求体缓冲在内存中，流式请求改为发送时写出
+            streaming.setBody(this::writeBody);
+        } else {
+            writeBody(request.getBody());
+        }
+    }
+
+    /**
+     * 写出JSON请求体
+     * @param body HTTP输出流
+     * @throws IOException 读取图片或写出异常
+     */
+    private void writeBody(OutputStream body) throws IOException {
+        body.write('{');
+        OBJECT_MAPPER.writeValue(NonClosingOutputStream.of(body), imageField);
+        body.write(':');
+        body.write('"');
+        // 关闭编码流只会写出末尾的填充字符，不会关闭HTTP输出流
+        try (InputStream in = image;
+             OutputStream encoder = Base64.getEncoder().wrap(NonClosingOutputStream.of(body))) {
+            in.transferTo(encoder);
+        }
+        body.write('"');
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            body.write(',');
+            OBJECT_MAPPER.writeValue(NonClosingOutputStream.of(body), field.getKey());
+            body.write(':');
+            OBJECT_MAPPER.writeValue(NonClosingOutputStream.of(body), field.getValue());
+        }
+        body.write('}');
+        body.flush();
+    }
+
+    /**
+     * 忽略close的输出流包装，用于Base64编码流和Jackson写出后不关闭HTTP输出流
+     */
+    private static final class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        private NonClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        static OutputStream of(OutputStream out) {
+            return new NonClosingOutputStream(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.hello.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 感知哈希工具类
+ * 基于差值哈希（dHash）：将图片缩小为9x8灰度网格，比较相邻像素亮度生成64位指纹，
+ * 重新压缩、轻微裁剪或缩放后的同一张图片指纹的汉明距离很小
+ * 解码时对源图像隔行隔列采样，只保留计算网格所需的像素，大图不会解码出完整尺寸的像素数组
+ */
+public final class PerceptualHash {
+
+    // 哈希网格宽度（比较相邻列，因此比高度多一列）
+    private static final int GRID_WIDTH = 9;
+    // 哈希网格高度
+    private static final int GRID_HEIGHT = 8;
+    // 每个网格单元在每个方向上的最大采样点数
+    private static final int SAMPLES_PER_CELL = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * 采样解码图片并计算差值哈希
+     * @param imageBytes 图片字节
+     * @return 64位差值哈希，无法解码时返回null
+     * @throws IOException 图片读取异常
+     */
+    public static Long dHash(byte[] imageBytes) throws IOException {
+        BufferedImage image = decode(imageBytes);
+        return image == null ? null : dHash(image);
+    }
+
+    /**
+     * 计算图片的差值哈希
+     * @param image 图片
+     * @return 64位差值哈希
+     */
+    public static long dHash(BufferedImage image) {
+        double[][] grid = downscaleToGray(image);
+        long hash = 0L;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                hash <<= 1;
+                if (grid[y][x] > grid[y][x + 1]) {
+                    hash |= 1L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 计算两个哈希之间的汉明距离
+     * @param a 哈希a
+     * @param b 哈希b
+     * @return 不同的位数
+     */
+    public static int hammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 按哈希网格尺寸采样解码图片，采样后每个网格单元在每个方向上仍有不少于SAMPLES_PER_CELL个像素
+     * @param imageBytes 图片字节
+     * @return 解码后的图片，没有可用解码器时返回null
+     * @throws IOException 图片读取异常
+     */
+    private static BufferedImage decode(byte[] imageBytes) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsampling = Math.max(1, Math.min(
+                        reader.getWidth(0) / (GRID_WIDTH * SAMPLES_PER_CELL),
+                        reader.getHeight(0) / (GRID_HEIGHT * SAMPLES_PER_CELL)));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 将图片按区域平均缩小为灰度网格
+     * 每个单元只做有限次采样，避免对大图逐像素计算
+     * @param image 图片
+     * @return 灰度网格
+     */
+    private static double[][] downscaleToGray(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[][] grid = new double[GRID_HEIGHT][GRID_WIDTH];
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int y0 = gy * height / GRID_HEIGHT;
+            int y1 = Math.max(y0 + 1, (gy + 1) * height / GRID_HEIGHT);
+            int stepY = Math.max(1, (y1 - y0) / SAMPLES_PER_CELL);
+            for (int gx = 0; gx < GRID_WIDTH; gx++) {
+                int x0 = gx * width / GRID_WIDTH;
+                int x1 = Math.max(x0 + 1, (gx + 1) * width / GRID_WIDTH);
+                int stepX = Math.max(1, (x1 - x0) / SAMPLES_PER_CELL);
+                double sum = 0;
+                int count = 0;
+                for (int y = y0; y < y1 && y < height; y += stepY) {
+                    for (int x = x0; x < x1 && x < width; x += stepX) {
+                        int rgb = image.getRGB(x, y);
+                        int r = (rgb >> 16) & 0xFF;
+                        int g = (rgb >> 8) & 0xFF;
+                        int b = rgb & 0xFF;
+                        sum += 0.299 * r + 0.587 * g + 0.114 * b;
+                        count++;
+                    }
+                }
+                grid[gy][gx] = count == 0 ? 0 : sum / count;
+            }
+        }
+        return grid;
+    }
+}
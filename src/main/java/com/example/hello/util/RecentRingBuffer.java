@@ -0,0 +1,122 @@
+package com.example.hello.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * 保存最近写入条目的无锁环形缓冲区
+ * 每次写入先取得递增序号，再写入序号对应的槽位，缓冲区写满后新条目覆盖最早的条目
+ * 读取时从最新序号向前遍历，跳过尚未写完或已被覆盖的槽位，读写之间不加锁
+ * 条目应为不可变对象或写入后不再修改的副本
+ * 已写入的条目可以按条件移除，被移除的槽位在读取时同样跳过
+ * @param <T> 条目类型
+ */
+public class RecentRingBuffer<T> {
+
+    private final int capacity;
+
+    private final AtomicReferenceArray<Slot<T>> slots;
+
+    /**
+     * 下一个写入序号
+     */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * @param capacity 保留的条目数
+     */
+    public RecentRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("缓冲区容量必须大于0");
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * 追加条目
+     * @param value 条目
+     */
+    public void append(T value) {
+        long sequence = cursor.getAndIncrement();
+        int index = indexOf(sequence);
+        Slot<T> slot = new Slot<>(sequence, value);
+        while (true) {
+            Slot<T> current = slots.get(index);
+            // 写入较慢的线程不能覆盖已经绕过一圈的新条目
+            if (current != null && current.sequence > sequence) {
+                return;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按写入时间从新到旧获取最近的条目
+     * 并发写入时可能少返回正在写入的条目
+     * @param limit 最多返回的条目数
+     * @return 条目列表
+     */
+    public List<T> recent(int limit) {
+        long end = cursor.get();
+        long start = Math.max(0, end - capacity);
+        List<T> result = new ArrayList<>(Math.min(limit, capacity));
+        for (long sequence = end - 1; sequence >= start && result.size() < limit; sequence--) {
+            Slot<T> slot = slots.get(indexOf(sequence));
+            if (slot != null && slot.sequence == sequence) {
+                result.add(slot.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 移除满足条件的条目
+     * 只清空仍保存该条目的槽位，与并发追加竞争失败时说明槽位已被新条目覆盖，无需再移除
+     * @param filter 移除条件
+     * @return 移除的条目数
+     */
+    public int removeIf(Predicate<? super T> filter) {
+        int removed = 0;
+        for (int index = 0; index < capacity; index++) {
+            Slot<T> slot = slots.get(index);
+            if (slot != null && filter.test(slot.value) && slots.compareAndSet(index, slot, null)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 获取缓冲区中的槽位占用数，已移除的条目仍计入
+     * @return 条目数
+     */
+    public int size() {
+        return (int) Math.min(cursor.get(), capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int indexOf(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private static final class Slot<T> {
+
+        private final long sequence;
+
+        private final T value;
+
+        Slot(long sequence, T value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+}
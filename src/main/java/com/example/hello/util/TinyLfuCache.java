@@ -0,0 +1,182 @@
+package com.example.hello.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 带TinyLFU准入策略的有界缓存
+ * 条目按访问顺序排列，缓存已满时新条目只有在近期访问频率高于最久未访问的条目时才会替换它，
+ * 偶尔访问一次的键不会挤掉热点条目
+ * 访问频率用Count-Min Sketch估算（每个计数最大15），累计记录次数达到容量的10倍时所有计数减半，使频率随时间衰减
+ * 读写操作通过对象锁串行化
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class TinyLfuCache<K, V> {
+
+    private final int maximumSize;
+
+    private final LinkedHashMap<K, V> entries;
+
+    private final FrequencySketch sketch;
+
+    private long rejections;
+
+    private long evictions;
+
+    /**
+     * @param maximumSize 最大条目数
+     */
+    public TinyLfuCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0");
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * 获取缓存值，并记录一次访问
+     * @param key 键
+     * @return 缓存值，未命中返回null
+     */
+    public synchronized V get(K key) {
+        sketch.increment(key);
+        return entries.get(key);
+    }
+
+    /**
+     * 写入缓存值
+     * 键已存在时直接覆盖；缓存已满时按访问频率决定是否替换最久未访问的条目
+     * @param key 键
+     * @param value 值
+     * @return 写入缓存返回true，未通过准入返回false
+     */
+    public synchronized boolean put(K key, V value) {
+        if (entries.containsKey(key)) {
+            entries.put(key, value);
+            return true;
+        }
+        if (entries.size() >= maximumSize) {
+            Iterator<K> eldest = entries.keySet().iterator();
+            K victim = eldest.next();
+            if (sketch.frequency(key) <= sketch.frequency(victim)) {
+                rejections++;
+                return false;
+            }
+            eldest.remove();
+            evictions++;
+        }
+        entries.put(key, value);
+        return true;
+    }
+
+    /**
+     * 删除缓存值
+     * @param key 键
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * 获取未通过准入而未写入的次数
+     * @return 拒绝次数
+     */
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * 获取被替换出缓存的条目数
+     * @return 淘汰次数
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Count-Min Sketch频率估算
+     * 4行计数数组，每个键在每行对应一个计数，估算值取4个计数的最小值
+     */
+    private static final class FrequencySketch {
+
+        private static final int DEPTH = 4;
+
+        private static final int MAX_COUNT = 15;
+
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] table;
+
+        private final int mask;
+
+        private final int sampleSize;
+
+        private int additions;
+
+        FrequencySketch(int maximumSize) {
+            // 每行计数数为容量的4倍以上，减少不同键落在同一计数上的概率
+            int width = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 3;
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maximumSize);
+        }
+
+        void increment(Object key) {
+            int hash = spread(key);
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key);
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+
+        private static int spread(Object key) {
+            int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.hello.vector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 精确（暴力）内积检索索引
+ * 向量连续存放在堆外矩阵中，检索时按行分段交给ForkJoin线程池并行扫描，
+ * 每段用原始类型小顶堆选出Top-K，最后合并
+ * 对几十万规模以内的数据，召回率为100%，且尾延迟比近似索引更稳定
+ */
+public class FlatVectorIndex {
+
+    // 单个扫描任务处理的最少行数，低于该值不再拆分
+    private static final int LEAF_ROWS = 4096;
+
+    private final FloatMatrix matrix;
+
+    private final ForkJoinPool pool;
+
+    // 行号到向量ID的映射
+    private final List<String> rowIds = new ArrayList<>();
+
+    // 向量ID到行号的映射
+    private final Map<String, Integer> rowsById = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 创建精确检索索引
+     * @param dimension 向量维度
+     * @param initialCapacity 初始行容量
+     * @param pool 并行扫描使用的线程池
+     */
+    public FlatVectorIndex(int dimension, int initialCapacity, ForkJoinPool pool) {
+        this.matrix = new FloatMatrix(dimension, initialCapacity);
+        this.pool = pool;
+    }
+
+    public int getDimension() {
+        return matrix.getDimension();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return matrix.rows();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 插入向量，同一向量ID再次插入时覆盖
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     */
+    public void add(String vectorId, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowsById.get(vectorId);
+            if (row != null) {
+                matrix.set(row, vector);
+            } else {
+                rowsById.put(vectorId, matrix.append(vector));
+                rowIds.add(vectorId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除向量，最后一行移动到被删除的位置
+     * @param vectorId 向量ID
+     * @return 向量是否存在
+     */
+    public boolean remove(String vectorId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowsById.remove(vectorId);
+            if (row == null) {
+                return false;
+            }
+            int moved = matrix.removeBySwap(row);
+            String lastId = rowIds.remove(rowIds.size() - 1);
+            if (moved >= 0) {
+                rowIds.set(row, lastId);
+                rowsById.put(lastId, row);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 读取向量
+     * @param vectorId 向量ID
+     * @return 向量副本，不存在返回null
+     */
+    public float[] get(String vectorId) {
+        lock.readLock().lock();
+        try {
+            Integer row = rowsById.get(vectorId);
+            return row == null ? null : matrix.get(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历全部向量
+     * @param consumer 接收向量ID和向量副本
+     */
+    public void forEach(BiConsumer<String, float[]> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < matrix.rows(); row++) {
+                consumer.accept(rowIds.get(row), matrix.get(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检索内积最大且不低于阈值的k个向量
+     * @param query 查询向量
+     * @param k 返回结果数量
+     * @param threshold 相似度阈值
+     * @return 按相似度降序排列的结果
+     */
+    public List<SearchHit> search(float[] query, int k, float threshold) {
+        if (query.length != matrix.getDimension()) {
+            throw new IllegalArgumentException("向量维度不匹配，期望" + matrix.getDimension() + "，实际" + query.length);
+        }
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            int rows = matrix.rows();
+            FloatIntHeap heap = rows <= LEAF_ROWS * 2
+                    ? scan(matrix, query, k, threshold, 0, rows)
+                    : pool.invoke(new ScanTask(matrix, query, k, threshold, 0, rows));
+            int count = heap.size();
+            float[] scores = new float[count];
+            int[] ids = new int[count];
+            heap.drainDescending(scores, ids);
+            List<SearchHit> hits = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                hits.add(new SearchHit(rowIds.get(ids[i]), scores[i]));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 顺序扫描[from, to)区间的行
+     */
+    static FloatIntHeap scan(FloatMatrix matrix, float[] query, int k, float threshold, int from, int to) {
+        FloatIntHeap heap = new FloatIntHeap(k);
+        for (int row = from; row < to; row++) {
+            float score = matrix.dot(row, query);
+            if (score >= threshold) {
+                heap.offer(score, row, k);
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * 并行扫描任务，按行区间二分拆分
+     */
+    private static final class ScanTask extends RecursiveTask<FloatIntHeap> {
+        private static final long serialVersionUID = 1L;
+
+        private final FloatMatrix matrix;
+        private final float[] query;
+        private final int k;
+        private final float threshold;
+        private final int from;
+        private final int to;
+
+        ScanTask(FloatMatrix matrix, float[] query, int k, float threshold, int from, int to) {
+            this.matrix = matrix;
+            this.query = query;
+            this.k = k;
+            this.threshold = threshold;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected FloatIntHeap compute() {
+            if (to - from <= LEAF_ROWS) {
+                return scan(matrix, query, k, threshold, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(matrix, query, k, threshold, from, middle);
+            ScanTask right = new ScanTask(matrix, query, k, threshold, middle, to);
+            left.fork();
+            FloatIntHeap merged = right.compute();
+            FloatIntHeap other = left.join();
+            while (!other.isEmpty()) {
+                float score = other.peekScore();
+                merged.offer(score, other.pop(), k);
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.hello.vector;
+
+import java.util.Arrays;
+
+/**
+ * 基于原始类型数组的(分数, 编号)小顶堆
+ * 用于向量检索中的候选集维护和Top-K选择，避免装箱和对象分配
+ * 需要大顶堆时由调用方对分数取反
+ */
+public final class FloatIntHeap {
+
+    private float[] scores;
+    private int[] ids;
+    private int size;
+
+    public FloatIntHeap(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.scores = new float[capacity];
+        this.ids = new int[capacity];
+    }
+
+    /**
+     * 压入一个元素
+     * @param score 分数
+     * @param id 编号
+     */
+    public void push(float score, int id) {
+        if (size == scores.length) {
+            scores = Arrays.copyOf(scores, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int i = size++;
+        // 上浮
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            scores[i] = scores[parent];
+            ids[i] = ids[parent];
+            i = parent;
+        }
+        scores[i] = score;
+        ids[i] = id;
+    }
+
+    /**
+     * 维护容量为k的Top-K集合：未满时直接压入，已满时只替换比堆顶更大的元素
+     * @param score 分数
+     * @param id 编号
+     * @param k 最大保留数量
+     * @return 是否被保留
+     */
+    public boolean offer(float score, int id, int k) {
+        if (size < k) {
+            push(score, id);
+            return true;
+        }
+        if (score > scores[0]) {
+            scores[0] = score;
+            ids[0] = id;
+            siftDown(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 弹出堆顶（分数最小的）元素，返回其编号
+     * @return 编号
+     */
+    public int pop() {
+        int id = ids[0];
+        size--;
+        if (size > 0) {
+            scores[0] = scores[size];
+            ids[0] = ids[size];
+            siftDown(0);
+        }
+        return id;
+    }
+
+    public float peekScore() {
+        return scores[0];
+    }
+
+    public int peekId() {
+        return ids[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 按分数从高到低导出编号
+     * 导出后堆被清空
+     * @param outScores 输出分数数组，长度不小于size
+     * @param outIds 输出编号数组，长度不小于size
+     * @return 导出的元素个数
+     */
+    public int drainDescending(float[] outScores, int[] outIds) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            outScores[i] = scores[0];
+            outIds[i] = pop();
+        }
+        return count;
+    }
+
+    private void siftDown(int i) {
+        float score = scores[i];
+        int id = ids[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && scores[right] < scores[child]) {
+                child = right;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            scores[i] = scores[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        scores[i] = score;
+        ids[i] = id;
+    }
+}
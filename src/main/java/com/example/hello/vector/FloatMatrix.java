@@ -0,0 +1,187 @@
+package com.example.hello.vector;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 堆外连续存储的float32矩阵，每行一个向量
+ * 内积计算使用JDK Vector API（jdk.incubator.vector）按SIMD通道并行累加，
+ * 运行时需要添加 --add-modules jdk.incubator.vector
+ * 读操作（get、dot）可并发执行，写操作需要调用方保证互斥
+ */
+public class FloatMatrix {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private final int dimension;
+
+    private final int rowBytes;
+
+    private final boolean writable;
+
+    private final ByteOrder order;
+
+    private ByteBuffer buffer;
+
+    private int rows;
+
+    /**
+     * 创建可写的堆外矩阵
+     * @param dimension 向量维度
+     * @param initialCapacity 初始行容量
+     */
+    public FloatMatrix(int dimension, int initialCapacity) {
+        this.dimension = dimension;
+        this.rowBytes = dimension * Float.BYTES;
+        this.writable = true;
+        this.order = ByteOrder.nativeOrder();
+        this.buffer = allocate(Math.max(1, initialCapacity));
+    }
+
+    /**
+     * 包装已有的缓冲区（例如内存映射文件），只读
+     * @param dimension 向量维度
+     * @param buffer 从位置0开始按行紧密排列的float32数据，按缓冲区自身的字节序读取
+     * @param rows 行数
+     */
+    public FloatMatrix(int dimension, ByteBuffer buffer, int rows) {
+        this.dimension = dimension;
+        this.rowBytes = dimension * Float.BYTES;
+        this.writable = false;
+        this.order = buffer.order();
+        this.buffer = buffer.duplicate().order(order);
+        this.rows = rows;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * 追加一行
+     * @param vector 向量
+     * @return 新行的行号
+     */
+    public int append(float[] vector) {
+        checkWritable();
+        if ((long) (rows + 1) * rowBytes > buffer.capacity()) {
+            grow();
+        }
+        set(rows, vector);
+        return rows++;
+    }
+
+    /**
+     * 覆盖指定行
+     * @param row 行号
+     * @param vector 向量
+     */
+    public void set(int row, float[] vector) {
+        checkWritable();
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配，期望" + dimension + "，实际" + vector.length);
+        }
+        int base = row * rowBytes;
+        int i = 0;
+        int upper = SPECIES.loopBound(dimension);
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector.fromArray(SPECIES, vector, i).intoByteBuffer(buffer, base + i * Float.BYTES, order);
+        }
+        for (; i < dimension; i++) {
+            buffer.putFloat(base + i * Float.BYTES, vector[i]);
+        }
+    }
+
+    /**
+     * 将最后一行移动到指定行并删除最后一行，用于O(1)删除
+     * @param row 被删除的行号
+     * @return 被移动的原行号（即原来的最后一行），若删除的就是最后一行则返回-1
+     */
+    public int removeBySwap(int row) {
+        checkWritable();
+        int last = rows - 1;
+        if (row != last) {
+            ByteBuffer source = buffer.duplicate();
+            source.limit(last * rowBytes + rowBytes).position(last * rowBytes);
+            ByteBuffer target = buffer.duplicate();
+            target.position(row * rowBytes);
+            target.put(source);
+        }
+        rows--;
+        return row != last ? last : -1;
+    }
+
+    /**
+     * 读取指定行
+     * @param row 行号
+     * @return 向量副本
+     */
+    public float[] get(int row) {
+        float[] vector = new float[dimension];
+        int base = row * rowBytes;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = buffer.getFloat(base + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * 计算指定行与查询向量的内积
+     * @param row 行号
+     * @param query 查询向量
+     * @return 内积
+     */
+    public float dot(int row, float[] query) {
+        int base = row * rowBytes;
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int upper = SPECIES.loopBound(dimension);
+        for (; i < upper; i += SPECIES.length()) {
+            FloatVector a = FloatVector.fromByteBuffer(SPECIES, buffer, base + i * Float.BYTES, order);
+            FloatVector b = FloatVector.fromArray(SPECIES, query, i);
+            acc = a.fma(b, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < dimension; i++) {
+            sum += buffer.getFloat(base + i * Float.BYTES) * query[i];
+        }
+        return sum;
+    }
+
+    private void checkWritable() {
+        if (!writable) {
+            throw new UnsupportedOperationException("只读矩阵不支持写入");
+        }
+    }
+
+    private void grow() {
+        long required = (long) buffer.capacity() * 2;
+        if (required > Integer.MAX_VALUE) {
+            required = (Integer.MAX_VALUE / rowBytes) * (long) rowBytes;
+            if (required <= buffer.capacity()) {
+                throw new IllegalStateException("向量矩阵已达到单个缓冲区的容量上限");
+            }
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) required).order(order);
+        ByteBuffer source = buffer.duplicate();
+        source.position(0).limit(rows * rowBytes);
+        grown.put(source);
+        buffer = grown;
+    }
+
+    private ByteBuffer allocate(int capacityRows) {
+        long bytes = (long) capacityRows * rowBytes;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("向量矩阵初始容量过大");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(order);
+    }
+}
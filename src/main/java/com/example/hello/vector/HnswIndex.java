@@ -0,0 +1,458 @@
+package com.example.hello.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 纯Java实现的HNSW（分层可导航小世界图）近似最近邻索引
+ * 使用内积作为相似度，与Milvus集合的IP度量保持一致
+ * 支持并发插入和检索：节点邻接表采用写时复制，修改时只锁定单个节点；
+ * 删除采用墓碑标记，检索时过滤
+ */
+public class HnswIndex {
+
+    private static final int[] NO_CONNECTIONS = new int[0];
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 图节点
+     */
+    private static final class Node {
+        final int id;
+        final String vectorId;
+        final float[] vector;
+        final int level;
+        // 每层的邻接表，写时复制，读取无需加锁
+        final AtomicReferenceArray<int[]> connections;
+        volatile boolean deleted;
+
+        Node(int id, String vectorId, float[] vector, int level) {
+            this.id = id;
+            this.vectorId = vectorId;
+            this.vector = vector;
+            this.level = level;
+            this.connections = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                connections.set(l, NO_CONNECTIONS);
+            }
+        }
+    }
+
+    /**
+     * 线程内复用的访问标记，按轮次区分避免每次检索清空
+     */
+    private static final class VisitedSet {
+        int[] marks = new int[0];
+        int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[capacity];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean visit(int id) {
+            if (marks[id] == epoch) {
+                return false;
+            }
+            marks[id] = epoch;
+            return true;
+        }
+    }
+
+    private final int dimension;
+    // 上层每个节点的最大连接数
+    private final int m;
+    // 第0层每个节点的最大连接数
+    private final int maxM0;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private final double levelMultiplier;
+
+    // 扩容时持有写锁，插入和检索持有读锁
+    private final ReentrantReadWriteLock storageLock = new ReentrantReadWriteLock();
+    private volatile AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<String, Integer> idsByVectorId = new ConcurrentHashMap<>();
+    private final Object entryLock = new Object();
+    private volatile Node entryPoint;
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    /**
+     * 创建HNSW索引
+     * @param dimension 向量维度
+     * @param m 每个节点的最大连接数，对应Milvus的M参数
+     * @param efConstruction 构建时的候选集大小
+     * @param efSearch 检索时的候选集大小
+     */
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        if (dimension <= 0 || m < 2 || efConstruction <= 0 || efSearch <= 0) {
+            throw new IllegalArgumentException("HNSW参数不合法");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * 当前有效（未删除）的向量数量
+     * @return 向量数量
+     */
+    public int size() {
+        return idsByVectorId.size();
+    }
+
+    /**
+     * 插入向量，同一向量ID再次插入时替换旧向量
+     * @param vectorId 向量ID
+     * @param vector 向量数据
+     */
+    public void add(String vectorId, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配，期望" + dimension + "，实际" + vector.length);
+        }
+        int id = nextId.getAndIncrement();
+        ensureCapacity(id + 1);
+        storageLock.readLock().lock();
+        try {
+            Node node = new Node(id, vectorId, vector.clone(), randomLevel());
+            nodes.set(id, node);
+            link(node);
+            Integer previous = idsByVectorId.put(vectorId, id);
+            if (previous != null) {
+                nodes.get(previous).deleted = true;
+            }
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 删除向量（墓碑标记）
+     * @param vectorId 向量ID
+     * @return 向量是否存在
+     */
+    public boolean remove(String vectorId) {
+        Integer id = idsByVectorId.remove(vectorId);
+        if (id == null) {
+            return false;
+        }
+        storageLock.readLock().lock();
+        try {
+            nodes.get(id).deleted = true;
+        } finally {
+            storageLock.readLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 检索与查询向量内积最大的k个向量
+     * @param query 查询向量
+     * @param k 返回结果数量
+     * @return 按相似度降序排列的结果
+     */
+    public List<SearchHit> search(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配，期望" + dimension + "，实际" + query.length);
+        }
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        storageLock.readLock().lock();
+        try {
+            Node current = entryPoint;
+            if (current == null) {
+                return Collections.emptyList();
+            }
+            for (int level = current.level; level > 0; level--) {
+                current = greedySearch(query, current, level);
+            }
+            FloatIntHeap results = searchLayer(query, current, Math.max(efSearch, k), 0);
+            int count = results.size();
+            float[] scores = new float[count];
+            int[] ids = new int[count];
+            results.drainDescending(scores, ids);
+            List<SearchHit> hits = new ArrayList<>(Math.min(k, count));
+            for (int i = 0; i < count && hits.size() < k; i++) {
+                Node node = nodes.get(ids[i]);
+                if (!node.deleted) {
+                    hits.add(new SearchHit(node.vectorId, scores[i]));
+                }
+            }
+            return hits;
+        } finally {
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 将新节点接入图中
+     * @param node 新节点
+     */
+    private void link(Node node) {
+        Node entry = entryPoint;
+        if (entry == null) {
+            synchronized (entryLock) {
+                if (entryPoint == null) {
+                    entryPoint = node;
+                    return;
+                }
+                entry = entryPoint;
+            }
+        }
+        Node current = entry;
+        for (int level = entry.level; level > node.level; level--) {
+            current = greedySearch(node.vector, current, level);
+        }
+        for (int level = Math.min(node.level, entry.level); level >= 0; level--) {
+            FloatIntHeap candidates = searchLayer(node.vector, current, efConstruction, level);
+            int count = candidates.size();
+            float[] scores = new float[count];
+            int[] ids = new int[count];
+            candidates.drainDescending(scores, ids);
+            int[] neighbors = selectNeighbors(ids, scores, count, m);
+            setConnections(node, neighbors, level);
+            for (int neighborId : neighbors) {
+                addConnection(nodes.get(neighborId), node, level);
+            }
+            if (count > 0) {
+                current = nodes.get(ids[0]);
+            }
+        }
+        if (node.level > entry.level) {
+            synchronized (entryLock) {
+                if (node.level > entryPoint.level) {
+                    entryPoint = node;
+                }
+            }
+        }
+    }
+
+    /**
+     * 设置新节点在某一层的邻居
+     * 并发插入的其他节点可能已先行连到该节点，此时合并而不是覆盖
+     * @param node 新节点
+     * @param neighbors 选中的邻居
+     * @param level 层级
+     */
+    private void setConnections(Node node, int[] neighbors, int level) {
+        int maxConnections = level == 0 ? maxM0 : m;
+        synchronized (node) {
+            int[] existing = node.connections.get(level);
+            if (existing.length == 0) {
+                node.connections.set(level, neighbors);
+                return;
+            }
+            int[] merged = Arrays.copyOf(neighbors, Math.max(maxConnections, neighbors.length));
+            int count = neighbors.length;
+            for (int id : existing) {
+                if (count >= merged.length) {
+                    break;
+                }
+                boolean duplicate = false;
+                for (int i = 0; i < neighbors.length; i++) {
+                    if (neighbors[i] == id) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+                if (!duplicate) {
+                    merged[count++] = id;
+                }
+            }
+            node.connections.set(level, Arrays.copyOf(merged, count));
+        }
+    }
+
+    /**
+     * 为已有节点增加反向连接，超过上限时用启发式重新选择
+     * @param target 已有节点
+     * @param added 新节点
+     * @param level 层级
+     */
+    private void addConnection(Node target, Node added, int level) {
+        int maxConnections = level == 0 ? maxM0 : m;
+        synchronized (target) {
+            int[] current = target.connections.get(level);
+            if (current.length < maxConnections) {
+                int[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = added.id;
+                target.connections.set(level, updated);
+                return;
+            }
+            FloatIntHeap heap = new FloatIntHeap(current.length + 1);
+            heap.push(VectorMath.dot(target.vector, added.vector), added.id);
+            for (int id : current) {
+                heap.push(VectorMath.dot(target.vector, nodes.get(id).vector), id);
+            }
+            int count = heap.size();
+            float[] scores = new float[count];
+            int[] ids = new int[count];
+            heap.drainDescending(scores, ids);
+            target.connections.set(level, selectNeighbors(ids, scores, count, maxConnections));
+        }
+    }
+
+    /**
+     * 启发式邻居选择：候选按与基准点的相似度降序遍历，
+     * 只有当候选与基准点比与所有已选邻居都更近时才保留，以维持图的连通和多样性
+     * @param ids 候选编号，按相似度降序
+     * @param scores 候选与基准点的相似度
+     * @param count 候选数量
+     * @param limit 最大邻居数
+     * @return 选中的邻居编号
+     */
+    private int[] selectNeighbors(int[] ids, float[] scores, int count, int limit) {
+        if (count <= limit) {
+            return Arrays.copyOf(ids, count);
+        }
+        int[] selected = new int[limit];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < limit; i++) {
+            float[] candidate = nodes.get(ids[i]).vector;
+            boolean keep = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (VectorMath.dot(candidate, nodes.get(selected[j]).vector) > scores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[selectedCount++] = ids[i];
+            }
+        }
+        return selectedCount == limit ? selected : Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * 在上层图中贪心查找最近节点
+     * @param query 查询向量
+     * @param start 起始节点
+     * @param level 层级
+     * @return 局部最近节点
+     */
+    private Node greedySearch(float[] query, Node start, int level) {
+        Node current = start;
+        float best = VectorMath.dot(query, current.vector);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int id : current.connections.get(level)) {
+                Node neighbor = nodes.get(id);
+                float score = VectorMath.dot(query, neighbor.vector);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层执行束搜索
+     * @param query 查询向量
+     * @param start 起始节点
+     * @param ef 候选集大小
+     * @param level 层级
+     * @return 相似度最高的ef个节点组成的小顶堆
+     */
+    private FloatIntHeap searchLayer(float[] query, Node start, int ef, int level) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodes.length());
+        // 候选集按相似度取反存放，堆顶为当前最相似的候选
+        FloatIntHeap candidates = new FloatIntHeap(ef * 2);
+        // 结果集堆顶为当前最不相似的结果
+        FloatIntHeap results = new FloatIntHeap(ef + 1);
+        float startScore = VectorMath.dot(query, start.vector);
+        visited.visit(start.id);
+        candidates.push(-startScore, start.id);
+        results.push(startScore, start.id);
+        while (!candidates.isEmpty()) {
+            float candidateScore = -candidates.peekScore();
+            int candidateId = candidates.pop();
+            if (results.size() >= ef && candidateScore < results.peekScore()) {
+                break;
+            }
+            for (int id : nodes.get(candidateId).connections.get(level)) {
+                if (!visited.visit(id)) {
+                    continue;
+                }
+                float score = VectorMath.dot(query, nodes.get(id).vector);
+                if (results.size() < ef || score > results.peekScore()) {
+                    candidates.push(-score, id);
+                    results.offer(score, id, ef);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 按指数分布随机生成节点层级
+     * @return 层级
+     */
+    private int randomLevel() {
+        double random = ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(1.0 - random) * levelMultiplier);
+    }
+
+    /**
+     * 确保节点存储容量足够，不足时加写锁扩容
+     * @param required 需要的容量
+     */
+    private void ensureCapacity(int required) {
+        if (required <= nodes.length()) {
+            return;
+        }
+        storageLock.writeLock().lock();
+        try {
+            AtomicReferenceArray<Node> current = nodes;
+            if (required <= current.length()) {
+                return;
+            }
+            int capacity = current.length();
+            while (capacity < required) {
+                capacity *= 2;
+            }
+            AtomicReferenceArray<Node> grown = new AtomicReferenceArray<>(capacity);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            nodes = grown;
+        } finally {
+            storageLock.writeLock().unlock();
+        }
+    }
+}
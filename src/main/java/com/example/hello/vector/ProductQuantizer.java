@@ -0,0 +1,174 @@
+package com.example.hello.vector;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * 乘积量化器（PQ）
+ * 将向量切分为m个子空间，每个子空间用k-means训练最多256个质心，
+ * 每个向量编码为m个质心下标（每个下标1字节）
+ * 检索时为查询向量预计算每个子空间与各质心的内积表，
+ * 近似内积为m次查表之和（非对称距离计算）
+ */
+public class ProductQuantizer implements VectorQuantizer {
+
+    private static final int MAX_CENTROIDS = 256;
+
+    private final int dimension;
+
+    private final int subspaces;
+
+    private final int subDimension;
+
+    private final int iterations;
+
+    private final long seed;
+
+    // centroids[子空间][质心 * subDimension + 维度]
+    private float[][] centroids;
+
+    private int centroidCount;
+
+    /**
+     * 创建乘积量化器
+     * @param dimension 向量维度
+     * @param subspaces 子空间个数，需能整除维度，同时也是编码字节数
+     * @param iterations k-means迭代次数
+     * @param seed 随机种子
+     */
+    public ProductQuantizer(int dimension, int subspaces, int iterations, long seed) {
+        if (subspaces <= 0 || dimension % subspaces != 0) {
+            throw new IllegalArgumentException("子空间个数需能整除向量维度");
+        }
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.subDimension = dimension / subspaces;
+        this.iterations = iterations;
+        this.seed = seed;
+    }
+
+    @Override
+    public void train(List<float[]> samples) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("训练样本不能为空");
+        }
+        int count = Math.min(MAX_CENTROIDS, samples.size());
+        float[][] trained = new float[subspaces][];
+        // 各子空间相互独立，并行训练
+        IntStream.range(0, subspaces).parallel()
+                .forEach(s -> trained[s] = kMeans(samples, s, count, new Random(seed + s)));
+        this.centroidCount = count;
+        this.centroids = trained;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return centroids != null;
+    }
+
+    @Override
+    public int codeSize() {
+        return subspaces;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] out, int offset) {
+        for (int s = 0; s < subspaces; s++) {
+            out[offset + s] = (byte) nearestCentroid(centroids[s], centroidCount, vector, s * subDimension);
+        }
+    }
+
+    @Override
+    public QueryScorer scorer(float[] query) {
+        // table[s * 256 + c] = 查询子向量与质心c的内积
+        float[] table = new float[subspaces * MAX_CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            float[] book = centroids[s];
+            int base = s * subDimension;
+            for (int c = 0; c < centroidCount; c++) {
+                float sum = 0f;
+                int centroidBase = c * subDimension;
+                for (int d = 0; d < subDimension; d++) {
+                    sum += query[base + d] * book[centroidBase + d];
+                }
+                table[s * MAX_CENTROIDS + c] = sum;
+            }
+        }
+        return (codes, offset) -> {
+            float sum = 0f;
+            for (int s = 0; s < subspaces; s++) {
+                sum += table[s * MAX_CENTROIDS + (codes[offset + s] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+
+    /**
+     * 在一个子空间上执行k-means
+     * @return 质心数组
+     */
+    private float[] kMeans(List<float[]> samples, int subspace, int count, Random random) {
+        int base = subspace * subDimension;
+        int n = samples.size();
+        float[] book = new float[count * subDimension];
+        // 随机选择不同样本作为初始质心
+        int[] order = IntStream.range(0, n).toArray();
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+            System.arraycopy(samples.get(order[i]), base, book, i * subDimension, subDimension);
+        }
+        int[] assignment = new int[n];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < n; i++) {
+                assignment[i] = nearestCentroid(book, count, samples.get(i), base);
+            }
+            float[] sums = new float[count * subDimension];
+            int[] sizes = new int[count];
+            for (int i = 0; i < n; i++) {
+                int c = assignment[i];
+                sizes[c]++;
+                float[] sample = samples.get(i);
+                for (int d = 0; d < subDimension; d++) {
+                    sums[c * subDimension + d] += sample[base + d];
+                }
+            }
+            for (int c = 0; c < count; c++) {
+                if (sizes[c] == 0) {
+                    // 空簇重新随机选择样本作为质心
+                    System.arraycopy(samples.get(random.nextInt(n)), base, book, c * subDimension, subDimension);
+                    continue;
+                }
+                for (int d = 0; d < subDimension; d++) {
+                    book[c * subDimension + d] = sums[c * subDimension + d] / sizes[c];
+                }
+            }
+        }
+        return book;
+    }
+
+    /**
+     * 按欧氏距离查找最近质心
+     * @return 质心下标
+     */
+    private int nearestCentroid(float[] book, int count, float[] vector, int base) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < count; c++) {
+            float distance = 0f;
+            int centroidBase = c * subDimension;
+            for (int d = 0; d < subDimension; d++) {
+                float diff = vector[base + d] - book[centroidBase + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
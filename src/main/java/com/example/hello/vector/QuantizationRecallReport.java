@@ -0,0 +1,123 @@
+package com.example.hello.vector;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 量化召回率报告
+ * 以精确内积检索结果为基准，统计量化检索的Recall@K和压缩比，用于选择量化方式和参数
+ */
+public class QuantizationRecallReport {
+
+    private final String quantizerName;
+
+    private final int k;
+
+    private final int rerank;
+
+    private final int queries;
+
+    private final double recall;
+
+    private final double compressionRatio;
+
+    private final double averageSearchMillis;
+
+    public QuantizationRecallReport(String quantizerName, int k, int rerank, int queries,
+                                    double recall, double compressionRatio, double averageSearchMillis) {
+        this.quantizerName = quantizerName;
+        this.k = k;
+        this.rerank = rerank;
+        this.queries = queries;
+        this.recall = recall;
+        this.compressionRatio = compressionRatio;
+        this.averageSearchMillis = averageSearchMillis;
+    }
+
+    /**
+     * 评估量化器的召回率
+     * @param quantizerName 量化器名称，用于报告展示
+     * @param quantizer 已训练的量化器
+     * @param base 库向量
+     * @param queries 查询向量
+     * @param k 每次检索的结果数量
+     * @param rerank 重新打分的候选数量，0表示不重新打分
+     * @return 召回率报告
+     */
+    public static QuantizationRecallReport evaluate(String quantizerName, VectorQuantizer quantizer,
+                                                    List<float[]> base, List<float[]> queries, int k, int rerank) {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(quantizer, base.size());
+        for (int i = 0; i < base.size(); i++) {
+            index.add(String.valueOf(i), base.get(i));
+        }
+        QuantizedVectorIndex.FullPrecisionSource source = id -> base.get(Integer.parseInt(id));
+
+        long found = 0;
+        long expectedTotal = 0;
+        long elapsed = 0;
+        for (float[] query : queries) {
+            Set<String> expected = exactTopK(base, query, k);
+            expectedTotal += expected.size();
+            long start = System.nanoTime();
+            List<SearchHit> hits = index.search(query, k, Float.NEGATIVE_INFINITY, rerank, rerank > 0 ? source : null);
+            elapsed += System.nanoTime() - start;
+            for (SearchHit hit : hits) {
+                if (expected.contains(hit.getVectorId())) {
+                    found++;
+                }
+            }
+        }
+        int dimension = base.isEmpty() ? 0 : base.get(0).length;
+        double recall = expectedTotal == 0 ? 1.0 : (double) found / expectedTotal;
+        double ratio = (double) dimension * Float.BYTES / quantizer.codeSize();
+        double averageMillis = queries.isEmpty() ? 0 : elapsed / 1_000_000.0 / queries.size();
+        return new QuantizationRecallReport(quantizerName, k, rerank, queries.size(), recall, ratio, averageMillis);
+    }
+
+    private static Set<String> exactTopK(List<float[]> base, float[] query, int k) {
+        FloatIntHeap heap = new FloatIntHeap(k);
+        for (int i = 0; i < base.size(); i++) {
+            heap.offer(VectorMath.dot(query, base.get(i)), i, k);
+        }
+        Set<String> ids = new HashSet<>();
+        while (!heap.isEmpty()) {
+            ids.add(String.valueOf(heap.pop()));
+        }
+        return ids;
+    }
+
+    public String getQuantizerName() {
+        return quantizerName;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public int getRerank() {
+        return rerank;
+    }
+
+    public int getQueries() {
+        return queries;
+    }
+
+    public double getRecall() {
+        return recall;
+    }
+
+    public double getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    public double getAverageSearchMillis() {
+        return averageSearchMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: Recall@%d=%.4f（rerank=%d，查询数=%d），压缩比=%.1f:1，平均检索耗时=%.3fms",
+                quantizerName, k, recall, rerank, queries, compressionRatio, averageSearchMillis);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.hello.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 量化向量索引
+ * 只保存量化编码，检索时用非对称距离扫描全部编码选出候选，
+ * 可选地用全精度向量对候选重新打分（rerank）以弥补量化误差
+ */
+public class QuantizedVectorIndex {
+
+    /**
+     * 全精度向量来源，用于重新打分
+     */
+    public interface FullPrecisionSource {
+
+        /**
+         * 读取全精度向量
+         * @param vectorId 向量ID
+         * @return 向量，不存在返回null
+         */
+        float[] get(String vectorId);
+    }
+
+    private final VectorQuantizer quantizer;
+
+    private final int codeSize;
+
+    private byte[] codes;
+
+    private final List<String> rowIds = new ArrayList<>();
+
+    private final Map<String, Integer> rowsById = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 创建量化向量索引
+     * @param quantizer 已训练的量化器
+     * @param initialCapacity 初始行容量
+     */
+    public QuantizedVectorIndex(VectorQuantizer quantizer, int initialCapacity) {
+        if (!quantizer.isTrained()) {
+            throw new IllegalStateException("量化器尚未训练");
+        }
+        this.quantizer = quantizer;
+        this.codeSize = quantizer.codeSize();
+        this.codes = new byte[Math.max(1, initialCapacity) * codeSize];
+    }
+
+    public VectorQuantizer getQuantizer() {
+        return quantizer;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rowIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 编码占用的字节数
+     * @return 字节数
+     */
+    public long codeBytes() {
+        return (long) size() * codeSize;
+    }
+
+    /**
+     * 插入向量，同一向量ID再次插入时覆盖
+     * @param vectorId 向量ID
+     * @param vector 全精度向量
+     */
+    public void add(String vectorId, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowsById.get(vectorId);
+            if (row == null) {
+                row = rowIds.size();
+                if ((row + 1) * codeSize > codes.length) {
+                    codes = Arrays.copyOf(codes, Math.max(codes.length * 2, (row + 1) * codeSize));
+                }
+                rowIds.add(vectorId);
+                rowsById.put(vectorId, row);
+            }
+            quantizer.encode(vector, codes, row * codeSize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除向量，最后一行移动到被删除的位置
+     * @param vectorId 向量ID
+     * @return 向量是否存在
+     */
+    public boolean remove(String vectorId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowsById.remove(vectorId);
+            if (row == null) {
+                return false;
+            }
+            int last = rowIds.size() - 1;
+            String lastId = rowIds.remove(last);
+            if (row != last) {
+                System.arraycopy(codes, last * codeSize, codes, row * codeSize, codeSize);
+                rowIds.set(row, lastId);
+                rowsById.put(lastId, row);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索内积最大且不低于阈值的k个向量
+     * @param query 查询向量
+     * @param k 返回结果数量
+     * @param threshold 相似度阈值
+     * @param rerank 重新打分的候选数量，小于等于k或source为null时不重新打分
+     * @param source 全精度向量来源
+     * @return 按相似度降序排列的结果
+     */
+    public List<SearchHit> search(float[] query, int k, float threshold, int rerank, FullPrecisionSource source) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        boolean reranking = source != null && rerank > k;
+        int candidateCount = reranking ? rerank : k;
+        VectorQuantizer.QueryScorer scorer = quantizer.scorer(query);
+        String[] candidateIds;
+        float[] candidateScores;
+        lock.readLock().lock();
+        try {
+            FloatIntHeap heap = new FloatIntHeap(candidateCount);
+            int rows = rowIds.size();
+            for (int row = 0; row < rows; row++) {
+                float score = scorer.score(codes, row * codeSize);
+                // 重新打分时近似分数可能低估，候选阶段不按阈值过滤
+                if (reranking || score >= threshold) {
+                    heap.offer(score, row, candidateCount);
+                }
+            }
+            int count = heap.size();
+            candidateScores = new float[count];
+            int[] rowsOut = new int[count];
+            heap.drainDescending(candidateScores, rowsOut);
+            candidateIds = new String[count];
+            for (int i = 0; i < count; i++) {
+                candidateIds[i] = rowIds.get(rowsOut[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (!reranking) {
+            List<SearchHit> hits = new ArrayList<>(candidateIds.length);
+            for (int i = 0; i < candidateIds.length; i++) {
+                hits.add(new SearchHit(candidateIds[i], candidateScores[i]));
+            }
+            return hits;
+        }
+
+        FloatIntHeap reranked = new FloatIntHeap(k);
+        for (int i = 0; i < candidateIds.length; i++) {
+            float[] fullPrecision = source.get(candidateIds[i]);
+            float score = fullPrecision != null ? VectorMath.dot(query, fullPrecision) : candidateScores[i];
+            if (score >= threshold) {
+                reranked.offer(score, i, k);
+            }
+        }
+        int count = reranked.size();
+        float[] scores = new float[count];
+        int[] indexes = new int[count];
+        reranked.drainDescending(scores, indexes);
+        List<SearchHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new SearchHit(candidateIds[indexes[i]], scores[i]));
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.hello.vector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * int8标量量化器
+ * 每个维度按训练样本的最小值和最大值线性映射到0~255，压缩比为4:1
+ * 近似内积 = Σ q[i] * (min[i] + code[i] * scale[i])
+ *         = Σ q[i] * min[i] + Σ (q[i] * scale[i]) * code[i]
+ */
+public class ScalarQuantizer implements VectorQuantizer {
+
+    private final int dimension;
+
+    private float[] min;
+
+    private float[] scale;
+
+    public ScalarQuantizer(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public void train(List<float[]> samples) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("训练样本不能为空");
+        }
+        float[] lower = new float[dimension];
+        float[] upper = new float[dimension];
+        Arrays.fill(lower, Float.POSITIVE_INFINITY);
+        Arrays.fill(upper, Float.NEGATIVE_INFINITY);
+        for (float[] sample : samples) {
+            for (int i = 0; i < dimension; i++) {
+                lower[i] = Math.min(lower[i], sample[i]);
+                upper[i] = Math.max(upper[i], sample[i]);
+            }
+        }
+        float[] steps = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            float range = upper[i] - lower[i];
+            steps[i] = range > 0 ? range / 255f : 1f;
+        }
+        this.scale = steps;
+        this.min = lower;
+    }
+
+    @Override
+    public boolean isTrained() {
+        return scale != null;
+    }
+
+    @Override
+    public int codeSize() {
+        return dimension;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] out, int offset) {
+        for (int i = 0; i < dimension; i++) {
+            int code = Math.round((vector[i] - min[i]) / scale[i]);
+            // 超出训练范围的值截断到0~255
+            out[offset + i] = (byte) Math.max(0, Math.min(255, code));
+        }
+    }
+
+    @Override
+    public QueryScorer scorer(float[] query) {
+        float[] weights = new float[dimension];
+        float bias = 0f;
+        for (int i = 0; i < dimension; i++) {
+            weights[i] = query[i] * scale[i];
+            bias += query[i] * min[i];
+        }
+        final float offsetScore = bias;
+        return (codes, offset) -> {
+            float sum = 0f;
+            for (int i = 0; i < dimension; i++) {
+                sum += weights[i] * (codes[offset + i] & 0xFF);
+            }
+            return offsetScore + sum;
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.hello.vector;
+
+/**
+ * 进程内向量索引的检索结果
+ */
+public class SearchHit {
+    private final String vectorId;
+    private final float score;
+
+    public SearchHit(String vectorId, float score) {
+        this.vectorId = vectorId;
+        this.score = score;
+    }
+
+    public String getVectorId() {
+        return vectorId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.hello.vector;
+
+/**
+ * 向量运算工具类
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * 计算两个向量的内积
+     * 使用四路累加减少浮点加法的依赖链
+     * @param a 向量a
+     * @param b 向量b
+     * @return 内积
+     */
+    public static float dot(float[] a, float[] b) {
+        int length = a.length;
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
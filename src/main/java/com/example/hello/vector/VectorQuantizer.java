@@ -0,0 +1,58 @@
+package com.example.hello.vector;
+
+import java.util.List;
+
+/**
+ * 向量量化器接口
+ * 将float32向量压缩为定长字节编码，并支持非对称距离计算：
+ * 查询向量保持全精度，只对库中向量使用编码
+ */
+public interface VectorQuantizer {
+
+    /**
+     * 使用样本向量训练量化参数
+     * @param samples 样本向量
+     */
+    void train(List<float[]> samples);
+
+    /**
+     * 是否已训练
+     * @return 是否已训练
+     */
+    boolean isTrained();
+
+    /**
+     * 每个向量的编码字节数
+     * @return 编码字节数
+     */
+    int codeSize();
+
+    /**
+     * 编码向量
+     * @param vector 向量
+     * @param out 输出数组
+     * @param offset 输出起始位置
+     */
+    void encode(float[] vector, byte[] out, int offset);
+
+    /**
+     * 为查询向量预计算打分器
+     * @param query 查询向量
+     * @return 打分器
+     */
+    QueryScorer scorer(float[] query);
+
+    /**
+     * 非对称内积打分器
+     */
+    interface QueryScorer {
+
+        /**
+         * 计算查询向量与编码向量的近似内积
+         * @param codes 编码数组
+         * @param offset 编码起始位置
+         * @return 近似内积
+         */
+        float score(byte[] codes, int offset);
+    }
+}
@@ -0,0 +1,757 @@
+package com.example.hello.vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * 内存映射的向量快照文件
+ * 文件布局（小端字节序）：
+ * <pre>
+ * [文件头 64字节][向量区 capacity × dimension × float32][元数据区]
+ * </pre>
+ * 向量区按预留容量分配，增量追加时直接写入空闲行；元数据区位于文件末尾，
+ * 依次记录每一行的向量ID、植物ID、植物名称、删除记录以及每页向量行的CRC32C。
+ * 向量行按页（最多PAGE_ROWS行）计算校验和，写入或追加时只计算新增的页；
+ * 文件头中的校验和覆盖元数据区，在内存中随追加的元数据递增计算，打开时可选校验全部页。
+ * 向量区通过 FileChannel.map 映射后直接参与内积计算，打开快照不需要读取或复制向量数据；
+ * 单个映射区域不能超过2GB，向量区按MAX_MAPPING_BYTES分段映射，每段包含整数行
+ * 完整快照通过Writer逐行写入临时文件，不需要把全部条目保存在堆内存中
+ * 读操作可并发执行，追加操作需要调用方保证互斥
+ */
+public class VectorSnapshot implements Closeable {
+
+    /**
+     * 文件魔数 "PVSF"
+     */
+    public static final int MAGIC = 0x50565346;
+
+    /**
+     * 当前格式版本
+     */
+    public static final short VERSION = 2;
+
+    /**
+     * 文件头长度
+     */
+    public static final int HEADER_BYTES = 64;
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // 元数据记录类型：新增一行
+    private static final byte RECORD_ROW = 1;
+
+    // 元数据记录类型：删除向量
+    private static final byte RECORD_DELETE = 2;
+
+    // 元数据记录类型：一页向量行的校验和
+    private static final byte RECORD_PAGE = 3;
+
+    // 每页最多包含的向量行数
+    private static final int PAGE_ROWS = 4096;
+
+    // 单个映射区域的最大字节数
+    private static final long MAX_MAPPING_BYTES = 1L << 30;
+
+    // 文件头字段偏移
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_DIMENSION = 8;
+    private static final int OFFSET_COUNT = 12;
+    private static final int OFFSET_CAPACITY = 16;
+    private static final int OFFSET_METADATA_OFFSET = 24;
+    private static final int OFFSET_METADATA_LENGTH = 32;
+    private static final int OFFSET_CREATE_TIME = 40;
+    private static final int OFFSET_UPDATE_TIME = 48;
+    private static final int OFFSET_CHECKSUM = 56;
+
+    /**
+     * 快照条目
+     */
+    public static class Entry {
+        private final String vectorId;
+        private final long plantId;
+        private final String plantName;
+        private final float[] vector;
+
+        public Entry(String vectorId, long plantId, String plantName, float[] vector) {
+            this.vectorId = vectorId;
+            this.plantId = plantId;
+            this.plantName = plantName;
+            this.vector = vector;
+        }
+
+        public String getVectorId() {
+            return vectorId;
+        }
+
+        public long getPlantId() {
+            return plantId;
+        }
+
+        public String getPlantName() {
+            return plantName;
+        }
+
+        public float[] getVector() {
+            return vector;
+        }
+    }
+
+    /**
+     * 某一时刻已提交数据的不可变视图，追加后整体替换
+     */
+    private static final class View {
+        // 每个映射区域一个只读矩阵
+        final FloatMatrix[] matrices;
+        final int chunkRows;
+        final String[] vectorIds;
+        final long[] plantIds;
+        final String[] plantNames;
+        final BitSet deletedRows;
+        final Map<String, Integer> rowsById;
+        // 每页向量行的起始行、行数和校验和，打开时校验
+        final List<int[]> pages;
+
+        View(FloatMatrix[] matrices, int chunkRows, String[] vectorIds, long[] plantIds, String[] plantNames,
+             BitSet deletedRows, Map<String, Integer> rowsById, List<int[]> pages) {
+            this.matrices = matrices;
+            this.chunkRows = chunkRows;
+            this.vectorIds = vectorIds;
+            this.plantIds = plantIds;
+            this.plantNames = plantNames;
+            this.deletedRows = deletedRows;
+            this.rowsById = rowsById;
+            this.pages = pages;
+        }
+
+        float dot(int row, float[] query) {
+            return matrices[row / chunkRows].dot(row % chunkRows, query);
+        }
+
+        float[] vector(int row) {
+            return matrices[row / chunkRows].get(row % chunkRows);
+        }
+    }
+
+    private final Path path;
+
+    private final FileChannel channel;
+
+    // 向量区的映射区域，每段chunkRows行
+    private final MappedByteBuffer[] chunks;
+
+    private final int chunkRows;
+
+    private final int dimension;
+
+    private final int capacity;
+
+    private final long metadataOffset;
+
+    private final long createTime;
+
+    private long metadataLength;
+
+    // 已提交元数据的CRC32C计算状态，追加时继续计算；为null时需要从文件中已提交的元数据重新计算
+    private CRC32C metadataCrc;
+
+    private volatile View view;
+
+    private VectorSnapshot(Path path, FileChannel channel, MappedByteBuffer[] chunks, int chunkRows, int dimension,
+                           int capacity, long metadataOffset, long metadataLength, long createTime, View view,
+                           CRC32C metadataCrc) {
+        this.path = path;
+        this.channel = channel;
+        this.chunks = chunks;
+        this.chunkRows = chunkRows;
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.metadataOffset = metadataOffset;
+        this.metadataLength = metadataLength;
+        this.createTime = createTime;
+        this.view = view;
+        this.metadataCrc = metadataCrc;
+    }
+
+    /**
+     * 单个映射区域能容纳的向量行数，重写快照时预留的空闲行数不应超过该值
+     * @param dimension 向量维度
+     * @return 行数
+     */
+    public static int maxRowsPerMapping(int dimension) {
+        return rowsPerMapping(dimension, MAX_MAPPING_BYTES);
+    }
+
+    /**
+     * 写入完整快照
+     * @param path 快照文件路径
+     * @param dimension 向量维度
+     * @param entries 快照条目
+     * @param capacity 向量区预留的行数，不小于条目数
+     * @throws IOException 文件写入异常
+     */
+    public static void write(Path path, int dimension, List<Entry> entries, int capacity) throws IOException {
+        try (Writer writer = create(path, dimension)) {
+            for (Entry entry : entries) {
+                writer.add(entry);
+            }
+            writer.commit(capacity);
+        }
+    }
+
+    /**
+     * 创建完整快照的写入器
+     * 条目逐行写入同目录下的临时文件，提交时原子替换目标文件，写入过程中崩溃或未提交不会破坏旧快照
+     * @param path 快照文件路径
+     * @param dimension 向量维度
+     * @return 写入器，未提交就关闭时删除临时文件
+     * @throws IOException 文件创建异常
+     */
+    public static Writer create(Path path, int dimension) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            return new Writer(path, temp, dimension);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * 完整快照写入器
+     * 向量行按顺序写入文件，每满一页计算该页的校验和；行元数据在内存中编码，每行只有几十字节。
+     * 向量区的预留容量在提交时确定，元数据区写在预留区域之后
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path path;
+
+        private final Path temp;
+
+        private final FileChannel out;
+
+        private final int dimension;
+
+        private final ByteBuffer row;
+
+        private final ByteArrayOutputStream metadataBytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream metadata = new DataOutputStream(metadataBytes);
+
+        private final List<int[]> pages = new ArrayList<>();
+
+        private final CRC32C pageCrc = new CRC32C();
+
+        private int count;
+
+        private boolean committed;
+
+        private Writer(Path path, Path temp, int dimension) throws IOException {
+            this.path = path;
+            this.temp = temp;
+            this.dimension = dimension;
+            this.row = ByteBuffer.allocate(dimension * Float.BYTES).order(ORDER);
+            this.out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * 写入一行
+         * @param entry 快照条目
+         * @throws IOException 文件写入异常
+         */
+        public void add(Entry entry) throws IOException {
+            checkDimension(entry.getVector(), dimension);
+            if (count == Integer.MAX_VALUE) {
+                throw new IllegalStateException("快照行数超过上限");
+            }
+            row.clear();
+            row.asFloatBuffer().put(entry.getVector());
+            pageCrc.update(row.array(), 0, row.capacity());
+            writeFully(out, ByteBuffer.wrap(row.array()), HEADER_BYTES + (long) count * row.capacity());
+            writeRow(metadata, entry);
+            count++;
+            if (count % PAGE_ROWS == 0) {
+                closePage();
+            }
+        }
+
+        /**
+         * 已写入的行数
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * 写入元数据和文件头，并原子替换目标文件
+         * @param capacity 向量区预留的行数，小于已写入行数时取已写入行数
+         * @throws IOException 文件写入异常
+         */
+        public void commit(int capacity) throws IOException {
+            if (committed) {
+                throw new IllegalStateException("快照已提交");
+            }
+            capacity = Math.max(capacity, count);
+            if (count % PAGE_ROWS != 0) {
+                closePage();
+            }
+            for (int[] page : pages) {
+                writePage(metadata, page);
+            }
+            metadata.flush();
+            byte[] bytes = metadataBytes.toByteArray();
+            long metadataOffset = HEADER_BYTES + (long) row.capacity() * capacity;
+            // 元数据写在预留区域之后，未写入的空闲行由文件系统按稀疏区域处理
+            writeFully(out, ByteBuffer.wrap(bytes), metadataOffset);
+            CRC32C crc = new CRC32C();
+            crc.update(bytes, 0, bytes.length);
+
+            long now = System.currentTimeMillis();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+            header.putInt(OFFSET_MAGIC, MAGIC);
+            header.putShort(OFFSET_VERSION, VERSION);
+            header.putInt(OFFSET_DIMENSION, dimension);
+            header.putInt(OFFSET_COUNT, count);
+            header.putInt(OFFSET_CAPACITY, capacity);
+            header.putLong(OFFSET_METADATA_OFFSET, metadataOffset);
+            header.putLong(OFFSET_METADATA_LENGTH, bytes.length);
+            header.putLong(OFFSET_CREATE_TIME, now);
+            header.putLong(OFFSET_UPDATE_TIME, now);
+            header.putInt(OFFSET_CHECKSUM, (int) crc.getValue());
+            writeFully(out, header, 0);
+            out.force(true);
+            out.close();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        /**
+         * 未提交时删除临时文件
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void closePage() {
+            int first = (count - 1) / PAGE_ROWS * PAGE_ROWS;
+            pages.add(new int[]{first, count - first, (int) pageCrc.getValue()});
+            pageCrc.reset();
+        }
+    }
+
+    /**
+     * 打开快照文件，映射向量区并加载元数据
+     * @param path 快照文件路径
+     * @param verifyChecksum 是否校验每页向量行的CRC32C，校验需要读取全部向量页；元数据区的校验和总是校验
+     * @return 快照
+     * @throws IOException 文件读取异常，或格式、版本、校验和不正确
+     */
+    public static VectorSnapshot open(Path path, boolean verifyChecksum) throws IOException {
+        return open(path, verifyChecksum, MAX_MAPPING_BYTES);
+    }
+
+    /**
+     * 按指定的映射区域大小打开快照文件
+     * @param mappingBytes 单个映射区域的最大字节数
+     */
+    static VectorSnapshot open(Path path, boolean verifyChecksum, long mappingBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+            readFully(channel, header, 0);
+            if (header.getInt(OFFSET_MAGIC) != MAGIC) {
+                throw new IOException("不是向量快照文件：" + path);
+            }
+            short version = header.getShort(OFFSET_VERSION);
+            if (version != VERSION) {
+                throw new IOException("不支持的向量快照版本：" + version);
+            }
+            int dimension = header.getInt(OFFSET_DIMENSION);
+            int count = header.getInt(OFFSET_COUNT);
+            int capacity = header.getInt(OFFSET_CAPACITY);
+            long metadataOffset = header.getLong(OFFSET_METADATA_OFFSET);
+            long metadataLength = header.getLong(OFFSET_METADATA_LENGTH);
+            if (dimension <= 0 || count < 0 || count > capacity
+                    || metadataOffset != HEADER_BYTES + (long) dimension * Float.BYTES * capacity
+                    || metadataLength < 0 || metadataLength > Integer.MAX_VALUE
+                    || metadataOffset + metadataLength > channel.size()) {
+                throw new IOException("向量快照文件头已损坏：" + path);
+            }
+
+            int rowBytes = dimension * Float.BYTES;
+            int chunkRows = rowsPerMapping(dimension, mappingBytes);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((capacity + (long) chunkRows - 1) / chunkRows)];
+            for (int i = 0; i < chunks.length; i++) {
+                long firstRow = (long) i * chunkRows;
+                long rows = Math.min(chunkRows, capacity - firstRow);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + firstRow * rowBytes, rows * rowBytes);
+                chunks[i].order(ORDER);
+            }
+            ByteBuffer metadata = ByteBuffer.allocate((int) metadataLength);
+            readFully(channel, metadata, metadataOffset);
+
+            CRC32C metadataCrc = new CRC32C();
+            metadataCrc.update(metadata.array(), 0, (int) metadataLength);
+            if (header.getInt(OFFSET_CHECKSUM) != (int) metadataCrc.getValue()) {
+                throw new IOException("向量快照元数据校验和不匹配：" + path);
+            }
+            View view = decodeView(chunks, chunkRows, dimension, count, metadata.array(), (int) metadataLength);
+            if (verifyChecksum) {
+                verifyPages(chunks, chunkRows, dimension, count, view.pages, path);
+            }
+            return new VectorSnapshot(path, channel, chunks, chunkRows, dimension, capacity, metadataOffset,
+                    metadataLength, header.getLong(OFFSET_CREATE_TIME), view, metadataCrc);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 增量追加新向量和删除记录
+     * 先写入向量行和元数据并刷盘，最后更新文件头提交，崩溃时未提交的数据会被忽略
+     * 只计算新增向量行和新增元数据的校验和，耗时与已有数据量无关
+     * @param entries 新增条目，与已有向量ID相同时覆盖旧条目
+     * @param deletedIds 删除的向量ID
+     * @return 是否追加成功，预留容量不足时返回false，需要调用方重写完整快照
+     * @throws IOException 文件写入异常
+     */
+    public synchronized boolean append(List<Entry> entries, List<String> deletedIds) throws IOException {
+        if (entries.isEmpty() && deletedIds.isEmpty()) {
+            return true;
+        }
+        View current = view;
+        int count = current.vectorIds.length;
+        if (count + entries.size() > capacity) {
+            return false;
+        }
+        int rowBytes = dimension * Float.BYTES;
+        for (Entry entry : entries) {
+            checkDimension(entry.getVector(), dimension);
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            int row = count + i;
+            ByteBuffer target = chunks[row / chunkRows].duplicate().order(ORDER);
+            target.position(row % chunkRows * rowBytes);
+            target.asFloatBuffer().put(entries.get(i).getVector());
+        }
+        if (!entries.isEmpty()) {
+            for (int chunk = count / chunkRows; chunk <= (count + entries.size() - 1) / chunkRows; chunk++) {
+                chunks[chunk].force();
+            }
+        }
+
+        // 新增的行单独成页，不改动已有页的校验和
+        List<int[]> pages = new ArrayList<>();
+        for (int first = count; first < count + entries.size(); first += PAGE_ROWS) {
+            int rows = Math.min(PAGE_ROWS, count + entries.size() - first);
+            pages.add(new int[]{first, rows, pageChecksum(chunks, chunkRows, dimension, first, rows)});
+        }
+        byte[] records = encodeRows(entries, deletedIds, pages);
+        writeFully(channel, ByteBuffer.wrap(records), metadataOffset + metadataLength);
+        channel.force(false);
+
+        int newCount = count + entries.size();
+        long newMetadataLength = metadataLength + records.length;
+        ByteBuffer metadata = ByteBuffer.allocate((int) newMetadataLength);
+        readFully(channel, metadata, metadataOffset);
+
+        try {
+            if (metadataCrc == null) {
+                metadataCrc = new CRC32C();
+                metadataCrc.update(metadata.array(), 0, (int) metadataLength);
+            }
+            metadataCrc.update(records, 0, records.length);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+            readFully(channel, header, 0);
+            header.putInt(OFFSET_COUNT, newCount);
+            header.putLong(OFFSET_METADATA_LENGTH, newMetadataLength);
+            header.putLong(OFFSET_UPDATE_TIME, System.currentTimeMillis());
+            header.putInt(OFFSET_CHECKSUM, (int) metadataCrc.getValue());
+            writeFully(channel, header, 0);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            // 未提交的记录已计入校验和，下次追加时从已提交的元数据重新计算
+            metadataCrc = null;
+            throw e;
+        }
+
+        metadataLength = newMetadataLength;
+        view = decodeView(chunks, chunkRows, dimension, newCount, metadata.array(), (int) newMetadataLength);
+        return true;
+    }
+
+    /**
+     * 检索内积最大且不低于阈值的k个向量，跳过已删除的行
+     * @param query 查询向量
+     * @param k 返回结果数量
+     * @param threshold 相似度阈值
+     * @return 按相似度降序排列的结果
+     */
+    public List<SearchHit> search(float[] query, int k, float threshold) {
+        checkDimension(query, dimension);
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        View current = view;
+        FloatIntHeap heap = new FloatIntHeap(k);
+        int rows = current.vectorIds.length;
+        for (int row = 0; row < rows; row++) {
+            if (current.deletedRows.get(row)) {
+                continue;
+            }
+            float score = current.dot(row, query);
+            if (score >= threshold) {
+                heap.offer(score, row, k);
+            }
+        }
+        int size = heap.size();
+        float[] scores = new float[size];
+        int[] rowsOut = new int[size];
+        heap.drainDescending(scores, rowsOut);
+        List<SearchHit> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new SearchHit(current.vectorIds[rowsOut[i]], scores[i]));
+        }
+        return hits;
+    }
+
+    /**
+     * 获取向量ID对应的条目
+     * @param vectorId 向量ID
+     * @return 条目，不存在或已删除时返回null
+     */
+    public Entry get(String vectorId) {
+        View current = view;
+        Integer row = current.rowsById.get(vectorId);
+        if (row == null) {
+            return null;
+        }
+        return new Entry(vectorId, current.plantIds[row], current.plantNames[row], current.vector(row));
+    }
+
+    /**
+     * 遍历所有未删除的条目，用于重写快照
+     * @param consumer 条目消费者
+     */
+    public void forEach(Consumer<Entry> consumer) {
+        View current = view;
+        for (int row = 0; row < current.vectorIds.length; row++) {
+            if (!current.deletedRows.get(row)) {
+                consumer.accept(new Entry(current.vectorIds[row], current.plantIds[row],
+                        current.plantNames[row], current.vector(row)));
+            }
+        }
+    }
+
+    /**
+     * 未删除的条目数
+     */
+    public int size() {
+        return view.rowsById.size();
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    /**
+     * 关闭文件通道，映射区域在缓冲区被回收后释放
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 根据元数据记录重建视图
+     */
+    private static View decodeView(ByteBuffer[] chunks, int chunkRows, int dimension, int count, byte[] metadata,
+                                   int length) throws IOException {
+        String[] vectorIds = new String[count];
+        long[] plantIds = new long[count];
+        String[] plantNames = new String[count];
+        BitSet deletedRows = new BitSet(count);
+        Map<String, Integer> rowsById = new HashMap<>();
+        List<int[]> pages = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(metadata, 0, length));
+        int row = 0;
+        while (in.available() > 0) {
+            byte type = in.readByte();
+            if (type == RECORD_PAGE) {
+                pages.add(new int[]{in.readInt(), in.readInt(), in.readInt()});
+                continue;
+            }
+            String vectorId = in.readUTF();
+            Integer previous = rowsById.remove(vectorId);
+            if (previous != null) {
+                deletedRows.set(previous);
+            }
+            if (type == RECORD_ROW) {
+                if (row >= count) {
+                    throw new IOException("向量快照元数据与向量行数不一致");
+                }
+                vectorIds[row] = vectorId;
+                plantIds[row] = in.readLong();
+                plantNames[row] = in.readUTF();
+                rowsById.put(vectorId, row);
+                row++;
+            } else if (type != RECORD_DELETE) {
+                throw new IOException("未知的向量快照元数据记录类型：" + type);
+            }
+        }
+        if (row != count) {
+            throw new IOException("向量快照元数据与向量行数不一致");
+        }
+        FloatMatrix[] matrices = new FloatMatrix[(count + chunkRows - 1) / chunkRows];
+        for (int i = 0; i < matrices.length; i++) {
+            int rows = Math.min(chunkRows, count - i * chunkRows);
+            matrices[i] = new FloatMatrix(dimension, chunks[i].duplicate().order(ORDER), rows);
+        }
+        return new View(matrices, chunkRows, vectorIds, plantIds, plantNames, deletedRows, rowsById, pages);
+    }
+
+    /**
+     * 编码新增行、删除记录和新增页的校验和
+     */
+    private static byte[] encodeRows(List<Entry> entries, List<String> deletedIds, List<int[]> pages)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String vectorId : deletedIds) {
+            out.writeByte(RECORD_DELETE);
+            out.writeUTF(vectorId);
+        }
+        for (Entry entry : entries) {
+            writeRow(out, entry);
+        }
+        for (int[] page : pages) {
+            writePage(out, page);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeRow(DataOutputStream out, Entry entry) throws IOException {
+        out.writeByte(RECORD_ROW);
+        out.writeUTF(entry.getVectorId());
+        out.writeLong(entry.getPlantId());
+        out.writeUTF(entry.getPlantName() != null ? entry.getPlantName() : "");
+    }
+
+    private static void writePage(DataOutputStream out, int[] page) throws IOException {
+        out.writeByte(RECORD_PAGE);
+        out.writeInt(page[0]);
+        out.writeInt(page[1]);
+        out.writeInt(page[2]);
+    }
+
+    /**
+     * 计算一页向量行的CRC32C，页可以跨越映射区域
+     */
+    private static int pageChecksum(ByteBuffer[] chunks, int chunkRows, int dimension, int first, int rows) {
+        int rowBytes = dimension * Float.BYTES;
+        CRC32C crc = new CRC32C();
+        int row = first;
+        int end = first + rows;
+        while (row < end) {
+            int offset = row % chunkRows;
+            int length = Math.min(end - row, chunkRows - offset);
+            ByteBuffer page = chunks[row / chunkRows].duplicate();
+            page.position(offset * rowBytes).limit((offset + length) * rowBytes);
+            crc.update(page);
+            row += length;
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 校验每页向量行的CRC32C，并检查各页连续覆盖全部已提交的行
+     */
+    private static void verifyPages(ByteBuffer[] chunks, int chunkRows, int dimension, int count, List<int[]> pages,
+                                    Path path) throws IOException {
+        int next = 0;
+        for (int[] page : pages) {
+            if (page[0] != next || page[1] <= 0 || page[0] + page[1] > count) {
+                throw new IOException("向量快照页记录不连续：" + path);
+            }
+            if (pageChecksum(chunks, chunkRows, dimension, page[0], page[1]) != page[2]) {
+                throw new IOException("向量快照校验和不匹配：" + path + "，起始行：" + page[0]);
+            }
+            next = page[0] + page[1];
+        }
+        if (next != count) {
+            throw new IOException("向量快照页记录未覆盖全部向量行：" + path);
+        }
+    }
+
+    private static int rowsPerMapping(int dimension, long mappingBytes) {
+        long rowBytes = (long) dimension * Float.BYTES;
+        if (rowBytes > mappingBytes) {
+            throw new IllegalArgumentException("向量维度过大：" + dimension);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, mappingBytes / rowBytes);
+    }
+
+    private static void checkDimension(float[] vector, int dimension) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配，期望" + dimension + "，实际" + vector.length);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("向量快照文件不完整");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
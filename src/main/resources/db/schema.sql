@@ -5,12 +5,23 @@ CREATE TABLE IF NOT EXISTS `plant_info` (
   `recognition_accuracy` float DEFAULT NULL COMMENT '识别准确度',
   `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  `openid` varchar(64) DEFAULT NULL COMMENT '首次识别的微信用户openid',
   PRIMARY KEY (`id`),
   KEY `idx_name` (`name`),
-  KEY `idx_create_time` (`create_time`) COMMENT '创建时间索引'
+  KEY `idx_create_time_id` (`create_time`, `id`) COMMENT '创建时间索引'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='植物信息表';
 
 
+CREATE TABLE IF NOT EXISTS `plant_image_digest` (
+  `digest` char(64) NOT NULL COMMENT '图片内容SHA-256摘要',
+  `plant_id` bigint(20) NOT NULL COMMENT '植物ID',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`digest`),
+  KEY `idx_plant_id` (`plant_id`),
+  CONSTRAINT `fk_digest_plant` FOREIGN KEY (`plant_id`) REFERENCES `plant_info` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='图片摘要识别结果表';
+
+
 CREATE TABLE IF NOT EXISTS `plant_vectors` (
   `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
   `plant_id` bigint(20) NOT NULL COMMENT '植物ID',
@@ -21,4 +32,37 @@ CREATE TABLE IF NOT EXISTS `plant_vectors` (
   PRIMARY KEY (`id`),
   KEY `idx_plant_id` (`plant_id`),
   CONSTRAINT `fk_vector_plant` FOREIGN KEY (`plant_id`) REFERENCES `plant_info` (`id`) ON DELETE CASCADE
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='植物向量表';
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='植物向量表';
+
+
+CREATE TABLE IF NOT EXISTS `recognition_event` (
+  `id` bigint(20) NOT NULL COMMENT '事件ID（应用生成）',
+  `plant_id` bigint(20) DEFAULT NULL COMMENT '识别出的植物ID，识别失败时为空',
+  `plant_name` varchar(100) NOT NULL COMMENT '返回给用户的植物名称',
+  `openid` varchar(64) DEFAULT NULL COMMENT '微信用户openid',
+  `image_url` varchar(255) DEFAULT NULL COMMENT '本次上传图片的URL',
+  `similarity` float DEFAULT NULL COMMENT '向量检索命中时的相似度',
+  `source` varchar(16) NOT NULL COMMENT '识别结果来源：digest/phash/coalesced/vector/llm/failed',
+  `latency_ms` int DEFAULT NULL COMMENT '识别请求耗时（毫秒）',
+  `create_time` datetime(3) NOT NULL COMMENT '识别时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_create_time_id` (`create_time`, `id`) COMMENT '历史记录游标分页索引',
+  KEY `idx_openid_create_time_id` (`openid`, `create_time`, `id`) COMMENT '按用户的历史记录游标分页索引',
+  KEY `idx_plant_id` (`plant_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='识别事件表（只追加）';
+
+
+CREATE TABLE IF NOT EXISTS `vector_outbox` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `plant_id` bigint(20) NOT NULL COMMENT '植物ID',
+  `vector_id` varchar(64) NOT NULL COMMENT 'Milvus向量ID（plant_{植物ID}）',
+  `vector_data` blob NOT NULL COMMENT '图像向量（float32小端序）',
+  `status` varchar(16) NOT NULL DEFAULT 'PENDING' COMMENT '状态：PENDING/FAILED',
+  `attempts` int NOT NULL DEFAULT 0 COMMENT '已尝试写入的次数',
+  `next_attempt_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次可以尝试写入的时间',
+  `last_error` varchar(500) DEFAULT NULL COMMENT '最近一次写入失败的原因',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  PRIMARY KEY (`id`),
+  KEY `idx_status_next_attempt` (`status`, `next_attempt_time`),
+  CONSTRAINT `fk_outbox_plant` FOREIGN KEY (`plant_id`) REFERENCES `plant_info` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='向量发件箱表';
@@ -0,0 +1,161 @@
+package com.example.hello.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 识别接口准入控制过滤器测试类
+ */
+public class IdentifyAdmissionFilterTest {
+
+    private MeterRegistry meterRegistry;
+
+    private IdentifyAdmissionFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new IdentifyAdmissionFilter();
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "maxInflight", 64);
+        ReflectionTestUtils.setField(filter, "maxBufferedBytes", DataSize.ofMegabytes(256));
+        ReflectionTestUtils.setField(filter, "latencyBudgetMs", 60_000L);
+        ReflectionTestUtils.setField(filter, "minInflight", 64);
+        ReflectionTestUtils.setField(filter, "unknownLengthBytes", DataSize.ofMegabytes(50));
+        filter.initMetrics();
+    }
+
+    /**
+     * 测试进行中的请求数达到上限时返回503并关闭连接，异步请求完成后释放名额
+     */
+    @Test
+    public void testInflightBudget() throws Exception {
+        ReflectionTestUtils.setField(filter, "maxInflight", 2);
+
+        MockHttpServletRequest first = startAsync(identifyRequest(100));
+        startAsync(identifyRequest(100));
+        assertEquals(2.0, inflight(), 0);
+
+        MockHttpServletResponse rejected = send(identifyRequest(100));
+        assertRejected(rejected);
+        assertEquals(1.0, rejected("inflight"), 0);
+
+        // 异步请求完成后才释放名额
+        first.getAsyncContext().complete();
+        assertEquals(1.0, inflight(), 0);
+        assertEquals(200, send(identifyRequest(100)).getStatus());
+        assertEquals(1.0, inflight(), 0);
+    }
+
+    /**
+     * 测试进行中的请求缓冲的字节数超过上限时拒绝，异步请求完成后释放缓冲字节数
+     */
+    @Test
+    public void testBufferedBytesBudget() throws Exception {
+        ReflectionTestUtils.setField(filter, "maxBufferedBytes", DataSize.ofBytes(1000));
+
+        MockHttpServletRequest first = startAsync(identifyRequest(600));
+        assertEquals(600.0, bufferedBytes(), 0);
+
+        assertRejected(send(identifyRequest(600)));
+        assertEquals(1.0, rejected("memory"), 0);
+        assertEquals(600.0, bufferedBytes(), 0);
+
+        first.getAsyncContext().complete();
+        assertEquals(0.0, bufferedBytes(), 0);
+        assertEquals(200, send(identifyRequest(600)).getStatus());
+        assertEquals(0.0, bufferedBytes(), 0);
+    }
+
+    /**
+     * 测试近期耗时超过预算时只允许少量请求同时进行
+     */
+    @Test
+    public void testLatencyBudget() throws Exception {
+        ReflectionTestUtils.setField(filter, "latencyBudgetMs", 0L);
+        ReflectionTestUtils.setField(filter, "minInflight", 1);
+
+        // 完成一个请求，记录耗时
+        FilterChain slowChain = (request, response) -> sleep(2);
+        filter.doFilter(identifyRequest(100), new MockHttpServletResponse(), slowChain);
+
+        MockHttpServletRequest first = startAsync(identifyRequest(100));
+        assertRejected(send(identifyRequest(100)));
+        assertEquals(1.0, rejected("latency"), 0);
+
+        first.getAsyncContext().complete();
+        assertEquals(0.0, inflight(), 0);
+    }
+
+    /**
+     * 测试非识别接口不受准入控制
+     */
+    @Test
+    public void testOtherPathsNotFiltered() throws Exception {
+        ReflectionTestUtils.setField(filter, "maxInflight", 0);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/plant/history");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> { });
+        assertEquals(200, response.getStatus());
+    }
+
+    private MockHttpServletRequest identifyRequest(int contentLength) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/plant/identify");
+        request.setContent(new byte[contentLength]);
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    /**
+     * 模拟控制器返回CompletableFuture：请求进入异步处理后过滤器返回，预算在异步完成时释放
+     */
+    private MockHttpServletRequest startAsync(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> req.startAsync());
+        assertEquals(200, response.getStatus());
+        assertNotNull(request.getAsyncContext());
+        return request;
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> { });
+        return response;
+    }
+
+    private static void assertRejected(MockHttpServletResponse response) {
+        assertEquals(503, response.getStatus());
+        assertNotNull(response.getHeader("Retry-After"));
+        assertEquals("close", response.getHeader("Connection"));
+    }
+
+    private double inflight() {
+        return meterRegistry.get("plant.admission.inflight").gauge().value();
+    }
+
+    private double bufferedBytes() {
+        return meterRegistry.get("plant.admission.buffered.bytes").gauge().value();
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("plant.admission.rejected").tag("reason", reason).counter().count();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.hello.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 自适应并发限制测试类
+ */
+public class AdaptiveLimiterTest {
+
+    private static final long RTT = 100_000_000L;
+
+    /**
+     * 测试延迟稳定且并发饱和时上限增加，延迟突然升高后上限下降
+     */
+    @Test
+    public void testLimitFollowsLatencyGradient() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("llm", 10, 2, 100, 0, 0, 0.2, 0.9, null);
+
+        for (int round = 0; round < 20; round++) {
+            saturate(limiter, RTT);
+        }
+        double grown = limiter.getLimit();
+        assertTrue(grown > 20, "limit=" + grown);
+
+        // 延迟突然升高时上限立即下降；持续升高后长期延迟会逐步跟上
+        saturate(limiter, RTT * 4);
+        assertTrue(limiter.getLimit() < grown * 0.8, "limit=" + limiter.getLimit());
+    }
+
+    /**
+     * 测试调用失败时上限按比例缩小，且不低于最小值
+     */
+    @Test
+    public void testBackoffOnDrop() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("llm", 10, 8, 100, 0, 0, 0.2, 0.5, null);
+
+        limiter.acquire();
+        limiter.release(RTT, true, true);
+        assertEquals(8.0, limiter.getLimit(), 1e-9);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * 测试并发已满且不允许排队时直接拒绝
+     */
+    @Test
+    public void testShedsWhenFull() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("llm", 2, 2, 2, 0, 0, 0.2, 0.9, null);
+
+        limiter.acquire();
+        limiter.acquire();
+        assertThrows(UpstreamUnavailableException.class, limiter::acquire);
+        limiter.release(RTT, false, true);
+        limiter.acquire();
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    private static void saturate(AdaptiveLimiter limiter, long rtt) {
+        int permits = (int) limiter.getLimit();
+        for (int i = 0; i < permits; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < permits; i++) {
+            limiter.release(rtt, false, true);
+        }
+    }
+}
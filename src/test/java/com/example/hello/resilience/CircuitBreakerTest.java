@@ -0,0 +1,71 @@
+package com.example.hello.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 熔断器测试类
+ */
+public class CircuitBreakerTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    /**
+     * 测试失败率超过阈值后打开熔断，等待后半开试探成功即关闭
+     */
+    @Test
+    public void testOpensOnFailureRateAndClosesAfterHalfOpen() {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5f, 1.0f, 1000, 5000, 2, clock::get);
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(MILLIS);
+        }
+        assertTrue(breaker.tryAcquire());
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        clock.addAndGet(5000 * MILLIS);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // 半开状态只放行两次试探调用
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(MILLIS);
+        breaker.onSuccess(MILLIS);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    /**
+     * 测试慢调用率超过阈值后打开熔断，半开试探失败重新打开
+     */
+    @Test
+    public void testOpensOnSlowCallsAndReopensOnFailedProbe() {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(5, 5, 1.0f, 0.6f, 1000, 2000, 1, clock::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onSuccess(i < 3 ? 1500 * MILLIS : MILLIS);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2000, breaker.getRemainingOpenMillis());
+
+        clock.addAndGet(2000 * MILLIS);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onError();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.hello.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.milvus.client.MilvusClient;
+import io.milvus.grpc.MutationResult;
+import io.milvus.param.R;
+import io.milvus.param.dml.InsertParam;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Milvus批量写入缓冲区测试类
+ * Milvus写入由模拟的MilvusClient代替
+ */
+public class MilvusInsertBufferTest {
+
+    private static final String COLLECTION = "plant_vectors";
+
+    private static final long WAIT_SECONDS = 5;
+
+    private MilvusClient milvusClient;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MilvusInsertBuffer buffer;
+
+    @BeforeEach
+    public void setUp() {
+        milvusClient = mock(MilvusClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (buffer != null) {
+            buffer.close(1000);
+        }
+    }
+
+    /**
+     * 测试达到批量行数时立即用一次insert写入，按列组装，缺失的元数据使用默认值
+     */
+    @Test
+    public void testBatchesRowsIntoOneInsert() throws Exception {
+        when(milvusClient.insert(any(InsertParam.class))).thenReturn(success());
+        // 刷新间隔很长，只有凑满批量才会写入
+        buffer = new MilvusInsertBuffer(milvusClient, COLLECTION, 10, 3, 60000, 100, meterRegistry);
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        futures.add(buffer.submit("v1", new float[]{1f, 2f}, Map.of("plant_id", 11L, "plant_name", "月季")));
+        futures.add(buffer.submit("v2", new float[]{3f, 4f}, Map.of("plant_id", "12")));
+        futures.add(buffer.submit("v3", new float[]{5f, 6f}, Map.of()));
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        ArgumentCaptor<InsertParam> captor = ArgumentCaptor.forClass(InsertParam.class);
+        verify(milvusClient, times(1)).insert(captor.capture());
+        InsertParam param = captor.getValue();
+        assertEquals(COLLECTION, param.getCollectionName());
+        assertEquals(List.of("v1", "v2", "v3"), values(param, "id"));
+        assertEquals(List.of(List.of(1f, 2f), List.of(3f, 4f), List.of(5f, 6f)), values(param, "vector"));
+        assertEquals(List.of(11L, 12L, 0L), values(param, "plant_id"));
+        assertEquals(List.of("月季", "", ""), values(param, "plant_name"));
+        assertEquals(List.of(0f, 0f, 0f), values(param, "similarity_threshold"));
+        assertEquals(3.0, meterRegistry.get("milvus.insert.batch.size").summary().totalAmount());
+    }
+
+    /**
+     * 测试不足一批时等待刷新间隔后写入
+     */
+    @Test
+    public void testFlushesPartialBatchAfterInterval() throws Exception {
+        when(milvusClient.insert(any(InsertParam.class))).thenReturn(success());
+        buffer = new MilvusInsertBuffer(milvusClient, COLLECTION, 10, 100, 50, 100, meterRegistry);
+
+        CompletableFuture<Boolean> first = buffer.submit("v1", new float[]{1f}, Map.of());
+        CompletableFuture<Boolean> second = buffer.submit("v2", new float[]{2f}, Map.of());
+
+        assertTrue(first.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(second.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        ArgumentCaptor<InsertParam> captor = ArgumentCaptor.forClass(InsertParam.class);
+        verify(milvusClient, times(1)).insert(captor.capture());
+        assertEquals(List.of("v1", "v2"), values(captor.getValue(), "id"));
+    }
+
+    /**
+     * 测试insert返回失败状态或抛出异常时，整批的Future都为false并计入失败行数
+     */
+    @Test
+    public void testFailedInsertFailsWholeBatch() throws Exception {
+        when(milvusClient.insert(any(InsertParam.class)))
+                .thenReturn(R.failed(new RuntimeException("集合未加载")))
+                .thenThrow(new RuntimeException("连接断开"));
+        buffer = new MilvusInsertBuffer(milvusClient, COLLECTION, 10, 2, 60000, 100, meterRegistry);
+
+        CompletableFuture<Boolean> first = buffer.submit("v1", new float[]{1f}, Map.of());
+        CompletableFuture<Boolean> second = buffer.submit("v2", new float[]{2f}, Map.of());
+        assertFalse(first.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(second.get(WAIT_SECONDS, TimeUnit.SECONDS));
+
+        CompletableFuture<Boolean> third = buffer.submit("v3", new float[]{3f}, Map.of());
+        CompletableFuture<Boolean> fourth = buffer.submit("v4", new float[]{4f}, Map.of());
+        assertFalse(third.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(fourth.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(4.0, meterRegistry.get("milvus.insert.buffer.failed").counter().count());
+    }
+
+    /**
+     * 测试背压：写入线程阻塞、队列已满时，提交方等待offerTimeoutMs后被拒绝，已入队的行不受影响
+     */
+    @Test
+    public void testRejectsWhenFullAfterOfferTimeout() throws Exception {
+        BlockingInsert insert = new BlockingInsert();
+        when(milvusClient.insert(any(InsertParam.class))).thenAnswer(invocation -> insert.await());
+        buffer = new MilvusInsertBuffer(milvusClient, COLLECTION, 1, 1, 0, 50, meterRegistry);
+
+        CompletableFuture<Boolean> inFlight = buffer.submit("v1", new float[]{1f}, Map.of());
+        assertTrue(insert.entered.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = buffer.submit("v2", new float[]{2f}, Map.of());
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> rejected = buffer.submit("v3", new float[]{3f}, Map.of());
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(rejected.isDone());
+        assertFalse(rejected.get());
+        assertTrue(waitedMillis >= 40, "队列满时应等待offerTimeoutMs后再拒绝，实际等待" + waitedMillis + "ms");
+        assertEquals(1.0, meterRegistry.get("milvus.insert.buffer.rejected").counter().count());
+        assertFalse(inFlight.isDone());
+        assertFalse(queued.isDone());
+
+        insert.release.countDown();
+        assertTrue(inFlight.get(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(queued.get(WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 测试关闭时把队列中剩余的行全部写入，关闭后提交直接被拒绝
+     */
+    @Test
+    public void testCloseDrainsQueue() throws Exception {
+        BlockingInsert insert = new BlockingInsert();
+        when(milvusClient.insert(any(InsertParam.class))).thenAnswer(invocation -> insert.await());
+        buffer = new MilvusInsertBuffer(milvusClient, COLLECTION, 10, 1, 0, 100, meterRegistry);
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        futures.add(buffer.submit("v1", new float[]{1f}, Map.of()));
+        assertTrue(insert.entered.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        futures.add(buffer.submit("v2", new float[]{2f}, Map.of()));
+        futures.add(buffer.submit("v3", new float[]{3f}, Map.of()));
+
+        insert.release.countDown();
+        buffer.close(WAIT_SECONDS * 1000);
+        for (CompletableFuture<Boolean> future : futures) {
+            assertTrue(future.isDone());
+            assertTrue(future.get());
+        }
+        verify(milvusClient, times(3)).insert(any(InsertParam.class));
+
+        CompletableFuture<Boolean> afterClose = buffer.submit("v4", new float[]{4f}, Map.of());
+        assertTrue(afterClose.isDone());
+        assertFalse(afterClose.get());
+        assertEquals(1.0, meterRegistry.get("milvus.insert.buffer.rejected").counter().count());
+    }
+
+    /**
+     * 测试关闭等待超时：仍在队列中的行直接失败，调用方不会永远等待
+     */
+    @Test
+    public void testCloseTimeoutFailsQueuedRows() throws Exception {
+        BlockingInsert insert = new BlockingInsert();
+        when(milvusClient.insert(any(InsertParam.class))).thenAnswer(invocation -> insert.await());
+        buffer = new MilvusInsertBuffer(milvusClient, COLLECTION, 10, 1, 0, 100, meterRegistry);
+
+        CompletableFuture<Boolean> inFlight = buffer.submit("v1", new float[]{1f}, Map.of());
+        assertTrue(insert.entered.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = buffer.submit("v2", new float[]{2f}, Map.of());
+
+        buffer.close(50);
+        assertTrue(queued.isDone());
+        assertFalse(queued.get());
+        assertEquals(1.0, meterRegistry.get("milvus.insert.buffer.failed").counter().count());
+
+        insert.release.countDown();
+        assertTrue(inFlight.get(WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static List<?> values(InsertParam param, String field) {
+        for (InsertParam.Field f : param.getFields()) {
+            if (f.getName().equals(field)) {
+                return f.getValues();
+            }
+        }
+        throw new AssertionError("缺少字段：" + field);
+    }
+
+    private static R<MutationResult> success() {
+        return R.success(MutationResult.newBuilder().build());
+    }
+
+    /**
+     * 阻塞在insert调用中的模拟写入，用于让写入线程停在一批数据上
+     */
+    private static class BlockingInsert {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        R<MutationResult> await() throws InterruptedException {
+            entered.countDown();
+            release.await();
+            return success();
+        }
+    }
+}
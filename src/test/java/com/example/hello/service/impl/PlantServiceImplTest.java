@@ -0,0 +1,152 @@
+package com.example.hello.service.impl;
+
+import com.example.hello.entity.Plant;
+import com.example.hello.mapper.PlantMapper;
+import com.example.hello.service.SharedPlantCache;
+import com.example.hello.util.TinyLfuCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 植物服务两级缓存测试类
+ * 使用LocalSharedPlantCache作为二级缓存，MySQL查询由模拟的PlantMapper代替
+ */
+public class PlantServiceImplTest {
+
+    private static final Long ID = 1L;
+
+    private PlantMapper plantMapper;
+
+    private PlantServiceImpl plantService;
+
+    private RacingSharedPlantCache sharedCache;
+
+    @BeforeEach
+    public void setUp() {
+        plantMapper = mock(PlantMapper.class);
+        sharedCache = new RacingSharedPlantCache();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("sharedPlantCache", sharedCache);
+
+        plantService = new PlantServiceImpl();
+        ReflectionTestUtils.setField(plantService, "baseMapper", plantMapper);
+        ReflectionTestUtils.setField(plantService, "cacheMaxSize", 100);
+        ReflectionTestUtils.setField(plantService, "sharedPlantCacheProvider",
+                beanFactory.getBeanProvider(SharedPlantCache.class));
+        ReflectionTestUtils.setField(plantService, "meterRegistry", new SimpleMeterRegistry());
+        plantService.initCache();
+    }
+
+    /**
+     * 测试未命中时从MySQL加载并回填两级缓存，之后命中进程内缓存
+     */
+    @Test
+    public void testMissFillsBothLevels() {
+        when(plantMapper.selectById(ID)).thenReturn(plant("月季"));
+
+        assertEquals("月季", plantService.getPlantById(ID).getName());
+        assertEquals("月季", sharedCache.get(ID).getName());
+        assertEquals("月季", plantService.getPlantById(ID).getName());
+        verify(plantMapper, times(1)).selectById(ID);
+    }
+
+    /**
+     * 测试从MySQL加载期间植物被保存时不回填缓存，下次查询重新加载新数据
+     */
+    @Test
+    public void testNoStaleFillAfterInvalidationDuringLoad() {
+        when(plantMapper.selectById(ID)).thenAnswer(invocation -> {
+            // 旧数据已经读出，此时另一个请求保存了新数据并删除缓存
+            Plant stale = plant("旧名称");
+            invalidate();
+            return stale;
+        }).thenReturn(plant("新名称"));
+
+        assertEquals("旧名称", plantService.getPlantById(ID).getName());
+        assertNull(sharedCache.get(ID));
+        assertEquals(0, cacheSize());
+
+        assertEquals("新名称", plantService.getPlantById(ID).getName());
+        assertEquals("新名称", plantService.getPlantById(ID).getName());
+        assertEquals("新名称", sharedCache.get(ID).getName());
+        verify(plantMapper, times(2)).selectById(ID);
+    }
+
+    /**
+     * 测试读取二级缓存期间植物被保存时不回填进程内缓存
+     */
+    @Test
+    public void testNoStaleFillFromSharedCacheAfterInvalidation() {
+        sharedCache.put(plant("旧名称"));
+        // 旧数据已经读出，此时另一个请求保存了新数据并删除缓存
+        sharedCache.afterGet = this::invalidate;
+
+        assertEquals("旧名称", plantService.getPlantById(ID).getName());
+        assertEquals(0, cacheSize());
+
+        sharedCache.afterGet = null;
+        when(plantMapper.selectById(ID)).thenReturn(plant("新名称"));
+        assertEquals("新名称", plantService.getPlantById(ID).getName());
+        assertEquals("新名称", plantService.getPlantById(ID).getName());
+        verify(plantMapper, times(1)).selectById(ID);
+    }
+
+    /**
+     * 测试二级缓存命中时回填进程内缓存，并返回调用方可修改的副本
+     */
+    @Test
+    public void testSharedHitFillsLocalCacheWithCopy() {
+        sharedCache.put(plant("月季"));
+
+        Plant first = plantService.getPlantById(ID);
+        first.setName("被调用方修改");
+        sharedCache.evict(ID);
+
+        assertEquals("月季", plantService.getPlantById(ID).getName());
+        assertEquals(1, cacheSize());
+        verify(plantMapper, times(0)).selectById(ID);
+    }
+
+    private void invalidate() {
+        ReflectionTestUtils.invokeMethod(plantService, "invalidate", ID);
+    }
+
+    private int cacheSize() {
+        TinyLfuCache<?, ?> cache = (TinyLfuCache<?, ?>) ReflectionTestUtils.getField(plantService, "cache");
+        return cache.size();
+    }
+
+    private static Plant plant(String name) {
+        Plant plant = new Plant();
+        plant.setId(ID);
+        plant.setName(name);
+        return plant;
+    }
+
+    /**
+     * 读取后执行回调的二级缓存，模拟读取完成、回填之前发生的并发保存
+     */
+    private static final class RacingSharedPlantCache extends LocalSharedPlantCache {
+
+        private Runnable afterGet;
+
+        @Override
+        public Plant get(Long id) {
+            Plant plant = super.get(id);
+            if (afterGet != null) {
+                afterGet.run();
+            }
+            return plant;
+        }
+    }
+}
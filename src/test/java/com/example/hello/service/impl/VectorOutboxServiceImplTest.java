@@ -0,0 +1,301 @@
+package com.example.hello.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.example.hello.entity.Plant;
+import com.example.hello.entity.PlantVector;
+import com.example.hello.entity.VectorOutbox;
+import com.example.hello.mapper.VectorOutboxMapper;
+import com.example.hello.service.MilvusVectorService;
+import com.example.hello.service.PlantService;
+import com.example.hello.service.PlantVectorService;
+import com.example.hello.service.VectorSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 向量发件箱relay测试类
+ * 发件箱表由模拟的VectorOutboxMapper代替，Milvus写入、植物查询和向量快照均为模拟对象
+ */
+public class VectorOutboxServiceImplTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final float[] VECTOR = {0.5f, -1f, 2f};
+
+    private VectorOutboxMapper outboxMapper;
+
+    private PlantService plantService;
+
+    private PlantVectorService plantVectorService;
+
+    private MilvusVectorService milvusVectorService;
+
+    private VectorSnapshotService vectorSnapshotService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private VectorOutboxServiceImpl outboxService;
+
+    @BeforeEach
+    public void setUp() {
+        // LambdaWrapper按实体的表信息解析列名
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), VectorOutbox.class);
+        outboxMapper = mock(VectorOutboxMapper.class);
+        plantService = mock(PlantService.class);
+        plantVectorService = mock(PlantVectorService.class);
+        milvusVectorService = mock(MilvusVectorService.class);
+        vectorSnapshotService = mock(VectorSnapshotService.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        outboxService = new VectorOutboxServiceImpl();
+        ReflectionTestUtils.setField(outboxService, "baseMapper", outboxMapper);
+        ReflectionTestUtils.setField(outboxService, "batchSize", 100);
+        ReflectionTestUtils.setField(outboxService, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(outboxService, "retryBackoffMs", 1000L);
+        ReflectionTestUtils.setField(outboxService, "maxRetryBackoffMs", 10000L);
+        ReflectionTestUtils.setField(outboxService, "leaseMs", 5000L);
+        ReflectionTestUtils.setField(outboxService, "plantService", plantService);
+        ReflectionTestUtils.setField(outboxService, "plantVectorService", plantVectorService);
+        ReflectionTestUtils.setField(outboxService, "milvusVectorService", milvusVectorService);
+        ReflectionTestUtils.setField(outboxService, "vectorSnapshotService", vectorSnapshotService);
+        ReflectionTestUtils.setField(outboxService, "meterRegistry", meterRegistry);
+        outboxService.initMetrics();
+
+        when(plantService.getPlantById(any())).thenAnswer(invocation -> plant(invocation.getArgument(0)));
+        when(milvusVectorService.insertVectorAsync(anyString(), any(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(milvusVectorService.deleteVector(anyString())).thenReturn(true);
+    }
+
+    /**
+     * 测试认领：乐观更新成功的记录才写入，认领后尝试次数加1，被其他实例抢先认领的记录跳过
+     */
+    @Test
+    public void testOnlyClaimedRowsAreRelayed() {
+        VectorOutbox mine = row(1L, 0);
+        VectorOutbox taken = row(2L, 0);
+        when(outboxMapper.selectList(any())).thenReturn(List.of(mine, taken));
+        // 第一条认领成功，第二条已被其他实例认领
+        when(outboxMapper.update(isNull(), any())).thenReturn(1, 0);
+
+        assertEquals(1, outboxService.relay());
+
+        assertEquals(1, mine.getAttempts());
+        verify(milvusVectorService).insertVectorAsync(eq("plant_1"), any(), anyMap());
+        verify(milvusVectorService, never()).insertVectorAsync(eq("plant_2"), any(), anyMap());
+        verify(outboxMapper).deleteById(1L);
+        verify(outboxMapper, never()).deleteById(2L);
+
+        ArgumentCaptor<LambdaUpdateWrapper<VectorOutbox>> captor = updateCaptor();
+        verify(outboxMapper, times(2)).update(isNull(), captor.capture());
+        LambdaUpdateWrapper<VectorOutbox> claim = captor.getAllValues().get(0);
+        assertTrue(claim.getSqlSet().contains("attempts"), claim.getSqlSet());
+        assertTrue(claim.getSqlSet().contains("next_attempt_time"), claim.getSqlSet());
+        assertTrue(claim.getParamNameValuePairs().containsValue(1));
+    }
+
+    /**
+     * 测试写入成功：向量原样提交到Milvus，保存plant_vectors记录后删除发件箱记录，首次尝试不删除旧向量
+     */
+    @Test
+    public void testSuccessfulRelay() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, 0)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+
+        assertEquals(1, outboxService.relay());
+
+        ArgumentCaptor<float[]> vector = ArgumentCaptor.forClass(float[].class);
+        verify(milvusVectorService).insertVectorAsync(eq("plant_1"), vector.capture(), anyMap());
+        assertArrayEquals(VECTOR, vector.getValue());
+        verify(milvusVectorService, never()).deleteVector(anyString());
+        ArgumentCaptor<PlantVector> plantVector = ArgumentCaptor.forClass(PlantVector.class);
+        verify(plantVectorService).savePlantVector(plantVector.capture());
+        assertEquals(1L, plantVector.getValue().getPlantId());
+        assertEquals("plant_1", plantVector.getValue().getVectorId());
+        verify(outboxMapper).deleteById(1L);
+        assertEquals(1.0, relayed("success"));
+    }
+
+    /**
+     * 测试写入失败：不删除发件箱记录，按退避时间安排重试并记录失败原因
+     */
+    @Test
+    public void testFailedInsertSchedulesRetry() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, 0)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+        when(milvusVectorService.insertVectorAsync(anyString(), any(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(false));
+
+        assertEquals(0, outboxService.relay());
+
+        verify(outboxMapper, never()).deleteById(any(Long.class));
+        verify(plantVectorService, never()).savePlantVector(any());
+        LambdaUpdateWrapper<VectorOutbox> retry = lastUpdate(2);
+        assertTrue(retry.getSqlSet().contains("last_error"), retry.getSqlSet());
+        assertTrue(retry.getParamNameValuePairs().containsValue("Milvus写入失败"));
+        assertFalse(retry.getParamNameValuePairs().containsValue(VectorOutbox.STATUS_FAILED));
+        assertEquals(1.0, relayed("retry"));
+    }
+
+    /**
+     * 测试超过最大尝试次数时标记为FAILED，不再重试
+     */
+    @Test
+    public void testExhaustedRowIsMarkedFailed() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, MAX_ATTEMPTS - 1)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+        when(milvusVectorService.insertVectorAsync(anyString(), any(), anyMap()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("集合未加载")));
+
+        assertEquals(0, outboxService.relay());
+
+        LambdaUpdateWrapper<VectorOutbox> retry = lastUpdate(2);
+        assertTrue(retry.getParamNameValuePairs().containsValue(VectorOutbox.STATUS_FAILED));
+        assertEquals(1.0, relayed("failed"));
+        assertEquals(0.0, relayed("retry"));
+    }
+
+    /**
+     * 测试重试（认领后尝试次数大于1）时先删除上一次尝试可能已写入的同ID向量，再重新写入
+     */
+    @Test
+    public void testRetryDeletesBeforeReinsert() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, 1)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+
+        assertEquals(1, outboxService.relay());
+
+        InOrder order = inOrder(milvusVectorService);
+        order.verify(milvusVectorService).deleteVector("plant_1");
+        order.verify(milvusVectorService).insertVectorAsync(eq("plant_1"), any(), anyMap());
+        verify(outboxMapper).deleteById(1L);
+    }
+
+    /**
+     * 测试重试时删除旧向量失败则不写入，避免Milvus中出现重复向量
+     */
+    @Test
+    public void testRetryWithoutDeleteDoesNotReinsert() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, 1)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+        when(milvusVectorService.deleteVector("plant_1")).thenReturn(false);
+
+        assertEquals(0, outboxService.relay());
+
+        verify(milvusVectorService, never()).insertVectorAsync(anyString(), any(), anyMap());
+        verify(outboxMapper, never()).deleteById(any(Long.class));
+        assertEquals(1.0, relayed("retry"));
+    }
+
+    /**
+     * 测试plant_vectors已有记录时不重复写入
+     */
+    @Test
+    public void testExistingPlantVectorIsNotDuplicated() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, 1)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+        when(plantVectorService.getByVectorId("plant_1")).thenReturn(new PlantVector());
+
+        assertEquals(1, outboxService.relay());
+
+        verify(plantVectorService, never()).savePlantVector(any());
+        verify(outboxMapper).deleteById(1L);
+    }
+
+    /**
+     * 测试植物已删除时直接丢弃记录，不写入Milvus
+     */
+    @Test
+    public void testDeletedPlantDropsRow() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, 0)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+        when(plantService.getPlantById(1L)).thenReturn(null);
+
+        assertEquals(0, outboxService.relay());
+
+        verify(milvusVectorService, never()).insertVectorAsync(anyString(), any(), anyMap());
+        verify(outboxMapper).deleteById(1L);
+    }
+
+    /**
+     * 测试进程内向量后端：向量快照写入失败时保留发件箱记录并安排重试
+     */
+    @Test
+    public void testPrimarySnapshotFailureKeepsRows() {
+        when(outboxMapper.selectList(any())).thenReturn(List.of(row(1L, 0)));
+        when(outboxMapper.update(isNull(), any())).thenReturn(1);
+        when(vectorSnapshotService.isPrimaryStore()).thenReturn(true);
+        when(vectorSnapshotService.refresh()).thenReturn(false);
+
+        assertEquals(0, outboxService.relay());
+
+        verify(outboxMapper, never()).deleteById(any(Long.class));
+        verify(plantVectorService, never()).savePlantVector(any());
+        assertTrue(lastUpdate(2).getParamNameValuePairs().containsValue("向量快照写入失败"));
+    }
+
+    private LambdaUpdateWrapper<VectorOutbox> lastUpdate(int expectedUpdates) {
+        ArgumentCaptor<LambdaUpdateWrapper<VectorOutbox>> captor = updateCaptor();
+        verify(outboxMapper, times(expectedUpdates)).update(isNull(), captor.capture());
+        return captor.getValue();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArgumentCaptor<LambdaUpdateWrapper<VectorOutbox>> updateCaptor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(LambdaUpdateWrapper.class);
+    }
+
+    private double relayed(String result) {
+        return meterRegistry.get("plant.outbox.relayed").tag("result", result).counter().count();
+    }
+
+    private static VectorOutbox row(Long plantId, int attempts) {
+        VectorOutbox row = new VectorOutbox();
+        row.setId(plantId);
+        row.setPlantId(plantId);
+        row.setVectorId("plant_" + plantId);
+        ByteBuffer buffer = ByteBuffer.allocate(VECTOR.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(VECTOR);
+        row.setVectorData(buffer.array());
+        row.setStatus(VectorOutbox.STATUS_PENDING);
+        row.setAttempts(attempts);
+        row.setNextAttemptTime(LocalDateTime.now());
+        return row;
+    }
+
+    private static Plant plant(Long id) {
+        Plant plant = new Plant();
+        plant.setId(id);
+        plant.setName("月季");
+        return plant;
+    }
+}
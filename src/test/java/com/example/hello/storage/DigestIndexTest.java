@@ -0,0 +1,95 @@
+package com.example.hello.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 卷存储内存索引测试类
+ */
+public class DigestIndexTest {
+
+    /**
+     * 测试写入、覆盖和删除，覆盖和删除返回之前的位置
+     */
+    @Test
+    public void testPutOverwriteRemove() {
+        DigestIndex index = new DigestIndex();
+        byte[] key = key(1, 0);
+        assertNull(index.put(key, 1, 16, 100));
+        DigestIndex.Entry previous = index.put(key, 2, (1L << 39) + 5, 200);
+        assertEquals(1, previous.segmentId);
+        assertEquals(16, previous.offset);
+        assertEquals(100, previous.length);
+
+        DigestIndex.Entry entry = index.get(key);
+        assertEquals(2, entry.segmentId);
+        assertEquals((1L << 39) + 5, entry.offset);
+        assertEquals(200, entry.length);
+        assertEquals(1, index.size());
+
+        assertEquals(2, index.remove(key).segmentId);
+        assertNull(index.remove(key));
+        assertFalse(index.contains(key));
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * 测试超出打包范围的位置被拒绝
+     */
+    @Test
+    public void testRejectOutOfRangeLocation() {
+        DigestIndex index = new DigestIndex();
+        assertThrows(IllegalArgumentException.class, () -> index.put(key(1, 0), 1, 1L << DigestIndex.OFFSET_BITS, 1));
+        assertThrows(IllegalArgumentException.class, () -> index.put(key(1, 0), DigestIndex.MAX_SEGMENT_ID, 16, 1));
+    }
+
+    /**
+     * 测试大量随机写入和删除（含前8字节相同的摘要）与HashMap结果一致，覆盖扩容和删除后的槽位前移
+     */
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        Random random = new Random(7);
+        DigestIndex index = new DigestIndex();
+        Map<ByteBuffer, Long> expected = new HashMap<>();
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // 每4个摘要的前8字节相同，落在同一探测链上
+            keys.add(key(i / 4, i % 4));
+        }
+        for (int i = 0; i < 50000; i++) {
+            byte[] key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                DigestIndex.Entry removed = index.remove(key);
+                Long previous = expected.remove(ByteBuffer.wrap(key));
+                assertEquals(previous, removed != null ? (Long) removed.offset : null);
+            } else {
+                long offset = 16 + random.nextInt(1 << 20);
+                index.put(key, 1 + random.nextInt(100), offset, random.nextInt(1000));
+                expected.put(ByteBuffer.wrap(key), offset);
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (byte[] key : keys) {
+            Long offset = expected.get(ByteBuffer.wrap(key));
+            DigestIndex.Entry entry = index.get(key);
+            assertEquals(offset, entry != null ? (Long) entry.offset : null);
+            assertTrue(index.contains(key) == (offset != null));
+        }
+    }
+
+    private static byte[] key(long prefix, long suffix) {
+        return ByteBuffer.allocate(VolumeStore.KEY_BYTES).putLong(prefix).putLong(24, suffix).array();
+    }
+}
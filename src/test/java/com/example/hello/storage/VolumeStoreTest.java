@@ -0,0 +1,158 @@
+package com.example.hello.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 打包卷存储测试类
+ */
+public class VolumeStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 测试写入后读取一致，相同摘要不重复写入
+     */
+    @Test
+    public void testPutAndGet() throws IOException {
+        Random random = new Random(1);
+        try (VolumeStore store = VolumeStore.open(tempDir, 1 << 20)) {
+            byte[] data = randomBytes(random, 1000);
+            String key = key(1);
+            assertTrue(store.put(key, data));
+            assertFalse(store.put(key, randomBytes(random, 10)));
+            assertArrayEquals(data, store.get(key).getData());
+            assertNull(store.get(key(2)));
+            assertEquals(1, store.size());
+        }
+    }
+
+    /**
+     * 测试段写满后封存，重新打开时从段尾索引和未封存段重建索引，删除在重新打开后仍然生效
+     */
+    @Test
+    public void testReopenAcrossSegments() throws IOException {
+        Random random = new Random(2);
+        byte[][] data = new byte[50][];
+        try (VolumeStore store = VolumeStore.open(tempDir, 4096)) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = randomBytes(random, 200 + random.nextInt(300));
+                store.put(key(i), data[i]);
+            }
+            assertTrue(store.delete(key(3)));
+            assertFalse(store.delete(key(3)));
+            assertTrue(store.segmentCount() > 1);
+        }
+
+        try (VolumeStore store = VolumeStore.open(tempDir, 4096)) {
+            assertEquals(data.length - 1, store.size());
+            assertNull(store.get(key(3)));
+            for (int i = 0; i < data.length; i++) {
+                if (i != 3) {
+                    assertArrayEquals(data[i], store.get(key(i)).getData());
+                }
+            }
+        }
+    }
+
+    /**
+     * 测试压缩删除已删除数据占比较高的段，有效记录仍可读取，重新打开后删除的记录不会恢复
+     */
+    @Test
+    public void testCompact() throws IOException {
+        Random random = new Random(3);
+        byte[][] data = new byte[40][];
+        int segmentsBefore;
+        try (VolumeStore store = VolumeStore.open(tempDir, 4096)) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = randomBytes(random, 500);
+                store.put(key(i), data[i]);
+            }
+            for (int i = 0; i < data.length; i += 4) {
+                store.delete(key(i + 1));
+                store.delete(key(i + 2));
+                store.delete(key(i + 3));
+            }
+            segmentsBefore = store.segmentCount();
+            long deadBefore = store.deadBytes();
+            assertTrue(store.compact(0.5) > 0);
+            assertTrue(store.deadBytes() < deadBefore);
+            assertTrue(store.segmentCount() < segmentsBefore);
+            // 压缩后重新写入已删除的图片
+            store.put(key(1), data[1]);
+        }
+
+        try (VolumeStore store = VolumeStore.open(tempDir, 4096)) {
+            assertEquals(data.length / 4 + 1, store.size());
+            for (int i = 0; i < data.length; i++) {
+                if (i % 4 == 0 || i == 1) {
+                    assertArrayEquals(data[i], store.get(key(i)).getData());
+                } else {
+                    assertNull(store.get(key(i)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 测试写入段末尾不完整的记录在重新打开时被截断，之前的记录不受影响
+     */
+    @Test
+    public void testTruncateTornWrite() throws IOException {
+        Random random = new Random(4);
+        byte[] first = randomBytes(random, 300);
+        try (VolumeStore store = VolumeStore.open(tempDir, 1 << 20)) {
+            store.put(key(1), first);
+            store.put(key(2), randomBytes(random, 300));
+        }
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        try (VolumeStore store = VolumeStore.open(tempDir, 1 << 20)) {
+            assertArrayEquals(first, store.get(key(1)).getData());
+            assertNull(store.get(key(2)));
+            byte[] again = randomBytes(random, 100);
+            assertTrue(store.put(key(2), again));
+            assertArrayEquals(again, store.get(key(2)).getData());
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String key(int i) {
+        byte[] bytes = new byte[VolumeStore.KEY_BYTES];
+        bytes[0] = (byte) (i >>> 8);
+        bytes[1] = (byte) i;
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.hello.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * EXIF方向工具类测试类
+ * 变换测试使用2x1图片，左像素为红色、右像素为蓝色，检查变换后两个像素的位置
+ */
+public class ExifOrientationTest {
+
+    private static final int LEFT = 0xFF0000;
+
+    private static final int RIGHT = 0x0000FF;
+
+    /**
+     * 测试方向1不做变换
+     */
+    @Test
+    public void testApplyNormal() {
+        BufferedImage image = source();
+        assertSame(image, ExifOrientation.apply(image, 1));
+        assertSame(image, ExifOrientation.apply(image, 0));
+        assertSame(image, ExifOrientation.apply(image, 9));
+    }
+
+    /**
+     * 测试方向2：水平翻转
+     */
+    @Test
+    public void testApplyFlipHorizontal() {
+        assertPixels(ExifOrientation.apply(source(), 2), 2, 1, RIGHT, LEFT);
+    }
+
+    /**
+     * 测试方向3：旋转180度
+     */
+    @Test
+    public void testApplyRotate180() {
+        assertPixels(ExifOrientation.apply(source(), 3), 2, 1, RIGHT, LEFT);
+    }
+
+    /**
+     * 测试方向4：垂直翻转
+     */
+    @Test
+    public void testApplyFlipVertical() {
+        assertPixels(ExifOrientation.apply(source(), 4), 2, 1, LEFT, RIGHT);
+    }
+
+    /**
+     * 测试方向5：沿左上-右下对角线翻转
+     */
+    @Test
+    public void testApplyTranspose() {
+        assertPixels(ExifOrientation.apply(source(), 5), 1, 2, LEFT, RIGHT);
+    }
+
+    /**
+     * 测试方向6：顺时针旋转90度
+     */
+    @Test
+    public void testApplyRotateClockwise() {
+        assertPixels(ExifOrientation.apply(source(), 6), 1, 2, LEFT, RIGHT);
+    }
+
+    /**
+     * 测试方向7：沿右上-左下对角线翻转
+     */
+    @Test
+    public void testApplyTransverse() {
+        assertPixels(ExifOrientation.apply(source(), 7), 1, 2, RIGHT, LEFT);
+    }
+
+    /**
+     * 测试方向8：逆时针旋转90度
+     */
+    @Test
+    public void testApplyRotateCounterClockwise() {
+        assertPixels(ExifOrientation.apply(source(), 8), 1, 2, RIGHT, LEFT);
+    }
+
+    /**
+     * 测试按大端和小端字节序读取方向1到8
+     */
+    @Test
+    public void testReadOrientation() {
+        for (int orientation = 1; orientation <= 8; orientation++) {
+            assertEquals(orientation, ExifOrientation.read(jpeg(app1(tiff(false, orientation)))));
+            assertEquals(orientation, ExifOrientation.read(jpeg(app1(tiff(true, orientation)))));
+        }
+    }
+
+    /**
+     * 测试跳过APP1之前的其他标记段
+     */
+    @Test
+    public void testReadAfterOtherSegments() {
+        byte[] app0 = segment(0xE0, "JFIF\0".getBytes());
+        assertEquals(6, ExifOrientation.read(jpeg(app0, app1(tiff(false, 6)))));
+    }
+
+    /**
+     * 测试不是JPEG或没有EXIF时返回1
+     */
+    @Test
+    public void testReadWithoutExif() {
+        assertEquals(1, ExifOrientation.read(new byte[0]));
+        assertEquals(1, ExifOrientation.read(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 0}));
+        assertEquals(1, ExifOrientation.read(jpeg(segment(0xE0, "JFIF\0".getBytes()))));
+        // 图像数据之后的APP1不再扫描
+        assertEquals(1, ExifOrientation.read(jpeg(segment(0xDA, new byte[4]), app1(tiff(false, 6)))));
+        // APP1不是EXIF（如XMP）
+        assertEquals(1, ExifOrientation.read(jpeg(segment(0xE1, "http://ns.adobe.com/xap/1.0/\0".getBytes()))));
+    }
+
+    /**
+     * 测试APP1段被截断时返回1
+     */
+    @Test
+    public void testReadTruncatedSegment() {
+        byte[] complete = jpeg(app1(tiff(false, 6)));
+        // 从方向值之前的任意位置截断，段长度超出数据
+        for (int length = 4; length < complete.length - 2; length++) {
+            assertEquals(1, ExifOrientation.read(Arrays.copyOf(complete, length)), "截断长度" + length);
+        }
+    }
+
+    /**
+     * 测试TIFF结构损坏时返回1
+     */
+    @Test
+    public void testReadCorruptTiff() {
+        // 字节序标记无效
+        byte[] tiff = tiff(false, 6);
+        tiff[0] = 'X';
+        tiff[1] = 'X';
+        assertEquals(1, ExifOrientation.read(jpeg(app1(tiff))));
+
+        // IFD偏移超出APP1段
+        tiff = tiff(false, 6);
+        tiff[7] = (byte) 0xF0;
+        assertEquals(1, ExifOrientation.read(jpeg(app1(tiff))));
+
+        // IFD偏移指向TIFF头内部
+        tiff = tiff(false, 6);
+        tiff[7] = 2;
+        assertEquals(1, ExifOrientation.read(jpeg(app1(tiff))));
+
+        // 条目数超出APP1段，方向标签不在第一个条目
+        tiff = tiff(false, 6);
+        tiff[8] = 0x10;
+        tiff[11] = 0x13;
+        assertEquals(1, ExifOrientation.read(jpeg(app1(tiff))));
+
+        // 方向标签类型不是SHORT
+        tiff = tiff(false, 6);
+        tiff[13] = 4;
+        assertEquals(1, ExifOrientation.read(jpeg(app1(tiff))));
+
+        // 方向值超出1到8
+        assertEquals(1, ExifOrientation.read(jpeg(app1(tiff(false, 9)))));
+        assertEquals(1, ExifOrientation.read(jpeg(app1(tiff(false, 0)))));
+
+        // 段长度小于2
+        byte[] invalid = jpeg(app1(tiff(false, 6)));
+        invalid[4] = 0;
+        invalid[5] = 1;
+        assertEquals(1, ExifOrientation.read(invalid));
+    }
+
+    private static BufferedImage source() {
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, LEFT);
+        image.setRGB(1, 0, RIGHT);
+        return image;
+    }
+
+    /**
+     * 检查变换后的尺寸和两个像素的位置，first为左上角像素，second为另一个像素
+     */
+    private static void assertPixels(BufferedImage image, int width, int height, int first, int second) {
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        assertEquals(first, image.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(second, image.getRGB(width - 1, height - 1) & 0xFFFFFF);
+    }
+
+    /**
+     * 构造只有一个方向标签的TIFF结构：8字节TIFF头、1个IFD条目、下一个IFD偏移为0
+     */
+    private static byte[] tiff(boolean littleEndian, int orientation) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(littleEndian ? new byte[]{'I', 'I'} : new byte[]{'M', 'M'});
+        writeShort(out, 42, littleEndian);
+        writeInt(out, 8, littleEndian);
+        writeShort(out, 1, littleEndian);
+        writeShort(out, 0x0112, littleEndian);
+        writeShort(out, 3, littleEndian);
+        writeInt(out, 1, littleEndian);
+        writeShort(out, orientation, littleEndian);
+        writeShort(out, 0, littleEndian);
+        writeInt(out, 0, littleEndian);
+        return out.toByteArray();
+    }
+
+    private static byte[] app1(byte[] tiff) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.writeBytes(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        payload.writeBytes(tiff);
+        return segment(0xE1, payload.toByteArray());
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(marker);
+        writeShort(out, payload.length + 2, false);
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    private static byte[] jpeg(byte[]... segments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        for (byte[] segment : segments) {
+            out.writeBytes(segment);
+        }
+        out.write(0xFF);
+        out.write(0xD9);
+        return out.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value, boolean littleEndian) {
+        if (littleEndian) {
+            out.write(value & 0xFF);
+            out.write((value >> 8) & 0xFF);
+        } else {
+            out.write((value >> 8) & 0xFF);
+            out.write(value & 0xFF);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value, boolean littleEndian) {
+        if (littleEndian) {
+            writeShort(out, value & 0xFFFF, true);
+            writeShort(out, (value >>> 16) & 0xFFFF, true);
+        } else {
+            writeShort(out, (value >>> 16) & 0xFFFF, false);
+            writeShort(out, value & 0xFFFF, false);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.hello.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图片JSON请求体流式写出测试类
+ */
+public class ImageJsonRequestCallbackTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 测试请求头：额外请求头原样带上，内容类型和接受类型为JSON
+     */
+    @Test
+    public void testHeaders() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth("secret");
+        MockClientHttpRequest request = new MockClientHttpRequest();
+
+        new ImageJsonRequestCallback(headers, "image", new ByteArrayInputStream(new byte[]{1, 2, 3}), null)
+                .doWithRequest(request);
+
+        assertEquals("Bearer secret", request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+        assertEquals(MediaType.APPLICATION_JSON, request.getHeaders().getContentType());
+        assertEquals(List.of(MediaType.APPLICATION_JSON), request.getHeaders().getAccept());
+    }
+
+    /**
+     * 测试Base64编码：不同长度的图片（含需要1个、2个填充字符和无需填充的情况）都能完整解码，
+     * 说明编码流关闭时写出了末尾的填充字符
+     */
+    @Test
+    public void testBase64Padding() throws Exception {
+        for (int length : new int[]{0, 1, 2, 3, 4, 5, 57, 1000, 8193}) {
+            byte[] image = image(length);
+            MockClientHttpRequest request = new MockClientHttpRequest();
+
+            new ImageJsonRequestCallback(new HttpHeaders(), "image", new ByteArrayInputStream(image), null)
+                    .doWithRequest(request);
+
+            JsonNode body = OBJECT_MAPPER.readTree(request.getBodyAsBytes());
+            String encoded = body.get("image").asText();
+            assertEquals(Base64.getEncoder().encodeToString(image), encoded, "长度" + length + "的图片编码错误");
+            assertArrayEquals(image, Base64.getDecoder().decode(encoded));
+            assertEquals(1, body.size());
+        }
+    }
+
+    /**
+     * 测试字段名和字段值的转义：含引号、反斜杠、控制字符和中文的字段由Jackson转义，请求体仍是合法JSON
+     */
+    @Test
+    public void testFieldQuoting() throws Exception {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("prompt", "识别这株\"植物\"\\n\t");
+        fields.put("key\"with\\quote", "值");
+        MockClientHttpRequest request = new MockClientHttpRequest();
+
+        new ImageJsonRequestCallback(new HttpHeaders(), "img\"name\\", new ByteArrayInputStream(image(10)), fields)
+                .doWithRequest(request);
+
+        JsonNode body = OBJECT_MAPPER.readTree(request.getBodyAsBytes());
+        assertArrayEquals(image(10), Base64.getDecoder().decode(body.get("img\"name\\").asText()));
+        assertEquals("识别这株\"植物\"\\n\t", body.get("prompt").asText());
+        assertEquals("值", body.get("key\"with\\quote").asText());
+    }
+
+    /**
+     * 测试图片之后的其他字段：按迭代顺序写出，数字、布尔、null、数组和嵌套对象类型保持不变
+     */
+    @Test
+    public void testTrailingFields() throws Exception {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("type", "text");
+        nested.put("text", "你好");
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("model", "qwen-vl");
+        fields.put("top_k", 5);
+        fields.put("threshold", 0.85);
+        fields.put("stream", false);
+        fields.put("user", null);
+        fields.put("messages", List.of(nested));
+        MockClientHttpRequest request = new MockClientHttpRequest();
+
+        new ImageJsonRequestCallback(new HttpHeaders(), "image", new ByteArrayInputStream(image(3)), fields)
+                .doWithRequest(request);
+
+        String json = request.getBodyAsString();
+        assertTrue(json.startsWith("{\"image\":\""), json);
+        assertTrue(json.endsWith("}"), json);
+        JsonNode body = OBJECT_MAPPER.readTree(json);
+        List<String> names = new ArrayList<>();
+        Iterator<String> iterator = body.fieldNames();
+        iterator.forEachRemaining(names::add);
+        assertEquals(List.of("image", "model", "top_k", "threshold", "stream", "user", "messages"), names);
+        assertEquals("qwen-vl", body.get("model").asText());
+        assertEquals(5, body.get("top_k").asInt());
+        assertEquals(0.85, body.get("threshold").asDouble(), 1e-9);
+        assertFalse(body.get("stream").asBoolean());
+        assertTrue(body.get("user").isNull());
+        assertEquals("你好", body.get("messages").get(0).get("text").asText());
+    }
+
+    /**
+     * 测试流式请求：doWithRequest时不写入getBody()，发送时写入连接输出流，
+     * 写出后不关闭连接输出流，并关闭图片输入流
+     */
+    @Test
+    public void testStreamingRequest() throws Exception {
+        byte[] image = image(100);
+        TrackingInputStream in = new TrackingInputStream(image);
+        StreamingMockClientHttpRequest request = new StreamingMockClientHttpRequest();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("model", "embedding");
+
+        new ImageJsonRequestCallback(new HttpHeaders(), "image", in, fields).doWithRequest(request);
+
+        assertEquals(0, request.getBodyAsBytes().length);
+        assertNotNull(request.body);
+        assertFalse(in.closed);
+
+        UnclosableOutputStream connection = new UnclosableOutputStream();
+        request.body.writeTo(connection);
+        assertTrue(in.closed);
+        assertTrue(connection.flushed);
+        JsonNode body = OBJECT_MAPPER.readTree(connection.toByteArray());
+        assertArrayEquals(image, Base64.getDecoder().decode(body.get("image").asText()));
+        assertEquals("embedding", body.get("model").asText());
+    }
+
+    /**
+     * 测试非流式请求：直接写入getBody()并关闭图片输入流
+     */
+    @Test
+    public void testBufferedRequest() throws Exception {
+        byte[] image = image(100);
+        TrackingInputStream in = new TrackingInputStream(image);
+        MockClientHttpRequest request = new MockClientHttpRequest();
+
+        new ImageJsonRequestCallback(new HttpHeaders(), "image", in, null).doWithRequest(request);
+
+        assertTrue(in.closed);
+        JsonNode body = OBJECT_MAPPER.readTree(request.getBodyAsBytes());
+        assertArrayEquals(image, Base64.getDecoder().decode(body.get("image").asText()));
+    }
+
+    private static byte[] image(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        return bytes;
+    }
+
+    /**
+     * 支持流式写出的模拟请求，记录设置的请求体，由测试模拟发送
+     */
+    private static class StreamingMockClientHttpRequest extends MockClientHttpRequest
+            implements StreamingHttpOutputMessage {
+
+        private Body body;
+
+        @Override
+        public void setBody(Body body) {
+            this.body = body;
+        }
+    }
+
+    /**
+     * 记录是否已关闭的图片输入流
+     */
+    private static class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        TrackingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    /**
+     * 模拟连接输出流，被关闭时报错
+     */
+    private static class UnclosableOutputStream extends ByteArrayOutputStream {
+
+        private boolean flushed;
+
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+
+        @Override
+        public void close() {
+            throw new IllegalStateException("连接输出流不应被关闭");
+        }
+    }
+}
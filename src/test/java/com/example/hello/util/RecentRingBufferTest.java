@@ -0,0 +1,117 @@
+package com.example.hello.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 环形缓冲区测试类
+ */
+public class RecentRingBufferTest {
+
+    /**
+     * 测试recent按写入时间从新到旧返回，并受limit限制
+     */
+    @Test
+    public void testRecentOrdering() {
+        RecentRingBuffer<Integer> buffer = new RecentRingBuffer<>(8);
+        assertTrue(buffer.recent(5).isEmpty());
+        for (int i = 0; i < 5; i++) {
+            buffer.append(i);
+        }
+        assertEquals(5, buffer.size());
+        assertEquals(List.of(4, 3, 2, 1, 0), buffer.recent(10));
+        assertEquals(List.of(4, 3), buffer.recent(2));
+        assertTrue(buffer.recent(0).isEmpty());
+    }
+
+    /**
+     * 测试写满后新条目覆盖最早的条目
+     */
+    @Test
+    public void testWraparound() {
+        RecentRingBuffer<Integer> buffer = new RecentRingBuffer<>(4);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(i);
+        }
+        assertEquals(4, buffer.size());
+        assertEquals(List.of(9, 8, 7, 6), buffer.recent(10));
+        assertEquals(List.of(9, 8, 7), buffer.recent(3));
+
+        buffer.append(10);
+        assertEquals(List.of(10, 9, 8, 7), buffer.recent(4));
+        assertThrows(IllegalArgumentException.class, () -> new RecentRingBuffer<Integer>(0));
+    }
+
+    /**
+     * 测试removeIf只移除匹配的条目，移除后的槽位在读取时跳过，之后的追加不受影响
+     */
+    @Test
+    public void testRemoveIf() {
+        RecentRingBuffer<Integer> buffer = new RecentRingBuffer<>(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.append(i);
+        }
+        // 已被覆盖的条目不计入
+        assertEquals(2, buffer.removeIf(value -> value % 2 == 0 || value < 2));
+        assertEquals(List.of(5, 3), buffer.recent(10));
+        assertEquals(0, buffer.removeIf(value -> value > 100));
+
+        buffer.append(6);
+        buffer.append(7);
+        assertEquals(List.of(7, 6, 5), buffer.recent(10));
+    }
+
+    /**
+     * 测试并发追加：写入完成后缓冲区保留的是最后写入的条目，每个条目只出现一次
+     */
+    @Test
+    public void testConcurrentAppend() throws Exception {
+        int capacity = 256;
+        RecentRingBuffer<Integer> buffer = new RecentRingBuffer<>(capacity);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 10000;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    buffer.append(offset + i);
+                    // 写入同时读取，读取结果不应包含重复条目
+                    if (i % 100 == 0) {
+                        List<Integer> recent = buffer.recent(capacity);
+                        assertEquals(recent.size(), new HashSet<>(recent).size());
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(capacity, buffer.size());
+        List<Integer> recent = buffer.recent(capacity);
+        assertEquals(capacity, recent.size());
+        Set<Integer> distinct = new HashSet<>(recent);
+        assertEquals(capacity, distinct.size());
+        // 每个线程内的条目按写入顺序从新到旧排列
+        int[] last = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+        for (int value : recent) {
+            int thread = value / 10000;
+            assertTrue(value < last[thread], "同一线程的条目顺序错误：" + value);
+            last[thread] = value;
+        }
+    }
+}
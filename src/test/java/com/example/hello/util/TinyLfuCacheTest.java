@@ -0,0 +1,105 @@
+package com.example.hello.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TinyLFU缓存测试类
+ */
+public class TinyLfuCacheTest {
+
+    /**
+     * 测试未满时直接写入，已存在的键直接覆盖且不受准入限制
+     */
+    @Test
+    public void testPutBelowCapacityAndOverwrite() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(3);
+        assertTrue(cache.put(1, "a"));
+        assertTrue(cache.put(2, "b"));
+        assertTrue(cache.put(1, "c"));
+        assertEquals("c", cache.get(1));
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.getRejections());
+        assertEquals(0, cache.getEvictions());
+
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new TinyLfuCache<Integer, String>(0));
+    }
+
+    /**
+     * 测试缓存已满时，只访问过一次的新键不能挤掉热点条目
+     */
+    @Test
+    public void testColdKeyRejectedWhenFull() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(2);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        for (int i = 0; i < 5; i++) {
+            cache.get(1);
+            cache.get(2);
+        }
+
+        // 未命中时的一次get是新键唯一的访问记录
+        assertNull(cache.get(3));
+        assertFalse(cache.put(3, "c"));
+        assertEquals(1, cache.getRejections());
+        assertEquals(0, cache.getEvictions());
+        assertEquals("a", cache.get(1));
+        assertEquals("b", cache.get(2));
+        assertNull(cache.get(3));
+    }
+
+    /**
+     * 测试访问频率更高的新键替换最久未访问的条目
+     */
+    @Test
+    public void testFrequentKeyEvictsLeastRecentlyUsed() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(2);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.get(1);
+        cache.get(2);
+        // 键1最久未访问，键3的访问次数超过键1
+        for (int i = 0; i < 3; i++) {
+            cache.get(3);
+        }
+
+        assertTrue(cache.put(3, "c"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+        assertNull(cache.get(1));
+        assertEquals("b", cache.get(2));
+        assertEquals("c", cache.get(3));
+    }
+
+    /**
+     * 测试访问频率随时间衰减：早期的热点键不再访问后会被新的热点键替换
+     */
+    @Test
+    public void testFrequencyDecay() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(1);
+        cache.put(1, "a");
+        for (int i = 0; i < 15; i++) {
+            cache.get(1);
+        }
+        assertFalse(cache.put(2, "b"));
+
+        // 累计记录次数达到容量的10倍后计数减半，持续访问的新键最终超过旧热点
+        boolean admitted = false;
+        for (int i = 0; i < 100 && !admitted; i++) {
+            cache.get(2);
+            admitted = cache.put(2, "b");
+        }
+        assertTrue(admitted);
+        assertNull(cache.get(1));
+        assertEquals("b", cache.get(2));
+    }
+}
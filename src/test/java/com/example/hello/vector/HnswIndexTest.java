@@ -0,0 +1,111 @@
+package com.example.hello.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HNSW索引测试类
+ */
+public class HnswIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    /**
+     * 测试检索召回率：与暴力内积检索对比
+     */
+    @Test
+    public void testRecallAgainstExactSearch() {
+        Random random = new Random(42);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 64, 64);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            float[] vector = randomUnitVector(random);
+            vectors.add(vector);
+            index.add("plant_" + i, vector);
+        }
+
+        int k = 10;
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random);
+            Set<String> expected = exactTopK(vectors, query, k);
+            for (SearchHit hit : index.search(query, k)) {
+                if (expected.contains(hit.getVectorId())) {
+                    found++;
+                }
+            }
+        }
+        double recall = (double) found / (queries * k);
+        assertTrue(recall >= 0.9, "召回率过低：" + recall);
+    }
+
+    /**
+     * 测试并发插入和删除
+     */
+    @Test
+    public void testConcurrentInsertAndDelete() throws InterruptedException {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 32, 32);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 500;
+            executor.submit(() -> {
+                Random random = new Random(offset);
+                for (int i = 0; i < 500; i++) {
+                    index.add("plant_" + (offset + i), randomUnitVector(random));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(2000, index.size());
+
+        float[] target = randomUnitVector(new Random(7));
+        index.add("target", target);
+        assertEquals("target", index.search(target, 1).get(0).getVectorId());
+
+        assertTrue(index.remove("target"));
+        assertFalse(index.remove("target"));
+        for (SearchHit hit : index.search(target, 10)) {
+            assertFalse("target".equals(hit.getVectorId()));
+        }
+    }
+
+    private static Set<String> exactTopK(List<float[]> vectors, float[] query, int k) {
+        FloatIntHeap heap = new FloatIntHeap(k);
+        for (int i = 0; i < vectors.size(); i++) {
+            heap.offer(VectorMath.dot(query, vectors.get(i)), i, k);
+        }
+        Set<String> ids = new HashSet<>();
+        while (!heap.isEmpty()) {
+            ids.add("plant_" + heap.pop());
+        }
+        return ids;
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.hello.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 向量量化测试类
+ */
+public class QuantizationTest {
+
+    private static final int DIMENSION = 128;
+
+    /**
+     * 测试int8标量量化的召回率和压缩比
+     */
+    @Test
+    public void testScalarQuantizationRecall() {
+        Random random = new Random(1);
+        List<float[]> base = clusteredVectors(random, 3000);
+        List<float[]> queries = clusteredVectors(random, 50);
+
+        ScalarQuantizer quantizer = new ScalarQuantizer(DIMENSION);
+        quantizer.train(base);
+        QuantizationRecallReport report = QuantizationRecallReport.evaluate("int8", quantizer, base, queries, 10, 0);
+
+        assertEquals(4.0, report.getCompressionRatio(), 1e-9);
+        assertTrue(report.getRecall() >= 0.9, report.toString());
+    }
+
+    /**
+     * 测试乘积量化在重新打分后的召回率
+     */
+    @Test
+    public void testProductQuantizationRecallWithRerank() {
+        Random random = new Random(2);
+        List<float[]> base = clusteredVectors(random, 3000);
+        List<float[]> queries = clusteredVectors(random, 50);
+
+        ProductQuantizer quantizer = new ProductQuantizer(DIMENSION, 32, 8, 7);
+        quantizer.train(base);
+        QuantizationRecallReport withoutRerank =
+                QuantizationRecallReport.evaluate("pq32", quantizer, base, queries, 10, 0);
+        QuantizationRecallReport withRerank =
+                QuantizationRecallReport.evaluate("pq32", quantizer, base, queries, 10, 100);
+
+        assertEquals(16.0, withRerank.getCompressionRatio(), 1e-9);
+        assertTrue(withRerank.getRecall() >= 0.9, withRerank.toString());
+        assertTrue(withRerank.getRecall() >= withoutRerank.getRecall(), withoutRerank.toString());
+    }
+
+    /**
+     * 测试删除后检索不再返回被删除的向量
+     */
+    @Test
+    public void testRemove() {
+        Random random = new Random(3);
+        List<float[]> base = clusteredVectors(random, 200);
+        ScalarQuantizer quantizer = new ScalarQuantizer(DIMENSION);
+        quantizer.train(base);
+        QuantizedVectorIndex index = new QuantizedVectorIndex(quantizer, 16);
+        for (int i = 0; i < base.size(); i++) {
+            index.add("plant_" + i, base.get(i));
+        }
+
+        assertTrue(index.remove("plant_0"));
+        assertEquals(199, index.size());
+        for (SearchHit hit : index.search(base.get(0), 5, Float.NEGATIVE_INFINITY, 0, null)) {
+            assertTrue(!"plant_0".equals(hit.getVectorId()));
+        }
+    }
+
+    /**
+     * 生成围绕若干中心分布的单位向量，模拟图像向量的聚簇特征
+     */
+    private static List<float[]> clusteredVectors(Random random, int count) {
+        Random centers = new Random(99);
+        float[][] clusterCenters = new float[30][DIMENSION];
+        for (float[] center : clusterCenters) {
+            for (int i = 0; i < DIMENSION; i++) {
+                center[i] = (float) centers.nextGaussian();
+            }
+        }
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            float[] center = clusterCenters[random.nextInt(clusterCenters.length)];
+            float[] vector = new float[DIMENSION];
+            double norm = 0;
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = center[i] + (float) (0.5 * random.nextGaussian());
+                norm += vector[i] * vector[i];
+            }
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] *= scale;
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
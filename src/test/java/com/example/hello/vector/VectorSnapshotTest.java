@@ -0,0 +1,200 @@
+package com.example.hello.vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 向量快照文件测试类
+ */
+public class VectorSnapshotTest {
+
+    private static final int DIMENSION = 64;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * 测试写入后重新打开，检索结果与写入的向量一致
+     */
+    @Test
+    public void testWriteAndSearch() throws IOException {
+        Path path = tempDir.resolve("plant.vsnap");
+        List<VectorSnapshot.Entry> entries = randomEntries(new Random(1), 0, 500);
+        VectorSnapshot.write(path, DIMENSION, entries, 1000);
+
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true)) {
+            assertEquals(500, snapshot.size());
+            assertEquals(1000, snapshot.getCapacity());
+            VectorSnapshot.Entry target = entries.get(123);
+            List<SearchHit> hits = snapshot.search(target.getVector(), 3, 0f);
+            assertEquals(target.getVectorId(), hits.get(0).getVectorId());
+
+            VectorSnapshot.Entry loaded = snapshot.get(target.getVectorId());
+            assertEquals(target.getPlantId(), loaded.getPlantId());
+            assertEquals(target.getPlantName(), loaded.getPlantName());
+            assertArrayEquals(target.getVector(), loaded.getVector());
+        }
+    }
+
+    /**
+     * 测试增量追加和删除在重新打开后仍然生效，容量不足时返回false
+     */
+    @Test
+    public void testAppendAndDelete() throws IOException {
+        Path path = tempDir.resolve("plant.vsnap");
+        Random random = new Random(2);
+        VectorSnapshot.write(path, DIMENSION, randomEntries(random, 0, 10), 20);
+
+        List<VectorSnapshot.Entry> added = randomEntries(random, 10, 5);
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true)) {
+            assertTrue(snapshot.append(added, Collections.singletonList("plant_3")));
+            assertEquals(14, snapshot.size());
+            assertFalse(snapshot.append(randomEntries(random, 100, 6), Collections.emptyList()));
+        }
+
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true)) {
+            assertEquals(14, snapshot.size());
+            assertNull(snapshot.get("plant_3"));
+            VectorSnapshot.Entry target = added.get(2);
+            assertEquals(target.getVectorId(), snapshot.search(target.getVector(), 1, 0f).get(0).getVectorId());
+            for (SearchHit hit : snapshot.search(target.getVector(), 20, -1f)) {
+                assertFalse("plant_3".equals(hit.getVectorId()));
+            }
+        }
+    }
+
+    /**
+     * 测试数据损坏时校验和不匹配
+     */
+    @Test
+    public void testChecksumMismatch() throws IOException {
+        Path path = tempDir.resolve("plant.vsnap");
+        VectorSnapshot.write(path, DIMENSION, randomEntries(new Random(3), 0, 10), 10);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), VectorSnapshot.HEADER_BYTES + 100);
+        }
+        assertThrows(IOException.class, () -> VectorSnapshot.open(path, true));
+    }
+
+    /**
+     * 测试向量区分段映射：每段7行，页和追加的行跨越多个映射区域
+     */
+    @Test
+    public void testChunkedMapping() throws IOException {
+        Path path = tempDir.resolve("plant.vsnap");
+        Random random = new Random(4);
+        List<VectorSnapshot.Entry> entries = randomEntries(random, 0, 100);
+        VectorSnapshot.write(path, DIMENSION, entries, 120);
+        long chunkBytes = 7L * DIMENSION * Float.BYTES;
+
+        List<VectorSnapshot.Entry> added = randomEntries(random, 100, 20);
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true, chunkBytes)) {
+            for (VectorSnapshot.Entry target : entries) {
+                assertEquals(target.getVectorId(), snapshot.search(target.getVector(), 1, 0f).get(0).getVectorId());
+                assertArrayEquals(target.getVector(), snapshot.get(target.getVectorId()).getVector());
+            }
+            assertTrue(snapshot.append(added, Collections.emptyList()));
+            assertFalse(snapshot.append(randomEntries(random, 200, 1), Collections.emptyList()));
+        }
+
+        // 校验和与映射方式无关，按默认大小重新打开仍能通过校验
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true)) {
+            assertEquals(120, snapshot.size());
+            for (VectorSnapshot.Entry target : added) {
+                assertArrayEquals(target.getVector(), snapshot.get(target.getVectorId()).getVector());
+            }
+        }
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true, 3L * DIMENSION * Float.BYTES)) {
+            VectorSnapshot.Entry target = added.get(19);
+            assertEquals(target.getVectorId(), snapshot.search(target.getVector(), 1, 0f).get(0).getVectorId());
+        }
+    }
+
+    /**
+     * 测试逐行写入完整快照，未提交时删除临时文件且不影响已有快照
+     */
+    @Test
+    public void testStreamingWriter() throws IOException {
+        Path path = tempDir.resolve("plant.vsnap");
+        Random random = new Random(5);
+        List<VectorSnapshot.Entry> entries = randomEntries(random, 0, 5000);
+        try (VectorSnapshot.Writer writer = VectorSnapshot.create(path, DIMENSION)) {
+            for (VectorSnapshot.Entry entry : entries) {
+                writer.add(entry);
+            }
+            assertEquals(5000, writer.size());
+            writer.commit(0);
+        }
+
+        try (VectorSnapshot.Writer writer = VectorSnapshot.create(path, DIMENSION)) {
+            writer.add(randomEntries(random, 9000, 1).get(0));
+        }
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true)) {
+            assertEquals(5000, snapshot.size());
+            assertEquals(5000, snapshot.getCapacity());
+            VectorSnapshot.Entry target = entries.get(4321);
+            assertEquals(target.getVectorId(), snapshot.search(target.getVector(), 1, 0f).get(0).getVectorId());
+            assertThrows(IllegalArgumentException.class, () -> VectorSnapshot.write(path, DIMENSION,
+                    Collections.singletonList(new VectorSnapshot.Entry("x", 0, "x", new float[3])), 1));
+        }
+    }
+
+    /**
+     * 测试预留容量超过2GB时仍能写入和打开，空闲行不占用实际数据
+     */
+    @Test
+    public void testCapacityBeyondSingleMapping() throws IOException {
+        Path path = tempDir.resolve("plant.vsnap");
+        int capacity = VectorSnapshot.maxRowsPerMapping(DIMENSION) * 3;
+        List<VectorSnapshot.Entry> entries = randomEntries(new Random(6), 0, 10);
+        VectorSnapshot.write(path, DIMENSION, entries, capacity);
+
+        try (VectorSnapshot snapshot = VectorSnapshot.open(path, true)) {
+            assertEquals(capacity, snapshot.getCapacity());
+            assertTrue(snapshot.append(randomEntries(new Random(7), 10, 1), Collections.emptyList()));
+            VectorSnapshot.Entry target = entries.get(7);
+            assertEquals(target.getVectorId(), snapshot.search(target.getVector(), 1, 0f).get(0).getVectorId());
+        }
+    }
+
+    private static List<VectorSnapshot.Entry> randomEntries(Random random, int firstId, int count) {
+        List<VectorSnapshot.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            float norm = 0;
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+                norm += vector[d] * vector[d];
+            }
+            norm = (float) Math.sqrt(norm);
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] /= norm;
+            }
+            int id = firstId + i;
+            entries.add(new VectorSnapshot.Entry("plant_" + id, id, "植物" + id, vector));
+        }
+        return entries;
+    }
+}